@@ -1,5 +1,6 @@
 package com.biomatters.plugins.barcoding.validator.output;
 
+import com.biomatters.geneious.publicapi.databaseservice.DatabaseServiceException;
 import com.biomatters.geneious.publicapi.documents.AnnotatedPluginDocument;
 import com.biomatters.geneious.publicapi.documents.DocumentUtilities;
 import com.biomatters.geneious.publicapi.documents.PluginDocument;
@@ -39,7 +40,8 @@ public class ValidationDocumentOperationCallback implements ValidationCallback {
     private DocumentOperation.OperationCallback operationCallback;
     private boolean selectResultDocs = false;
     private ValidationOutputRecord outputRecord;
-
+    private boolean useSubFolder = false;
+    private String subFolder;
 
     public ValidationDocumentOperationCallback(DocumentOperation.OperationCallback operationCallback, boolean selectResultDocs) {
         this.operationCallback = operationCallback;
@@ -47,12 +49,36 @@ public class ValidationDocumentOperationCallback implements ValidationCallback {
         this.outputRecord = new ValidationOutputRecord();
     }
 
+    /**
+     * Sets the sub folder that documents added through this callback will be saved to.  Once set, the sub folder of the
+     * wrapped {@link com.biomatters.geneious.publicapi.plugin.DocumentOperation.OperationCallback} is set immediately
+     * before each document is added.  This allows multiple callbacks to share the same
+     * {@link com.biomatters.geneious.publicapi.plugin.DocumentOperation.OperationCallback} from different threads.
+     *
+     * @param subFolder The name of the sub folder or null to save to the original destination folder.
+     */
+    public void setSubFolder(String subFolder) {
+        this.useSubFolder = true;
+        this.subFolder = subFolder;
+    }
+
     private URN saveDocumentAndGetUrn(PluginDocument pluginDocument, ProgressListener progressListener) throws DocumentOperationException {
         return saveDocument(pluginDocument, progressListener).annotatedPluginDocument.getURN();
     }
 
     private <T extends PluginDocument> AnnotatedAndPluginDocument<T> saveDocument(T pluginDocument, ProgressListener progressListener) throws DocumentOperationException {
-        AnnotatedPluginDocument apd = operationCallback.addDocument(pluginDocument, !selectResultDocs, progressListener);
+        AnnotatedPluginDocument apd;
+        synchronized (operationCallback) {
+            if (useSubFolder) {
+                try {
+                    operationCallback.setSubFolder(subFolder);
+                } catch (DatabaseServiceException e) {
+                    // Same as BarcodeValidatorOperation, results will be delivered to the original destination folder.
+                    e.printStackTrace();
+                }
+            }
+            apd = operationCallback.addDocument(pluginDocument, !selectResultDocs, progressListener);
+        }
         if(!apd.getDocumentClass().isAssignableFrom(pluginDocument.getClass())) {
             throw new IllegalStateException("Saved document is of different type than original (" +
                     pluginDocument.getClass() + ", " + apd.getDocumentClass() + ")");
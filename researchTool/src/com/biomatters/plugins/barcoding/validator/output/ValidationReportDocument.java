@@ -59,8 +59,11 @@ public class ValidationReportDocument implements PluginDocument, XMLSerializable
                  .append("Min Match Length = ").append(options.getTrimmingOptions().getPrimerTrimmingOptions().getMinimumMatchLength()).append("<br>")
                  .append("Score Matrix ").append(options.getTrimmingOptions().getPrimerTrimmingOptions().getScores().getName()).append("<br>")
                  .append("Gap Option Penalty = ").append(options.getTrimmingOptions().getPrimerTrimmingOptions().getGapOptionPenalty()).append("<br>")
-                 .append("Gap Extension Penalty = ").append(options.getTrimmingOptions().getPrimerTrimmingOptions().getGapExtensionPenalty()).append("<br>")
-                 .append("<br>");
+                 .append("Gap Extension Penalty = ").append(options.getTrimmingOptions().getPrimerTrimmingOptions().getGapExtensionPenalty()).append("<br>");
+             if (options.getTrimmingOptions().getPrimerTrimmingOptions().getSearchWindowSize() > 0) {
+                 descriptionBuilder.append("Search Window = ").append(options.getTrimmingOptions().getPrimerTrimmingOptions().getSearchWindowSize()).append("<br>");
+             }
+             descriptionBuilder.append("<br>");
         }
 
         descriptionBuilder.append("<u>Assembly</u><br>")
@@ -16,11 +16,16 @@ import com.biomatters.plugins.barcoding.validator.output.ValidationDocumentOpera
 import com.biomatters.plugins.barcoding.validator.output.ValidationOutputRecord;
 import com.biomatters.plugins.barcoding.validator.output.ValidationReportDocument;
 import com.biomatters.plugins.barcoding.validator.validation.Pipeline;
+import com.biomatters.plugins.barcoding.validator.validation.StagedPipelineExecutor;
+import com.biomatters.plugins.barcoding.validator.validation.assembly.CAP3Scheduler;
 import com.biomatters.plugins.barcoding.validator.validation.input.InputOptions;
 import com.biomatters.plugins.barcoding.validator.validation.input.InputProcessor;
 import com.biomatters.plugins.barcoding.validator.validation.pci.PCICalculator;
 import com.biomatters.plugins.barcoding.validator.validation.pci.PCICalculatorOptions;
 import com.biomatters.plugins.barcoding.validator.validation.results.SlidingWindowQualityValidationResultFact;
+import com.biomatters.plugins.barcoding.validator.validation.trimming.TrimmingCache;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.ConcurrencyUtilities;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.ScratchWorkspace;
 import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Multimap;
@@ -31,6 +36,7 @@ import javax.annotation.Nullable;
 import javax.swing.*;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * @author Gen Li
@@ -41,6 +47,7 @@ public class BarcodeValidatorOperation extends DocumentOperation {
     public static final String PARAMETER_SET_PREFIX = "Parameter Set ";
 
     private static final String SUB_SUB_FOLDER_SEPARATOR = "_";
+    private static final long PIPELINE_SHUTDOWN_TIMEOUT_SECONDS = 30;
     private static final Icons ICONS;
 
     static {
@@ -141,26 +148,42 @@ public class BarcodeValidatorOperation extends DocumentOperation {
         Iterator<BarcodeValidatorOptions> parameterSetIterator = allOptions.iterator();
         int currentParameterSet = 1;
         CompositeProgressListener perIteration = new CompositeProgressListener(composite, allOptions.getBatchSize());
-        while (parameterSetIterator.hasNext()) {
-            String parameterSetName = PARAMETER_SET_PREFIX + currentParameterSet;
+        ScratchWorkspace workspace = new ScratchWorkspace(allOptions.getScratchDirectory(), allOptions.isKeepScratchFiles());
+        TrimmingCache trimmingCache = new TrimmingCache(TrimmingCache.DEFAULT_MAX_ENTRIES);
+        StagedPipelineExecutor pipelineExecutor = createPipelineExecutor(allOptions, trimmingCache, workspace);
+        try {
+            while (parameterSetIterator.hasNext()) {
+                String parameterSetName = PARAMETER_SET_PREFIX + currentParameterSet;
+
+                if (resultsFolder.getChildService(parameterSetName) != null) {
+                    int renameIndex = 1;
+                    while (resultsFolder.getChildService(parameterSetName + " (" + renameIndex + ")") != null) {
+                        renameIndex++;
+                    }
 
-            if (resultsFolder.getChildService(parameterSetName) != null) {
-                int renameIndex = 1;
-                while (resultsFolder.getChildService(parameterSetName + " (" + renameIndex + ")") != null) {
-                    renameIndex++;
+                    parameterSetName += " (" + renameIndex + ")";
                 }
 
-                parameterSetName += " (" + renameIndex + ")";
-            }
+                perIteration.beginSubtask(parameterSetName);
 
-            perIteration.beginSubtask(parameterSetName);
+                runPipelineWithOptions(currentParameterSet, parameterSetName, suppliedBarcodesToSuppliedTraces, operationCallback, parameterSetIterator.next(), pipelineExecutor, perIteration);
 
-            runPipelineWithOptions(currentParameterSet, parameterSetName, suppliedBarcodesToSuppliedTraces, operationCallback, parameterSetIterator.next(), perIteration);
+                // OperationCallback does not yet support sub sub folders.  So we need to do this manually afterwards.
+                moveSubSubFoldersToCorrectLocation(resultsFolder, parameterSetName);
 
-            // OperationCallback does not yet support sub sub folders.  So we need to do this manually afterwards.
-            moveSubSubFoldersToCorrectLocation(resultsFolder, parameterSetName);
+                currentParameterSet++;
+            }
 
-            currentParameterSet++;
+            composite.setMessage(getTrimmingCacheSummary(trimmingCache));
+        } finally {
+            pipelineExecutor.shutdownNow();
+            // Steps that were running may still be using the workspace, e.g. a CAP3 process that is being killed
+            try {
+                pipelineExecutor.awaitTermination(PIPELINE_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            workspace.close();
         }
 
         composite.setComplete();
@@ -168,6 +191,37 @@ public class BarcodeValidatorOperation extends DocumentOperation {
 
 
 
+    /**
+     * Creates the executor that barcodes are run through the validation pipeline with.  CAP3 runs in its own processes
+     * so is limited by a {@link CAP3Scheduler} instead.  Every barcode can wait on the scheduler, which reports how many
+     * are queued.  Saving is serialized by {@link ValidationDocumentOperationCallback}, so there is no benefit in more
+     * than one thread for it.  CAP3 writes its files to the supplied workspace.
+     * <br/><br/>
+     * The executor is shared by every parameter set, so the trimming cache lets parameter sets with the same trimming
+     * options reuse the trimming of the first.
+     */
+    private static StagedPipelineExecutor createPipelineExecutor(BatchBarcodeValidatorOptions options, TrimmingCache trimmingCache, ScratchWorkspace workspace) {
+        Map<Pipeline.Stage, Integer> threadsPerStage = new EnumMap<Pipeline.Stage, Integer>(Pipeline.Stage.class);
+        threadsPerStage.put(Pipeline.Stage.TRIM, options.getNumberOfProcessingThreads());
+        threadsPerStage.put(Pipeline.Stage.ASSEMBLE, options.getNumberOfConcurrentBarcodes());
+        threadsPerStage.put(Pipeline.Stage.CONSENSUS, options.getNumberOfProcessingThreads());
+        threadsPerStage.put(Pipeline.Stage.VALIDATE, options.getNumberOfProcessingThreads());
+        threadsPerStage.put(Pipeline.Stage.PERSIST, 1);
+        CAP3Scheduler CAP3Scheduler = new CAP3Scheduler(options.getNumberOfConcurrentAssemblies(), options.getAssemblyTimeoutSeconds(), workspace);
+        return new StagedPipelineExecutor(threadsPerStage, options.getNumberOfConcurrentBarcodes(), trimmingCache, CAP3Scheduler);
+    }
+
+    /**
+     * @return A message saying how many sequences were trimmed and how many reused the trimming of an earlier barcode or
+     * parameter set.
+     */
+    private static String getTrimmingCacheSummary(TrimmingCache trimmingCache) {
+        long hits = trimmingCache.getNumberOfHits();
+        long lookups = hits + trimmingCache.getNumberOfMisses();
+        return "Trimmed " + lookups + " sequences, reusing earlier trimming for " + hits +
+                (lookups == 0 ? "" : " (" + Math.round(100.0 * hits / lookups) + "%)") + ".";
+    }
+
     private static void moveSubSubFoldersToCorrectLocation(WritableDatabaseService resultsFolder, String parameterSetName) throws DocumentOperationException {
         try {
             String prefix = parameterSetName + SUB_SUB_FOLDER_SEPARATOR;
@@ -227,12 +281,13 @@ public class BarcodeValidatorOperation extends DocumentOperation {
                                                Multimap<AnnotatedPluginDocument, AnnotatedPluginDocument> suppliedBarcodesToSuppliedTraces,
                                                OperationCallback operationCallback,
                                                BarcodeValidatorOptions barcodeValidatorOptions,
+                                               StagedPipelineExecutor pipelineExecutor,
                                                ProgressListener progressListener) throws DocumentOperationException {
 
 
         PCICalculatorOptions pciCalculatorOptions = barcodeValidatorOptions.getPCICalculatorOptions();
         Options pciCalculatorAlignmentOptions = barcodeValidatorOptions.getPCICalculatorAlignmentOptions();
-        boolean runPCICalculation = pciCalculatorOptions.canPerformPCICalculation();
+        boolean runPCICalculation = !pciCalculatorOptions.getPathToBarcodesFile().trim().isEmpty();
         double[] progressFractions = runPCICalculation ? new double[]{0.65, 0.3, 0.05} : new double[]{0.9, 0.1};
         CompositeProgressListener overallProgress = new CompositeProgressListener(progressListener, progressFractions);
 
@@ -240,57 +295,68 @@ public class BarcodeValidatorOperation extends DocumentOperation {
         Set<AnnotatedPluginDocument> barcodes = suppliedBarcodesToSuppliedTraces.keySet();
         CompositeProgressListener validationProgress = new CompositeProgressListener(overallProgress, barcodes.size());
 
-        List<ValidationOutputRecord> outputs = new ArrayList<ValidationOutputRecord>();
-        for (AnnotatedPluginDocument suppliedBarcode : barcodes) {
-            NucleotideSequenceDocument barcode = (NucleotideSequenceDocument)suppliedBarcode.getDocument();
-            String barcodeName = barcode.getName();
-            ValidationDocumentOperationCallback callback = new ValidationDocumentOperationCallback(operationCallback, false);
+        Function<AnnotatedPluginDocument, NucleotideGraphSequenceDocument> getPluginDocFunction = new Function<AnnotatedPluginDocument, NucleotideGraphSequenceDocument>() {
+            @Nullable
+            @Override
+            public NucleotideGraphSequenceDocument apply(@Nullable AnnotatedPluginDocument input) {
+                if (input == null) {
+                    return null;
+                }
 
-            validationProgress.beginSubtask(barcodeName);
+                return (NucleotideGraphSequenceDocument)input.getDocumentOrNull();
+            }
+        };
 
-            Function<AnnotatedPluginDocument, NucleotideGraphSequenceDocument> getPluginDocFunction = new Function<AnnotatedPluginDocument, NucleotideGraphSequenceDocument>() {
-                @Nullable
-                @Override
-                public NucleotideGraphSequenceDocument apply(@Nullable AnnotatedPluginDocument input) {
-                    if (input == null) {
-                        return null;
-                    }
+        List<ValidationOutputRecord> outputs = new ArrayList<ValidationOutputRecord>();
+        // Barcodes are submitted and collected in the same order so that the output records are deterministic
+        // regardless of which barcode finishes first.
+        List<String> barcodeNames = new ArrayList<String>();
+        List<Future<ValidationOutputRecord>> pendingRecords = new ArrayList<Future<ValidationOutputRecord>>();
+        try {
+            for (AnnotatedPluginDocument suppliedBarcode : barcodes) {
+                List<NucleotideGraphSequenceDocument> traces = new ArrayList<NucleotideGraphSequenceDocument>(Collections2.transform(suppliedBarcodesToSuppliedTraces.get(suppliedBarcode), getPluginDocFunction));
 
-                    return (NucleotideGraphSequenceDocument)input.getDocumentOrNull();
+                barcodeNames.add(suppliedBarcode.getName());
+                if (traces.isEmpty()) {
+                    pendingRecords.add(null);
+                    continue;
                 }
-            };
-            List<NucleotideGraphSequenceDocument> traces = new ArrayList<NucleotideGraphSequenceDocument>(Collections2.transform(suppliedBarcodesToSuppliedTraces.get(suppliedBarcode), getPluginDocFunction));
 
-            if (traces.isEmpty()) {
-                continue;
+                NucleotideSequenceDocument barcode = (NucleotideSequenceDocument)suppliedBarcode.getDocument();
+                ValidationDocumentOperationCallback callback = new ValidationDocumentOperationCallback(operationCallback, false);
+                pendingRecords.add(pipelineExecutor.submit(
+                        barcode,
+                        traces,
+                        barcodeValidatorOptions.getTrimmingOptions(),
+                        barcodeValidatorOptions.getAssemblyOptions(),
+                        barcodeValidatorOptions.getValidationOptions(),
+                        callback,
+                        new BarcodePersistenceSteps(parameterSetNumber, parameterSetName, barcode, traces, callback),
+                        validationProgress
+                ));
             }
 
-            CompositeProgressListener pipelineProgress = new CompositeProgressListener(validationProgress, 0.2, 0.8);
+            for (int i = 0; i < pendingRecords.size(); i++) {
+                validationProgress.beginSubtask(barcodeNames.get(i));
 
-            pipelineProgress.beginSubtask();
-
-            setSubFolder(operationCallback, null);
-            callback.setInputs(barcode, traces, pipelineProgress);
-            setSubFolder(operationCallback, parameterSetName + SUB_SUB_FOLDER_SEPARATOR + barcodeName);
-
-            pipelineProgress.beginSubtask();
+                Future<ValidationOutputRecord> pendingRecord = pendingRecords.get(i);
+                if (pendingRecord == null) {
+                    continue;
+                }
 
-            Pipeline.runValidationPipeline(
-                    barcode,
-                    traces,
-                    barcodeValidatorOptions.getTrimmingOptions(),
-                    barcodeValidatorOptions.getAssemblyOptions(),
-                    barcodeValidatorOptions.getValidationOptions(),
-                    callback,
-                    pipelineProgress
-            );
-            ValidationOutputRecord record = callback.getRecord();
-            record.setParameterSetName(String.valueOf(parameterSetNumber));
-            saveChangesToSequencesMadeByValidationPipeline(record);
-            setSubFolder(operationCallback, parameterSetName);
-            outputs.add(record);
+                outputs.add(ConcurrencyUtilities.waitForResult(pendingRecord, validationProgress, "Failed to validate barcode"));
+            }
+        } finally {
+            // Stops any barcodes of this parameter set that are still in the pipeline if one failed or was canceled
+            for (Future<ValidationOutputRecord> pendingRecord : pendingRecords) {
+                if (pendingRecord != null) {
+                    pendingRecord.cancel(true);
+                }
+            }
         }
 
+        setSubFolder(operationCallback, parameterSetName);
+
         Map<URN, Double> PCIValues = null;
 
         if (runPCICalculation) {
@@ -307,6 +373,46 @@ public class BarcodeValidatorOperation extends DocumentOperation {
 
 
 
+    /**
+     * Saves the inputs and results of the validation pipeline for a single barcode.  Each barcode has its own
+     * {@link com.biomatters.plugins.barcoding.validator.output.ValidationDocumentOperationCallback} that saves to the
+     * sub folder for the barcode, so several barcodes can be in the pipeline at the same time.
+     */
+    private static class BarcodePersistenceSteps implements StagedPipelineExecutor.PersistenceSteps<ValidationOutputRecord> {
+        private int parameterSetNumber;
+        private String parameterSetName;
+        private NucleotideSequenceDocument barcode;
+        private List<NucleotideGraphSequenceDocument> traces;
+        private ValidationDocumentOperationCallback callback;
+
+        private BarcodePersistenceSteps(int parameterSetNumber,
+                                        String parameterSetName,
+                                        NucleotideSequenceDocument barcode,
+                                        List<NucleotideGraphSequenceDocument> traces,
+                                        ValidationDocumentOperationCallback callback) {
+            this.parameterSetNumber = parameterSetNumber;
+            this.parameterSetName = parameterSetName;
+            this.barcode = barcode;
+            this.traces = traces;
+            this.callback = callback;
+        }
+
+        @Override
+        public void saveInputs(ProgressListener progressListener) throws DocumentOperationException {
+            callback.setSubFolder(null);
+            callback.setInputs(barcode, traces, progressListener);
+            callback.setSubFolder(parameterSetName + SUB_SUB_FOLDER_SEPARATOR + barcode.getName());
+        }
+
+        @Override
+        public ValidationOutputRecord saveOutputs(ProgressListener progressListener) throws DocumentOperationException {
+            ValidationOutputRecord record = callback.getRecord();
+            record.setParameterSetName(String.valueOf(parameterSetNumber));
+            saveChangesToSequencesMadeByValidationPipeline(record);
+            return record;
+        }
+    }
+
     private static void saveChangesToSequencesMadeByValidationPipeline(ValidationOutputRecord record) {
         List<URN> docsToSave = new ArrayList<URN>(record.getTrimmedDocumentUrns());
 
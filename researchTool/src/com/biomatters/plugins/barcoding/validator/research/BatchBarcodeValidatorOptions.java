@@ -4,6 +4,10 @@ import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
 import com.biomatters.plugins.barcoding.validator.research.options.BatchOptions;
 import com.biomatters.plugins.barcoding.validator.validation.input.InputOptions;
 
+import javax.annotation.Nullable;
+import javax.swing.*;
+import java.io.File;
+
 /**
  * A {@link com.biomatters.plugins.barcoding.validator.research.options.BatchOptions} for the Barcode Validator Operation
  *
@@ -13,6 +17,18 @@ import com.biomatters.plugins.barcoding.validator.validation.input.InputOptions;
 public class BatchBarcodeValidatorOptions extends BatchOptions<BarcodeValidatorOptions> {
 
     private static final String INPUT_OPTIONS_NAME = "input";
+    private static final String CONCURRENT_BARCODES_OPTION_NAME = "concurrentBarcodes";
+    private static final String PROCESSING_THREADS_OPTION_NAME = "processingThreads";
+    private static final String CONCURRENT_ASSEMBLIES_OPTION_NAME = "concurrentAssemblies";
+    private static final String ASSEMBLY_TIMEOUT_OPTION_NAME = "assemblyTimeout";
+    private static final String SCRATCH_DIRECTORY_OPTION_NAME = "scratchDirectory";
+    private static final String KEEP_SCRATCH_FILES_OPTION_NAME = "keepScratchFiles";
+    private static final File RAM_BACKED_DIRECTORY = new File("/dev/shm");
+    private static final int DEFAULT_ASSEMBLY_TIMEOUT_SECONDS = 600;
+    private static final int MAX_ASSEMBLY_TIMEOUT_SECONDS = 86400;
+    private static final int MAX_CONCURRENT_BARCODES = 256;
+    private static final int MAX_PROCESSING_THREADS = 64;
+    private static final int MAX_CONCURRENT_ASSEMBLIES = 32;
 
     public BatchBarcodeValidatorOptions() throws DocumentOperationException {
         super(new BarcodeValidatorOptions());
@@ -21,6 +37,85 @@ public class BatchBarcodeValidatorOptions extends BatchOptions<BarcodeValidatorO
     @Override
     protected void addFirstOptions() {
         addCollapsibleChildOptions(INPUT_OPTIONS_NAME, "Input", "", new InputOptions(BarcodeValidatorOptions.class), false, false);
+        addConcurrencyOptions();
+        addScratchOptions();
+    }
+
+    private void addConcurrencyOptions() {
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
+
+        IntegerOption concurrentBarcodesOption = addIntegerOption(CONCURRENT_BARCODES_OPTION_NAME, "Barcodes to validate concurrently:",
+                Math.min(availableProcessors, MAX_CONCURRENT_BARCODES), 1, MAX_CONCURRENT_BARCODES);
+        concurrentBarcodesOption.setDescription("The maximum number of barcodes in the validation pipeline at the same time.  " +
+                "Higher values keep more threads busy but hold more documents in memory.");
+
+        IntegerOption processingThreadsOption = addIntegerOption(PROCESSING_THREADS_OPTION_NAME, "Threads for trimming, consensus and validation:",
+                Math.min(availableProcessors, MAX_PROCESSING_THREADS), 1, MAX_PROCESSING_THREADS);
+        processingThreadsOption.setDescription("The number of threads used for each of trimming, generating consensus sequences and running validations.");
+
+        IntegerOption concurrentAssembliesOption = addIntegerOption(CONCURRENT_ASSEMBLIES_OPTION_NAME, "Concurrent CAP3 assemblies:",
+                Math.min(availableProcessors, MAX_CONCURRENT_ASSEMBLIES), 1, MAX_CONCURRENT_ASSEMBLIES);
+        concurrentAssembliesOption.setDescription("The maximum number of CAP3 processes to run at the same time.");
+
+        IntegerOption assemblyTimeoutOption = addIntegerOption(ASSEMBLY_TIMEOUT_OPTION_NAME, "CAP3 timeout (seconds):", DEFAULT_ASSEMBLY_TIMEOUT_SECONDS, 0, MAX_ASSEMBLY_TIMEOUT_SECONDS);
+        assemblyTimeoutOption.setDescription("CAP3 processes that run for longer than this are stopped and the barcode fails.  0 for no limit.");
+    }
+
+    private void addScratchOptions() {
+        String defaultDirectory = RAM_BACKED_DIRECTORY.isDirectory() && RAM_BACKED_DIRECTORY.canWrite() ? RAM_BACKED_DIRECTORY.getAbsolutePath() : "";
+
+        FileSelectionOption scratchDirectoryOption = addFileSelectionOption(SCRATCH_DIRECTORY_OPTION_NAME, "Scratch directory:", defaultDirectory);
+        scratchDirectoryOption.setSelectionType(JFileChooser.DIRECTORIES_ONLY);
+        scratchDirectoryOption.setDescription("The directory CAP3 writes its temporary files to.  A RAM-backed directory such as " +
+                RAM_BACKED_DIRECTORY.getAbsolutePath() + " avoids disk access.  Leave empty to use the system temporary directory.");
+
+        BooleanOption keepScratchFilesOption = addBooleanOption(KEEP_SCRATCH_FILES_OPTION_NAME, "Keep temporary files", false);
+        keepScratchFilesOption.setDescription("Leaves the files written by CAP3 in the scratch directory for debugging instead of deleting them.");
+    }
+
+    /**
+     * @return The maximum number of barcodes to run through the validation pipeline at the same time.
+     */
+    public int getNumberOfConcurrentBarcodes() {
+        // Looked up by name because addFirstOptions() is called from the super constructor before fields are initialized
+        return (Integer)getValue(CONCURRENT_BARCODES_OPTION_NAME);
+    }
+
+    /**
+     * @return The number of threads to use for each of the CPU bound stages of the validation pipeline.
+     */
+    public int getNumberOfProcessingThreads() {
+        return (Integer)getValue(PROCESSING_THREADS_OPTION_NAME);
+    }
+
+    /**
+     * @return The maximum number of CAP3 assemblies to run at the same time.
+     */
+    public int getNumberOfConcurrentAssemblies() {
+        return (Integer)getValue(CONCURRENT_ASSEMBLIES_OPTION_NAME);
+    }
+
+    /**
+     * @return The number of seconds a CAP3 process can run for, or 0 for no limit.
+     */
+    public int getAssemblyTimeoutSeconds() {
+        return (Integer)getValue(ASSEMBLY_TIMEOUT_OPTION_NAME);
+    }
+
+    /**
+     * @return The directory to write temporary files to, or null to use the system temporary directory.
+     */
+    @Nullable
+    public File getScratchDirectory() {
+        String path = ((String)getValue(SCRATCH_DIRECTORY_OPTION_NAME)).trim();
+        return path.isEmpty() ? null : new File(path);
+    }
+
+    /**
+     * @return True if temporary files should be kept after they are used.
+     */
+    public boolean isKeepScratchFiles() {
+        return (Boolean)getValue(KEEP_SCRATCH_FILES_OPTION_NAME);
     }
 
     public InputOptions getInputOptions() {
@@ -4,7 +4,6 @@ import com.biomatters.geneious.publicapi.components.Dialogs;
 import com.biomatters.geneious.publicapi.documents.AnnotatedPluginDocument;
 import com.biomatters.geneious.publicapi.documents.URN;
 import com.biomatters.geneious.publicapi.documents.sequence.SequenceAlignmentDocument;
-import com.biomatters.geneious.publicapi.documents.sequence.SequenceDocument;
 import com.biomatters.geneious.publicapi.plugin.*;
 import com.biomatters.plugins.barcoding.validator.output.PCICalculatorReportDocument;
 import com.biomatters.plugins.barcoding.validator.validation.pci.PCICalculator;
@@ -71,9 +70,6 @@ public class PCICalculatorOperation extends DocumentOperation {
             for (AnnotatedPluginDocument doc : annotatedPluginDocuments) {
                 SequenceAlignmentDocument alignmentDocument = (SequenceAlignmentDocument) doc.getDocument();
                 List<AnnotatedPluginDocument> referencedDocuments = getReferencedDocs(alignmentDocument);
-                if (referencedDocuments == null) {
-                    return;
-                }
 
                 Map<URN, Double> result = null;
                 if (referencedDocuments.size() > 0) {
@@ -91,31 +87,19 @@ public class PCICalculatorOperation extends DocumentOperation {
         }
     }
 
+    /**
+     * @return The documents referenced by the sequences of the alignment, which are the new samples.  Sequences that do
+     * not reference a document, such as the reference barcodes of a PCI alignment, are reference barcodes.  See
+     * {@link PCICalculator#parseAlignment(SequenceAlignmentDocument, BiMap, CompositeProgressListener)}
+     */
     private List<AnnotatedPluginDocument> getReferencedDocs(SequenceAlignmentDocument alignmentDocument) {
         List<AnnotatedPluginDocument> ret = new ArrayList<AnnotatedPluginDocument>();
-        List<SequenceDocument> seqs = new ArrayList<SequenceDocument>();
         for (int i = 0; i < alignmentDocument.getNumberOfSequences(); i++) {
             AnnotatedPluginDocument referencedDocument = alignmentDocument.getReferencedDocument(i);
-            if (referencedDocument == null) {
-                seqs.add(alignmentDocument.getSequence(i));
-            } else {
+            if (referencedDocument != null) {
                 ret.add(referencedDocument);
             }
         }
-
-        if (seqs.size() > 0) {
-            StringBuilder sb = new StringBuilder();
-            sb.append("Can not find referenced document for these sequences : \n");
-            for (SequenceDocument seq : seqs) {
-                sb.append(seq.getName()).append("\n");
-            }
-            sb.append("\nDo you want to ignore them and proceed?");
-
-            if (!Dialogs.showOkCancelDialog(sb.toString(), "", null)) {
-                return null;
-            }
-        }
-
         return ret;
     }
 
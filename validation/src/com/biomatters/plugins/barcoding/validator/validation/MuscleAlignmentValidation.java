@@ -11,8 +11,13 @@ import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
 import com.biomatters.plugins.barcoding.validator.validation.results.MuscleAlignmentValidationResultFact;
 import com.biomatters.plugins.barcoding.validator.validation.results.ResultFact;
 import com.biomatters.plugins.barcoding.validator.validation.utilities.AlignmentUtilities;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.KmerUtilities;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.PairwiseAligner;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.SequenceRead;
 import jebl.util.ProgressListener;
 
+import javax.annotation.Nullable;
+
 import java.util.*;
 
 /**
@@ -24,6 +29,22 @@ public class MuscleAlignmentValidation extends SequenceCompareValidation {
 
     @Override
     public ResultFact validate(SequenceDocument originalSequence, SequenceDocument sequenceToValidate, ValidationOptions options, ValidationCallback callback) {
+        return validate(originalSequence, new SequenceRead(sequenceToValidate.getName(), sequenceToValidate.getCharSequence(), null), sequenceToValidate, options, callback);
+    }
+
+    /**
+     * Validates a read without creating a document for it unless the alignment is saved.
+     */
+    @Override
+    public ResultFact validate(SequenceDocument originalSequence, SequenceRead read, ValidationOptions options, ValidationCallback callback) {
+        return validate(originalSequence, read, null, options, callback);
+    }
+
+    /**
+     * @param read The bases of the sequence to validate.
+     * @param sequenceToValidate The document of the read, or null to create one from the read if the alignment is saved.
+     */
+    private ResultFact validate(SequenceDocument originalSequence, SequenceRead read, @Nullable SequenceDocument sequenceToValidate, ValidationOptions options, ValidationCallback callback) {
         if (!(options instanceof MuscleAlignmentValidationOptions)) {
             throw new IllegalArgumentException(
                     "Wrong options supplied: " +
@@ -35,30 +56,73 @@ public class MuscleAlignmentValidation extends SequenceCompareValidation {
         MuscleAlignmentValidationOptions muscleAlignmentValidationOptions = (MuscleAlignmentValidationOptions)options;
         String sequenceName = originalSequence.getName();
         float minimumSimilarity = muscleAlignmentValidationOptions.getMinimumSimilarity();
-        Map<Float, AnnotatedPluginDocument> similarityToIntermediateDocument = new HashMap<Float, AnnotatedPluginDocument>();
-
-        AnnotatedPluginDocument referenceBarcodeDoc = getOrCreateAnnotatedPluginDocument(originalSequence);
-        AnnotatedPluginDocument sequenceDoc = getOrCreateAnnotatedPluginDocument(sequenceToValidate);
-        DefaultSequenceDocument sequenceReversed = SequenceExtractionUtilities.reverseComplement(sequenceToValidate);
-        AnnotatedPluginDocument sequenceReversedDocument = DocumentUtilities.createAnnotatedPluginDocument(sequenceReversed);
-        sequenceReversedDocument.setName(sequenceName + " (reversed)");
 
         MuscleAlignmentValidationResultFact result = new MuscleAlignmentValidationResultFact(false, 0.0, "", Collections.<URN>emptyList(), "");
 
-        try {
-            float similarityBetweenSequenceOneAndSequenceTwo = getSimilarity(referenceBarcodeDoc, sequenceDoc, similarityToIntermediateDocument);
-            float similarityBetweenSequenceOneReversedAndSequenceTwo = getSimilarity(referenceBarcodeDoc, sequenceReversedDocument, similarityToIntermediateDocument);
+        /* Work out which orientation aligns best without MUSCLE.  MUSCLE is then only needed to produce the saved alignment. */
+        byte[] referenceResidues = PairwiseAligner.toResidues(originalSequence.getCharSequence());
+        byte[] forwardResidues = PairwiseAligner.toResidues(read.getBases());
+        byte[] reverseResidues = PairwiseAligner.reverseComplement(forwardResidues);
+
+        /* Use shared k-mers to pick the orientation.  Both orientations are only aligned if the k-mers are ambiguous. */
+        int k = KmerUtilities.ORIENTATION_KMER_LENGTH;
+        long[] referenceKmers = KmerUtilities.getSortedKmers(referenceResidues, k);
+        double forwardContainment = KmerUtilities.getContainment(referenceKmers, forwardResidues, k);
+        double reverseContainment = KmerUtilities.getContainment(referenceKmers, reverseResidues, k);
+        double orientationThreshold = muscleAlignmentValidationOptions.getOrientationThreshold();
+
+        /* The similarity of a saved alignment is taken from MUSCLE, so only align here if the k-mers are ambiguous. */
+        boolean saveAlignment = muscleAlignmentValidationOptions.isSaveAlignment();
+        boolean useReverse;
+        float similarityOfAlignment = -1;
+        if (forwardContainment - reverseContainment > orientationThreshold) {
+            useReverse = false;
+            if (!saveAlignment) {
+                similarityOfAlignment = PairwiseAligner.getSimilarity(referenceResidues, forwardResidues);
+            }
+        } else if (reverseContainment - forwardContainment > orientationThreshold) {
+            useReverse = true;
+            if (!saveAlignment) {
+                similarityOfAlignment = PairwiseAligner.getSimilarity(referenceResidues, reverseResidues);
+            }
+        } else {
+            float forwardSimilarity = PairwiseAligner.getSimilarity(referenceResidues, forwardResidues);
+            float reverseSimilarity = PairwiseAligner.getSimilarity(referenceResidues, reverseResidues);
+            useReverse = reverseSimilarity > forwardSimilarity;
+            similarityOfAlignment = Math.max(forwardSimilarity, reverseSimilarity);
+        }
 
-            float similarityOfAlignment = Math.max(similarityBetweenSequenceOneAndSequenceTwo, similarityBetweenSequenceOneReversedAndSequenceTwo);
-            AnnotatedPluginDocument alignmentDocument = similarityToIntermediateDocument.get(similarityOfAlignment);
+        try {
+            if (saveAlignment) {
+                if (sequenceToValidate == null) {
+                    sequenceToValidate = read.toDocument();
+                }
+                AnnotatedPluginDocument referenceBarcodeDoc = getOrCreateAnnotatedPluginDocument(originalSequence);
+                AnnotatedPluginDocument sequenceDoc;
+                if (useReverse) {
+                    DefaultSequenceDocument sequenceReversed = SequenceExtractionUtilities.reverseComplement(sequenceToValidate);
+                    sequenceDoc = DocumentUtilities.createAnnotatedPluginDocument(sequenceReversed);
+                    sequenceDoc.setName(sequenceName + " (reversed)");
+                } else {
+                    sequenceDoc = getOrCreateAnnotatedPluginDocument(sequenceToValidate);
+                }
+
+                AnnotatedPluginDocument alignmentDocument = getAlignment(referenceBarcodeDoc, sequenceDoc);
+                if (alignmentDocument == null) {
+                    similarityOfAlignment = -1;
+                } else {
+                    // Report the similarity of the saved alignment so that it matches what the user will see
+                    similarityOfAlignment = ((Percentage)alignmentDocument.getFieldValue(DocumentField.ALIGNMENT_SIMILARITY.getCode())).floatValue();
+                    result.setAlignmentName(alignmentDocument.getName());
+                    PluginDocument pluginDocument = callback.addPluginDocument(alignmentDocument.getDocument(), ProgressListener.EMPTY);
+                    result.addAlignmentDocument(pluginDocument);
+                }
+            }
 
             result.setSimilarity(similarityOfAlignment);
-            result.setAlignmentName(alignmentDocument.getName());
-            PluginDocument pluginDocument = callback.addPluginDocument(alignmentDocument.getDocument(), ProgressListener.EMPTY);
-            result.addAlignmentDocument(pluginDocument);
 
             if (similarityOfAlignment == -1) {
-                result.setNotes("Failed to align " + originalSequence.getName() + " and " + sequenceToValidate.getName());
+                result.setNotes("Failed to align " + originalSequence.getName() + " and " + read.getName());
             } else if (similarityOfAlignment < minimumSimilarity) {
                 result.setNotes("Similarity was below the minimum threshold. Minimum similarity: " + minimumSimilarity + "%, actual similarity: " + similarityOfAlignment + "%");
             } else {
@@ -84,27 +148,22 @@ public class MuscleAlignmentValidation extends SequenceCompareValidation {
         return new MuscleAlignmentValidationOptions(MuscleAlignmentValidation.class);
     }
 
-    private float getSimilarity(AnnotatedPluginDocument sequenceOneDocument,
-                                AnnotatedPluginDocument sequenceTwoDocument,
-                                Map<Float, AnnotatedPluginDocument> similarityToIntermediateDocument) throws DocumentOperationException {
+    private AnnotatedPluginDocument getAlignment(AnnotatedPluginDocument sequenceOneDocument,
+                                                 AnnotatedPluginDocument sequenceTwoDocument) throws DocumentOperationException {
 
         NucleotideSequenceDocument seq1 = getNucleotideSeqFromApd(sequenceOneDocument);
         NucleotideSequenceDocument seq2 = getNucleotideSeqFromApd(sequenceTwoDocument);
         SequenceAlignmentDocument alignment = AlignmentUtilities.performAlignment(Arrays.asList(seq1, seq2), null, ProgressListener.EMPTY);
 
         if (alignment == null) {
-            return -1;
+            return null;
         }
 
         AnnotatedPluginDocument apd = DocumentUtilities.getAnnotatedPluginDocumentThatContains(alignment);
         if(apd == null) {
             apd = DocumentUtilities.createAnnotatedPluginDocument(alignment);
         }
-        float similarity = ((Percentage)apd.getFieldValue(DocumentField.ALIGNMENT_SIMILARITY.getCode())).floatValue();
-
-        similarityToIntermediateDocument.put(similarity, apd);
-
-        return similarity;
+        return apd;
     }
 
     private NucleotideSequenceDocument getNucleotideSeqFromApd(AnnotatedPluginDocument sequenceOneDocument) {
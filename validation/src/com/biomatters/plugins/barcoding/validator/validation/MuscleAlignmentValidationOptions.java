@@ -15,6 +15,8 @@ public class MuscleAlignmentValidationOptions extends ValidationOptions {
     private static final String DESCRIPTION = "Validates the similarity between two sequences using the MUSCLE alignment program.";
 
     private static final String MINIMUM_SIMILARITY_OPTIONS_NAME = "similarity";
+    private static final String SAVE_ALIGNMENT_OPTIONS_NAME     = "saveAlignment";
+    private static final String ORIENTATION_THRESHOLD_OPTIONS_NAME = "orientationThreshold";
 
     @SuppressWarnings("UnusedDeclaration")
     public MuscleAlignmentValidationOptions(Element element) throws XMLSerializationException {
@@ -30,6 +32,18 @@ public class MuscleAlignmentValidationOptions extends ValidationOptions {
         OptionValue fivePercentValue = new OptionValue("50", "50%");
 
         addComboBoxOption(MINIMUM_SIMILARITY_OPTIONS_NAME, "Similarity:", Arrays.asList(exactValue, ninetyPercentValue, sevenPercentValue, fivePercentValue), ninetyPercentValue);
+        addBooleanOption(SAVE_ALIGNMENT_OPTIONS_NAME, "Save alignment with MUSCLE", true).setDescription(
+                "Aligns the sequences with MUSCLE and saves the alignment so it can be viewed from the report.  " +
+                "When not selected the similarity is calculated without MUSCLE and no alignment is saved."
+        );
+        // Advanced so that it is not turned into a multiple value option by the batch options
+        DoubleOption orientationThresholdOption = addDoubleOption(ORIENTATION_THRESHOLD_OPTIONS_NAME, "Orientation k-mer threshold:", 20.0, 0.0, 100.0);
+        orientationThresholdOption.setUnits("%");
+        orientationThresholdOption.setAdvanced(true);
+        orientationThresholdOption.setDescription(
+                "The orientation of the sequence is chosen by how many of its k-mers are found in the barcode.  " +
+                "If the forward and reverse complement differ by no more than this amount then both are aligned."
+        );
     }
 
     @Override
@@ -50,4 +64,16 @@ public class MuscleAlignmentValidationOptions extends ValidationOptions {
     public float getMinimumSimilarity() {
         return Float.parseFloat(getValueAsString(MINIMUM_SIMILARITY_OPTIONS_NAME));
     }
+
+    /**
+     * @return The minimum difference, in percent, between the k-mer containment of the forward and reverse
+     * complement orientations for an orientation to be chosen without aligning both.
+     */
+    public double getOrientationThreshold() {
+        return ((DoubleOption)getOption(ORIENTATION_THRESHOLD_OPTIONS_NAME)).getValue();
+    }
+
+    public boolean isSaveAlignment() {
+        return ((BooleanOption)getOption(SAVE_ALIGNMENT_OPTIONS_NAME)).getValue();
+    }
 }
@@ -1,22 +1,34 @@
 package com.biomatters.plugins.barcoding.validator.validation;
 
+import com.biomatters.geneious.publicapi.documents.PluginDocument;
 import com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraphSequenceDocument;
 import com.biomatters.geneious.publicapi.documents.sequence.NucleotideSequenceDocument;
 import com.biomatters.geneious.publicapi.documents.sequence.SequenceAlignmentDocument;
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceDocument;
 import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
 import com.biomatters.geneious.publicapi.utilities.StringUtilities;
 import com.biomatters.plugins.barcoding.validator.validation.assembly.CAP3Options;
 import com.biomatters.plugins.barcoding.validator.validation.assembly.CAP3Runner;
+import com.biomatters.plugins.barcoding.validator.validation.assembly.CAP3Scheduler;
+import com.biomatters.plugins.barcoding.validator.validation.assembly.ContigLayout;
+import com.biomatters.plugins.barcoding.validator.validation.assembly.OverlapAssembler;
 import com.biomatters.plugins.barcoding.validator.validation.consensus.ConsensusUtilities;
+import com.biomatters.plugins.barcoding.validator.validation.results.LinkResultColumn;
+import com.biomatters.plugins.barcoding.validator.validation.results.ResultColumn;
 import com.biomatters.plugins.barcoding.validator.validation.results.ResultFact;
+import com.biomatters.plugins.barcoding.validator.validation.trimming.PrimerSeedIndex;
 import com.biomatters.plugins.barcoding.validator.validation.trimming.PrimerTrimmingOptions;
 import com.biomatters.plugins.barcoding.validator.validation.trimming.SequenceTrimmer;
+import com.biomatters.plugins.barcoding.validator.validation.trimming.TrimmingCache;
 import com.biomatters.plugins.barcoding.validator.validation.trimming.TrimmingOptions;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.SequenceRead;
 import jebl.util.CompositeProgressListener;
 import jebl.util.ProgressListener;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -25,6 +37,25 @@ import java.util.Map;
  *         Created on 24/10/14 3:57 PM
  */
 public class Pipeline {
+
+    /**
+     * The kinds of work done by the validation pipeline.  Each {@link Step} of the pipeline belongs to one stage, so
+     * that the steps of different barcodes can run on separate pools of threads for each stage.  See
+     * {@link StagedPipelineExecutor}
+     */
+    public enum Stage {
+        /** Trimming of traces, CPU bound. */
+        TRIM,
+        /** Assembly of traces with CAP3, bound by the external process. */
+        ASSEMBLE,
+        /** Generation and trimming of consensus sequences, CPU bound. */
+        CONSENSUS,
+        /** Running of validations, CPU bound. */
+        VALIDATE,
+        /** Creation and saving of documents and results through the {@link ValidationCallback}, I/O bound. */
+        PERSIST
+    }
+
     public static void runValidationPipeline(NucleotideSequenceDocument barcode,
                                              List<NucleotideGraphSequenceDocument> traces,
                                              TrimmingOptions trimmingOptions,
@@ -32,130 +63,252 @@ public class Pipeline {
                                              Map<String, ValidationOptions> validationOptions,
                                              ValidationCallback callback,
                                              ProgressListener progressListener) throws DocumentOperationException {
-        CompositeProgressListener stepsProgress = new CompositeProgressListener(progressListener, 3);
+        List<Step> steps = getSteps(barcode, traces, trimmingOptions, null, CAP3Options, CAP3Scheduler.getDefault(), validationOptions, callback);
+        CompositeProgressListener stepsProgress = new CompositeProgressListener(progressListener, steps.size());
 
-        stepsProgress.beginSubtask("Trimming traces...");
+        for (Step step : steps) {
+            stepsProgress.beginSubtask(step.getDescription());
 
-        CompositeProgressListener trimmingProgress = new CompositeProgressListener(stepsProgress, 2);
-        trimmingProgress.beginSubtask();
-        List<NucleotideGraphSequenceDocument> trimmedTraces = trimTraces(traces, trimmingOptions, true, trimmingProgress);
-        trimmingProgress.beginSubtask();
-        trimmedTraces = callback.addTrimmedTraces(trimmedTraces, trimmingProgress);
+            step.run(stepsProgress);
+        }
+    }
 
-        stepsProgress.beginSubtask("Assembling traces...");
+    /**
+     * Returns the steps of the validation pipeline for a single barcode.  The steps must be run one at a time in
+     * order, but do not need to be run on the same thread.
+     *
+     * @param trimmingCache The cache to share the trimming of traces and consensus sequences between barcodes with, or
+     *                      null to trim every sequence.
+     * @return The steps of the validation pipeline in the order they must be run.
+     */
+    static List<Step> getSteps(NucleotideSequenceDocument barcode,
+                               List<NucleotideGraphSequenceDocument> traces,
+                               TrimmingOptions trimmingOptions,
+                               @Nullable TrimmingCache trimmingCache,
+                               CAP3Options CAP3Options,
+                               CAP3Scheduler CAP3Scheduler,
+                               Map<String, ValidationOptions> validationOptions,
+                               ValidationCallback callback) {
+        final BarcodeRun run = new BarcodeRun(barcode, traces, trimmingOptions, trimmingCache, CAP3Options, CAP3Scheduler, validationOptions, callback);
+
+        return Arrays.asList(
+                new Step(Stage.TRIM, "Trimming traces...") {
+                    @Override
+                    void run(ProgressListener progressListener) throws DocumentOperationException {
+                        run.traceTrims = getTrims(getReads(run.traces), run.trimmingOptions, run.trimmingCache, progressListener);
+                    }
+                },
+                new Step(Stage.PERSIST, "Saving trimmed traces...") {
+                    @Override
+                    void run(ProgressListener progressListener) throws DocumentOperationException {
+                        List<NucleotideGraphSequenceDocument> trimmedTraces = new ArrayList<NucleotideGraphSequenceDocument>();
+                        for (int i = 0; i < run.traces.size(); i++) {
+                            trimmedTraces.add(SequenceTrimmer.trimSequenceUsingTrims(run.traces.get(i), run.traceTrims.get(i), true));
+                        }
+                        run.traceTrims = null;
+
+                        run.trimmedTraces = run.callback.addTrimmedTraces(trimmedTraces, progressListener);
+                        run.trimmedReads = getReads(run.trimmedTraces);
+                    }
+                },
+                new Step(Stage.ASSEMBLE, "Assembling traces...") {
+                    @Override
+                    void run(ProgressListener progressListener) throws DocumentOperationException {
+                        run.contigs = assembleReads(run.trimmedReads, run.CAP3Options, run.CAP3Scheduler, run.barcode.getName(), progressListener);
+                    }
+                },
+                new Step(Stage.PERSIST, "Saving assemblies...") {
+                    @Override
+                    void run(ProgressListener progressListener) throws DocumentOperationException {
+                        addAssembliesToCallback(run.callback, run.contigs, getDocumentsOfReads(run.trimmedReads, run.trimmedTraces), progressListener);
+                    }
+                },
+                new Step(Stage.CONSENSUS, "Generating consensus...") {
+                    @Override
+                    void run(ProgressListener progressListener) throws DocumentOperationException {
+                        run.consensusReads = getConsensusReads(run.contigs);
+                        run.consensusTrims = getTrims(run.consensusReads, run.trimmingOptions, run.trimmingCache, progressListener);
+                        run.contigs = null;
+                    }
+                },
+                new Step(Stage.PERSIST, "Saving consensus...") {
+                    @Override
+                    void run(ProgressListener progressListener) throws DocumentOperationException {
+                        run.consensusSequences = addConsensusSequencesToCallback(run.callback, run.consensusReads, run.consensusTrims, progressListener);
+                        run.consensusReads = getReads(run.consensusSequences);
+                        run.consensusTrims = null;
+                    }
+                },
+                new Step(Stage.VALIDATE, "Validating trimmed traces...") {
+                    @Override
+                    void run(ProgressListener progressListener) throws DocumentOperationException {
+                        run.validationRuns = runSingleSequenceValidations(run, run.trimmedReads, run.trimmedTraces, progressListener);
+                    }
+                },
+                new Step(Stage.PERSIST, "Saving validation results of trimmed traces...") {
+                    @Override
+                    void run(ProgressListener progressListener) throws DocumentOperationException {
+                        addValidationResultsToCallback(run.callback, run.pendingDocuments, run.validationRuns, progressListener);
+                    }
+                },
+                new Step(Stage.VALIDATE, "Validating trimmed traces with barcode...") {
+                    @Override
+                    void run(ProgressListener progressListener) throws DocumentOperationException {
+                        run.validationRuns = runSequenceCompareValidations(run, run.trimmedReads, run.trimmedTraces, progressListener);
+                    }
+                },
+                new Step(Stage.PERSIST, "Saving validation results of trimmed traces with barcode...") {
+                    @Override
+                    void run(ProgressListener progressListener) throws DocumentOperationException {
+                        addValidationResultsToCallback(run.callback, run.pendingDocuments, run.validationRuns, progressListener);
+                    }
+                },
+                new Step(Stage.VALIDATE, "Validating the generated consensus...") {
+                    @Override
+                    void run(ProgressListener progressListener) throws DocumentOperationException {
+                        run.validationRuns = runSingleSequenceValidations(run, run.consensusReads, run.consensusSequences, progressListener);
+                    }
+                },
+                new Step(Stage.PERSIST, "Saving validation results of the generated consensus...") {
+                    @Override
+                    void run(ProgressListener progressListener) throws DocumentOperationException {
+                        addValidationResultsToCallback(run.callback, run.pendingDocuments, run.validationRuns, progressListener);
+                    }
+                },
+                new Step(Stage.VALIDATE, "Validating the generated consensus with barcode...") {
+                    @Override
+                    void run(ProgressListener progressListener) throws DocumentOperationException {
+                        run.validationRuns = runSequenceCompareValidations(run, run.consensusReads, run.consensusSequences, progressListener);
+                    }
+                },
+                new Step(Stage.PERSIST, "Saving validation results of the generated consensus with barcode...") {
+                    @Override
+                    void run(ProgressListener progressListener) throws DocumentOperationException {
+                        addValidationResultsToCallback(run.callback, run.pendingDocuments, run.validationRuns, progressListener);
+                    }
+                }
+        );
+    }
 
-        CompositeProgressListener assembleTracesProgress = new CompositeProgressListener(stepsProgress, 3);
-        assembleTracesProgress.beginSubtask();
-        List<SequenceAlignmentDocument> contigs = assembleTraces(trimmedTraces, CAP3Options, barcode.getName(), assembleTracesProgress);
-        assembleTracesProgress.beginSubtask();
-        if (!contigs.isEmpty()) {
-            CompositeProgressListener progressForAddingAssembly = new CompositeProgressListener(assembleTracesProgress, contigs.size());
+    private static List<SequenceRead> getReads(List<NucleotideGraphSequenceDocument> sequences) {
+        List<SequenceRead> reads = new ArrayList<SequenceRead>(sequences.size());
+        for (NucleotideGraphSequenceDocument sequence : sequences) {
+            reads.add(SequenceRead.fromDocument(sequence));
+        }
+        return reads;
+    }
 
-            for (SequenceAlignmentDocument contig : contigs) {
-                progressForAddingAssembly.beginSubtask();
+    /**
+     * @return Map of each read to the document at the same index.
+     */
+    private static Map<SequenceRead, NucleotideGraphSequenceDocument> getDocumentsOfReads(List<SequenceRead> reads, List<NucleotideGraphSequenceDocument> documents) {
+        Map<SequenceRead, NucleotideGraphSequenceDocument> documentsOfReads = new IdentityHashMap<SequenceRead, NucleotideGraphSequenceDocument>();
+        for (int i = 0; i < reads.size(); i++) {
+            documentsOfReads.put(reads.get(i), documents.get(i));
+        }
+        return documentsOfReads;
+    }
 
-                callback.addAssembly(contig, progressForAddingAssembly);
-            }
+    private static void addAssembliesToCallback(ValidationCallback callback, List<ContigLayout> contigs, Map<SequenceRead, NucleotideGraphSequenceDocument> documentsOfReads, ProgressListener progressListener) throws DocumentOperationException {
+        if (contigs.isEmpty()) {
+            return;
         }
-        assembleTracesProgress.beginSubtask();
-        List<NucleotideGraphSequenceDocument> consensusSequences = new ArrayList<NucleotideGraphSequenceDocument>();
-        if (!contigs.isEmpty()) {
-            CompositeProgressListener progressForEachContig = new CompositeProgressListener(assembleTracesProgress, contigs.size());
+        CompositeProgressListener progressForAddingAssembly = new CompositeProgressListener(progressListener, contigs.size());
 
-            for (SequenceAlignmentDocument contig : contigs) {
-                progressForEachContig.beginSubtask();
+        for (ContigLayout contig : contigs) {
+            progressForAddingAssembly.beginSubtask();
 
-                CompositeProgressListener progressForEachConsensusStep = new CompositeProgressListener(progressForEachContig, 2);
+            callback.addAssembly(contig.createContig(documentsOfReads), progressForAddingAssembly);
+        }
+    }
 
-                progressForEachConsensusStep.beginSubtask();
+    private static List<SequenceRead> getConsensusReads(List<ContigLayout> contigs) throws DocumentOperationException {
+        List<SequenceRead> consensusReads = new ArrayList<SequenceRead>(contigs.size());
+        for (ContigLayout contig : contigs) {
+            consensusReads.add(ConsensusUtilities.getConsensus(contig));
+        }
+        return consensusReads;
+    }
 
-                NucleotideGraphSequenceDocument consensus = ConsensusUtilities.getConsensus(contig);
-                List<NucleotideGraphSequenceDocument> resultConsensusList = trimTraces(Collections.singletonList(consensus), trimmingOptions, true, progressForEachConsensusStep);
-                assert resultConsensusList.size() == 1;
-                NucleotideGraphSequenceDocument retConsus = resultConsensusList.get(0);
+    private static List<NucleotideGraphSequenceDocument> addConsensusSequencesToCallback(ValidationCallback callback, List<SequenceRead> consensusReads, List<TrimmingCache.Trims> consensusTrims, ProgressListener progressListener) throws DocumentOperationException {
+        List<NucleotideGraphSequenceDocument> addedConsensusSequences = new ArrayList<NucleotideGraphSequenceDocument>();
+        if (consensusReads.isEmpty()) {
+            return addedConsensusSequences;
+        }
+        CompositeProgressListener progressForEachConsensus = new CompositeProgressListener(progressListener, consensusReads.size());
 
-                progressForEachConsensusStep.beginSubtask();
+        for (int i = 0; i < consensusReads.size(); i++) {
+            progressForEachConsensus.beginSubtask();
 
-                retConsus = callback.addConsensus(retConsus, progressForEachConsensusStep);
-                consensusSequences.add(retConsus);
-            }
+            NucleotideGraphSequenceDocument consensus = SequenceTrimmer.trimSequenceUsingTrims(consensusReads.get(i).toDocument(), consensusTrims.get(i), true);
+            addedConsensusSequences.add(callback.addConsensus(consensus, progressForEachConsensus));
         }
 
-        stepsProgress.beginSubtask("Validating trimmed traces and the generated consensus...");
-
-        List<Validation> validations = Validation.getValidations();
-        List<SingleSequenceValidation> singleSequenceValidations = new ArrayList<SingleSequenceValidation>();
-        List<SequenceCompareValidation> sequenceCompareValidations = new ArrayList<SequenceCompareValidation>();
-        for (Validation validation : validations) {
-            if (validation instanceof SingleSequenceValidation) {
-                singleSequenceValidations.add((SingleSequenceValidation)validation);
-            } else if (validation instanceof SequenceCompareValidation) {
-                sequenceCompareValidations.add((SequenceCompareValidation)validation);
-            } else {
+        return addedConsensusSequences;
+    }
+
+    /**
+     * Runs the {@link SingleSequenceValidation}s on the reads.  Documents the validations add to the callback are held
+     * by {@link BarcodeRun#pendingDocuments} until the results are added to the callback.
+     *
+     * @param documents The saved documents of the reads, in the same order.  The results are added for these.
+     */
+    private static List<ValidationRun> runSingleSequenceValidations(BarcodeRun run, List<SequenceRead> reads, List<NucleotideGraphSequenceDocument> documents, ProgressListener progressListener) throws DocumentOperationException {
+        return runValidationTasks(
+                getValidations(SingleSequenceValidation.class),
+                createSingleSequenceValidationRunner(reads, documents),
+                run.validationOptions,
+                progressListener
+        );
+    }
+
+    /**
+     * Runs the {@link SequenceCompareValidation}s on the reads against the barcode.  Documents the validations add to
+     * the callback are held by {@link BarcodeRun#pendingDocuments} until the results are added to the callback.
+     *
+     * @param documents The saved documents of the reads, in the same order.  The results are added for these.
+     */
+    private static List<ValidationRun> runSequenceCompareValidations(BarcodeRun run, List<SequenceRead> reads, List<NucleotideGraphSequenceDocument> documents, ProgressListener progressListener) throws DocumentOperationException {
+        return runValidationTasks(
+                getValidations(SequenceCompareValidation.class),
+                createSequenceCompareValidationRunner(reads, documents, run.barcode, run.pendingDocuments),
+                run.validationOptions,
+                progressListener
+        );
+    }
+
+    /**
+     * @return The validations of the specified type.
+     * @throws DocumentOperationException if there is a validation that the pipeline does not know how to run.
+     */
+    private static <T extends Validation> List<T> getValidations(Class<T> validationType) throws DocumentOperationException {
+        List<T> validations = new ArrayList<T>();
+        for (Validation validation : Validation.getValidations()) {
+            if (!(validation instanceof SingleSequenceValidation) && !(validation instanceof SequenceCompareValidation)) {
                 throw new DocumentOperationException("Unsupported validation procedure: " + validation.getClass().getSimpleName());
             }
+            if (validationType.isInstance(validation)) {
+                validations.add(validationType.cast(validation));
+            }
         }
-        CompositeProgressListener validationProgress = new CompositeProgressListener(stepsProgress, 4);
-        validationProgress.beginSubtask("Validating trimmed traces");
-        addValidationResultsToCallback(
-                callback,
-                runValidationTasks(
-                        singleSequenceValidations,
-                        createSingleSequenceValidationRunner(trimmedTraces, callback),
-                        validationOptions,
-                        validationProgress
-                ),
-                validationProgress
-        );
-        validationProgress.beginSubtask("Validating trimmed traces with barcode");
-        addValidationResultsToCallback(
-                callback,
-                runValidationTasks(
-                        sequenceCompareValidations,
-                        createSequenceCompareValidationRunner(trimmedTraces, barcode, callback),
-                        validationOptions,
-                        validationProgress
-                ),
-                validationProgress
-        );
-        validationProgress.beginSubtask("Validating the generated consensus");
-        addValidationResultsToCallback(
-                callback,
-                runValidationTasks(
-                        singleSequenceValidations,
-                        createSingleSequenceValidationRunner(consensusSequences, callback),
-                        validationOptions,
-                        validationProgress
-                ),
-                validationProgress
-        );
-        validationProgress.beginSubtask("Validating the generated consensus with barcode");
-        addValidationResultsToCallback(
-                callback,
-                runValidationTasks(
-                    sequenceCompareValidations,
-                    createSequenceCompareValidationRunner(consensusSequences, barcode, callback),
-                    validationOptions,
-                    validationProgress
-                ),
-                validationProgress
-        );
+        return validations;
     }
 
-    private static ValidationRunner<SingleSequenceValidation> createSingleSequenceValidationRunner(final List<NucleotideGraphSequenceDocument> sequences, final ValidationCallback callback) {
+    private static ValidationRunner<SingleSequenceValidation> createSingleSequenceValidationRunner(final List<SequenceRead> reads, final List<NucleotideGraphSequenceDocument> documents) {
         return new ValidationRunner<SingleSequenceValidation>() {
             @Override
             ValidationResult run(SingleSequenceValidation validation, ValidationOptions options) throws DocumentOperationException {
                 ValidationResult result = new ValidationResult(true, "");
                 List<String> failedSequenceNames = new ArrayList<String>();
 
-                for (NucleotideGraphSequenceDocument sequence : sequences) {
-                    ResultFact sequenceValidationResult = validation.validate(sequence, options);
+                for (int i = 0; i < reads.size(); i++) {
+                    SequenceRead read = reads.get(i);
+                    ResultFact sequenceValidationResult = validation.validate(read, options);
                     if (!sequenceValidationResult.getPass()) {
-                        failedSequenceNames.add(sequence.getName());
+                        failedSequenceNames.add(read.getName());
                     }
 
-                    result.addFact(sequence, sequenceValidationResult);
+                    result.addFact(documents.get(i), sequenceValidationResult);
                 }
 
                 if (!failedSequenceNames.isEmpty()) {
@@ -168,21 +321,22 @@ public class Pipeline {
         };
     }
 
-    private static ValidationRunner<SequenceCompareValidation> createSequenceCompareValidationRunner(final List<NucleotideGraphSequenceDocument> sequences, final NucleotideSequenceDocument referenceSequence, final ValidationCallback callback) {
+    private static ValidationRunner<SequenceCompareValidation> createSequenceCompareValidationRunner(final List<SequenceRead> reads, final List<NucleotideGraphSequenceDocument> documents, final NucleotideSequenceDocument referenceSequence, final ValidationCallback callback) {
         return new ValidationRunner<SequenceCompareValidation>() {
             @Override
             ValidationResult run(SequenceCompareValidation validation, ValidationOptions options) throws DocumentOperationException {
                 ValidationResult result = new ValidationResult(true, "");
                 List<String> failedSequenceNames = new ArrayList<String>();
 
-                for (NucleotideSequenceDocument sequence : sequences) {
-                    ResultFact sequenceValidationResult = validation.validate(referenceSequence, sequence, options, callback);
+                for (int i = 0; i < reads.size(); i++) {
+                    SequenceRead read = reads.get(i);
+                    ResultFact sequenceValidationResult = validation.validate(referenceSequence, read, options, callback);
 
                     if (!sequenceValidationResult.getPass()) {
-                        failedSequenceNames.add(sequence.getName());
+                        failedSequenceNames.add(read.getName());
                     }
 
-                    result.addFact(sequence, sequenceValidationResult);
+                    result.addFact(documents.get(i), sequenceValidationResult);
                 }
 
                 if (!failedSequenceNames.isEmpty()) {
@@ -195,12 +349,35 @@ public class Pipeline {
         };
     }
 
-    private static void addValidationResultsToCallback(ValidationCallback callback, List<ValidationRun> runs, ProgressListener progressListener) throws DocumentOperationException {
-        CompositeProgressListener addTraceValidationResultsProgress = new CompositeProgressListener(progressListener, runs.size());
+    /**
+     * Saves the documents that the validations added while they ran, then adds the results of the validations to the
+     * callback.  Links to those documents in the results are updated to the saved copies, and the annotations of the
+     * results are added to the sequences they were produced for.  See
+     * {@link SingleSequenceValidation#addAnnotations(SequenceDocument, ResultFact)}
+     */
+    private static void addValidationResultsToCallback(ValidationCallback callback, PendingDocumentCallback pendingDocuments, List<ValidationRun> runs, ProgressListener progressListener) throws DocumentOperationException {
+        CompositeProgressListener savingProgress = new CompositeProgressListener(progressListener, 2);
+        savingProgress.beginSubtask();
+        Map<PluginDocument, PluginDocument> savedDocuments = pendingDocuments.addPendingDocumentsTo(callback, savingProgress);
+
+        savingProgress.beginSubtask();
+        CompositeProgressListener addTraceValidationResultsProgress = new CompositeProgressListener(savingProgress, runs.size());
 
         for (ValidationRun run : runs) {
             addTraceValidationResultsProgress.beginSubtask();
 
+            for (Map.Entry<SequenceDocument, ResultFact> fact : run.result.getFacts().entrySet()) {
+                if (run.validation instanceof SingleSequenceValidation) {
+                    ((SingleSequenceValidation)run.validation).addAnnotations(fact.getKey(), fact.getValue());
+                }
+                if (!savedDocuments.isEmpty()) {
+                    for (ResultColumn column : fact.getValue().getColumns()) {
+                        if (column instanceof LinkResultColumn) {
+                            ((LinkResultColumn)column).getData().replacePluginDocuments(savedDocuments);
+                        }
+                    }
+                }
+            }
             callback.addValidationResult(run.options, run.result, addTraceValidationResultsProgress);
         }
     }
@@ -234,44 +411,195 @@ public class Pipeline {
                 throw new DocumentOperationException("Could not find validation module for identifier: '" + templateOptionsForValidation.getIdentifier() + "'.");
             }
 
-            result.add(new ValidationRun(optionsToRunWith, runner.run(validation, optionsToRunWith)));
+            result.add(new ValidationRun(validation, optionsToRunWith, runner.run(validation, optionsToRunWith)));
         }
 
         return result;
     }
 
-    private static List<SequenceAlignmentDocument> assembleTraces(List<NucleotideGraphSequenceDocument> traces,
-                                                                  CAP3Options options,
-                                                                  String contigName,
-                                                                  ProgressListener progressListener) throws DocumentOperationException {
-        return CAP3Runner.assemble(traces, options.getExecutablePath(), options.getMinOverlapLength(), options.getMinOverlapIdentity(), contigName, progressListener);
+    /**
+     * Assembles reads in process if enabled, falling back to CAP3 if they could not be assembled in process.  See
+     * {@link OverlapAssembler#assembleReads(List, int, int, String)}
+     */
+    static List<ContigLayout> assembleReads(List<SequenceRead> reads,
+                                            CAP3Options options,
+                                            CAP3Scheduler scheduler,
+                                            String contigName,
+                                            ProgressListener progressListener) throws DocumentOperationException {
+        if (options.isInProcessAssemblyEnabled()) {
+            List<ContigLayout> contigs = OverlapAssembler.assembleReads(reads, options.getMinOverlapLength(), options.getMinOverlapIdentity(), contigName);
+            if (contigs != null) {
+                return contigs;
+            }
+        }
+        return CAP3Runner.assembleReads(reads, options.getExecutablePath(), options.getMinOverlapLength(), options.getMinOverlapIdentity(), contigName, scheduler, progressListener);
     }
 
-    private static List<NucleotideGraphSequenceDocument> trimTraces(List<NucleotideGraphSequenceDocument> traces,
-                                                                    TrimmingOptions options,
-                                                                    boolean trimByAddingAnnotation,
-                                                                    ProgressListener progressListener) throws DocumentOperationException {
-        List<NucleotideGraphSequenceDocument> trimmedTraces = new ArrayList<NucleotideGraphSequenceDocument>();
+    /**
+     * Finds how to trim each read.  The trims are applied when the reads are saved.  See
+     * {@link SequenceTrimmer#trimSequenceUsingTrims(NucleotideGraphSequenceDocument, TrimmingCache.Trims, boolean)}
+     *
+     * @return The trims of each read, in the same order as the reads.
+     */
+    private static List<TrimmingCache.Trims> getTrims(List<SequenceRead> reads,
+                                                      TrimmingOptions options,
+                                                      @Nullable TrimmingCache cache,
+                                                      ProgressListener progressListener) {
+        List<TrimmingCache.Trims> trims = new ArrayList<TrimmingCache.Trims>();
+        if (reads.isEmpty()) {
+            return trims;
+        }
         PrimerTrimmingOptions primerTrimmingOptions = options.getPrimerTrimmingOptions();
-        CompositeProgressListener trimmingProgress = new CompositeProgressListener(progressListener, traces.size());
+        PrimerSeedIndex primerSeedIndex = primerTrimmingOptions.createPrimerSeedIndex();
+        CompositeProgressListener trimmingProgress = new CompositeProgressListener(progressListener, reads.size());
 
-        for (NucleotideGraphSequenceDocument trace : traces) {
-            trimmingProgress.beginSubtask("Trimming " + trace.getName());
+        for (SequenceRead read : reads) {
+            trimmingProgress.beginSubtask("Trimming " + read.getName());
 
-            trimmedTraces.add(SequenceTrimmer.trimSequenceByQualityAndPrimers(
-                    trace,
+            trims.add(SequenceTrimmer.getTrims(
+                    read,
                     options.getQualityTrimmingOptions().getErrorProbabilityLimit(),
-                    primerTrimmingOptions.getPrimers(),
+                    primerSeedIndex,
                     (float)primerTrimmingOptions.getGapOptionPenalty(),
                     (float)primerTrimmingOptions.getGapExtensionPenalty(),
                     primerTrimmingOptions.getScores(),
                     primerTrimmingOptions.getMaximumMismatches(),
                     primerTrimmingOptions.getMinimumMatchLength(),
-                    trimByAddingAnnotation)
+                    primerTrimmingOptions.getSearchWindowSize(),
+                    cache)
             );
         }
 
-        return trimmedTraces;
+        return trims;
+    }
+
+    /**
+     * A step of the validation pipeline for a single barcode.  See {@link #getSteps}
+     */
+    static abstract class Step {
+        private final Stage stage;
+        private final String description;
+
+        Step(Stage stage, String description) {
+            this.stage = stage;
+            this.description = description;
+        }
+
+        Stage getStage() {
+            return stage;
+        }
+
+        String getDescription() {
+            return description;
+        }
+
+        abstract void run(ProgressListener progressListener) throws DocumentOperationException;
+    }
+
+    /**
+     * The inputs of the validation pipeline for a single barcode and the results of each step so far.  The stages pass
+     * {@link SequenceRead}s between them, and documents are only created in the {@link Stage#PERSIST} steps.  The
+     * saved documents are held only to reference from contigs and to add validation results for.
+     */
+    private static class BarcodeRun {
+        private final NucleotideSequenceDocument barcode;
+        private final List<NucleotideGraphSequenceDocument> traces;
+        private final TrimmingOptions trimmingOptions;
+        private final TrimmingCache trimmingCache;
+        private final CAP3Options CAP3Options;
+        private final CAP3Scheduler CAP3Scheduler;
+        private final Map<String, ValidationOptions> validationOptions;
+        private final ValidationCallback callback;
+
+        private List<TrimmingCache.Trims> traceTrims;
+        private List<NucleotideGraphSequenceDocument> trimmedTraces;
+        private List<SequenceRead> trimmedReads;
+        private List<ContigLayout> contigs;
+        private List<SequenceRead> consensusReads;
+        private List<TrimmingCache.Trims> consensusTrims;
+        private List<NucleotideGraphSequenceDocument> consensusSequences;
+        private List<ValidationRun> validationRuns;
+        private final PendingDocumentCallback pendingDocuments = new PendingDocumentCallback();
+
+        private BarcodeRun(NucleotideSequenceDocument barcode,
+                           List<NucleotideGraphSequenceDocument> traces,
+                           TrimmingOptions trimmingOptions,
+                           TrimmingCache trimmingCache,
+                           CAP3Options CAP3Options,
+                           CAP3Scheduler CAP3Scheduler,
+                           Map<String, ValidationOptions> validationOptions,
+                           ValidationCallback callback) {
+            this.barcode = barcode;
+            this.traces = traces;
+            this.trimmingOptions = trimmingOptions;
+            this.trimmingCache = trimmingCache;
+            this.CAP3Options = CAP3Options;
+            this.CAP3Scheduler = CAP3Scheduler;
+            this.validationOptions = validationOptions;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * The {@link ValidationCallback} that validations are run with.  Documents added by validations are held until
+     * {@link #addPendingDocumentsTo(ValidationCallback, ProgressListener)} is called from a {@link Stage#PERSIST} step,
+     * so that validations running in the {@link Stage#VALIDATE} stage do not save documents themselves.
+     */
+    private static class PendingDocumentCallback implements ValidationCallback {
+        private final List<PluginDocument> pendingDocuments = new ArrayList<PluginDocument>();
+
+        /**
+         * Adds the pending documents to the callback in the order they were added to this callback.
+         *
+         * @return Map of each pending document to the document returned by the callback in its place.
+         */
+        private Map<PluginDocument, PluginDocument> addPendingDocumentsTo(ValidationCallback callback, ProgressListener progressListener) throws DocumentOperationException {
+            Map<PluginDocument, PluginDocument> savedDocuments = new IdentityHashMap<PluginDocument, PluginDocument>();
+            if (pendingDocuments.isEmpty()) {
+                return savedDocuments;
+            }
+            CompositeProgressListener progressForEachDocument = new CompositeProgressListener(progressListener, pendingDocuments.size());
+
+            for (PluginDocument pendingDocument : pendingDocuments) {
+                progressForEachDocument.beginSubtask();
+
+                savedDocuments.put(pendingDocument, callback.addPluginDocument(pendingDocument, progressForEachDocument));
+            }
+            pendingDocuments.clear();
+
+            return savedDocuments;
+        }
+
+        @Override
+        public PluginDocument addPluginDocument(PluginDocument pluginDocument, ProgressListener progressListener) {
+            pendingDocuments.add(pluginDocument);
+            return pluginDocument;
+        }
+
+        @Override
+        public void setInputs(NucleotideSequenceDocument barcodeSequence, List<NucleotideGraphSequenceDocument> traces, ProgressListener progressListener) {
+            throw new UnsupportedOperationException("Validations can only add plugin documents");
+        }
+
+        @Override
+        public List<NucleotideGraphSequenceDocument> addTrimmedTraces(List<NucleotideGraphSequenceDocument> traces, ProgressListener progressListener) {
+            throw new UnsupportedOperationException("Validations can only add plugin documents");
+        }
+
+        @Override
+        public SequenceAlignmentDocument addAssembly(SequenceAlignmentDocument contigAssembly, ProgressListener progressListener) {
+            throw new UnsupportedOperationException("Validations can only add plugin documents");
+        }
+
+        @Override
+        public NucleotideGraphSequenceDocument addConsensus(NucleotideGraphSequenceDocument consensusSequence, ProgressListener progressListener) {
+            throw new UnsupportedOperationException("Validations can only add plugin documents");
+        }
+
+        @Override
+        public void addValidationResult(ValidationOptions options, ValidationResult validationResult, ProgressListener progressListener) {
+            throw new UnsupportedOperationException("Validations can only add plugin documents");
+        }
     }
 
     private static abstract class ValidationRunner<T extends Validation> {
@@ -291,10 +619,12 @@ public class Pipeline {
     }
 
     private static class ValidationRun {
+        private Validation validation;
         private ValidationOptions options;
         private ValidationResult result;
 
-        private ValidationRun(ValidationOptions options, ValidationResult result) {
+        private ValidationRun(Validation validation, ValidationOptions options, ValidationResult result) {
+            this.validation = validation;
             this.options = options;
             this.result = result;
         }
@@ -2,6 +2,7 @@ package com.biomatters.plugins.barcoding.validator.validation;
 
 import com.biomatters.geneious.publicapi.documents.sequence.SequenceDocument;
 import com.biomatters.plugins.barcoding.validator.validation.results.ResultFact;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.SequenceRead;
 
 /**
  * Represents a task that validates a barcode sequence
@@ -20,4 +21,17 @@ public abstract class SequenceCompareValidation extends Validation {
      * @return a {@link com.biomatters.plugins.barcoding.validator.validation.results.ResultFact}
      */
     public abstract ResultFact validate(SequenceDocument originalSequence, SequenceDocument sequenceToValidate, ValidationOptions options, ValidationCallback callback);
-}
\ No newline at end of file
+
+    /**
+     * Validate the user supplied barcode sequence against a read generated by the system from the user's traces.  The
+     * default implementation validates a document created from the read.
+     *
+     * @param originalSequence The user supplied barcode sequence to validate against
+     * @param read The read that is to be tested as a barcode
+     * @param options Options to run the validation with. Obtained from calling {@link #getOptions()}
+     * @return a {@link com.biomatters.plugins.barcoding.validator.validation.results.ResultFact}
+     */
+    public ResultFact validate(SequenceDocument originalSequence, SequenceRead read, ValidationOptions options, ValidationCallback callback) {
+        return validate(originalSequence, read.toDocument(), options, callback);
+    }
+}
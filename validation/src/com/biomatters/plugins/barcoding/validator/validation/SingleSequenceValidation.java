@@ -1,8 +1,10 @@
 package com.biomatters.plugins.barcoding.validator.validation;
 
 import com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraphSequenceDocument;
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceDocument;
 import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
 import com.biomatters.plugins.barcoding.validator.validation.results.ResultFact;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.SequenceRead;
 
 /**
  * @author Gen Li
@@ -17,4 +19,26 @@ public abstract class SingleSequenceValidation extends Validation {
      * @return Validation result.
      */
     public abstract ResultFact validate(NucleotideGraphSequenceDocument sequence, ValidationOptions options) throws DocumentOperationException;
-}
\ No newline at end of file
+
+    /**
+     * Validates a single read.  The default implementation validates a document created from the read, so validations
+     * that only look at bases and qualities should override this to avoid creating the document.
+     *
+     * @param read Read to validate.
+     * @param options The matching options of the SingleSequenceValidation instance.
+     * @return Validation result.
+     */
+    public ResultFact validate(SequenceRead read, ValidationOptions options) throws DocumentOperationException {
+        return validate(read.toDocument(), options);
+    }
+
+    /**
+     * Adds the annotations of a result of {@link #validate(SequenceRead, ValidationOptions)} to the saved copy of the
+     * sequence that was validated.  Does nothing by default.
+     *
+     * @param sequence The saved copy of the sequence that was validated.
+     * @param result The result of validating the sequence.
+     */
+    public void addAnnotations(SequenceDocument sequence, ResultFact result) {
+    }
+}
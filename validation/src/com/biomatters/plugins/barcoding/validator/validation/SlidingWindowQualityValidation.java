@@ -3,9 +3,11 @@ package com.biomatters.plugins.barcoding.validator.validation;
 import com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraphSequenceDocument;
 import com.biomatters.geneious.publicapi.documents.sequence.SequenceAnnotation;
 import com.biomatters.geneious.publicapi.documents.sequence.SequenceAnnotationInterval;
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceDocument;
 import com.biomatters.geneious.publicapi.documents.sequence.SequenceDocumentWithEditableAnnotations;
 import com.biomatters.plugins.barcoding.validator.validation.results.ResultFact;
 import com.biomatters.plugins.barcoding.validator.validation.results.SlidingWindowQualityValidationResultFact;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.SequenceRead;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -26,19 +28,47 @@ public class SlidingWindowQualityValidation extends SingleSequenceValidation {
      */
     @Override
     public ResultFact validate(NucleotideGraphSequenceDocument sequence, ValidationOptions options) {
-        if (!(options instanceof SlidingWindowQualityValidationOptions)) {
-            throw new IllegalArgumentException(
-                    "Wrong options supplied: " +
-                    "Expected: SlidingWindowValidationOptions, " +
-                    "actual: " + options.getClass().getSimpleName() + "."
-            );
-        }
-
-        SlidingWindowQualityValidationOptions SWVOptions = (SlidingWindowQualityValidationOptions)options;
+        SlidingWindowQualityValidationOptions SWVOptions = getSlidingWindowOptions(options);
 
         return validate(sequence, SWVOptions.getWindowSize(), SWVOptions.getStepSize(), SWVOptions.getMinimumQuality(), SWVOptions.getMinimumSatisfactionRatio());
     }
 
+    /**
+     * Validates the quality of the supplied read using a sliding window approach.  The windows that fail are only
+     * annotated on the saved copy of the read.  See {@link #addAnnotations(SequenceDocument, ResultFact)}
+     *
+     * @param read Read to validate.
+     * @param options Options obtained from calling {@link #getOptions()}.
+     * @return Validation result.
+     */
+    @Override
+    public ResultFact validate(SequenceRead read, ValidationOptions options) {
+        SlidingWindowQualityValidationOptions SWVOptions = getSlidingWindowOptions(options);
+
+        return validate(read, SWVOptions.getWindowSize(), SWVOptions.getStepSize(), SWVOptions.getMinimumQuality(), SWVOptions.getMinimumSatisfactionRatio());
+    }
+
+    /**
+     * Annotates the windows that failed the validation on the sequence.
+     *
+     * @param sequence The saved copy of the sequence that was validated.
+     * @param result The result of validating the sequence.
+     */
+    @Override
+    public void addAnnotations(SequenceDocument sequence, ResultFact result) {
+        if (!(result instanceof SlidingWindowQualityValidationResultFact) || !(sequence instanceof SequenceDocumentWithEditableAnnotations)) {
+            return;
+        }
+
+        SequenceAnnotation validationFailureAnnotation = ((SlidingWindowQualityValidationResultFact)result).getValidationFailureAnnotation();
+        if (validationFailureAnnotation != null) {
+            List<SequenceAnnotation> sequenceAnnotations = new ArrayList<SequenceAnnotation>();
+            sequenceAnnotations.addAll(sequence.getSequenceAnnotations());
+            sequenceAnnotations.add(validationFailureAnnotation);
+            ((SequenceDocumentWithEditableAnnotations)sequence).setAnnotations(sequenceAnnotations);
+        }
+    }
+
     /**
      * @return Associated options.
      */
@@ -48,6 +78,26 @@ public class SlidingWindowQualityValidation extends SingleSequenceValidation {
     }
 
     ResultFact validate(NucleotideGraphSequenceDocument sequence, int winSize, int stepSize, int minimumQuality, double minimumSatisfactionRatio) {
+        SlidingWindowQualityValidationResultFact result = validate(SequenceRead.fromDocument(sequence), winSize, stepSize, minimumQuality, minimumSatisfactionRatio);
+
+        addAnnotations(sequence, result);
+
+        return result;
+    }
+
+    private static SlidingWindowQualityValidationOptions getSlidingWindowOptions(ValidationOptions options) {
+        if (!(options instanceof SlidingWindowQualityValidationOptions)) {
+            throw new IllegalArgumentException(
+                    "Wrong options supplied: " +
+                    "Expected: SlidingWindowValidationOptions, " +
+                    "actual: " + options.getClass().getSimpleName() + "."
+            );
+        }
+
+        return (SlidingWindowQualityValidationOptions)options;
+    }
+
+    private static SlidingWindowQualityValidationResultFact validate(SequenceRead read, int winSize, int stepSize, int minimumQuality, double minimumSatisfactionRatio) {
         if (stepSize < 1) {
             throw new IllegalArgumentException("Could not validate sequence: Negative step size.");
         }
@@ -60,18 +110,31 @@ public class SlidingWindowQualityValidation extends SingleSequenceValidation {
             );
         }
 
-        int sequenceLength = sequence.getSequenceLength();
+        int sequenceLength = read.getLength();
         SequenceAnnotation validationFailureAnnotation = new SequenceAnnotation("Validation Failure", "Insufficient Quality");
         int numberOfFailedWindows = 0;
 
         SlidingWindowQualityValidationResultFact result = new SlidingWindowQualityValidationResultFact(false, sequenceLength, 0, "");
 
         /* Validate sequence. */
-        for (int i = 0; i <= sequenceLength - winSize; i += stepSize) {
-            if (!validateQualities(getQualityWindow(sequence, i, winSize), minimumQuality, minimumSatisfactionRatio)) {
-                validationFailureAnnotation.addInterval(i + 1, i + winSize);
+        if (sequenceLength >= winSize) {
+            checkMinimumSatisfactionRatio(minimumSatisfactionRatio);
+
+            int[] qualities = getQualities(read);
+            int numSatisfied = countSatisfiedQualities(qualities, 0, winSize, minimumQuality);
+
+            for (int i = 0; i <= sequenceLength - winSize; i += stepSize) {
+                if (i > 0) {
+                    /* Slide the window by removing the bases that have left it and adding the bases that have entered it. */
+                    numSatisfied -= countSatisfiedQualities(qualities, i - stepSize, i, minimumQuality);
+                    numSatisfied += countSatisfiedQualities(qualities, i - stepSize + winSize, i + winSize, minimumQuality);
+                }
 
-                numberOfFailedWindows++;
+                if (!isRatioSatisfied(numSatisfied, winSize, minimumSatisfactionRatio)) {
+                    validationFailureAnnotation.addInterval(i + 1, i + winSize);
+
+                    numberOfFailedWindows++;
+                }
             }
         }
 
@@ -81,54 +144,36 @@ public class SlidingWindowQualityValidation extends SingleSequenceValidation {
         if (numberOfFailedWindows == 0) {
             result.setPass(true);
         } else {
-            if (sequence instanceof SequenceDocumentWithEditableAnnotations) {
-                validationFailureAnnotation.setQualifier(
-                        "Validation Settings",
-                        " Window Size=" + winSize +
-                        ", Step Size=" + stepSize +
-                        ", Min Quality=" + minimumQuality +
-                        ", Min Ratio=" + minimumSatisfactionRatio + "%"
-                );
-                validationFailureAnnotation.setIntervals(SequenceAnnotationInterval.merge(validationFailureAnnotation.getIntervals(), false));
-                List<SequenceAnnotation> sequenceAnnotations = new ArrayList<SequenceAnnotation>();
-                sequenceAnnotations.addAll(sequence.getSequenceAnnotations());
-                sequenceAnnotations.add(validationFailureAnnotation);
-                ((SequenceDocumentWithEditableAnnotations)sequence).setAnnotations(sequenceAnnotations);
-            }
+            validationFailureAnnotation.setQualifier(
+                    "Validation Settings",
+                    " Window Size=" + winSize +
+                    ", Step Size=" + stepSize +
+                    ", Min Quality=" + minimumQuality +
+                    ", Min Ratio=" + minimumSatisfactionRatio + "%"
+            );
+            validationFailureAnnotation.setIntervals(SequenceAnnotationInterval.merge(validationFailureAnnotation.getIntervals(), false));
+            result.setValidationFailureAnnotation(validationFailureAnnotation);
             result.setPass(false);
         }
 
         return result;
     }
 
-    private static int[] getQualityWindow(NucleotideGraphSequenceDocument sequence, int startPos, int winSize) {
-        if (!sequence.hasSequenceQualities()) {
-            throw new IllegalArgumentException("Sequence document '" + sequence.getName() + "' has no sequence qualities.");
+    private static int[] getQualities(SequenceRead read) {
+        if (!read.hasQualities()) {
+            throw new IllegalArgumentException("Sequence '" + read.getName() + "' has no sequence qualities.");
         }
 
-        if (winSize < 1) {
-            throw new IllegalArgumentException("Negative window size: " + winSize + ".");
-        }
-
-        int[] result = new int[winSize];
+        int[] result = new int[read.getLength()];
 
-        for (int i = 0, j = startPos; j < startPos + winSize; i++, j++) {
-            result[i] = sequence.getSequenceQuality(j);
+        for (int i = 0; i < result.length; i++) {
+            result[i] = read.getQuality(i);
         }
 
         return result;
     }
 
-    /**
-     * Validates the supplied "quality window" against the supplied quality constraints.
-     *
-     * @param qualityWindow Quality window to validate.
-     * @param minQuality Minimum base quality.
-     * @param minRatioSatisfied Minimum ratio of bases in the window that must satisfy the supplied minimum base
-     *                          quality.
-     * @return True if the supplied window passes the validation.
-     */
-    private static boolean validateQualities(int[] qualityWindow, int minQuality, double minRatioSatisfied) {
+    private static void checkMinimumSatisfactionRatio(double minRatioSatisfied) {
         if (minRatioSatisfied < 0 || minRatioSatisfied > 100) {
             throw new IllegalArgumentException(
                     "Minimum ratio satisfied value out of range: " +
@@ -136,20 +181,36 @@ public class SlidingWindowQualityValidation extends SingleSequenceValidation {
                     "value: " + minRatioSatisfied + "."
             );
         }
+    }
 
-        int numSatisfied = 0, qualitiesLength = qualityWindow.length;
+    /**
+     * @param qualities Qualities of the sequence.
+     * @param from Index of the first quality to check, inclusive.
+     * @param to Index of the last quality to check, exclusive.
+     * @param minQuality Minimum base quality.
+     * @return The number of qualities in the range that satisfy the supplied minimum base quality.
+     */
+    private static int countSatisfiedQualities(int[] qualities, int from, int to, int minQuality) {
+        int numSatisfied = 0;
 
-        /* Check quality values. */
-        for (int quality : qualityWindow) {
-            if (quality >= minQuality) {
+        for (int i = from; i < to; i++) {
+            if (qualities[i] >= minQuality) {
                 numSatisfied++;
             }
         }
 
-        if ((double)numSatisfied/qualitiesLength >= minRatioSatisfied/100) {
-            return true;
-        }
+        return numSatisfied;
+    }
 
-        return false;
+    /**
+     * Validates a quality window against the supplied minimum ratio.
+     *
+     * @param numSatisfied Number of bases in the window that satisfy the minimum base quality.
+     * @param winSize Number of bases in the window.
+     * @param minRatioSatisfied Minimum ratio of bases in the window that must satisfy the minimum base quality.
+     * @return True if the window passes the validation.
+     */
+    private static boolean isRatioSatisfied(int numSatisfied, int winSize, double minRatioSatisfied) {
+        return (double)numSatisfied/winSize >= minRatioSatisfied/100;
     }
 }
\ No newline at end of file
@@ -0,0 +1,265 @@
+package com.biomatters.plugins.barcoding.validator.validation;
+
+import com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraphSequenceDocument;
+import com.biomatters.geneious.publicapi.documents.sequence.NucleotideSequenceDocument;
+import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
+import com.biomatters.plugins.barcoding.validator.validation.assembly.CAP3Options;
+import com.biomatters.plugins.barcoding.validator.validation.assembly.CAP3Scheduler;
+import com.biomatters.plugins.barcoding.validator.validation.trimming.TrimmingCache;
+import com.biomatters.plugins.barcoding.validator.validation.trimming.TrimmingOptions;
+import jebl.util.ProgressListener;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Runs the validation pipeline on many barcodes at once.  Each {@link Pipeline.Stage} has its own pool of threads, so
+ * that while one barcode is being assembled by CAP3 another can be trimmed and the results of a third can be saved.
+ * <br/><br/>
+ * A barcode moves from one stage to the next as each of its steps completes.  The number of barcodes in the pipeline at
+ * once is limited, and {@link #submit} blocks until there is room for another.  Since a barcode only ever waits in the
+ * queue of one stage, this bounds both the queues and the number of documents held in memory.
+ * <br/><br/>
+ * Cancellation is checked between steps.  A step that is already running sees the cancellation through its
+ * {@link ProgressListener}, which lets {@link com.biomatters.plugins.barcoding.validator.validation.assembly.CAP3Scheduler}
+ * kill a running CAP3 process.
+ */
+public class StagedPipelineExecutor {
+    private static final long CANCELLATION_CHECK_INTERVAL_MILLISECONDS = 200;
+    private static final String SHUT_DOWN_MESSAGE = "The pipeline was shut down before the barcode was validated.";
+
+    private final Map<Pipeline.Stage, ExecutorService> stageExecutors = new EnumMap<Pipeline.Stage, ExecutorService>(Pipeline.Stage.class);
+    private final Semaphore barcodesInFlight;
+    private final TrimmingCache trimmingCache;
+    private final CAP3Scheduler CAP3Scheduler;
+
+    /**
+     * @param threadsPerStage The number of threads to run the steps of each {@link Pipeline.Stage} on.  Stages that are
+     *                        missing are run on a single thread.
+     * @param maxBarcodesInFlight The maximum number of barcodes in the pipeline at once.
+     * @param trimmingCache The cache to share the trimming of traces and consensus sequences between barcodes with, or
+     *                      null to trim every sequence.
+     * @param CAP3Scheduler The scheduler to run CAP3 with in the {@link Pipeline.Stage#ASSEMBLE} stage.
+     */
+    public StagedPipelineExecutor(Map<Pipeline.Stage, Integer> threadsPerStage, int maxBarcodesInFlight, @Nullable TrimmingCache trimmingCache, CAP3Scheduler CAP3Scheduler) {
+        if (maxBarcodesInFlight < 1) {
+            throw new IllegalArgumentException("maxBarcodesInFlight must be at least 1: " + maxBarcodesInFlight);
+        }
+
+        barcodesInFlight = new Semaphore(maxBarcodesInFlight);
+        this.trimmingCache = trimmingCache;
+        this.CAP3Scheduler = CAP3Scheduler;
+        for (Pipeline.Stage stage : Pipeline.Stage.values()) {
+            Integer threads = threadsPerStage.get(stage);
+            int numberOfThreads = threads == null ? 1 : Math.max(1, threads);
+            stageExecutors.put(stage, new ThreadPoolExecutor(
+                    numberOfThreads,
+                    numberOfThreads,
+                    0L,
+                    TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(maxBarcodesInFlight)
+            ));
+        }
+    }
+
+    /**
+     * Saves the inputs and outputs of a barcode that is run through the pipeline.  Both are run on the threads of the
+     * {@link Pipeline.Stage#PERSIST} stage.
+     *
+     * @param <T> The type of the result of the barcode.
+     */
+    public interface PersistenceSteps<T> {
+        /**
+         * Called before any other step of the barcode.
+         */
+        void saveInputs(ProgressListener progressListener) throws DocumentOperationException;
+
+        /**
+         * Called after all other steps of the barcode have completed.
+         *
+         * @return The result of the barcode.
+         */
+        T saveOutputs(ProgressListener progressListener) throws DocumentOperationException;
+    }
+
+    /**
+     * Submits a barcode to be run through the validation pipeline.  Blocks until there is room in the pipeline for the
+     * barcode.  See {@link Pipeline#runValidationPipeline} for the parameters.
+     *
+     * @param persistenceSteps Steps to save the inputs and outputs of the barcode.
+     * @param progressListener Used to check for cancellation while waiting for room in the pipeline.
+     * @return The pending result of {@link PersistenceSteps#saveOutputs(jebl.util.ProgressListener)}.  Canceling it
+     * stops the barcode before its next step.
+     * @throws DocumentOperationException if the operation was canceled or the executor has been shut down.
+     */
+    public <T> Future<T> submit(NucleotideSequenceDocument barcode,
+                                List<NucleotideGraphSequenceDocument> traces,
+                                TrimmingOptions trimmingOptions,
+                                CAP3Options CAP3Options,
+                                Map<String, ValidationOptions> validationOptions,
+                                ValidationCallback callback,
+                                PersistenceSteps<T> persistenceSteps,
+                                ProgressListener progressListener) throws DocumentOperationException {
+        return submit(barcode.getName(), Pipeline.getSteps(barcode, traces, trimmingOptions, trimmingCache, CAP3Options, CAP3Scheduler, validationOptions, callback), persistenceSteps, progressListener);
+    }
+
+    /**
+     * Submits the steps of a barcode.  See {@link #submit(NucleotideSequenceDocument, List, TrimmingOptions, CAP3Options, Map, ValidationCallback, PersistenceSteps, ProgressListener)}
+     *
+     * @param barcodeName The name of the barcode, for error messages.
+     * @param pipelineSteps The steps to run between saving the inputs and saving the outputs of the barcode.
+     */
+    <T> Future<T> submit(String barcodeName, List<Pipeline.Step> pipelineSteps, PersistenceSteps<T> persistenceSteps, ProgressListener progressListener) throws DocumentOperationException {
+        try {
+            while (!barcodesInFlight.tryAcquire(CANCELLATION_CHECK_INTERVAL_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                if (progressListener.isCanceled()) {
+                    throw new DocumentOperationException.Canceled();
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new DocumentOperationException.Canceled();
+        }
+
+        Job<T> job = new Job<T>(pipelineSteps, persistenceSteps);
+        try {
+            job.submitNextStep();
+        } catch (RejectedExecutionException e) {
+            barcodesInFlight.release();
+            throw new DocumentOperationException("Could not validate " + barcodeName + ": The pipeline has been shut down.", e);
+        }
+
+        return job.future;
+    }
+
+    /**
+     * Stops all stages.  Running steps are interrupted and barcodes that are waiting for a stage fail with a
+     * {@link DocumentOperationException}.
+     */
+    public void shutdownNow() {
+        for (ExecutorService executor : stageExecutors.values()) {
+            for (Runnable waitingJob : executor.shutdownNow()) {
+                if (waitingJob instanceof Job) {
+                    ((Job<?>)waitingJob).finish(new DocumentOperationException(SHUT_DOWN_MESSAGE));
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the steps that were running when the executor was shut down to finish, so that the resources they use,
+     * such as a {@link com.biomatters.plugins.barcoding.validator.validation.utilities.ScratchWorkspace}, can be
+     * released safely.  See {@link #shutdownNow()}
+     *
+     * @param timeout The longest time to wait for.
+     * @param unit The unit of the timeout.
+     * @return True if every stage terminated, false if the timeout elapsed first.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ExecutorService executor : stageExecutors.values()) {
+            if (!executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The steps of a single barcode.  Runs one step at a time, then submits itself to the executor of the stage of the
+     * next step.
+     */
+    private class Job<T> implements Runnable {
+        private final List<Pipeline.Step> steps = new ArrayList<Pipeline.Step>();
+        private int nextStep = 0;
+
+        private volatile T result;
+        private volatile Throwable failure;
+
+        // Progress is reported per barcode by the thread waiting on the future, so step progress is discarded.
+        private final ProgressListener stepProgress = new ProgressListener() {
+            @Override
+            protected void _setProgress(double fractionCompleted) {
+            }
+
+            @Override
+            protected void _setMessage(String message) {
+            }
+
+            @Override
+            public boolean isCanceled() {
+                return future.isCancelled();
+            }
+        };
+
+        private final FutureTask<T> future = new FutureTask<T>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                if (failure instanceof Exception) {
+                    throw (Exception)failure;
+                }
+                if (failure instanceof Error) {
+                    throw (Error)failure;
+                }
+                return result;
+            }
+        });
+
+        private Job(List<Pipeline.Step> pipelineSteps, final PersistenceSteps<T> persistenceSteps) {
+            steps.add(new Pipeline.Step(Pipeline.Stage.PERSIST, "Saving inputs...") {
+                @Override
+                void run(ProgressListener progressListener) throws DocumentOperationException {
+                    persistenceSteps.saveInputs(progressListener);
+                }
+            });
+            steps.addAll(pipelineSteps);
+            steps.add(new Pipeline.Step(Pipeline.Stage.PERSIST, "Saving outputs...") {
+                @Override
+                void run(ProgressListener progressListener) throws DocumentOperationException {
+                    result = persistenceSteps.saveOutputs(progressListener);
+                }
+            });
+        }
+
+        private void submitNextStep() {
+            stageExecutors.get(steps.get(nextStep).getStage()).execute(this);
+        }
+
+        @Override
+        public void run() {
+            boolean finished = true;
+            try {
+                if (!future.isCancelled()) {
+                    steps.get(nextStep++).run(stepProgress);
+                    if (nextStep < steps.size()) {
+                        submitNextStep();
+                        finished = false;
+                    }
+                }
+            } catch (RejectedExecutionException e) {
+                failure = new DocumentOperationException(SHUT_DOWN_MESSAGE, e);
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                if (finished) {
+                    finish(failure);
+                }
+            }
+        }
+
+        /**
+         * Completes the pending result and makes room in the pipeline for another barcode.
+         *
+         * @param failure Why the barcode failed, or null if it did not.
+         */
+        private void finish(Throwable failure) {
+            this.failure = failure;
+            barcodesInFlight.release();
+            future.run();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.biomatters.plugins.barcoding.validator.validation.assembly;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Reads the contigs in an ACE file as written by CAP3.  Only the parts needed to lay out the reads of each contig are
+ * read: the padded length of the contig, the padded start of each read (AF lines) and the padded bases of each read
+ * (RD sections).  Everything else, including the consensus and base qualities, is skipped.  The file is read one line
+ * at a time.  Non-instantiable.
+ */
+class AceReader {
+    private static final String CONTIG_TAG = "CO";
+    private static final String ASSEMBLED_FROM_TAG = "AF";
+    private static final String READ_TAG = "RD";
+
+    private static final char ACE_PAD = '*';
+    static final char GAP = '-';
+
+    private AceReader() {
+    }
+
+    /**
+     * @param reader The ACE file.  Is read to the end but not closed.
+     * @return The contigs in the file, in the order they appear.
+     * @throws IOException if the file could not be read or is not a valid ACE file.
+     */
+    static List<Contig> read(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        List<Contig> contigs = new ArrayList<Contig>();
+
+        ContigBuilder contig = null;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.startsWith(CONTIG_TAG + " ")) {
+                if (contig != null) {
+                    contigs.add(contig.build());
+                }
+                String[] fields = getFields(line, 3);
+                contig = new ContigBuilder(fields[1], parseInt(fields[2], line));
+            } else if (line.startsWith(ASSEMBLED_FROM_TAG + " ")) {
+                String[] fields = getFields(line, 4);
+                getCurrentContig(contig, line).readStarts.put(fields[1], parseInt(fields[3], line) - 1);
+            } else if (line.startsWith(READ_TAG + " ")) {
+                String[] fields = getFields(line, 3);
+                getCurrentContig(contig, line).addRead(fields[1], readBases(lines, parseInt(fields[2], line), fields[1]));
+            }
+        }
+        if (contig != null) {
+            contigs.add(contig.build());
+        }
+
+        return contigs;
+    }
+
+    /**
+     * Reads the padded bases of a read, which follow the RD line up to the next blank line.  Pads are replaced with
+     * {@link #GAP}
+     */
+    private static char[] readBases(BufferedReader lines, int paddedLength, String readName) throws IOException {
+        char[] bases = new char[paddedLength];
+        int length = 0;
+        String line;
+        while ((line = lines.readLine()) != null && !line.trim().isEmpty()) {
+            if (length + line.length() > paddedLength) {
+                throw new IOException("Read " + readName + " has more than the " + paddedLength + " bases stated in its RD line.");
+            }
+            for (int i = 0; i < line.length(); i++) {
+                char base = line.charAt(i);
+                bases[length++] = base == ACE_PAD ? GAP : base;
+            }
+        }
+        if (length != paddedLength) {
+            throw new IOException("Read " + readName + " has " + length + " bases but its RD line states " + paddedLength + ".");
+        }
+        return bases;
+    }
+
+    private static ContigBuilder getCurrentContig(ContigBuilder contig, String line) throws IOException {
+        if (contig == null) {
+            throw new IOException("Line appears before the first contig: " + line);
+        }
+        return contig;
+    }
+
+    private static String[] getFields(String line, int minimumNumberOfFields) throws IOException {
+        String[] fields = line.trim().split("\\s+");
+        if (fields.length < minimumNumberOfFields) {
+            throw new IOException("Expected at least " + minimumNumberOfFields + " fields: " + line);
+        }
+        return fields;
+    }
+
+    private static int parseInt(String field, String line) throws IOException {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            throw new IOException("Expected a number but was '" + field + "': " + line, e);
+        }
+    }
+
+    /**
+     * A contig with its reads laid out in alignment columns.
+     */
+    static class Contig {
+        final String name;
+        final List<String> readNames;
+        /* One row per read, all of the same length, with GAP before and after each read. */
+        final List<char[]> alignedReads;
+
+        private Contig(String name, List<String> readNames, List<char[]> alignedReads) {
+            this.name = name;
+            this.readNames = Collections.unmodifiableList(readNames);
+            this.alignedReads = Collections.unmodifiableList(alignedReads);
+        }
+    }
+
+    private static class ContigBuilder {
+        private final String name;
+        private final int paddedLength;
+        private final Map<String, Integer> readStarts = new HashMap<String, Integer>();
+        private final List<String> readNames = new ArrayList<String>();
+        private final List<char[]> readBases = new ArrayList<char[]>();
+
+        private ContigBuilder(String name, int paddedLength) {
+            this.name = name;
+            this.paddedLength = paddedLength;
+        }
+
+        private void addRead(String readName, char[] bases) throws IOException {
+            if (!readStarts.containsKey(readName)) {
+                throw new IOException("Read " + readName + " of contig " + name + " has no AF line.");
+            }
+            readNames.add(readName);
+            readBases.add(bases);
+        }
+
+        /**
+         * Lays out the reads.  Reads normally lie within the consensus, but the alignment is widened if any overhang it.
+         */
+        private Contig build() {
+            int firstColumn = 0;
+            int endColumn = paddedLength;
+            for (int i = 0; i < readNames.size(); i++) {
+                int start = readStarts.get(readNames.get(i));
+                firstColumn = Math.min(firstColumn, start);
+                endColumn = Math.max(endColumn, start + readBases.get(i).length);
+            }
+
+            List<char[]> alignedReads = new ArrayList<char[]>(readNames.size());
+            for (int i = 0; i < readNames.size(); i++) {
+                char[] alignedRead = new char[endColumn - firstColumn];
+                Arrays.fill(alignedRead, GAP);
+                char[] bases = readBases.get(i);
+                System.arraycopy(bases, 0, alignedRead, readStarts.get(readNames.get(i)) - firstColumn, bases.length);
+                alignedReads.add(alignedRead);
+            }
+            return new Contig(name, readNames, alignedReads);
+        }
+    }
+}
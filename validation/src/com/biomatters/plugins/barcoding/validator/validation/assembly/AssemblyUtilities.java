@@ -0,0 +1,57 @@
+package com.biomatters.plugins.barcoding.validator.validation.assembly;
+
+import com.biomatters.geneious.publicapi.documents.AnnotatedPluginDocument;
+import com.biomatters.geneious.publicapi.documents.DocumentUtilities;
+import com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraphSequenceDocument;
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceAlignmentDocument;
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceDocument;
+import com.biomatters.geneious.publicapi.implementations.DefaultAlignmentDocument;
+import jebl.util.ProgressListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Functionality shared by the assemblers.  Non-instantiable.
+ */
+class AssemblyUtilities {
+
+    private AssemblyUtilities() {
+    }
+
+    /**
+     * Creates a contig from reads that have been laid out against each other.
+     *
+     * @param reads The documents of the reads.
+     * @param alignedReads The gapped bases of each read, in the same order as the reads.  All must be the same length.
+     * @param contigName The name to use for the contig, or null to use "Assembly".
+     * @return The contig.
+     */
+    static SequenceAlignmentDocument createContig(List<NucleotideGraphSequenceDocument> reads, List<char[]> alignedReads, String contigName) {
+        List<CharSequence> alignedCharSequences = new ArrayList<CharSequence>(reads.size());
+        List<SequenceAlignmentDocument.ReferencedSequence> referencedSequences = new ArrayList<SequenceAlignmentDocument.ReferencedSequence>(reads.size());
+
+        for (int i = 0; i < reads.size(); i++) {
+            alignedCharSequences.add(new String(alignedReads.get(i)));
+
+            AnnotatedPluginDocument apd = DocumentUtilities.getAnnotatedPluginDocumentThatContains(reads.get(i));
+            if (apd != null) {
+                referencedSequences.add(new SequenceAlignmentDocument.ReferencedSequence(apd));
+            } else {
+                referencedSequences.add(null);
+            }
+        }
+
+        DefaultAlignmentDocument assembly = new DefaultAlignmentDocument(
+                reads.toArray(new SequenceDocument[reads.size()]),
+                referencedSequences,
+                alignedCharSequences.toArray(new CharSequence[alignedCharSequences.size()]),
+                null, null, contigName == null ? "Assembly" : contigName,
+                ProgressListener.EMPTY
+        );
+
+        assembly.setContig(true);
+
+        return assembly;
+    }
+}
@@ -17,6 +17,7 @@ public class CAP3Options extends Options {
     private IntegerOption minOverlapLengthOption;
     private IntegerOption minOverlapIdentityOption;
     private FileSelectionOption executableSelectionOption;
+    private BooleanOption inProcessAssemblyOption;
 
     private final static String DEFAULT_CAP3_EXECUTABLE_NAME_WINDOWS = "cap3.exe";
     private final static String DEFAULT_CAP3_EXECUTABLE_NAME_UNIX    = "cap3";
@@ -27,6 +28,7 @@ public class CAP3Options extends Options {
         addMinOverlapLengthOption();
         addMinOverlapIdentityOption();
         addExecutableSelectionOption();
+        addInProcessAssemblyOption();
     }
 
     public int getMinOverlapLength() {
@@ -41,6 +43,10 @@ public class CAP3Options extends Options {
         return executableSelectionOption.getValue();
     }
 
+    public boolean isInProcessAssemblyEnabled() {
+        return inProcessAssemblyOption.getValue();
+    }
+
     private void addMinOverlapLengthOption() {
         minOverlapLengthOption = addIntegerOption("minOverlapOverlap", "Min Overlap Length:", 40, 16, 1000);
     }
@@ -71,6 +77,15 @@ public class CAP3Options extends Options {
         endAlignHorizontally();
     }
 
+    private void addInProcessAssemblyOption() {
+        inProcessAssemblyOption = addBooleanOption("inProcessAssembly", "Assemble small trace sets without CAP3", false);
+        inProcessAssemblyOption.setDescription(
+                "Assembles barcodes with up to " + OverlapAssembler.MAX_NUMBER_OF_READS + " traces without running CAP3, " +
+                "using the same minimum overlap length and identity.  CAP3 is still used if the traces do not all " +
+                "assemble into a single contig."
+        );
+    }
+
     public static String getDefaultCap3ExecutableName() {
         return SystemUtilities.isWindows() ? DEFAULT_CAP3_EXECUTABLE_NAME_WINDOWS : DEFAULT_CAP3_EXECUTABLE_NAME_UNIX;
     }
@@ -1,20 +1,18 @@
 package com.biomatters.plugins.barcoding.validator.validation.assembly;
 
-import com.biomatters.geneious.publicapi.documents.AnnotatedPluginDocument;
-import com.biomatters.geneious.publicapi.documents.DocumentUtilities;
 import com.biomatters.geneious.publicapi.documents.sequence.*;
-import com.biomatters.geneious.publicapi.implementations.DefaultAlignmentDocument;
 import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
 import com.biomatters.geneious.publicapi.utilities.*;
-import com.biomatters.plugins.barcoding.validator.validation.utilities.ImportUtilities;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.FastaWriter;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.SequenceRead;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import jebl.util.ProgressListener;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.*;
 
 /**
@@ -50,111 +48,124 @@ public class CAP3Runner {
                                                            int minOverlapIdentity,
                                                            String contigName,
                                                            ProgressListener progressListener) throws DocumentOperationException {
-        if (sequences.size() < 2) { // There must be at least two traces to produce an assembly
+        return assemble(sequences, executablePath, minOverlapLength, minOverlapIdentity, contigName, CAP3Scheduler.getDefault(), progressListener);
+    }
+
+    /**
+     * Assembles contigs, running CAP3 through a {@link CAP3Scheduler}.
+     *
+     * @param sequences Sequences.
+     * @param executablePath CAP3 executable path.
+     * @param minOverlapLength Minimum overlap length.
+     * @param minOverlapIdentity Minimum overlap identity.
+     * @param contigName The name to use for the resulting assembly
+     * @param scheduler The scheduler to run CAP3 with.
+     * @param progressListener To report progress to and for cancelling the assembly
+     * @return Contigs.
+     * @throws DocumentOperationException
+     */
+    public static List<SequenceAlignmentDocument> assemble(List<NucleotideGraphSequenceDocument> sequences,
+                                                           String executablePath,
+                                                           int minOverlapLength,
+                                                           int minOverlapIdentity,
+                                                           String contigName,
+                                                           CAP3Scheduler scheduler,
+                                                           ProgressListener progressListener) throws DocumentOperationException {
+        Map<SequenceRead, NucleotideGraphSequenceDocument> documentsOfReads = new IdentityHashMap<SequenceRead, NucleotideGraphSequenceDocument>();
+        List<SequenceRead> reads = new ArrayList<SequenceRead>(sequences.size());
+        for (NucleotideGraphSequenceDocument seq : sequences) {
+            if (documentsOfReads.containsValue(seq)) {
+                throw new DocumentOperationException("Cannot assemble sequence to itself.  Input list contains multiple copies of " + seq.getName() +".");
+            }
+
+            SequenceRead read = SequenceRead.fromDocument(seq);
+            documentsOfReads.put(read, seq);
+            reads.add(read);
+        }
+
+        List<SequenceAlignmentDocument> results = new ArrayList<SequenceAlignmentDocument>();
+        for (ContigLayout contig : assembleReads(reads, executablePath, minOverlapLength, minOverlapIdentity, contigName, scheduler, progressListener)) {
+            results.add(contig.createContig(documentsOfReads));
+        }
+        return results;
+    }
+
+    /**
+     * Assembles reads into contigs, running CAP3 through a {@link CAP3Scheduler}.  See
+     * {@link #assemble(List, String, int, int, String, CAP3Scheduler, ProgressListener)} for the parameters.
+     *
+     * @param reads Reads.
+     * @return The layouts of the contigs.
+     * @throws DocumentOperationException
+     */
+    public static List<ContigLayout> assembleReads(List<SequenceRead> reads,
+                                                   String executablePath,
+                                                   int minOverlapLength,
+                                                   int minOverlapIdentity,
+                                                   String contigName,
+                                                   CAP3Scheduler scheduler,
+                                                   ProgressListener progressListener) throws DocumentOperationException {
+        if (reads.size() < 2) { // There must be at least two traces to produce an assembly
             return Collections.emptyList();
         }
 
-        BiMap<String, NucleotideGraphSequenceDocument> nameSequenceMapping = HashBiMap.create();
+        BiMap<String, SequenceRead> nameReadMapping = HashBiMap.create();
 
-        for (NucleotideGraphSequenceDocument seq : sequences) {
+        for (SequenceRead read : reads) {
             String tmpName = UUID.randomUUID().toString();
 
-            if (nameSequenceMapping.containsValue(seq)) {
-                throw new DocumentOperationException("Cannot assemble sequence to itself.  Input list contains multiple copies of " + seq.getName() +".");
+            if (nameReadMapping.containsValue(read)) {
+                throw new DocumentOperationException("Cannot assemble sequence to itself.  Input list contains multiple copies of " + read.getName() +".");
             }
 
-            nameSequenceMapping.put(tmpName, seq);
+            nameReadMapping.put(tmpName, read);
         }
 
+        File jobDirectory = null;
         try {
-            String resultFilePath = runCap3Assembler(createFastaFile(sequences, nameSequenceMapping.inverse()), executablePath, minOverlapLength, minOverlapIdentity, progressListener);
+            jobDirectory = scheduler.createJobDirectory();
+            String resultFilePath = runCap3Assembler(createFastaFile(jobDirectory, reads, nameReadMapping.inverse()), executablePath, minOverlapLength, minOverlapIdentity, scheduler, jobDirectory, progressListener);
 
-            if (assemblyFailed(sequences, resultFilePath)) {
+            File resultFile = new File(resultFilePath);
+            if (!resultFile.exists()) {
                 return Collections.emptyList();
             }
 
-            List<SequenceAlignmentDocument> alignments = ImportUtilities.importContigs(resultFilePath);
-
-            List<SequenceAlignmentDocument> results = new ArrayList<SequenceAlignmentDocument>();
-            for (SequenceAlignmentDocument align : alignments) {
-                int expectedSequences = align.getNumberOfSequences() - 1;
-                List<CharSequence> alignedCharSequences = new ArrayList<CharSequence>(expectedSequences);
-                List<SequenceDocument> unalignedSeqDocs = new ArrayList<SequenceDocument>(expectedSequences);
-                List<SequenceAlignmentDocument.ReferencedSequence> referencedSequences = new ArrayList<SequenceAlignmentDocument.ReferencedSequence>(expectedSequences);
+            List<ContigLayout> results = new ArrayList<ContigLayout>();
+            for (AceReader.Contig contig : readContigs(resultFile)) {
+                List<SequenceRead> contigReads = new ArrayList<SequenceRead>(contig.readNames.size());
+                List<char[]> alignedReads = new ArrayList<char[]>(contig.readNames.size());
 
-                for (SequenceDocument alignedSeq : align.getSequences()) {
-                    NucleotideGraphSequenceDocument originalDoc = getStartFromMap(nameSequenceMapping, alignedSeq.getName());
+                for (int i = 0; i < contig.readNames.size(); i++) {
+                    SequenceRead read = nameReadMapping.get(contig.readNames.get(i));
 
-                    if (originalDoc != null) {
-                        alignedCharSequences.add(alignedSeq.getCharSequence());
-
-                        unalignedSeqDocs.add(originalDoc);
-
-                        AnnotatedPluginDocument apd = DocumentUtilities.getAnnotatedPluginDocumentThatContains(originalDoc);
-                        if (apd != null) {
-                            referencedSequences.add(new SequenceAlignmentDocument.ReferencedSequence(apd));
-                        } else {
-                            referencedSequences.add(null);
-                        }
+                    if (read != null) {
+                        contigReads.add(read);
+                        alignedReads.add(contig.alignedReads.get(i));
                     }
                 }
 
-                DefaultAlignmentDocument assembly = new DefaultAlignmentDocument(
-                        unalignedSeqDocs.toArray(new SequenceDocument[expectedSequences]),
-                        referencedSequences,
-                        alignedCharSequences.toArray(new CharSequence[expectedSequences]),
-                        null, null, contigName == null ? "Assembly" : contigName,
-                        ProgressListener.EMPTY
-                );
-
-                assembly.setContig(true);
-
-                results.add(assembly);
+                results.add(new ContigLayout(contigName, contigReads, alignedReads));
             }
             return results;
         } catch (DocumentOperationException e) {
             throw new DocumentOperationException("Could not assemble contigs: " + e.getMessage(), e);
-        } catch (InterruptedException e) {
-            throw new DocumentOperationException("Could not assemble contigs: " + e.getMessage(), e);
         } catch (IOException e) {
             throw new DocumentOperationException("Could not assemble contigs: " + e.getMessage(), e);
-        }
-    }
-
-    private static NucleotideGraphSequenceDocument getStartFromMap(Map<String, NucleotideGraphSequenceDocument> nameSequenceMapping, String tmpName) {
-        for (Map.Entry<String, NucleotideGraphSequenceDocument> entry : nameSequenceMapping.entrySet()) {
-            String key = entry.getKey();
-
-            if (tmpName.startsWith(key)) {
-                return entry.getValue();
+        } finally {
+            if (jobDirectory != null) {
+                scheduler.deleteJobDirectory(jobDirectory);
             }
         }
-
-        return null;
     }
 
-
-    /**
-     * Hack method that tries to detect if assembly failed using the result file.  This is required because:
-     * <ul>
-     *     <li>CAP3 runs successfully and produces an almost empty Ace file when assembly fails.</li>
-     *     <li>The AceDocumentImporter will throw an Exception and show a dialog when it encounters this bad file.</li>
-     * </ul>
-     * @param sequences The sequences that were to be assembled
-     * @param resultFilePath The result file from CAP3
-     * @return true iff the assembly process failed
-     */
-    private static boolean assemblyFailed(List<NucleotideGraphSequenceDocument> sequences, String resultFilePath) {
-        File resultFile = new File(resultFilePath);
-        // The result file would use at least a byte per character in the sequence name.  If it doesn't it probably
-        // does not contain an assembly
-        long sizeOfDocs = 0;
-
-        for (NucleotideGraphSequenceDocument sequence : sequences) {
-            sizeOfDocs += sequence.getName().length();
+    private static List<AceReader.Contig> readContigs(File aceFile) throws IOException {
+        Reader reader = new FileReader(aceFile);
+        try {
+            return AceReader.read(reader);
+        } finally {
+            GeneralUtilities.attemptClose(reader);
         }
-
-        return !resultFile.exists() || resultFile.length() < sizeOfDocs;
     }
 
     /**
@@ -164,17 +175,18 @@ public class CAP3Runner {
      * @param executablePath CAP3 executable path.
      * @param minOverlapLength Minimum overlap length.
      * @param minOverlapIdentity Minimum overlap identity.
+     * @param scheduler The scheduler to run CAP3 with.
+     * @param jobDirectory The directory the fasta file is in.  CAP3 writes its output files here.
      * @param progressListener to provide to the {@link com.biomatters.geneious.publicapi.utilities.Execution} for cancelling the external CAP3 process
      * @return {@value #CAP3_ASSEMBLER_RESULT_FILE_EXTENSION} output file path.
      * @throws DocumentOperationException
-     * @throws InterruptedException
-     * @throws IOException
      */
-    private static String runCap3Assembler(String fastafilePath, String executablePath, int minOverlapLength, int minOverlapIdentity, ProgressListener progressListener)
-            throws DocumentOperationException, InterruptedException, IOException {
+    private static String runCap3Assembler(String fastafilePath, String executablePath, int minOverlapLength, int minOverlapIdentity, CAP3Scheduler scheduler, File jobDirectory, ProgressListener progressListener)
+            throws DocumentOperationException {
         Cap3OutputListener listener = new Cap3OutputListener();
 
-        Execution exec = new Execution(
+        /* Run. */
+        int exitCode = scheduler.run(
                 new String[] {
                         executablePath,
                         fastafilePath,
@@ -183,15 +195,11 @@ public class CAP3Runner {
                         MIN_OVERLAP_IDENTITY_COMMANDLINE_OPTION,
                         String.valueOf(minOverlapIdentity)
                 },
-                progressListener,
+                jobDirectory,
+                getEnvironmentToRunCap3(),
                 listener,
-                "",
-                false
+                progressListener
         );
-        exec.setWorkingDirectory(fastafilePath.substring(0, fastafilePath.lastIndexOf(File.separator)));
-
-        /* Run. */
-        int exitCode = exec.execute(getEnvironmentToRunCap3());
 
         if (exitCode != 0) {
             throw new DocumentOperationException("CAP3 failed with exit code " + exitCode + ":\n\n" + listener.getStderrOutput());
@@ -201,47 +209,31 @@ public class CAP3Runner {
     }
 
     /**
-     * Creates fasta file from sequences.
+     * Creates fasta file from reads.  Reads are written in upper case.
      *
-     * @param sequences Sequences.
+     * @param directory The directory to create the fasta file in.
+     * @param reads Reads.
+     * @param renameMap Names to write the reads with.  Reads that are missing are written with their own name.
      * @return Fasta file path.
      */
-    private static String createFastaFile(List<NucleotideGraphSequenceDocument> sequences, Map<NucleotideGraphSequenceDocument, String> renameMap) throws IOException {
-        File fastaFile = FileUtilities.createTempFile("temp", ".fasta", false);
-
-        BufferedWriter writer = new BufferedWriter(new FileWriter(fastaFile));
-        writer.write(toFastaFormat(sequences, renameMap));
-        writer.close();
+    private static String createFastaFile(File directory, List<SequenceRead> reads, Map<SequenceRead, String> renameMap) throws IOException {
+        File fastaFile = new File(directory, "input.fasta");
 
-        return fastaFile.getAbsolutePath();
-    }
-
-    /**
-     * Generates fasta output from sequences.
-     *
-     * @param sequences Sequences.
-     * @return Fasta output.
-     */
-    private static String toFastaFormat(List<NucleotideGraphSequenceDocument> sequences, Map<NucleotideGraphSequenceDocument, String> renameMap) {
-        StringBuilder fastaOutput = new StringBuilder();
+        FastaWriter writer = new FastaWriter(fastaFile, true);
+        try {
+            for (SequenceRead read : reads) {
+                String name = renameMap.get(read);
+                if (name == null) {
+                    name = read.getName();
+                }
 
-        /* Generate fasta output. */
-        for (NucleotideGraphSequenceDocument seq : sequences) {
-            String name = renameMap.get(seq);
-            if (name == null) {
-                name = seq.getName();
+                writer.write(name, null, read.getBases());
             }
-
-            fastaOutput.append(">").append(name).append(" ").append(seq.getDescription()).append("\n")
-                       .append(seq.getSequenceString().toUpperCase()).append("\n");
-        }
-
-        /* Remove trailing new line. */
-        if (fastaOutput.length() > 0) {
-            fastaOutput.deleteCharAt(fastaOutput.length() - 1);
+        } finally {
+            writer.close();
         }
 
-        return fastaOutput.toString();
+        return fastaFile.getAbsolutePath();
     }
 
     private static void replaceChars(char[] chars, SequenceAnnotationInterval interval, char c) {
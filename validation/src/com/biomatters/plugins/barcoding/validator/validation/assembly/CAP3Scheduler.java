@@ -0,0 +1,207 @@
+package com.biomatters.plugins.barcoding.validator.validation.assembly;
+
+import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
+import com.biomatters.geneious.publicapi.utilities.Execution;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.ScratchWorkspace;
+import jebl.util.ProgressListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of CAP3 processes that run at the same time.  Jobs that are submitted while the limit is reached
+ * wait in a queue until a running process finishes.  Each job is given its own working directory because CAP3 writes
+ * its output files next to its input file, and each process can be given a timeout after which it is killed.  Job
+ * directories are created in a {@link ScratchWorkspace}.
+ */
+public class CAP3Scheduler {
+    private static final long CANCELLATION_CHECK_INTERVAL_MILLISECONDS = 200;
+
+    private static final CAP3Scheduler DEFAULT = new CAP3Scheduler(Runtime.getRuntime().availableProcessors(), 0);
+
+    private final Semaphore processSlots;
+    private final long timeoutMilliseconds;
+    private final ScratchWorkspace workspace;
+
+    private final AtomicInteger queuedJobs = new AtomicInteger();
+    private final AtomicInteger runningJobs = new AtomicInteger();
+
+    /**
+     * @param maxConcurrentProcesses The maximum number of CAP3 processes to run at the same time.
+     * @param timeoutSeconds The number of seconds a CAP3 process can run for before it is killed, or 0 for no limit.
+     */
+    public CAP3Scheduler(int maxConcurrentProcesses, int timeoutSeconds) {
+        this(maxConcurrentProcesses, timeoutSeconds, ScratchWorkspace.getDefault());
+    }
+
+    /**
+     * @param maxConcurrentProcesses The maximum number of CAP3 processes to run at the same time.
+     * @param timeoutSeconds The number of seconds a CAP3 process can run for before it is killed, or 0 for no limit.
+     * @param workspace The workspace to create job directories in.
+     */
+    public CAP3Scheduler(int maxConcurrentProcesses, int timeoutSeconds, ScratchWorkspace workspace) {
+        if (maxConcurrentProcesses < 1) {
+            throw new IllegalArgumentException("maxConcurrentProcesses must be at least 1: " + maxConcurrentProcesses);
+        }
+        if (timeoutSeconds < 0) {
+            throw new IllegalArgumentException("timeoutSeconds must not be negative: " + timeoutSeconds);
+        }
+
+        processSlots = new Semaphore(maxConcurrentProcesses, true);
+        timeoutMilliseconds = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        this.workspace = workspace;
+    }
+
+    /**
+     * @return A scheduler shared by callers that do not provide their own.  Runs as many processes as there are
+     * processors and has no timeout.
+     */
+    public static CAP3Scheduler getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return The number of jobs waiting for a running process to finish.
+     */
+    public int getQueueDepth() {
+        return queuedJobs.get();
+    }
+
+    /**
+     * @return The number of CAP3 processes that are running.
+     */
+    public int getNumberOfRunningProcesses() {
+        return runningJobs.get();
+    }
+
+    /**
+     * @return A new empty directory for the files of a single CAP3 job.  The directory should be passed to
+     * {@link #run} and deleted with {@link #deleteJobDirectory(java.io.File)} once the output has been read.
+     * @throws IOException if the directory could not be created.
+     */
+    public File createJobDirectory() throws IOException {
+        return workspace.createJobDirectory("cap3");
+    }
+
+    /**
+     * Deletes a directory created by {@link #createJobDirectory()} along with the files CAP3 wrote to it, unless the
+     * workspace is keeping files.  See {@link ScratchWorkspace#deleteJobDirectory(java.io.File)}
+     *
+     * @param jobDirectory The directory to delete.
+     */
+    public void deleteJobDirectory(File jobDirectory) {
+        workspace.deleteJobDirectory(jobDirectory);
+    }
+
+    /**
+     * Runs CAP3 once a process slot is free.  Blocks until the process has finished.
+     *
+     * @param command The command to run.
+     * @param jobDirectory The working directory of the process.  See {@link #createJobDirectory()}
+     * @param environment Environment variables to run the process with.
+     * @param outputListener To receive the output of the process.
+     * @param progressListener To report the queue depth to and for canceling the job.
+     * @return The exit code of the process.
+     * @throws DocumentOperationException.Canceled if the job was canceled.
+     * @throws DocumentOperationException if the process timed out or could not be run.
+     */
+    public int run(String[] command,
+                   File jobDirectory,
+                   Map<String, String> environment,
+                   Execution.OutputListener outputListener,
+                   ProgressListener progressListener) throws DocumentOperationException {
+        acquireProcessSlot(progressListener);
+        runningJobs.incrementAndGet();
+        try {
+            DeadlineProgressListener deadlineProgress = new DeadlineProgressListener(progressListener, timeoutMilliseconds);
+            Execution exec = new Execution(command, deadlineProgress, outputListener, "", false);
+            exec.setWorkingDirectory(jobDirectory.getAbsolutePath());
+
+            int exitCode;
+            try {
+                exitCode = exec.execute(environment);
+            } catch (DocumentOperationException.Canceled e) {
+                throw getCancellationException(deadlineProgress);
+            } catch (InterruptedException e) {
+                throw new DocumentOperationException.Canceled();
+            } catch (IOException e) {
+                throw new DocumentOperationException("Could not run CAP3: " + e.getMessage(), e);
+            }
+
+            if (deadlineProgress.isCanceled()) {
+                throw getCancellationException(deadlineProgress);
+            }
+            return exitCode;
+        } finally {
+            runningJobs.decrementAndGet();
+            processSlots.release();
+        }
+    }
+
+    private void acquireProcessSlot(ProgressListener progressListener) throws DocumentOperationException {
+        queuedJobs.incrementAndGet();
+        try {
+            while (!processSlots.tryAcquire(CANCELLATION_CHECK_INTERVAL_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                if (progressListener.isCanceled()) {
+                    throw new DocumentOperationException.Canceled();
+                }
+                progressListener.setMessage("Waiting for CAP3 (" + queuedJobs.get() + " queued, " + runningJobs.get() + " running)...");
+            }
+        } catch (InterruptedException e) {
+            throw new DocumentOperationException.Canceled();
+        } finally {
+            queuedJobs.decrementAndGet();
+        }
+    }
+
+    private DocumentOperationException getCancellationException(DeadlineProgressListener deadlineProgress) {
+        if (deadlineProgress.hasTimedOut()) {
+            return new DocumentOperationException("CAP3 did not finish within " + TimeUnit.MILLISECONDS.toSeconds(timeoutMilliseconds) + " seconds.");
+        }
+        return new DocumentOperationException.Canceled();
+    }
+
+    /**
+     * Forwards progress to another listener and reports cancellation when either the other listener is canceled or
+     * the deadline has passed, so that {@link Execution} kills the process in both cases.
+     */
+    private static class DeadlineProgressListener extends ProgressListener {
+        private final ProgressListener progressListener;
+        private final long deadline;
+        private volatile boolean timedOut = false;
+
+        private DeadlineProgressListener(ProgressListener progressListener, long timeoutMilliseconds) {
+            this.progressListener = progressListener;
+            this.deadline = timeoutMilliseconds == 0 ? Long.MAX_VALUE : System.currentTimeMillis() + timeoutMilliseconds;
+        }
+
+        @Override
+        protected void _setProgress(double fractionCompleted) {
+            progressListener.setProgress(fractionCompleted);
+        }
+
+        @Override
+        protected void _setMessage(String message) {
+            progressListener.setMessage(message);
+        }
+
+        @Override
+        public boolean isCanceled() {
+            if (progressListener.isCanceled()) {
+                return true;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                timedOut = true;
+            }
+            return timedOut;
+        }
+
+        private boolean hasTimedOut() {
+            return timedOut;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.biomatters.plugins.barcoding.validator.validation.assembly;
+
+import com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraphSequenceDocument;
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceAlignmentDocument;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.SequenceRead;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A contig as laid out by an assembler: the reads that were placed in it and the gapped bases of each.  The document of
+ * the contig is only created when it is saved.  See {@link #createContig(Map)}
+ */
+public class ContigLayout {
+    private final String name;
+    private final List<SequenceRead> reads;
+    private final List<char[]> alignedReads;
+
+    /**
+     * @param name The name to use for the contig, or null to use "Assembly".
+     * @param reads The reads placed in the contig.
+     * @param alignedReads The gapped bases of each read, in the same order as the reads.  All must be the same length.
+     *                     Reads placed in reverse complement are reverse complemented.
+     */
+    public ContigLayout(String name, List<SequenceRead> reads, List<char[]> alignedReads) {
+        if (reads.size() != alignedReads.size()) {
+            throw new IllegalArgumentException("Could not create contig: " + alignedReads.size() + " aligned reads were supplied for " + reads.size() + " reads.");
+        }
+
+        this.name = name;
+        this.reads = Collections.unmodifiableList(new ArrayList<SequenceRead>(reads));
+        this.alignedReads = Collections.unmodifiableList(new ArrayList<char[]>(alignedReads));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<SequenceRead> getReads() {
+        return reads;
+    }
+
+    /**
+     * @return The gapped bases of each read, in the same order as {@link #getReads()}.  Must not be modified.
+     */
+    public List<char[]> getAlignedReads() {
+        return alignedReads;
+    }
+
+    /**
+     * Creates the document of the contig.
+     *
+     * @param documentsOfReads Map of each read of the contig to the document the contig should reference for it.
+     * @return The contig.
+     * @throws IllegalArgumentException if there is no document for one of the reads.
+     */
+    public SequenceAlignmentDocument createContig(Map<SequenceRead, NucleotideGraphSequenceDocument> documentsOfReads) {
+        List<NucleotideGraphSequenceDocument> documents = new ArrayList<NucleotideGraphSequenceDocument>(reads.size());
+        for (SequenceRead read : reads) {
+            NucleotideGraphSequenceDocument document = documentsOfReads.get(read);
+            if (document == null) {
+                throw new IllegalArgumentException("Could not create contig: No document was supplied for " + read.getName() + ".");
+            }
+            documents.add(document);
+        }
+
+        return AssemblyUtilities.createContig(documents, alignedReads, name);
+    }
+}
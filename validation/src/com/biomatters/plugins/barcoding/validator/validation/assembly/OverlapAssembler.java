@@ -0,0 +1,328 @@
+package com.biomatters.plugins.barcoding.validator.validation.assembly;
+
+import com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraphSequenceDocument;
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceAlignmentDocument;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.PairwiseAligner;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.SequenceRead;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assembles a small number of traces in process, without the cost of writing files and starting CAP3.  Reads are laid
+ * out greedily: starting from the first read, the read (in either orientation) that overlaps the consensus of the
+ * contig so far with the most identical bases is added next, until every read has been placed.  Overlaps are found with
+ * {@link PairwiseAligner} and must meet the same minimum overlap length and identity as CAP3 is run with.
+ * <br/><br/>
+ * Only a single contig containing every read is produced.  If that is not possible the traces should be assembled with
+ * CAP3 instead, which also clips poor quality ends and can produce several contigs.
+ */
+public class OverlapAssembler {
+
+    /**
+     * The largest number of traces that are assembled in process.  Larger sets are left to CAP3.
+     */
+    public static final int MAX_NUMBER_OF_READS = 8;
+
+    private static final char GAP = '-';
+
+    private OverlapAssembler() {
+    }
+
+    /**
+     * Assembles traces into a single contig.
+     *
+     * @param sequences Sequences.
+     * @param minOverlapLength Minimum overlap length.  See {@link CAP3Options#getMinOverlapLength()}
+     * @param minOverlapIdentity Minimum overlap identity as a percentage.  See {@link CAP3Options#getMinOverlapIdentity()}
+     * @param contigName The name to use for the resulting assembly
+     * @return The contig, an empty list if there are fewer than two sequences, or null if there are more than
+     * {@link #MAX_NUMBER_OF_READS} sequences or they could not all be placed in one contig.
+     */
+    @Nullable
+    public static List<SequenceAlignmentDocument> assemble(List<NucleotideGraphSequenceDocument> sequences,
+                                                           int minOverlapLength,
+                                                           int minOverlapIdentity,
+                                                           String contigName) {
+        if (sequences.size() > MAX_NUMBER_OF_READS) {
+            return null;
+        }
+
+        Map<SequenceRead, NucleotideGraphSequenceDocument> documentsOfReads = new IdentityHashMap<SequenceRead, NucleotideGraphSequenceDocument>();
+        List<SequenceRead> reads = new ArrayList<SequenceRead>(sequences.size());
+        for (NucleotideGraphSequenceDocument sequence : sequences) {
+            SequenceRead read = SequenceRead.fromDocument(sequence);
+            documentsOfReads.put(read, sequence);
+            reads.add(read);
+        }
+
+        List<ContigLayout> contigs = assembleReads(reads, minOverlapLength, minOverlapIdentity, contigName);
+        if (contigs == null) {
+            return null;
+        }
+        List<SequenceAlignmentDocument> results = new ArrayList<SequenceAlignmentDocument>(contigs.size());
+        for (ContigLayout contig : contigs) {
+            results.add(contig.createContig(documentsOfReads));
+        }
+        return results;
+    }
+
+    /**
+     * Assembles reads into a single contig.  See {@link #assemble(List, int, int, String)} for the parameters.
+     *
+     * @param reads Reads.
+     * @return The layout of the contig, an empty list if there are fewer than two reads, or null if there are more
+     * than {@link #MAX_NUMBER_OF_READS} reads or they could not all be placed in one contig.
+     */
+    @Nullable
+    public static List<ContigLayout> assembleReads(List<SequenceRead> reads,
+                                                   int minOverlapLength,
+                                                   int minOverlapIdentity,
+                                                   String contigName) {
+        if (reads.size() < 2) { // There must be at least two traces to produce an assembly
+            return Collections.emptyList();
+        }
+        if (reads.size() > MAX_NUMBER_OF_READS) {
+            return null;
+        }
+
+        List<byte[]> residues = new ArrayList<byte[]>(reads.size());
+        for (SequenceRead read : reads) {
+            residues.add(PairwiseAligner.toResidues(read.getBases()));
+        }
+
+        List<char[]> alignedReads = layout(residues, minOverlapLength, minOverlapIdentity);
+        if (alignedReads == null) {
+            return null;
+        }
+        return Collections.singletonList(new ContigLayout(contigName, reads, alignedReads));
+    }
+
+    /**
+     * Lays out reads against each other.
+     *
+     * @param reads Upper case residues of the reads.  See {@link PairwiseAligner#toResidues(CharSequence)}
+     * @param minOverlapLength Minimum overlap length.
+     * @param minOverlapIdentity Minimum overlap identity as a percentage.
+     * @return The gapped bases of each read in the same order as the reads, or null if not every read could be placed.
+     * Reads placed in reverse complement are reverse complemented.
+     */
+    @Nullable
+    static List<char[]> layout(List<byte[]> reads, int minOverlapLength, int minOverlapIdentity) {
+        Layout layout = new Layout(reads.size(), 0, reads.get(0));
+
+        List<Integer> remaining = new ArrayList<Integer>();
+        for (int i = 1; i < reads.size(); i++) {
+            remaining.add(i);
+        }
+
+        while (!remaining.isEmpty()) {
+            byte[] consensus = layout.getConsensus();
+
+            Overlap bestOverlap = null;
+            for (int readIndex : remaining) {
+                byte[] read = reads.get(readIndex);
+                for (byte[] orientedRead : new byte[][] { read, PairwiseAligner.reverseComplement(read) }) {
+                    Overlap overlap = Overlap.get(readIndex, orientedRead, consensus);
+                    if (overlap != null && overlap.meets(minOverlapLength, minOverlapIdentity)
+                            && (bestOverlap == null || overlap.identical > bestOverlap.identical)) {
+                        bestOverlap = overlap;
+                    }
+                }
+            }
+
+            if (bestOverlap == null) {
+                return null;
+            }
+            layout.add(bestOverlap);
+            remaining.remove(Integer.valueOf(bestOverlap.readIndex));
+        }
+
+        return layout.getRows();
+    }
+
+    /**
+     * Where a read aligns to the consensus of the contig so far.
+     */
+    private static class Overlap {
+        private final int readIndex;
+        private final byte[] read;
+        /* For each consensus column, the index of the read residue aligned to it or -1 */
+        private final int[] alignedReadIndices;
+        private final int length;
+        private final int identical;
+
+        private Overlap(int readIndex, byte[] read, int[] alignedReadIndices, int length, int identical) {
+            this.readIndex = readIndex;
+            this.read = read;
+            this.alignedReadIndices = alignedReadIndices;
+            this.length = length;
+            this.identical = identical;
+        }
+
+        /**
+         * @return The overlap, or null if the read does not align to the consensus at all.
+         */
+        @Nullable
+        private static Overlap get(int readIndex, byte[] read, byte[] consensus) {
+            int[] alignedReadIndices = PairwiseAligner.getAlignedQueryIndices(read, consensus);
+
+            int firstColumn = -1;
+            int lastColumn = -1;
+            int alignedColumns = 0;
+            int identical = 0;
+            for (int column = 0; column < alignedReadIndices.length; column++) {
+                int readResidue = alignedReadIndices[column];
+                if (readResidue == -1) {
+                    continue;
+                }
+                if (firstColumn == -1) {
+                    firstColumn = column;
+                }
+                lastColumn = column;
+                alignedColumns++;
+                if (read[readResidue] == consensus[column]) {
+                    identical++;
+                }
+            }
+            if (firstColumn == -1) {
+                return null;
+            }
+
+            // Every consensus column in the overlap plus any read residues inserted between them
+            int insertedResidues = alignedReadIndices[lastColumn] - alignedReadIndices[firstColumn] + 1 - alignedColumns;
+            int length = lastColumn - firstColumn + 1 + insertedResidues;
+            return new Overlap(readIndex, read, alignedReadIndices, length, identical);
+        }
+
+        private boolean meets(int minOverlapLength, int minOverlapIdentity) {
+            return length >= minOverlapLength && 100L * identical >= (long)minOverlapIdentity * length;
+        }
+    }
+
+    /**
+     * The gapped rows of the reads placed so far.
+     */
+    private static class Layout {
+        /* Indexed by read.  Null for reads that have not been placed. */
+        private final StringBuilder[] rows;
+
+        private Layout(int numberOfReads, int firstReadIndex, byte[] firstRead) {
+            rows = new StringBuilder[numberOfReads];
+            rows[firstReadIndex] = new StringBuilder(firstRead.length);
+            for (byte residue : firstRead) {
+                rows[firstReadIndex].append((char)residue);
+            }
+        }
+
+        private int getWidth() {
+            for (StringBuilder row : rows) {
+                if (row != null) {
+                    return row.length();
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @return The most common base of each column.  Every column has at least one base so there are no gaps.
+         */
+        private byte[] getConsensus() {
+            byte[] consensus = new byte[getWidth()];
+            int[] counts = new int[128];
+            for (int column = 0; column < consensus.length; column++) {
+                int bestCount = 0;
+                for (StringBuilder row : rows) {
+                    if (row == null) {
+                        continue;
+                    }
+                    char base = row.charAt(column);
+                    if (base != GAP && base < counts.length && ++counts[base] > bestCount) {
+                        bestCount = counts[base];
+                        consensus[column] = (byte)base;
+                    }
+                }
+                for (StringBuilder row : rows) {
+                    if (row != null && row.charAt(column) < counts.length) {
+                        counts[row.charAt(column)] = 0;
+                    }
+                }
+            }
+            return consensus;
+        }
+
+        /**
+         * Adds a read.  Read residues that overhang either end of the contig or that were inserted between consensus
+         * columns get new columns, which are gaps in every other read.
+         */
+        private void add(Overlap overlap) {
+            int width = getWidth();
+            StringBuilder[] newRows = new StringBuilder[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] != null) {
+                    newRows[i] = new StringBuilder(width + overlap.read.length);
+                }
+            }
+            newRows[overlap.readIndex] = new StringBuilder(width + overlap.read.length);
+
+            int firstAlignedResidue = -1;
+            for (int readResidue : overlap.alignedReadIndices) {
+                if (readResidue != -1) {
+                    firstAlignedResidue = readResidue;
+                    break;
+                }
+            }
+
+            // The alignment only leaves residues before the first aligned residue when it reached the start of the contig
+            int nextResidue = 0;
+            while (nextResidue < firstAlignedResidue) {
+                addColumn(newRows, -1, overlap, nextResidue++);
+            }
+            for (int column = 0; column < width; column++) {
+                int readResidue = overlap.alignedReadIndices[column];
+                if (readResidue == -1) {
+                    addColumn(newRows, column, overlap, -1);
+                } else {
+                    while (nextResidue < readResidue) {
+                        addColumn(newRows, -1, overlap, nextResidue++);
+                    }
+                    addColumn(newRows, column, overlap, nextResidue++);
+                }
+            }
+            // Likewise residues after the last aligned residue overhang the end of the contig
+            while (nextResidue < overlap.read.length) {
+                addColumn(newRows, -1, overlap, nextResidue++);
+            }
+
+            System.arraycopy(newRows, 0, rows, 0, rows.length);
+        }
+
+        /**
+         * @param column The existing column to copy from the placed reads, or -1 for a new column of gaps.
+         * @param readResidue The residue of the read being added to put in the column, or -1 for a gap.
+         */
+        private void addColumn(StringBuilder[] newRows, int column, Overlap overlap, int readResidue) {
+            for (int i = 0; i < rows.length; i++) {
+                if (i == overlap.readIndex) {
+                    newRows[i].append(readResidue == -1 ? GAP : (char)overlap.read[readResidue]);
+                } else if (rows[i] != null) {
+                    newRows[i].append(column == -1 ? GAP : rows[i].charAt(column));
+                }
+            }
+        }
+
+        private List<char[]> getRows() {
+            List<char[]> result = new ArrayList<char[]>(rows.length);
+            for (StringBuilder row : rows) {
+                char[] bases = new char[row.length()];
+                row.getChars(0, row.length(), bases, 0);
+                result.add(bases);
+            }
+            return result;
+        }
+    }
+}
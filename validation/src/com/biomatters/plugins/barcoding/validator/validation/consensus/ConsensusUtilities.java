@@ -7,12 +7,13 @@ import com.biomatters.geneious.publicapi.documents.sequence.SequenceDocument;
 import com.biomatters.geneious.publicapi.implementations.sequence.DefaultNucleotideGraphSequence;
 import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
 import com.biomatters.geneious.publicapi.utilities.StringUtilities;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
+import com.biomatters.plugins.barcoding.validator.validation.assembly.ContigLayout;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.SequenceRead;
 import jebl.evolution.sequences.NucleotideState;
 import jebl.evolution.sequences.Nucleotides;
 import jebl.evolution.sequences.State;
 
+import java.nio.CharBuffer;
 import java.util.*;
 
 /**
@@ -21,6 +22,68 @@ import java.util.*;
  */
 public class ConsensusUtilities {
 
+    private static final String CONSENSUS_NAME = "Consensus";
+
+    private static final int GAP = -1;
+    private static final int UNKNOWN = -2;
+
+    /* Lookups built once from jebl's nucleotide states so that each column can be tallied using primitive arrays. */
+    private static final Map<State, Integer> STATE_TO_INDEX = new HashMap<State, Integer>();
+    private static final int[] CHARACTER_TO_STATE_INDEX = new int[128];
+    private static final int[] STATE_CANONICAL_MASKS;
+    private static final int[] STATE_OCCURRENCES;
+    private static final String[] CANONICAL_MASK_TO_BASE;
+    private static final List<State> CANONICAL_STATES = new ArrayList<State>();
+
+    static {
+        List<State> states = new ArrayList<State>(Nucleotides.getStates());
+        for (char character = 0; character < CHARACTER_TO_STATE_INDEX.length; character++) {
+            NucleotideState state = Nucleotides.getState(character);
+            if (state != null) {
+                states.add(state);
+            }
+        }
+
+        Map<State, Integer> canonicalStateToIndex = new HashMap<State, Integer>();
+        for (State state : states) {
+            if (!STATE_TO_INDEX.containsKey(state)) {
+                STATE_TO_INDEX.put(state, STATE_TO_INDEX.size());
+            }
+            for (State canonicalState : state.getCanonicalStates()) {
+                if (!canonicalStateToIndex.containsKey(canonicalState)) {
+                    canonicalStateToIndex.put(canonicalState, CANONICAL_STATES.size());
+                    CANONICAL_STATES.add(canonicalState);
+                }
+            }
+        }
+
+        STATE_CANONICAL_MASKS = new int[STATE_TO_INDEX.size()];
+        for (Map.Entry<State, Integer> entry : STATE_TO_INDEX.entrySet()) {
+            for (State canonicalState : entry.getKey().getCanonicalStates()) {
+                STATE_CANONICAL_MASKS[entry.getValue()] |= 1 << canonicalStateToIndex.get(canonicalState);
+            }
+        }
+
+        // Only states listed by Nucleotides.getStates() contribute to the canonical state totals
+        STATE_OCCURRENCES = new int[STATE_TO_INDEX.size()];
+        for (State state : Nucleotides.getStates()) {
+            STATE_OCCURRENCES[STATE_TO_INDEX.get(state)]++;
+        }
+
+        CANONICAL_MASK_TO_BASE = new String[1 << CANONICAL_STATES.size()];
+        for (int mask = 0; mask < CANONICAL_MASK_TO_BASE.length; mask++) {
+            try {
+                CANONICAL_MASK_TO_BASE[mask] = getNucleotideStateForStates(getCanonicalStatesForMask(mask)).toString();
+            } catch (IllegalStateException e) {
+                // Left as null.  The exception is thrown again if a column ever produces this combination.
+            }
+        }
+
+        for (char character = 0; character < CHARACTER_TO_STATE_INDEX.length; character++) {
+            CHARACTER_TO_STATE_INDEX[character] = getStateIndex(Nucleotides.getState(character));
+        }
+    }
+
     /**
      * Generates a consensus from a contig assembly using the quality values of the aligned sequences.
      *
@@ -30,111 +93,239 @@ public class ConsensusUtilities {
     public static NucleotideGraphSequenceDocument getConsensus(SequenceAlignmentDocument contigAssembly) throws DocumentOperationException {
 
         int totalLength = contigAssembly.getSequence(0).getSequenceLength();
+        int numSeqs = contigAssembly.getNumberOfSequences();
+
+        int[][] stateIndices = new int[numSeqs][];
+        int[][] qualities = new int[numSeqs][];
+        for (int j = 0; j < numSeqs; j++) {
+            SequenceDocument sequence = contigAssembly.getSequence(j);
+            if (!(sequence instanceof NucleotideGraphSequenceDocument) || !((NucleotideGraphSequenceDocument) sequence).hasSequenceQualities()) {
+                throw new DocumentOperationException("Alignment is missing quality values for " + sequence.getName() + " (index = " + j + ")");
+            }
+            stateIndices[j] = getStateIndices(sequence.getCharSequence(), sequence.getName(), totalLength);
+            qualities[j] = getQualities((NucleotideGraphSequenceDocument) sequence, totalLength);
+        }
 
         StringBuilder sequenceBuilder = new StringBuilder(totalLength);
         int[] quality = new int[totalLength];
-
-        for (int i = 0; i < totalLength; i++) {
-            ConsensusPosition position = getBaseForPosition(contigAssembly, i);
-            sequenceBuilder.append(position.base);
-            quality[i] = position.quality;
-        }
+        tallyColumns(stateIndices, qualities, sequenceBuilder, quality);
 
         DefaultNucleotideGraph graph = new DefaultNucleotideGraph(null, null, quality, sequenceBuilder.length(), 0);
 
-        return new DefaultNucleotideGraphSequence("Consensus", "", sequenceBuilder.toString(), new Date(), graph);
+        return new DefaultNucleotideGraphSequence(CONSENSUS_NAME, "", sequenceBuilder.toString(), new Date(), graph);
     }
 
-    private static class ConsensusPosition {
-        String base;
-        int quality;
+    /**
+     * Generates a consensus from the layout of a contig using the quality values of the reads.  The same consensus is
+     * generated as by {@link #getConsensus(SequenceAlignmentDocument)} for the document of the contig.
+     *
+     * @param contig The layout of the contig to get the consensus of.  MUST have quality values for reads.
+     * @return The consensus.
+     */
+    public static SequenceRead getConsensus(ContigLayout contig) throws DocumentOperationException {
+        List<SequenceRead> reads = contig.getReads();
+        List<char[]> alignedReads = contig.getAlignedReads();
 
-        private ConsensusPosition(String base, int quality) {
-            this.base = base;
-            this.quality = quality;
+        int totalLength = alignedReads.get(0).length;
+        int numSeqs = reads.size();
+
+        int[][] stateIndices = new int[numSeqs][];
+        int[][] qualities = new int[numSeqs][];
+        for (int j = 0; j < numSeqs; j++) {
+            SequenceRead read = reads.get(j);
+            if (!read.hasQualities()) {
+                throw new DocumentOperationException("Alignment is missing quality values for " + read.getName() + " (index = " + j + ")");
+            }
+            stateIndices[j] = getStateIndices(CharBuffer.wrap(alignedReads.get(j)), read.getName(), totalLength);
+            qualities[j] = getQualities(read, stateIndices[j]);
         }
+
+        StringBuilder sequenceBuilder = new StringBuilder(totalLength);
+        int[] quality = new int[totalLength];
+        tallyColumns(stateIndices, qualities, sequenceBuilder, quality);
+
+        return new SequenceRead(CONSENSUS_NAME, sequenceBuilder, quality);
     }
 
-    private static ConsensusPosition getBaseForPosition(SequenceAlignmentDocument contigAssembly, int index) throws DocumentOperationException {
-        Map<State, Integer> stateToTotalQuality = getStateToTotalQualityMapForPosition(contigAssembly, index);
-        Map<State, Integer> canonicalStatesToTotalQuality = getCanonicalStatesToTotalQuality(stateToTotalQuality);
-
-        Set<State> statesWithMax = new HashSet<State>();
-        Integer max = 0;
-        for (Map.Entry<State, Integer> entry : canonicalStatesToTotalQuality.entrySet()) {
-            int total = entry.getValue();
-            if (total > max) {
-                statesWithMax.clear();
-                max = total;
-                statesWithMax.add(entry.getKey());
-            } else if (total == max) {
-                statesWithMax.add(entry.getKey());
-            }
-        }
-
-        int quality = 0;
-        for (Map.Entry<State, Integer> entry : stateToTotalQuality.entrySet()) {
-            boolean contributes = false;
-            for (State state : entry.getKey().getCanonicalStates()) {
-                if(statesWithMax.contains(state)) {
-                    contributes = true;
-                }
+    /**
+     * Appends the consensus base of each alignment column to the builder and stores its quality.
+     */
+    private static void tallyColumns(int[][] stateIndices, int[][] qualities, StringBuilder sequenceBuilder, int[] quality) {
+        ColumnTally tally = new ColumnTally(stateIndices.length);
+        for (int i = 0; i < quality.length; i++) {
+            tally.reset();
+            for (int j = 0; j < stateIndices.length; j++) {
+                tally.add(stateIndices[j][i], qualities[j][i]);
+            }
+            sequenceBuilder.append(tally.getBase());
+            quality[i] = tally.getQuality();
+        }
+    }
+
+    /**
+     * Totals the quality of each nucleotide state in a single alignment column.  The buffers are reused for every
+     * column.
+     */
+    private static class ColumnTally {
+        private final int[] stateTotals = new int[STATE_CANONICAL_MASKS.length];
+        private final boolean[] statePresent = new boolean[STATE_CANONICAL_MASKS.length];
+        private final int[] canonicalTotals = new int[CANONICAL_STATES.size()];
+        private final int[] presentStates;
+        private int numPresentStates;
+        private int canonicalMaskWithMax;
+
+        private ColumnTally(int maxStatesPerColumn) {
+            presentStates = new int[Math.min(maxStatesPerColumn, stateTotals.length)];
+        }
+
+        private void reset() {
+            for (int i = 0; i < numPresentStates; i++) {
+                stateTotals[presentStates[i]] = 0;
+                statePresent[presentStates[i]] = false;
             }
+            numPresentStates = 0;
+            canonicalMaskWithMax = -1;
+        }
 
-            if(contributes) {
-                quality += entry.getValue();
-            } else {
-                quality -= entry.getValue();
+        private void add(int stateIndex, int quality) {
+            if (stateIndex == GAP) {
+                return;
             }
+            if (!statePresent[stateIndex]) {
+                statePresent[stateIndex] = true;
+                presentStates[numPresentStates++] = stateIndex;
+            }
+            stateTotals[stateIndex] += quality;
         }
 
-        return new ConsensusPosition(getNucleotideStateForStates(statesWithMax).toString(), quality);
-    }
+        /**
+         * @return Bit mask of the canonical states that have the highest total quality.  States that are ambiguous
+         * contribute their quality to each of the canonical states they represent.
+         */
+        private int getCanonicalMaskWithMax() {
+            if (canonicalMaskWithMax != -1) {
+                return canonicalMaskWithMax;
+            }
 
-    private static Map<State, Integer> getCanonicalStatesToTotalQuality(Map<State, Integer> stateToTotalQuality) {
-        Map<State, Integer> canonicalStatesToTotalQuality = new HashMap<State, Integer>();
-        for (State state : Nucleotides.getStates()) {
-            Integer qualityForState = stateToTotalQuality.get(state);
-            if(qualityForState == null) {
-                continue;
+            Arrays.fill(canonicalTotals, 0);
+            int presentCanonicalMask = 0;
+            for (int i = 0; i < numPresentStates; i++) {
+                int stateIndex = presentStates[i];
+                int occurrences = STATE_OCCURRENCES[stateIndex];
+                if (occurrences == 0) {
+                    continue;
+                }
+                int mask = STATE_CANONICAL_MASKS[stateIndex];
+                presentCanonicalMask |= mask;
+                for (int canonicalIndex = 0; canonicalIndex < canonicalTotals.length; canonicalIndex++) {
+                    if ((mask & (1 << canonicalIndex)) != 0) {
+                        canonicalTotals[canonicalIndex] += occurrences * stateTotals[stateIndex];
+                    }
+                }
+            }
+
+            int max = 0;
+            int maskWithMax = 0;
+            for (int canonicalIndex = 0; canonicalIndex < canonicalTotals.length; canonicalIndex++) {
+                if ((presentCanonicalMask & (1 << canonicalIndex)) == 0) {
+                    continue;
+                }
+                int total = canonicalTotals[canonicalIndex];
+                if (total > max) {
+                    max = total;
+                    maskWithMax = 1 << canonicalIndex;
+                } else if (total == max) {
+                    maskWithMax |= 1 << canonicalIndex;
+                }
+            }
+            canonicalMaskWithMax = maskWithMax;
+            return canonicalMaskWithMax;
+        }
+
+        private String getBase() {
+            int mask = getCanonicalMaskWithMax();
+            String base = CANONICAL_MASK_TO_BASE[mask];
+            if (base == null) {
+                return getNucleotideStateForStates(getCanonicalStatesForMask(mask)).toString();
             }
-            for (State _canonicalState : state.getCanonicalStates()) {
-                NucleotideState canonicalState = (NucleotideState) _canonicalState;
-                Integer current = canonicalStatesToTotalQuality.get(canonicalState);
-                if(current == null) {
-                    canonicalStatesToTotalQuality.put(canonicalState, qualityForState);
+            return base;
+        }
+
+        private int getQuality() {
+            int mask = getCanonicalMaskWithMax();
+            int quality = 0;
+            for (int i = 0; i < numPresentStates; i++) {
+                int stateIndex = presentStates[i];
+                if ((STATE_CANONICAL_MASKS[stateIndex] & mask) != 0) {
+                    quality += stateTotals[stateIndex];
                 } else {
-                    canonicalStatesToTotalQuality.put(canonicalState, current + qualityForState);
+                    quality -= stateTotals[stateIndex];
                 }
             }
+            return quality;
         }
-        return canonicalStatesToTotalQuality;
     }
 
-    private static Map<State, Integer> getStateToTotalQualityMapForPosition(SequenceAlignmentDocument contigAssembly, int indexInAssembly) throws DocumentOperationException {
-        int numSeqs = contigAssembly.getNumberOfSequences();
-        Multimap<NucleotideState, Integer> stateToQuality = ArrayListMultimap.create();
-        for (int j = 0; j < numSeqs; j++) {
-            SequenceDocument sequence = contigAssembly.getSequence(j);
-            if (sequence instanceof NucleotideGraphSequenceDocument && ((NucleotideGraphSequenceDocument) sequence).hasSequenceQualities()) {
-                int qualityValue = ((NucleotideGraphSequenceDocument) sequence).getSequenceQuality(indexInAssembly);
-                NucleotideState state = Nucleotides.getState(sequence.getCharSequence().charAt(indexInAssembly));
-                if(!state.isGap()) {
-                    stateToQuality.put(state, qualityValue);
-                }
-            } else {
-                throw new DocumentOperationException("Alignment is missing quality values for " + sequence.getName() + " (index = " + j + ")");
+    private static int[] getStateIndices(CharSequence charSequence, String name, int length) throws DocumentOperationException {
+        int[] result = new int[length];
+        for (int i = 0; i < length; i++) {
+            char character = charSequence.charAt(i);
+            int stateIndex = character < CHARACTER_TO_STATE_INDEX.length ? CHARACTER_TO_STATE_INDEX[character] : getStateIndex(Nucleotides.getState(character));
+            if (stateIndex == UNKNOWN) {
+                throw new DocumentOperationException("Unrecognized nucleotide '" + character + "' in " + name + " (index = " + i + ")");
             }
+            result[i] = stateIndex;
         }
-        Map<State, Integer> stateToTotalQuality = new HashMap<State, Integer>();
-        for (Map.Entry<NucleotideState, Collection<Integer>> entry : stateToQuality.asMap().entrySet()) {
-            int total = 0;
-            for (Integer toAdd : entry.getValue()) {
-                total += toAdd;
+        return result;
+    }
+
+    private static int[] getQualities(NucleotideGraphSequenceDocument sequence, int length) {
+        int[] result = new int[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = sequence.getSequenceQuality(i);
+        }
+        return result;
+    }
+
+    /**
+     * @param read The read.
+     * @param stateIndices The state indices of the gapped bases of the read.
+     * @return The quality of each gapped base, in the order of the bases of the read.  Gaps have a quality of 0.
+     */
+    private static int[] getQualities(SequenceRead read, int[] stateIndices) throws DocumentOperationException {
+        int[] result = new int[stateIndices.length];
+        int readIndex = 0;
+        for (int i = 0; i < stateIndices.length; i++) {
+            if (stateIndices[i] == GAP) {
+                continue;
+            }
+            if (readIndex == read.getLength()) {
+                throw new DocumentOperationException("Alignment has more bases than the read for " + read.getName());
+            }
+            result[i] = read.getQuality(readIndex++);
+        }
+        return result;
+    }
+
+    private static int getStateIndex(NucleotideState state) {
+        if (state == null) {
+            return UNKNOWN;
+        }
+        if (state.isGap()) {
+            return GAP;
+        }
+        Integer index = STATE_TO_INDEX.get(state);
+        return index == null ? UNKNOWN : index;
+    }
+
+    private static Set<State> getCanonicalStatesForMask(int mask) {
+        Set<State> states = new HashSet<State>();
+        for (int i = 0; i < CANONICAL_STATES.size(); i++) {
+            if ((mask & (1 << i)) != 0) {
+                states.add(CANONICAL_STATES.get(i));
             }
-            stateToTotalQuality.put(entry.getKey(), total);
         }
-        return stateToTotalQuality;
+        return states;
     }
 
     /**
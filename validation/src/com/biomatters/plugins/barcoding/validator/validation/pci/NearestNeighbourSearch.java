@@ -0,0 +1,145 @@
+package com.biomatters.plugins.barcoding.validator.validation.pci;
+
+import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.ConcurrencyUtilities;
+import jebl.util.ProgressListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Finds the nearest neighbours of query sequences amongst a set of target sequences by p-distance.  Only the rows of
+ * the distance matrix belonging to the queries are calculated.  The rows are split into tiles of a few queries by
+ * a block of targets that fits in cache, and the tiles are evaluated in parallel.  Each tile is reduced to the nearest
+ * neighbours within it as soon as it is calculated so the full matrix is never held in memory.
+ */
+class NearestNeighbourSearch {
+
+    private NearestNeighbourSearch() {
+    }
+
+    static final int QUERIES_PER_TILE = 16;
+    static final int TARGETS_PER_TILE = 1024;
+
+    /**
+     * @param queries The query sequences encoded by {@link PDistanceKernel#encode(CharSequence)}
+     * @param excludedTargets For each query, the index of a target that should not be considered as a neighbour of the
+     *                        query.  Or -1 if every target should be considered.
+     * @param targets The target sequences encoded by {@link PDistanceKernel#encode(CharSequence)}
+     * @param progressListener to report progress to and to check cancellation status
+     * @return For each query, the indices of the targets with the smallest p-distance to the query in ascending order.
+     * @throws DocumentOperationException if the search is canceled or fails
+     */
+    static int[][] findNearestNeighbours(List<long[]> queries, int[] excludedTargets, List<long[]> targets, ProgressListener progressListener) throws DocumentOperationException {
+        if (excludedTargets.length != queries.size()) {
+            throw new IllegalArgumentException("There must be one excluded target for each query. " + excludedTargets.length + " for " + queries.size() + " queries.");
+        }
+
+        NearestNeighbours[] nearestNeighbours = new NearestNeighbours[queries.size()];
+        for (int i = 0; i < nearestNeighbours.length; i++) {
+            nearestNeighbours[i] = new NearestNeighbours();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<Tile> tiles = new ArrayList<Tile>();
+            List<Future<NearestNeighbours[]>> pendingTiles = new ArrayList<Future<NearestNeighbours[]>>();
+            for (int firstQuery = 0; firstQuery < queries.size(); firstQuery += QUERIES_PER_TILE) {
+                for (int firstTarget = 0; firstTarget < targets.size(); firstTarget += TARGETS_PER_TILE) {
+                    Tile tile = new Tile(queries, excludedTargets, targets, firstQuery, firstTarget);
+                    tiles.add(tile);
+                    pendingTiles.add(executor.submit(tile));
+                }
+            }
+
+            // Tiles are merged in submission order so that the neighbours of each query stay in ascending order
+            for (int i = 0; i < tiles.size(); i++) {
+                progressListener.setProgress(i, tiles.size());
+                NearestNeighbours[] tileNeighbours = ConcurrencyUtilities.waitForResult(pendingTiles.get(i), progressListener, "Failed to calculate PCI");
+                for (int row = 0; row < tileNeighbours.length; row++) {
+                    nearestNeighbours[tiles.get(i).firstQuery + row].merge(tileNeighbours[row]);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int[][] result = new int[nearestNeighbours.length][];
+        for (int i = 0; i < nearestNeighbours.length; i++) {
+            result[i] = nearestNeighbours[i].getTargets();
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the distances between a block of queries and a block of targets.
+     */
+    private static class Tile implements Callable<NearestNeighbours[]> {
+        private final List<long[]> queries;
+        private final int[] excludedTargets;
+        private final List<long[]> targets;
+        private final int firstQuery;
+        private final int firstTarget;
+
+        private Tile(List<long[]> queries, int[] excludedTargets, List<long[]> targets, int firstQuery, int firstTarget) {
+            this.queries = queries;
+            this.excludedTargets = excludedTargets;
+            this.targets = targets;
+            this.firstQuery = firstQuery;
+            this.firstTarget = firstTarget;
+        }
+
+        @Override
+        public NearestNeighbours[] call() throws Exception {
+            int endQuery = Math.min(firstQuery + QUERIES_PER_TILE, queries.size());
+            int endTarget = Math.min(firstTarget + TARGETS_PER_TILE, targets.size());
+
+            NearestNeighbours[] result = new NearestNeighbours[endQuery - firstQuery];
+            for (int query = firstQuery; query < endQuery; query++) {
+                long[] querySequence = queries.get(query);
+                NearestNeighbours nearestNeighbours = new NearestNeighbours();
+                for (int target = firstTarget; target < endTarget; target++) {
+                    if (target != excludedTargets[query]) {
+                        nearestNeighbours.add(target, PDistanceKernel.getPDistance(querySequence, targets.get(target)));
+                    }
+                }
+                result[query - firstQuery] = nearestNeighbours;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The targets found so far that are closest to a query.  Targets must be added in ascending order.
+     */
+    private static class NearestNeighbours {
+        private double smallestDistance = Double.MAX_VALUE;
+        private int[] targets = new int[1];
+        private int numTargets = 0;
+
+        private void add(int target, double distance) {
+            if (distance < smallestDistance) {
+                smallestDistance = distance;
+                numTargets = 0;
+            }
+            if (distance == smallestDistance) {
+                if (numTargets == targets.length) {
+                    targets = Arrays.copyOf(targets, 2 * numTargets);
+                }
+                targets[numTargets++] = target;
+            }
+        }
+
+        private void merge(NearestNeighbours other) {
+            for (int i = 0; i < other.numTargets; i++) {
+                add(other.targets[i], other.smallestDistance);
+            }
+        }
+
+        private int[] getTargets() {
+            return Arrays.copyOf(targets, numTargets);
+        }
+    }
+}
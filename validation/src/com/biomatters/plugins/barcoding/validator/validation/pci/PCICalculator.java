@@ -8,26 +8,20 @@ import com.biomatters.geneious.publicapi.documents.URN;
 import com.biomatters.geneious.publicapi.documents.sequence.NucleotideSequenceDocument;
 import com.biomatters.geneious.publicapi.documents.sequence.SequenceAlignmentDocument;
 import com.biomatters.geneious.publicapi.documents.sequence.SequenceDocument;
+import com.biomatters.geneious.publicapi.implementations.DefaultAlignmentDocument;
+import com.biomatters.geneious.publicapi.implementations.sequence.DefaultNucleotideSequence;
 import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
 import com.biomatters.geneious.publicapi.plugin.Options;
-import com.biomatters.geneious.publicapi.utilities.Execution;
-import com.biomatters.geneious.publicapi.utilities.FileUtilities;
-import com.biomatters.geneious.publicapi.utilities.GeneralUtilities;
-import com.biomatters.geneious.publicapi.utilities.StringUtilities;
 import com.biomatters.plugins.barcoding.validator.validation.ValidationCallback;
-import com.biomatters.plugins.barcoding.validator.validation.utilities.AlignmentUtilities;
-import com.biomatters.plugins.barcoding.validator.validation.utilities.ImportUtilities;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
-import jebl.util.Cancelable;
 import jebl.util.CompositeProgressListener;
 import jebl.util.ProgressListener;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.io.*;
+import java.io.File;
 import java.util.*;
-import java.util.regex.Pattern;
 
 /**
  * @author Matthew Cheung
@@ -36,19 +30,26 @@ import java.util.regex.Pattern;
 public class PCICalculator {
 
     /**
-     * Calculates the PCI values for new samples compared with a reference barcode database.
+     * Calculates the PCI values for new samples compared with a reference barcode database.  The reference barcodes are
+     * aligned once and kept in an index next to the barcodes file.  New samples are then aligned against the consensus
+     * of the reference alignment rather than being aligned together with the reference barcodes.  This means new samples
+     * cannot change how the reference barcodes are aligned with each other, and any residues of a new sample that do not
+     * line up with a residue of a reference barcode are left out.  See {@link ReferenceBarcodeIndex}
      *
      * @param sequenceUrns The document {@link com.biomatters.geneious.publicapi.documents.URN}s of the new samples
      * @param options See {@link PCICalculatorOptions}
+     * @param alignmentOptions The options used to align the reference barcodes when the index needs to be built
      * @param progressListener to report progress to and to check cancellation status
+     * @param callback The alignment of the reference barcodes and new samples that the PCI values were calculated from is
+     *                 added to this
      * @return a map from {@link URN} to PCI value.  Or null  if the calculation was not run.
      * @throws DocumentOperationException if something goes wrong running the PCI calculation
      */
     public static Map<URN, Double> calculate(Map<URN, GenusAndSpecies> sequenceUrns, PCICalculatorOptions options, Options alignmentOptions, ProgressListener progressListener, ValidationCallback callback) throws DocumentOperationException {
 
-        CompositeProgressListener overallProgress = new CompositeProgressListener(progressListener, 0.1, 0.6, 0.3);
+        CompositeProgressListener overallProgress = new CompositeProgressListener(progressListener, 0.6, 0.1, 0.3);
 
-        overallProgress.beginSubtask("Importing reference barcodes");
+        overallProgress.beginSubtask("Loading reference barcodes");
         String pathToBarcodesFile = options.getPathToBarcodesFile();
         if(pathToBarcodesFile.trim().isEmpty()) {
             return null;
@@ -57,6 +58,10 @@ public class PCICalculator {
         if(!barcodesFile.exists()) {
             throw new DocumentOperationException("Barcodes file for PCI validation did not exist: " + barcodesFile.getAbsolutePath());
         }
+        ReferenceBarcodeIndex referenceIndex = ReferenceBarcodeIndex.getIndex(barcodesFile, alignmentOptions, overallProgress);
+        if(overallProgress.isCanceled()) {
+            throw new DocumentOperationException.Canceled();
+        }
 
         BiMap<String, AnnotatedPluginDocument> newSamples = HashBiMap.create();
         for (Map.Entry<URN, GenusAndSpecies> entry : sequenceUrns.entrySet()) {
@@ -75,8 +80,15 @@ public class PCICalculator {
             newSamples.put(uidForNewSample, apd);
         }
 
-        Map<String, NucleotideSequenceDocument> toAlign = new HashMap<String, NucleotideSequenceDocument>();
+        overallProgress.beginSubtask("Aligning new samples to reference barcodes");
+        List<String> uids = new ArrayList<String>(referenceIndex.getUids());
+        List<CharSequence> alignedSequences = new ArrayList<CharSequence>(referenceIndex.getAlignedSequences());
+        Set<String> referenceUids = new HashSet<String>(uids);
         for (Map.Entry<String, AnnotatedPluginDocument> entry : newSamples.entrySet()) {
+            if(overallProgress.isCanceled()) {
+                throw new DocumentOperationException.Canceled();
+            }
+
             AnnotatedPluginDocument apd = entry.getValue();
             PluginDocument seqDoc = apd.getDocumentOrNull();
             if(seqDoc == null) {
@@ -84,195 +96,99 @@ public class PCICalculator {
             } else if(!(seqDoc instanceof NucleotideSequenceDocument)) {
                 throw new IllegalStateException("Input document " + apd.getName() + " was not a NucleotideSequenceDocument");
             }
-            toAlign.put(entry.getKey(), (NucleotideSequenceDocument)seqDoc);
-        }
-
-
-        List<NucleotideSequenceDocument> imported = ImportUtilities.importNucleotidesFastaFile(barcodesFile);
-        for (NucleotideSequenceDocument importedSeq : imported) {
-            String uid = importedSeq.getName();
-            if(!Pattern.matches(BARCODE_DEF_LINE_REGEX, uid)) {
-                throw new DocumentOperationException(uid + " in Barcodes file for PCI is not in the correct format.  Needs to match Genus_Species_ID");
-            }
-            if(toAlign.containsKey(uid)) {
-                throw new DocumentOperationException("Barcodes file for PCI contains duplicate UID: " + uid);
+            if(referenceUids.contains(entry.getKey())) {
+                throw new DocumentOperationException("Barcodes file for PCI contains duplicate UID: " + entry.getKey());
             }
-            toAlign.put(uid, importedSeq);
-        }
-        if(overallProgress.isCanceled()) {
-            throw new DocumentOperationException.Canceled();
-        }
-
-        overallProgress.beginSubtask();
-        SequenceAlignmentDocument alignment = AlignmentUtilities.performAlignment(
-                new ArrayList<NucleotideSequenceDocument>(toAlign.values()),
-                alignmentOptions, overallProgress);
-        callback.addPluginDocument(alignment, ProgressListener.EMPTY);
-        if(overallProgress.isCanceled()) {
-            throw new DocumentOperationException.Canceled();
+            uids.add(entry.getKey());
+            alignedSequences.add(referenceIndex.align(((NucleotideSequenceDocument)seqDoc).getCharSequence()));
         }
+        callback.addPluginDocument(createAlignment(uids, alignedSequences, newSamples), ProgressListener.EMPTY);
 
-        return parseAlignment(alignment, newSamples, overallProgress);
+        return calculatePCI(uids, alignedSequences, newSamples, overallProgress);
     }
 
-    public static Map<URN, Double> parseAlignment(SequenceAlignmentDocument alignment, BiMap<String, AnnotatedPluginDocument> newSamples, CompositeProgressListener overallProgress) throws DocumentOperationException {
-        overallProgress.beginSubtask("Computing PCI values");
-        try {
-            File inputAlignmentFile = createPciInputFile(alignment, newSamples.inverse());
-            File newUidFile = createNewUidFile(newSamples.keySet());
-            File outputFile = runPci(inputAlignmentFile, newUidFile, overallProgress);
-            return getPciScoresForDocuments(newSamples, outputFile);
-        } catch (IOException e) {
-            throw new DocumentOperationException("Failed to write out alignment for input to PCI: " + e.getMessage(), e);
-        } catch (PciValidationException e) {
-            Dialogs.showMessageDialog("Encountered the following error while attempting to calculate PCI values: " + e.getMessage(), "Failed to Calculate PCI Values");
-            return null;
-        }
-    }
-
-    private static Map<URN, Double> getPciScoresForDocuments(Map<String, AnnotatedPluginDocument> newSamples, File outputFile) throws IOException, PciValidationException {
-        Map<String, Double> scores = getPDistancesFromFile(outputFile, newSamples.keySet());
-        Map<URN, Double> result = new HashMap<URN, Double>();
-        for (String uid : newSamples.keySet()) {
-            result.put(newSamples.get(uid).getURN(), scores.get(uid));
-        }
-        return result;
-    }
-
-    private static Map<String, Double> getPDistancesFromFile(File outputFile, Collection<String> uids) throws IOException, PciValidationException {
-        Map<String, Double> result = new HashMap<String, Double>();
-
-        BufferedReader reader = new BufferedReader(new FileReader(outputFile));
-        try {
-            String currentLine;
-            while ((currentLine = reader.readLine()) != null) {
-                String[] lineParts = currentLine.trim().split("\\s+");
-                if(lineParts.length != 2) {
-                    continue;
-                }
-                String lineUid = lineParts[0];
-                if(uids.contains(lineUid)) {
-                    try {
-                        result.put(lineUid, Double.parseDouble(lineParts[1]));
-                    } catch (NumberFormatException e) {
-                        throw new PciValidationException("PCI program produced invalid output.  " + lineParts[1] + " was not a numerical value.", e);
-                    }
-                }
-            }
-        } finally {
-            GeneralUtilities.attemptClose(reader);
-        }
-        return result;
+    /**
+     * Creates an alignment document of the sequences PCI is calculated from.  The new samples reference their documents
+     * so that the alignment can be given to {@link #parseAlignment(SequenceAlignmentDocument, BiMap, CompositeProgressListener)}
+     * to calculate the PCI values again.
+     *
+     * @param uids The UIDs of the reference barcodes followed by the UIDs of the new samples
+     * @param alignedSequences The aligned sequences in the same order as the UIDs
+     * @param newSamples The new samples by UID
+     * @return The alignment
+     */
+    static SequenceAlignmentDocument createAlignment(List<String> uids, List<CharSequence> alignedSequences, BiMap<String, AnnotatedPluginDocument> newSamples) {
+        List<SequenceDocument> sequences = new ArrayList<SequenceDocument>(uids.size());
+        List<SequenceAlignmentDocument.ReferencedSequence> referencedSequences = new ArrayList<SequenceAlignmentDocument.ReferencedSequence>(uids.size());
+        for (int i = 0; i < uids.size(); i++) {
+            String uid = uids.get(i);
+            AnnotatedPluginDocument newSample = newSamples.get(uid);
+            String ungappedSequence = alignedSequences.get(i).toString().replace("-", "");
+            sequences.add(new DefaultNucleotideSequence(newSample == null ? uid : newSample.getName(), ungappedSequence));
+            referencedSequences.add(newSample == null ? null : new SequenceAlignmentDocument.ReferencedSequence(newSample));
+        }
+
+        return new DefaultAlignmentDocument(
+                sequences.toArray(new SequenceDocument[sequences.size()]),
+                referencedSequences,
+                alignedSequences.toArray(new CharSequence[alignedSequences.size()]),
+                null, null, "PCI Alignment",
+                ProgressListener.EMPTY
+        );
     }
 
     /**
-     *  An error that occurred while running the PCI program and parsing the output.
+     * Calculates the PCI values of new samples from an existing alignment, such as one created by
+     * {@link #calculate(Map, PCICalculatorOptions, Options, ProgressListener, ValidationCallback)}.  Sequences that
+     * reference one of the new samples are the new samples.  Every other sequence is a reference barcode, with the UID
+     * given by its name.
+     *
+     * @param alignment The alignment of the reference barcodes and new samples
+     * @param newSamples The new samples by UID
+     * @param overallProgress to report progress to and to check cancellation status
+     * @return a map from {@link URN} to PCI value.  Or null if the calculation failed.
+     * @throws DocumentOperationException if something goes wrong running the PCI calculation
      */
-    private static class PciValidationException extends Exception {
-        public PciValidationException(String message) {
-            super(message);
+    public static Map<URN, Double> parseAlignment(SequenceAlignmentDocument alignment, BiMap<String, AnnotatedPluginDocument> newSamples, CompositeProgressListener overallProgress) throws DocumentOperationException {
+        Map<AnnotatedPluginDocument, String> renameMap = newSamples.inverse();
+        List<String> uids = new ArrayList<String>();
+        List<CharSequence> alignedSequences = new ArrayList<CharSequence>();
+        for (int i = 0; i < alignment.getNumberOfSequences(); i++) {
+            AnnotatedPluginDocument refDoc = alignment.getReferencedDocument(i);
+            SequenceDocument alignedSequence = alignment.getSequence(i);
+            String uid = refDoc == null ? null : renameMap.get(refDoc);
+            if(uid == null) {
+                uid = getUidFromName(alignedSequence.getName());
+            }
+            uids.add(uid);
+            alignedSequences.add(alignedSequence.getCharSequence());
         }
 
-        public PciValidationException(String message, Throwable cause) {
-            super(message, cause);
-        }
+        return calculatePCI(uids, alignedSequences, newSamples, overallProgress);
     }
 
-    private static File runPci(File inputAlignmentFile, File newUidFile, Cancelable cancelable) throws IOException, DocumentOperationException, PciValidationException {
-        File output = FileUtilities.createTempFile("output", ".txt", false);
-
-        File programFolder = FileUtilities.getResourceForClass(PCICalculator.class, "program");
-        if(!programFolder.exists()) {
-            throw new DocumentOperationException("PCI program missing from Barcode Validator plugin.  Please re-install.  " +
-                    "Contact Biomatters if this still occurs after re-installing the plugin.");
-        }
-        File validatorScriptFile = new File(programFolder, "validator_pci.pl");
-
-        final StringBuilder stdErrBuilder = new StringBuilder();
-
-        Execution execution = new Execution(new String[]{
-                "perl",
-                validatorScriptFile.getAbsolutePath(),
-                "-i",
-                inputAlignmentFile.getAbsolutePath(),
-                "-o",
-                output.getAbsolutePath(),
-                "-s",
-                newUidFile.getAbsolutePath()
-        }, cancelable, new Execution.OutputListener() {
-            @Override
-            public void stdoutWritten(String s) {
-            }
-
-            @Override
-            public void stderrWritten(String s) {
-                stdErrBuilder.append(s);
-            }
-        }, (String)null, false);
+    static Map<URN, Double> calculatePCI(List<String> uids, List<? extends CharSequence> alignedSequences, BiMap<String, AnnotatedPluginDocument> newSamples, CompositeProgressListener overallProgress) throws DocumentOperationException {
+        overallProgress.beginSubtask("Computing PCI values");
         try {
-            execution.setWorkingDirectory(programFolder.getAbsolutePath());
-            int exitCode = execution.execute();
-            if(exitCode != 0) {
-                throw new PciValidationException("PCI program exited abnormally (exit code = " + exitCode + "): " + stdErrBuilder.toString());
+            Map<String, Double> scores = PCIEngine.calculatePCI(uids, alignedSequences, newSamples.keySet(), overallProgress);
+            Map<URN, Double> result = new HashMap<URN, Double>();
+            for (String uid : newSamples.keySet()) {
+                result.put(newSamples.get(uid).getURN(), scores.get(uid));
             }
-            return output;
-        } catch (InterruptedException e) {
-            throw new DocumentOperationException("Execution of validation was interrupted");
+            return result;
+        } catch (PciValidationException e) {
+            Dialogs.showMessageDialog("Encountered the following error while attempting to calculate PCI values: " + e.getMessage(), "Failed to Calculate PCI Values");
+            return null;
         }
     }
 
     /**
-     * Produces a file that can be used to specify new samples to the PCI program (using -s).
-     *
-     * @param sequenceUids The UIDs of sequences that are new samples
-     * @return A plain text file with the UID of the sequence in it. Obtained by calling {@link #getUid(com.biomatters.plugins.barcoding.validator.validation.pci.PCICalculator.GenusAndSpecies, String)}
-     * @throws IOException if there is a problem writing the file
-     */
-    private static File createNewUidFile(Collection<String> sequenceUids) throws IOException {
-        File newUids = FileUtilities.createTempFile("new", ".txt", false);
-        FileUtilities.writeTextToFile(newUids, StringUtilities.join("\n", sequenceUids));
-        return newUids;
-    }
-
-    private static final String BARCODE_DEF_LINE_REGEX = ".+_.+_.+";
-
-    /**
-     * Generates the input file to the PCI program (-i).  The input file will name sequences using {@link #getUid(com.biomatters.plugins.barcoding.validator.validation.pci.PCICalculator.GenusAndSpecies, String)}
-     *
-     * @param alignment The alignment to write out to the PCI input file
-     * @param renameMap A mapping from {@link com.biomatters.geneious.publicapi.documents.AnnotatedPluginDocument} to the UUID
-     *                  if the sequence name should not be used
-     * @return The PCI input file
-     * @throws IOException if there is a problem writing the file
+     * @param name The name of a reference sequence
+     * @return The UID of the sequence.  The name up to the first white space, as it would be read from the definition
+     * line of a FASTA file.
      */
-    private static File createPciInputFile(SequenceAlignmentDocument alignment, Map<AnnotatedPluginDocument, String> renameMap) throws IOException {
-        File outputFile = FileUtilities.createTempFile("alignment", ".fasta", false);
-        BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile));
-        try {
-            for (int i = 0; i < alignment.getNumberOfSequences(); i++) {
-                AnnotatedPluginDocument refDoc = alignment.getReferencedDocument(i);
-                if (refDoc == null) {
-                    continue;
-                }
-
-                SequenceDocument alignedSequence = alignment.getSequence(i);
-                String uid = renameMap.get(refDoc);
-                if(uid == null) {
-                    uid = alignedSequence.getName();
-                }
-
-                writer.write(">" + uid);
-                writer.newLine();
-
-                writer.write(alignedSequence.getSequenceString());
-                writer.newLine();
-            }
-        } finally {
-            GeneralUtilities.attemptClose(writer);
-        }
-
-
-        return outputFile;
+    private static String getUidFromName(String name) {
+        return name.trim().split("\\s+", 2)[0];
     }
 
     public static class GenusAndSpecies {
@@ -3,14 +3,11 @@ package com.biomatters.plugins.barcoding.validator.validation.pci;
 import com.biomatters.geneious.publicapi.documents.XMLSerializationException;
 import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
 import com.biomatters.geneious.publicapi.plugin.Options;
-import com.biomatters.geneious.publicapi.utilities.Execution;
-import jebl.util.ProgressListener;
 import org.jdom.Element;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.File;
-import java.io.IOException;
 
 /**
  * @author Matthew Cheung
@@ -21,18 +18,11 @@ public class PCICalculatorOptions extends Options {
     private FileSelectionOption barcodesSelectionOption;
     private Option barcodesSelectionHelpOption;
 
-    private final boolean canPerformPCICalculation = testRunPerlFromWithinWorkingDirectoryOnCommandLine();
-
     public PCICalculatorOptions(Class cls) throws DocumentOperationException {
         super(cls);
         addBarcodesFileSelectionOption();
         taxonMappingOptions = new TaxonMappingOptions();
         addChildOptions("input", "Genus and Species for Input Barcodes", "", taxonMappingOptions);
-
-        if (!canPerformPCICalculation) {
-            setEnabled(false);
-            addLabel("PCI calculation is disabled as an installation of perl could not be detected.");
-        }
     }
 
     @SuppressWarnings("UnusedDeclaration")
@@ -49,10 +39,6 @@ public class PCICalculatorOptions extends Options {
         barcodesSelectionHelpOption.setVisible(visible);
     }
 
-    public boolean canPerformPCICalculation() {
-        return canPerformPCICalculation;
-    }
-
     private void addBarcodesFileSelectionOption() {
         beginAlignHorizontally(null, false);
 
@@ -66,36 +52,6 @@ public class PCICalculatorOptions extends Options {
         endAlignHorizontally();
     }
 
-    @SuppressWarnings("EmptyCatchBlock")
-    private static boolean testRunPerlFromWithinWorkingDirectoryOnCommandLine() {
-        boolean canRunPerlFromWithinWorkingDirectoryOnCommandLine = false;
-        Execution printPerlVersion = new Execution(
-                new String[] { "perl", "-v" },
-                ProgressListener.EMPTY,
-                new Execution.OutputListener() {
-                    @Override
-                    public void stdoutWritten(String s) {
-                    }
-
-                    @Override
-                    public void stderrWritten(String s) {
-                    }
-                },
-                (String)null,
-                false
-        );
-
-        try {
-            if (printPerlVersion.execute() == 0) {
-                canRunPerlFromWithinWorkingDirectoryOnCommandLine = true;
-            }
-        } catch (InterruptedException e) {
-        } catch (IOException e) {
-        }
-
-        return canRunPerlFromWithinWorkingDirectoryOnCommandLine;
-    }
-
     @Nullable
     public PCICalculator.GenusAndSpecies getGenusAndSpeciesFromLine(String line) {
         String genus = taxonMappingOptions.getGenus(line);
@@ -0,0 +1,197 @@
+package com.biomatters.plugins.barcoding.validator.validation.pci;
+
+import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
+import jebl.util.ProgressListener;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Calculates the PCI (probability of correct identification) of new samples from a multiple sequence alignment of
+ * barcodes.  Produces the same values as the validator_pci.pl program this replaced.
+ * <br/><br/>
+ * Each sequence is identified by a UID in the form Genus_Species_ID.  Sequences are compared case insensitively using
+ * p-distance over the columns where both sequences have one of a, c, g or t.  The PCI of a new sample is the fraction
+ * of its nearest neighbours (excluding itself) that are the same species.  PCI is only calculated for new samples
+ * where the alignment contains another sample of the same species.
+ */
+class PCIEngine {
+
+    private PCIEngine() {
+    }
+
+    private static final Pattern UID_PATTERN = Pattern.compile("([^_]+?)_([^_]+?)_(\\S+)");
+
+    /**
+     * @param uids The UIDs of the sequences in the alignment.  In the form Genus_Species_ID.
+     * @param alignedSequences The aligned sequences, in the same order as the UIDs.  Must all be the same length.
+     * @param newSampleUids The UIDs of the new samples to calculate PCI values for.  Must all be in uids.
+     * @param progressListener to report progress to and to check cancellation status
+     * @return A map from UID to PCI for each new sample that shares its species with another sample in the alignment.
+     * @throws PciValidationException if the input is not valid for calculating PCI values
+     * @throws DocumentOperationException if the calculation is canceled or fails
+     */
+    static Map<String, Double> calculatePCI(List<String> uids, List<? extends CharSequence> alignedSequences, Collection<String> newSampleUids, ProgressListener progressListener) throws PciValidationException, DocumentOperationException {
+        checkInput(uids, alignedSequences, newSampleUids);
+
+        List<Barcode> barcodes = compress(uids, alignedSequences);
+        Set<String> querySampleUids = getSamplesWithNonUniqueSpecies(uids, newSampleUids);
+
+        List<long[]> encodedSequences = new ArrayList<long[]>();
+        List<Barcode> barcodesToQuery = new ArrayList<Barcode>();
+        List<long[]> encodedQueries = new ArrayList<long[]>();
+        int[] excludedBarcodes = new int[barcodes.size()];
+        for (int i = 0; i < barcodes.size(); i++) {
+            Barcode barcode = barcodes.get(i);
+            encodedSequences.add(barcode.encodedSequence);
+            if (!Collections.disjoint(barcode.uids, querySampleUids)) {
+                // A barcode is only excluded from its own neighbours when it represents a single sample.  Otherwise the
+                // other samples that share its sequence are its nearest neighbours.
+                excludedBarcodes[barcodesToQuery.size()] = barcode.uids.size() == 1 ? i : -1;
+                barcodesToQuery.add(barcode);
+                encodedQueries.add(barcode.encodedSequence);
+            }
+        }
+
+        int[][] nearestNeighbours = NearestNeighbourSearch.findNearestNeighbours(encodedQueries, Arrays.copyOf(excludedBarcodes, barcodesToQuery.size()), encodedSequences, progressListener);
+
+        Map<String, Double> result = new HashMap<String, Double>();
+        for (int i = 0; i < barcodesToQuery.size(); i++) {
+            List<String> nearestNeighbourUids = new ArrayList<String>();
+            for (int nearestNeighbour : nearestNeighbours[i]) {
+                nearestNeighbourUids.addAll(barcodes.get(nearestNeighbour).uids);
+            }
+
+            for (String uid : barcodesToQuery.get(i).uids) {
+                if (querySampleUids.contains(uid)) {
+                    result.put(uid, getFractionOfSameSpecies(uid, nearestNeighbourUids));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void checkInput(List<String> uids, List<? extends CharSequence> alignedSequences, Collection<String> newSampleUids) throws PciValidationException {
+        if (uids.size() != alignedSequences.size()) {
+            throw new IllegalArgumentException("There must be one UID for each sequence. " + uids.size() + " UIDs for " + alignedSequences.size() + " sequences.");
+        }
+        if (alignedSequences.size() < 2) {
+            throw new PciValidationException("The alignment must contain at least two sequences.");
+        }
+
+        int length = alignedSequences.get(0).length();
+        for (CharSequence alignedSequence : alignedSequences) {
+            if (alignedSequence.length() != length) {
+                throw new PciValidationException("Including their padding with \"-\", the sequences in the alignment must have equal length.");
+            }
+        }
+
+        Set<String> distinctUids = new HashSet<String>();
+        for (String uid : uids) {
+            if (!UID_PATTERN.matcher(uid).matches()) {
+                throw new PciValidationException(uid + " is not a valid barcode identifier.  Needs to match Genus_Species_ID.");
+            }
+            if (!distinctUids.add(uid)) {
+                throw new PciValidationException("The alignment contains duplicate UID: " + uid);
+            }
+        }
+
+        if (!distinctUids.containsAll(newSampleUids)) {
+            throw new PciValidationException("Some new samples are not in the alignment.");
+        }
+    }
+
+    /**
+     * @return The distinct sequences in the alignment, each with the UIDs of every sample that has that sequence.
+     */
+    private static List<Barcode> compress(List<String> uids, List<? extends CharSequence> alignedSequences) {
+        Map<Barcode, Barcode> distinctBarcodes = new LinkedHashMap<Barcode, Barcode>();
+        for (int i = 0; i < alignedSequences.size(); i++) {
+            Barcode barcode = new Barcode(alignedSequences.get(i));
+            Barcode existing = distinctBarcodes.get(barcode);
+            if (existing == null) {
+                distinctBarcodes.put(barcode, barcode);
+                existing = barcode;
+            }
+            existing.uids.add(uids.get(i));
+        }
+        return new ArrayList<Barcode>(distinctBarcodes.values());
+    }
+
+    /**
+     * @return The new samples whose species has more than one sample in the alignment.
+     */
+    private static Set<String> getSamplesWithNonUniqueSpecies(List<String> uids, Collection<String> newSampleUids) {
+        Map<String, Integer> speciesCounts = new HashMap<String, Integer>();
+        for (String uid : uids) {
+            String species = getSpecies(uid);
+            Integer count = speciesCounts.get(species);
+            speciesCounts.put(species, count == null ? 1 : count + 1);
+        }
+
+        Set<String> result = new HashSet<String>();
+        for (String uid : newSampleUids) {
+            if (speciesCounts.get(getSpecies(uid)) > 1) {
+                result.add(uid);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param uid A valid UID.  In the form Genus_Species_ID.
+     * @return The Genus_Species part of the UID
+     */
+    private static String getSpecies(String uid) {
+        return uid.substring(0, uid.indexOf('_', uid.indexOf('_') + 1));
+    }
+
+    private static double getFractionOfSameSpecies(String queryUid, List<String> nearestNeighbourUids) {
+        String querySpecies = getSpecies(queryUid);
+        int sameSpecies = 0;
+        int total = 0;
+        for (String uid : nearestNeighbourUids) {
+            if (uid.equals(queryUid)) {
+                continue;
+            }
+            total++;
+            if (querySpecies.equals(getSpecies(uid))) {
+                sameSpecies++;
+            }
+        }
+        return (double)sameSpecies / total;
+    }
+
+    /**
+     * An aligned sequence encoded by {@link PDistanceKernel} along with the UIDs of every sample that has the
+     * sequence.  Two barcodes are equal if they have the same encoded sequence.
+     */
+    private static class Barcode {
+        private final List<String> uids = new ArrayList<String>();
+        private final long[] encodedSequence;
+        private final int hashCode;
+
+        private Barcode(CharSequence alignedSequence) {
+            encodedSequence = PDistanceKernel.encode(alignedSequence);
+            hashCode = Arrays.hashCode(encodedSequence);
+        }
+
+        private double getPDistance(Barcode other) {
+            return PDistanceKernel.getPDistance(encodedSequence, other.encodedSequence);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Barcode barcode = (Barcode) o;
+            return Arrays.equals(encodedSequence, barcode.encodedSequence);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
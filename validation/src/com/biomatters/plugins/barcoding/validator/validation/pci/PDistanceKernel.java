@@ -0,0 +1,143 @@
+package com.biomatters.plugins.barcoding.validator.validation.pci;
+
+import com.biomatters.plugins.barcoding.validator.validation.utilities.PackedSequence;
+
+import java.util.Arrays;
+
+/**
+ * Calculates p-distances between aligned nucleotide sequences 32 columns at a time.
+ * <br/><br/>
+ * An aligned sequence is encoded as pairs of longs.  The first long of each pair holds the bases of 32 columns, two
+ * bits per column.  The second is a mask with the low bit of each column set if the column is comparable.  As in the
+ * validator_pci.pl program used previously, only a, c, g and t (in either case) are comparable.  Gaps, U, N and
+ * every other IUPAC ambiguity code are treated as gaps and are not compared.  Non comparable columns have no base bits
+ * set, so sequences of the same length have equal encodings when they match after ignoring case and treating every
+ * non comparable character as a gap.
+ */
+public class PDistanceKernel {
+
+    private PDistanceKernel() {
+    }
+
+    private static final int COLUMNS_PER_WORD = 32;
+
+    private static final int NOT_COMPARABLE = -1;
+    private static final int[] BASE_CODES = new int[128];
+    static {
+        Arrays.fill(BASE_CODES, NOT_COMPARABLE);
+        String bases = "acgt";
+        for (int code = 0; code < bases.length(); code++) {
+            BASE_CODES[bases.charAt(code)] = code;
+            BASE_CODES[Character.toUpperCase(bases.charAt(code))] = code;
+        }
+    }
+
+    /**
+     * @param alignedSequence An aligned nucleotide sequence
+     * @return The encoded sequence to pass to the other methods of this class
+     */
+    public static long[] encode(CharSequence alignedSequence) {
+        if (alignedSequence instanceof PackedSequence) {
+            return encode((PackedSequence)alignedSequence);
+        }
+
+        int length = alignedSequence.length();
+        long[] encoded = createEncoding(length);
+        for (int column = 0; column < length; column++) {
+            encodeColumn(encoded, column, alignedSequence.charAt(column));
+        }
+        return encoded;
+    }
+
+    /**
+     * Encodes a packed sequence 32 columns at a time with {@link PackedSequence#getChars(int, int, char[], int)}, rather
+     * than searching its runs for every column as {@link PackedSequence#charAt(int)} does.
+     *
+     * @param alignedSequence An aligned nucleotide sequence
+     * @return The encoded sequence to pass to the other methods of this class
+     */
+    public static long[] encode(PackedSequence alignedSequence) {
+        int length = alignedSequence.length();
+        long[] encoded = createEncoding(length);
+        char[] residues = new char[COLUMNS_PER_WORD];
+        for (int start = 0; start < length; start += COLUMNS_PER_WORD) {
+            int end = Math.min(length, start + COLUMNS_PER_WORD);
+            alignedSequence.getChars(start, end, residues, 0);
+            for (int column = start; column < end; column++) {
+                encodeColumn(encoded, column, residues[column - start]);
+            }
+        }
+        return encoded;
+    }
+
+    private static long[] createEncoding(int length) {
+        return new long[2 * ((length + COLUMNS_PER_WORD - 1) / COLUMNS_PER_WORD)];
+    }
+
+    private static void encodeColumn(long[] encoded, int column, char residue) {
+        int code = residue < BASE_CODES.length ? BASE_CODES[residue] : NOT_COMPARABLE;
+        if (code != NOT_COMPARABLE) {
+            int word = 2 * (column / COLUMNS_PER_WORD);
+            int shift = 2 * (column % COLUMNS_PER_WORD);
+            encoded[word] |= (long)code << shift;
+            encoded[word + 1] |= 1L << shift;
+        }
+    }
+
+    /**
+     * @return The number of columns where both sequences have a, c, g or t
+     */
+    public static int countComparableSites(long[] first, long[] second) {
+        checkSameLength(first, second);
+        int comparableSites = 0;
+        for (int i = 0; i < first.length; i += 2) {
+            comparableSites += Long.bitCount(first[i + 1] & second[i + 1]);
+        }
+        return comparableSites;
+    }
+
+    /**
+     * @return The number of comparable columns (see {@link #countComparableSites(long[], long[])}) where the sequences
+     * have different bases
+     */
+    public static int countMismatches(long[] first, long[] second) {
+        checkSameLength(first, second);
+        int mismatches = 0;
+        for (int i = 0; i < first.length; i += 2) {
+            mismatches += Long.bitCount(getMismatchMask(first[i], second[i], first[i + 1] & second[i + 1]));
+        }
+        return mismatches;
+    }
+
+    /**
+     * @return The fraction of comparable columns (see {@link #countComparableSites(long[], long[])}) where the
+     * sequences have different bases.  1 if there are no comparable columns.
+     */
+    public static double getPDistance(long[] first, long[] second) {
+        checkSameLength(first, second);
+        int comparableSites = 0;
+        int mismatches = 0;
+        for (int i = 0; i < first.length; i += 2) {
+            long comparable = first[i + 1] & second[i + 1];
+            if (comparable != 0) {
+                comparableSites += Long.bitCount(comparable);
+                mismatches += Long.bitCount(getMismatchMask(first[i], second[i], comparable));
+            }
+        }
+        return comparableSites == 0 ? 1.0 : (double)mismatches / comparableSites;
+    }
+
+    /**
+     * @return The comparable mask with only the low bit of columns where either base bit differs set
+     */
+    private static long getMismatchMask(long firstBases, long secondBases, long comparable) {
+        long difference = firstBases ^ secondBases;
+        return (difference | (difference >>> 1)) & comparable;
+    }
+
+    private static void checkSameLength(long[] first, long[] second) {
+        if (first.length != second.length) {
+            throw new IllegalArgumentException("Sequences must be the same length to calculate p-distance");
+        }
+    }
+}
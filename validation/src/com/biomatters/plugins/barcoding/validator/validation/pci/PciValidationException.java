@@ -0,0 +1,14 @@
+package com.biomatters.plugins.barcoding.validator.validation.pci;
+
+/**
+ *  An error that occurred while calculating PCI values because the input was not valid for the calculation.
+ */
+class PciValidationException extends Exception {
+    public PciValidationException(String message) {
+        super(message);
+    }
+
+    public PciValidationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
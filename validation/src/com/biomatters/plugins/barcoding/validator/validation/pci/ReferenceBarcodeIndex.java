@@ -0,0 +1,288 @@
+package com.biomatters.plugins.barcoding.validator.validation.pci;
+
+import com.biomatters.geneious.publicapi.documents.sequence.NucleotideSequenceDocument;
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceAlignmentDocument;
+import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
+import com.biomatters.geneious.publicapi.plugin.Options;
+import com.biomatters.geneious.publicapi.utilities.GeneralUtilities;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.AlignmentUtilities;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.FastaWriter;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.ImportUtilities;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.PackedSequence;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.PairwiseAligner;
+import jebl.util.ProgressListener;
+import org.jdom.output.XMLOutputter;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * The reference barcodes used for PCI calculation, aligned once and saved next to the barcodes file so that later
+ * calculations do not need to import and re-align the whole reference set.  The index is rebuilt if the barcodes file
+ * or the alignment options change.
+ * <br/><br/>
+ * New samples are placed into the reference alignment by aligning them to the consensus of the reference alignment.
+ * Any residues of a new sample that fall in columns where every reference barcode has a gap are left out, since they
+ * can never be compared with a reference barcode.
+ * <br/><br/>
+ * The aligned reference barcodes are held as {@link PackedSequence}s so that large reference sets take a fraction of
+ * the memory of holding them as Strings.
+ * <br/><br/>
+ * The index file is a FASTA file of the aligned reference barcodes preceded by a line holding the fingerprint of the
+ * barcodes file and alignment options and a line holding the number of reference barcodes, which is used to detect
+ * index files that were cut short.
+ */
+class ReferenceBarcodeIndex {
+
+    private static final String INDEX_FILE_EXTENSION = ".pciindex";
+
+    private static final String COMMENT_PREFIX = "#";
+    private static final Pattern BARCODE_DEF_LINE_PATTERN = Pattern.compile(".+_.+_.+");
+
+    private final List<String> uids;
+    private final List<PackedSequence> alignedSequences;
+    private final int alignmentLength;
+
+    /* Consensus residue of each alignment column that holds a base in at least one reference, and the column it is in. */
+    private final byte[] consensus;
+    private final int[] consensusColumns;
+
+    /**
+     * @param uids The UIDs of the reference barcodes.  In the form Genus_Species_ID.
+     * @param alignedSequences The aligned reference barcodes in the same order as the UIDs.  All the same length.
+     */
+    ReferenceBarcodeIndex(List<String> uids, List<String> alignedSequences) {
+        this.uids = Collections.unmodifiableList(uids);
+        List<PackedSequence> packedSequences = new ArrayList<PackedSequence>(alignedSequences.size());
+        for (String alignedSequence : alignedSequences) {
+            packedSequences.add(PackedSequence.pack(alignedSequence));
+        }
+        this.alignedSequences = Collections.unmodifiableList(packedSequences);
+        alignmentLength = alignedSequences.isEmpty() ? 0 : alignedSequences.get(0).length();
+
+        StringBuilder consensusBuilder = new StringBuilder();
+        List<Integer> columns = new ArrayList<Integer>();
+        String bases = "ACGT";
+        for (int column = 0; column < alignmentLength; column++) {
+            int[] counts = new int[bases.length()];
+            for (String alignedSequence : alignedSequences) {
+                int base = bases.indexOf(Character.toUpperCase(alignedSequence.charAt(column)));
+                if (base >= 0) {
+                    counts[base]++;
+                }
+            }
+
+            int mostCommon = 0;
+            for (int base = 1; base < counts.length; base++) {
+                if (counts[base] > counts[mostCommon]) {
+                    mostCommon = base;
+                }
+            }
+            if (counts[mostCommon] > 0) {
+                consensusBuilder.append(bases.charAt(mostCommon));
+                columns.add(column);
+            }
+        }
+        consensus = PairwiseAligner.toResidues(consensusBuilder);
+        consensusColumns = new int[columns.size()];
+        for (int i = 0; i < consensusColumns.length; i++) {
+            consensusColumns[i] = columns.get(i);
+        }
+    }
+
+    /**
+     * @return The UIDs of the reference barcodes.  In the form Genus_Species_ID.
+     */
+    List<String> getUids() {
+        return uids;
+    }
+
+    /**
+     * @return The aligned reference barcodes in the same order as {@link #getUids()}
+     */
+    List<PackedSequence> getAlignedSequences() {
+        return alignedSequences;
+    }
+
+    /**
+     * @param sequence An unaligned new sample
+     * @return The new sample placed into the columns of the reference alignment
+     */
+    String align(CharSequence sequence) {
+        byte[] residues = PairwiseAligner.toResidues(sequence);
+        int[] alignedResidues = PairwiseAligner.getAlignedQueryIndices(residues, consensus);
+
+        char[] aligned = new char[alignmentLength];
+        Arrays.fill(aligned, '-');
+        for (int i = 0; i < alignedResidues.length; i++) {
+            if (alignedResidues[i] != -1) {
+                aligned[consensusColumns[i]] = (char)residues[alignedResidues[i]];
+            }
+        }
+        return new String(aligned);
+    }
+
+    /**
+     * Loads the index for a barcodes file.  Builds and saves the index first if it does not exist, is out of date or is
+     * corrupt.  The index is not saved if the directory of the barcodes file cannot be written to.
+     *
+     * @param barcodesFile FASTA file of the reference barcodes
+     * @param alignmentOptions The options to align the reference barcodes with.  See {@link AlignmentUtilities#getOptions()}
+     * @param progressListener to report progress to and to check cancellation status
+     * @return The index for the barcodes file
+     * @throws DocumentOperationException if the barcodes file could not be read or aligned, or the index could not be saved
+     */
+    static ReferenceBarcodeIndex getIndex(File barcodesFile, @Nullable Options alignmentOptions, ProgressListener progressListener) throws DocumentOperationException {
+        String fingerprint = getFingerprint(barcodesFile, alignmentOptions);
+        File indexFile = getIndexFile(barcodesFile);
+        if (indexFile.exists()) {
+            try {
+                ReferenceBarcodeIndex index = load(indexFile, fingerprint);
+                if (index != null) {
+                    return index;
+                }
+            } catch (IOException e) {
+                // An unreadable or corrupt index is replaced by the one built below
+            }
+        }
+
+        ReferenceBarcodeIndex index = build(barcodesFile, alignmentOptions, progressListener);
+        if (indexFile.getParentFile().canWrite()) { // The barcodes may be kept somewhere read only, in which case the index is built each time
+            try {
+                index.save(indexFile, fingerprint);
+            } catch (IOException e) {
+                throw new DocumentOperationException("Failed to save reference barcode index for " + barcodesFile.getName() + ": " + e.getMessage(), e);
+            }
+        }
+        return index;
+    }
+
+    static File getIndexFile(File barcodesFile) {
+        return new File(barcodesFile.getAbsoluteFile().getParentFile(), barcodesFile.getName() + INDEX_FILE_EXTENSION);
+    }
+
+    static String getFingerprint(File barcodesFile, @Nullable Options alignmentOptions) {
+        String alignmentOptionValues = alignmentOptions == null ? "" : new XMLOutputter().outputString(alignmentOptions.valuesToXML("alignmentOptions"));
+        return barcodesFile.length() + " " + barcodesFile.lastModified() + " " + Integer.toHexString(alignmentOptionValues.hashCode());
+    }
+
+    private static ReferenceBarcodeIndex build(File barcodesFile, @Nullable Options alignmentOptions, ProgressListener progressListener) throws DocumentOperationException {
+        List<NucleotideSequenceDocument> imported = ImportUtilities.importNucleotidesFastaFile(barcodesFile);
+        Set<String> importedUids = new HashSet<String>();
+        for (NucleotideSequenceDocument importedSeq : imported) {
+            String uid = importedSeq.getName();
+            if (!BARCODE_DEF_LINE_PATTERN.matcher(uid).matches()) {
+                throw new DocumentOperationException(uid + " in Barcodes file for PCI is not in the correct format.  Needs to match Genus_Species_ID");
+            }
+            if (!importedUids.add(uid)) {
+                throw new DocumentOperationException("Barcodes file for PCI contains duplicate UID: " + uid);
+            }
+        }
+        if (progressListener.isCanceled()) {
+            throw new DocumentOperationException.Canceled();
+        }
+
+        List<String> uids = new ArrayList<String>();
+        List<String> alignedSequences = new ArrayList<String>();
+        if (imported.size() == 1) {
+            uids.add(imported.get(0).getName());
+            alignedSequences.add(imported.get(0).getSequenceString());
+        } else if (!imported.isEmpty()) {
+            SequenceAlignmentDocument alignment = AlignmentUtilities.performAlignment(imported, alignmentOptions, progressListener);
+            if (alignment == null) {
+                throw new DocumentOperationException("Failed to align the reference barcodes in " + barcodesFile.getName());
+            }
+            for (int i = 0; i < alignment.getNumberOfSequences(); i++) {
+                uids.add(alignment.getSequence(i).getName());
+                alignedSequences.add(alignment.getSequence(i).getSequenceString());
+            }
+        }
+        return new ReferenceBarcodeIndex(uids, alignedSequences);
+    }
+
+    /**
+     * @return The index or null if the index file was built for a different barcodes file or alignment options.
+     * @throws IOException if the index file could not be read or is corrupt.
+     */
+    @Nullable
+    static ReferenceBarcodeIndex load(File indexFile, String fingerprint) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(indexFile));
+        try {
+            String fingerprintLine = reader.readLine();
+            if (fingerprintLine == null || !fingerprintLine.equals(COMMENT_PREFIX + fingerprint)) {
+                return null;
+            }
+
+            int numberOfBarcodes;
+            String numberOfBarcodesLine = reader.readLine();
+            try {
+                numberOfBarcodes = numberOfBarcodesLine == null || !numberOfBarcodesLine.startsWith(COMMENT_PREFIX) ?
+                        -1 : Integer.parseInt(numberOfBarcodesLine.substring(COMMENT_PREFIX.length()));
+            } catch (NumberFormatException e) {
+                numberOfBarcodes = -1;
+            }
+            if (numberOfBarcodes < 0) {
+                throw new IOException(getCorruptMessage(indexFile));
+            }
+
+            List<String> uids = new ArrayList<String>(numberOfBarcodes);
+            List<String> alignedSequences = new ArrayList<String>(numberOfBarcodes);
+            String uidLine;
+            while ((uidLine = reader.readLine()) != null) {
+                String sequenceLine = reader.readLine();
+                if (!uidLine.startsWith(">") || sequenceLine == null
+                        || (!alignedSequences.isEmpty() && sequenceLine.length() != alignedSequences.get(0).length())) {
+                    throw new IOException(getCorruptMessage(indexFile));
+                }
+                uids.add(uidLine.substring(1));
+                alignedSequences.add(sequenceLine);
+            }
+            if (uids.size() != numberOfBarcodes) {
+                throw new IOException(getCorruptMessage(indexFile));
+            }
+            return new ReferenceBarcodeIndex(uids, alignedSequences);
+        } finally {
+            GeneralUtilities.attemptClose(reader);
+        }
+    }
+
+    private static String getCorruptMessage(File indexFile) {
+        return "Reference barcode index " + indexFile.getName() + " is corrupt";
+    }
+
+    /**
+     * Writes the index to a new temporary file in the same directory first and then renames it over the old index, so
+     * that an interrupted save, or two saves of the same index at once, never leave a partial index behind.
+     */
+    void save(File indexFile, String fingerprint) throws IOException {
+        File tempFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getParentFile());
+        boolean saved = false;
+        try {
+            FastaWriter writer = new FastaWriter(tempFile);
+            try {
+                writer.writeLine(COMMENT_PREFIX + fingerprint);
+                writer.writeLine(COMMENT_PREFIX + uids.size());
+                for (int i = 0; i < uids.size(); i++) {
+                    writer.write(uids.get(i), null, alignedSequences.get(i));
+                }
+            } finally {
+                // Not attemptClose() since the buffered output is only written on close and a failure must stop the rename
+                writer.close();
+            }
+
+            // Renaming replaces the old index in one step where the platform allows it.  Otherwise, such as on Windows,
+            // the old index has to be deleted first.
+            saved = tempFile.renameTo(indexFile) || (indexFile.delete() && tempFile.renameTo(indexFile));
+            if (!saved) {
+                throw new IOException("Failed to replace " + indexFile.getAbsolutePath());
+            }
+        } finally {
+            if (!saved) {
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            }
+        }
+    }
+}
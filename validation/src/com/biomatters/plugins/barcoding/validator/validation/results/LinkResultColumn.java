@@ -5,6 +5,7 @@ import org.jdom.Element;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 /**
@@ -82,6 +83,21 @@ public class LinkResultColumn extends ResultColumn<LinkResultColumn.LinkBox> {
             pluginDocuments.add(pluginDocument);
         }
 
+        /**
+         * Replaces documents that have been linked to with the copies that were saved in their place.  See
+         * {@link com.biomatters.plugins.barcoding.validator.validation.ValidationCallback#addPluginDocument}
+         *
+         * @param savedDocuments Map of each document to the copy that was saved in its place.
+         */
+        public void replacePluginDocuments(Map<PluginDocument, PluginDocument> savedDocuments) {
+            for (int i = 0; i < pluginDocuments.size(); i++) {
+                PluginDocument savedDocument = savedDocuments.get(pluginDocuments.get(i));
+                if (savedDocument != null) {
+                    pluginDocuments.set(i, savedDocument);
+                }
+            }
+        }
+
         public LinkBox(String label, List<URN> links) {
             this.label = label;
             this.links = links;
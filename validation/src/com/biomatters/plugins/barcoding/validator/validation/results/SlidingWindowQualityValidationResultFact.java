@@ -1,6 +1,7 @@
 package com.biomatters.plugins.barcoding.validator.validation.results;
 
 import com.biomatters.geneious.publicapi.documents.XMLSerializationException;
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceAnnotation;
 import com.biomatters.plugins.barcoding.validator.validation.results.*;
 import org.jdom.Element;
 
@@ -24,6 +25,7 @@ public class SlidingWindowQualityValidationResultFact extends ResultFact {
     private IntegerResultColumn numberOfFailedWindowsColumn;
     private DoubleResultColumn ratioOfPassedWindowsColumn;
     private StringResultColumn notesColumn;
+    private SequenceAnnotation validationFailureAnnotation;
 
     /**
      * used by XMLSerializable
@@ -95,6 +97,18 @@ public class SlidingWindowQualityValidationResultFact extends ResultFact {
         notesColumn.setData(notes);
     }
 
+    /**
+     * @return The annotation of the windows that failed the validation, or null if none failed.  Not serialized, so only
+     * available until the result is saved.
+     */
+    public SequenceAnnotation getValidationFailureAnnotation() {
+        return validationFailureAnnotation;
+    }
+
+    public void setValidationFailureAnnotation(SequenceAnnotation validationFailureAnnotation) {
+        this.validationFailureAnnotation = validationFailureAnnotation;
+    }
+
     private void initColumns(boolean pass, int totalNumberOfWindows, int numberOfFailedWindows, String notes) {
         passColumn = new BooleanResultColumn(PASS_COLUMN_NAME);
         totalNumberOfWindowsColumn = new IntegerResultColumn(TOTAL_NUMBER_OF_WINDOWS_COLUMN_NAME);
@@ -0,0 +1,156 @@
+package com.biomatters.plugins.barcoding.validator.validation.trimming;
+
+import jebl.evolution.align.scores.Scores;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A scores matrix extended with the characters of the sequences being aligned and compiled into a flat table indexed
+ * by character code.  Compiled scores are cached by the scores matrix they were built from and the alphabet of the
+ * sequences, so each trimming configuration builds them once and every thread shares them.
+ */
+class CompiledScores {
+    static final int TABLE_SIZE = 128;
+
+    private static final String UNAMBIGUOUS_BASES = "ACGT";
+    private static final char GAP = '-';
+
+    /* Weak keys so that the compiled scores of scores matrices that are no longer used can be collected. */
+    private static final Map<Scores, Map<String, CompiledScores>> CACHE = new WeakHashMap<Scores, Map<String, CompiledScores>>();
+
+    private final Scores scores;
+    private final float[] table = new float[TABLE_SIZE * TABLE_SIZE];
+    private final boolean favoursIdenticalBases;
+
+    private CompiledScores(Scores baseScores, String alphabet) {
+        scores = Scores.includeAdditionalCharacters(baseScores, alphabet);
+
+        String characters = UNAMBIGUOUS_BASES + alphabet;
+        for (int i = 0; i < characters.length(); i++) {
+            for (int j = 0; j < characters.length(); j++) {
+                char first = characters.charAt(i);
+                char second = characters.charAt(j);
+                if (first < TABLE_SIZE && second < TABLE_SIZE) {
+                    table[first * TABLE_SIZE + second] = scores.getScore(first, second);
+                }
+            }
+        }
+
+        favoursIdenticalBases = scoresFavourIdenticalBases(characters);
+    }
+
+    /**
+     * Returns the compiled scores for aligning the supplied sequences.  Gaps in the sequences are ignored.
+     *
+     * @param baseScores Scores matrix to extend.
+     * @param sequences Sequences that will be aligned with the scores.
+     * @return Compiled scores that include every character of the supplied sequences.
+     */
+    static CompiledScores get(Scores baseScores, CharSequence... sequences) {
+        String alphabet = getAlphabet(sequences);
+
+        synchronized (CACHE) {
+            Map<String, CompiledScores> compiledScoresByAlphabet = CACHE.get(baseScores);
+            if (compiledScoresByAlphabet == null) {
+                compiledScoresByAlphabet = new HashMap<String, CompiledScores>();
+                CACHE.put(baseScores, compiledScoresByAlphabet);
+            }
+
+            CompiledScores compiledScores = compiledScoresByAlphabet.get(alphabet);
+            if (compiledScores == null) {
+                compiledScores = new CompiledScores(baseScores, alphabet);
+                compiledScoresByAlphabet.put(alphabet, compiledScores);
+            }
+            return compiledScores;
+        }
+    }
+
+    /**
+     * @return The scores matrix including the additional characters, for use with the jebl aligners.
+     */
+    Scores getScores() {
+        return scores;
+    }
+
+    /**
+     * @param first A character of the alphabet the scores were compiled for.
+     * @param second A character of the alphabet the scores were compiled for.
+     * @return The score for aligning the two characters.
+     */
+    float getScore(char first, char second) {
+        if (first < TABLE_SIZE && second < TABLE_SIZE) {
+            return table[first * TABLE_SIZE + second];
+        }
+        return scores.getScore(first, second);
+    }
+
+    /**
+     * @return True if every pair of identical unambiguous bases has the same score and that score is higher than the
+     * score of aligning an unambiguous base with any other character of the alphabet the scores were compiled for,
+     * including ambiguous bases such as N.
+     */
+    boolean favoursIdenticalBases() {
+        return favoursIdenticalBases;
+    }
+
+    /**
+     * @param characters The unambiguous bases followed by the characters of the alphabet.
+     */
+    private boolean scoresFavourIdenticalBases(String characters) {
+        float identicalScore = getScore(UNAMBIGUOUS_BASES.charAt(0), UNAMBIGUOUS_BASES.charAt(0));
+        for (int i = 0; i < UNAMBIGUOUS_BASES.length(); i++) {
+            char base = UNAMBIGUOUS_BASES.charAt(i);
+            for (int j = 0; j < characters.length(); j++) {
+                char other = characters.charAt(j);
+                if (other == base) {
+                    if (getScore(base, other) != identicalScore) {
+                        return false;
+                    }
+                } else if (getScore(base, other) >= identicalScore || getScore(other, base) >= identicalScore) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The distinct characters of the supplied sequences excluding gaps, in ascending order.
+     */
+    private static String getAlphabet(CharSequence... sequences) {
+        boolean[] seen = new boolean[TABLE_SIZE];
+        StringBuilder otherCharacters = null;
+        for (CharSequence sequence : sequences) {
+            for (int i = 0; i < sequence.length(); i++) {
+                char c = sequence.charAt(i);
+                if (c == GAP) {
+                    continue;
+                }
+                if (c < TABLE_SIZE) {
+                    seen[c] = true;
+                } else {
+                    if (otherCharacters == null) {
+                        otherCharacters = new StringBuilder();
+                    }
+                    if (otherCharacters.indexOf(String.valueOf(c)) == -1) {
+                        otherCharacters.append(c);
+                    }
+                }
+            }
+        }
+
+        StringBuilder alphabet = new StringBuilder();
+        for (char c = 0; c < TABLE_SIZE; c++) {
+            if (seen[c]) {
+                alphabet.append(c);
+            }
+        }
+        if (otherCharacters != null) {
+            alphabet.append(otherCharacters);
+        }
+        return alphabet.toString();
+    }
+}
@@ -2,6 +2,7 @@ package com.biomatters.plugins.barcoding.validator.validation.trimming;
 
 import com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraphSequenceDocument;
 import com.biomatters.geneious.publicapi.documents.sequence.NucleotideSequenceDocument;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.SequenceRead;
 
 /**
  * @author Amy Wilson
@@ -58,12 +59,27 @@ class ErrorProbabilityTrimmer {
             return Trimmage.EMPTY;
         }
         if (trimmableEnds == TrimmableEnds.Both) {
-            return getTrimmageBothEnds(sequence, cutOff);
+            return getTrimmageBothEnds(SequenceRead.fromDocument(sequence), cutOff);
         } else {
             return getTrimmageOneEnd(sequence, trimmableEnds, cutOff);
         }
     }
 
+    /**
+     * Trims both ends of the read using the modified Mott algorithm.  See
+     * {@link #getTrimmage(NucleotideSequenceDocument, TrimmableEnds, double)}
+     *
+     * @param read to trim
+     * @param cutOff bases with error probability less than this will be considered "good".
+     * @return Trimmage of the read, or {@link Trimmage#EMPTY} if the read has no qualities.
+     */
+    static Trimmage getTrimmage(SequenceRead read, double cutOff) {
+        if (!read.hasQualities()) {
+            return Trimmage.EMPTY;
+        }
+        return getTrimmageBothEnds(read, cutOff);
+    }
+
     private static Trimmage getTrimmageOneEnd(NucleotideGraphSequenceDocument sequence, TrimmableEnds trimmableEnds, double cutOff) {
         BaseIterator iterator = BaseIterator.get(Trimmage.EMPTY, sequence, trimmableEnds);
         double segmentErrorProbability = 0;
@@ -85,29 +101,37 @@ class ErrorProbabilityTrimmer {
         return BaseIterator.getTrimmage(sequence, trimmableEnds, bestSegment);
     }
 
-    private static Trimmage getTrimmageBothEnds(NucleotideGraphSequenceDocument sequence, double cutOff) {
-        int length = sequence.getSequenceLength();
-
-        double[] confidences = new double[length];
-        for (int i = 0; i < length; ++i) {
-            confidences[i] = confidenceToErrorProbability(sequence.getSequenceQuality(i)) - cutOff;
-        }
+    /**
+     * Finds the segment with the lowest (most negative) sum of error probability minus cut off in a single pass.  The
+     * running sum for the segment ending at each base is either extended from the previous base or restarted at the
+     * current base, whichever is lower.  On an equal score the segment that starts and then ends later is kept, the
+     * same as checking every start and end position in order.
+     */
+    private static Trimmage getTrimmageBothEnds(SequenceRead read, double cutOff) {
+        int length = read.getLength();
 
         int[] bestSegment = new int[] {length, length - 1};
         double bestSegmentErrorProbability = Double.MAX_VALUE;
-        for (int i = 0; i <= length; i++) {
-            double segmentErrorProbability = 0;
-            for (int j = i; j < length; j++) {
-                segmentErrorProbability += confidences[j];
-                if (segmentErrorProbability > 0) {
-                    continue;
-                }
-                //less than or equal because longer is better if the score is the same.
-                if (segmentErrorProbability <= bestSegmentErrorProbability) {
-                    bestSegmentErrorProbability = segmentErrorProbability;
-                    bestSegment[0] = i;
-                    bestSegment[1] = j;
-                }
+        int segmentStart = 0;
+        double segmentErrorProbability = 0;
+        for (int i = 0; i < length; i++) {
+            double confidence = confidenceToErrorProbability(read.getQuality(i)) - cutOff;
+            double extendedSegmentErrorProbability = segmentErrorProbability + confidence;
+            //less than or equal because a segment starting later wins if the score is the same.
+            if (i == 0 || confidence <= extendedSegmentErrorProbability) {
+                segmentStart = i;
+                segmentErrorProbability = confidence;
+            } else {
+                segmentErrorProbability = extendedSegmentErrorProbability;
+            }
+            if (segmentErrorProbability > 0) {
+                continue;
+            }
+            //less than or equal because longer is better if the score is the same.
+            if (segmentErrorProbability <= bestSegmentErrorProbability) {
+                bestSegmentErrorProbability = segmentErrorProbability;
+                bestSegment[0] = segmentStart;
+                bestSegment[1] = i;
             }
         }
         return new Trimmage(bestSegment[0], length - 1 - bestSegment[1]);
@@ -0,0 +1,172 @@
+package com.biomatters.plugins.barcoding.validator.validation.trimming;
+
+/**
+ * Local alignment of a primer to a sequence using the Smith-Waterman algorithm with affine gap penalties (Gotoh).  A gap
+ * of length k costs gapOpenPenalty + (k - 1) * gapExtensionPenalty.  The coordinates of the alignment in both sequences
+ * are read directly from the traceback, so there is no need to search for the aligned region afterwards.
+ * <br/><br/>
+ * When several alignments have the best score the one that ends first in the sequence is chosen, then the one that ends
+ * first in the primer.  Non-instantiable.
+ */
+class PrimerAligner {
+    /* Alignment columns. */
+    static final byte MATCH = 0;
+    static final byte GAP_IN_PRIMER = 1;
+    static final byte GAP_IN_SEQUENCE = 2;
+
+    /* Traceback of the best score of a cell.  Bits 0-1 hold where the score came from and bits 2-3 whether gaps extend. */
+    private static final byte FROM_START = 0;
+    private static final byte FROM_DIAGONAL = 1;
+    private static final byte FROM_GAP_IN_SEQUENCE = 2;
+    private static final byte FROM_GAP_IN_PRIMER = 3;
+    private static final byte SOURCE_MASK = 3;
+    private static final byte GAP_IN_SEQUENCE_EXTENDS = 4;
+    private static final byte GAP_IN_PRIMER_EXTENDS = 8;
+
+    private PrimerAligner() {
+    }
+
+    /**
+     * @param sequence Sequence to align the primer to.
+     * @param primer Primer to align.
+     * @param scores Compiled scores matrix including every character of the sequence and the primer.
+     * @param gapOpenPenalty Penalty for the first base of a gap.
+     * @param gapExtensionPenalty Penalty for each further base of a gap.
+     * @return The best local alignment of the primer to the sequence, or null if no alignment has a positive score.
+     */
+    static Alignment align(CharSequence sequence, CharSequence primer, CompiledScores scores, float gapOpenPenalty, float gapExtensionPenalty) {
+        int rows = sequence.length() + 1;
+        int columns = primer.length() + 1;
+        byte[] traceback = new byte[rows * columns];
+
+        float[] previousBest = new float[columns];
+        float[] currentBest = new float[columns];
+        float[] gapInPrimer = new float[columns];
+        for (int j = 0; j < columns; j++) {
+            gapInPrimer[j] = Float.NEGATIVE_INFINITY;
+        }
+
+        float bestScore = 0;
+        int bestRow = 0;
+        int bestColumn = 0;
+        for (int i = 1; i < rows; i++) {
+            char sequenceChar = sequence.charAt(i - 1);
+            float gapInSequence = Float.NEGATIVE_INFINITY;
+            currentBest[0] = 0;
+
+            for (int j = 1; j < columns; j++) {
+                byte cellTraceback = 0;
+
+                float openGapInSequence = currentBest[j - 1] - gapOpenPenalty;
+                float extendGapInSequence = gapInSequence - gapExtensionPenalty;
+                if (extendGapInSequence > openGapInSequence) {
+                    gapInSequence = extendGapInSequence;
+                    cellTraceback |= GAP_IN_SEQUENCE_EXTENDS;
+                } else {
+                    gapInSequence = openGapInSequence;
+                }
+
+                float openGapInPrimer = previousBest[j] - gapOpenPenalty;
+                float extendGapInPrimer = gapInPrimer[j] - gapExtensionPenalty;
+                if (extendGapInPrimer > openGapInPrimer) {
+                    gapInPrimer[j] = extendGapInPrimer;
+                    cellTraceback |= GAP_IN_PRIMER_EXTENDS;
+                } else {
+                    gapInPrimer[j] = openGapInPrimer;
+                }
+
+                float best = 0;
+                byte source = FROM_START;
+                float diagonal = previousBest[j - 1] + scores.getScore(sequenceChar, primer.charAt(j - 1));
+                if (diagonal > best) {
+                    best = diagonal;
+                    source = FROM_DIAGONAL;
+                }
+                if (gapInSequence > best) {
+                    best = gapInSequence;
+                    source = FROM_GAP_IN_SEQUENCE;
+                }
+                if (gapInPrimer[j] > best) {
+                    best = gapInPrimer[j];
+                    source = FROM_GAP_IN_PRIMER;
+                }
+
+                currentBest[j] = best;
+                traceback[i * columns + j] = (byte)(cellTraceback | source);
+
+                if (best > bestScore) {
+                    bestScore = best;
+                    bestRow = i;
+                    bestColumn = j;
+                }
+            }
+
+            float[] swap = previousBest;
+            previousBest = currentBest;
+            currentBest = swap;
+        }
+
+        if (bestScore <= 0) {
+            return null;
+        }
+        return traceBack(traceback, columns, bestRow, bestColumn);
+    }
+
+    private static Alignment traceBack(byte[] traceback, int columns, int endRow, int endColumn) {
+        byte[] reversedOperations = new byte[endRow + endColumn];
+        int numOperations = 0;
+
+        int i = endRow;
+        int j = endColumn;
+        byte state = FROM_DIAGONAL;
+        while (true) {
+            byte cellTraceback = traceback[i * columns + j];
+            if (state == FROM_DIAGONAL) {
+                byte source = (byte)(cellTraceback & SOURCE_MASK);
+                if (source == FROM_START) {
+                    break;
+                } else if (source == FROM_DIAGONAL) {
+                    reversedOperations[numOperations++] = MATCH;
+                    i--;
+                    j--;
+                } else {
+                    state = source;
+                }
+            } else if (state == FROM_GAP_IN_SEQUENCE) {
+                reversedOperations[numOperations++] = GAP_IN_SEQUENCE;
+                state = (cellTraceback & GAP_IN_SEQUENCE_EXTENDS) != 0 ? FROM_GAP_IN_SEQUENCE : FROM_DIAGONAL;
+                j--;
+            } else {
+                reversedOperations[numOperations++] = GAP_IN_PRIMER;
+                state = (cellTraceback & GAP_IN_PRIMER_EXTENDS) != 0 ? FROM_GAP_IN_PRIMER : FROM_DIAGONAL;
+                i--;
+            }
+        }
+
+        byte[] operations = new byte[numOperations];
+        for (int k = 0; k < numOperations; k++) {
+            operations[k] = reversedOperations[numOperations - 1 - k];
+        }
+        return new Alignment(i, endRow, j, endColumn, operations);
+    }
+
+    /**
+     * A local alignment of a primer to a sequence.  Coordinates are zero-based and ends are exclusive.
+     */
+    static class Alignment {
+        final int sequenceStart;
+        final int sequenceEnd;
+        final int primerStart;
+        final int primerEnd;
+        /* The columns of the alignment.  One of {@link #MATCH}, {@link #GAP_IN_PRIMER} or {@link #GAP_IN_SEQUENCE}. */
+        final byte[] operations;
+
+        private Alignment(int sequenceStart, int sequenceEnd, int primerStart, int primerEnd, byte[] operations) {
+            this.sequenceStart = sequenceStart;
+            this.sequenceEnd = sequenceEnd;
+            this.primerStart = primerStart;
+            this.primerEnd = primerEnd;
+            this.operations = operations;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.biomatters.plugins.barcoding.validator.validation.trimming;
+
+import jebl.evolution.sequences.NucleotideState;
+import jebl.evolution.sequences.Nucleotides;
+
+/**
+ * Searches a sequence for approximate occurrences of a primer using Myers' bit-parallel edit distance algorithm.  The
+ * whole primer is held in one 64-bit word so each base of the sequence is processed in a handful of bitwise operations
+ * rather than the full row of a dynamic programming matrix.
+ * <br/><br/>
+ * Bases are considered to match under the same rules {@link SequenceTrimmer} uses to count mismatches.  Ambiguity codes
+ * match any base they could represent while gaps and unknown characters never match.  Since any primer alignment that
+ * {@link SequenceTrimmer} accepts has at least as many mismatches as the edit distance of the primer to the sequence,
+ * the edit distance can be used to reject primers without aligning them.
+ */
+class PrimerMatcher {
+    static final int MAX_PRIMER_LENGTH = Long.SIZE;
+
+    private static final NucleotideState[] STATES_BY_CHARACTER = new NucleotideState[128];
+    static {
+        for (char c = 0; c < STATES_BY_CHARACTER.length; c++) {
+            NucleotideState state = Nucleotides.getState(c);
+            STATES_BY_CHARACTER[c] = state == Nucleotides.GAP_STATE ? null : state;
+        }
+    }
+
+    private final int primerLength;
+    private final long lastPrimerPosition;
+    private final long allPrimerPositions;
+
+    /* For each character, the bit vector of the positions in the primer that match the character. */
+    private final long[] matchingPositions = new long[STATES_BY_CHARACTER.length];
+
+    /**
+     * @param primer Primer to search for. Must be between 1 and {@link #MAX_PRIMER_LENGTH} bases long.
+     */
+    PrimerMatcher(CharSequence primer) {
+        if (!canMatch(primer)) {
+            throw new IllegalArgumentException("Primer length must be between 1 and " + MAX_PRIMER_LENGTH + ": " + primer.length());
+        }
+
+        primerLength = primer.length();
+        lastPrimerPosition = 1L << (primerLength - 1);
+        allPrimerPositions = primerLength == MAX_PRIMER_LENGTH ? -1L : (1L << primerLength) - 1;
+
+        for (int i = 0; i < primerLength; i++) {
+            NucleotideState primerState = getState(primer.charAt(i));
+            if (primerState == null) {
+                continue;
+            }
+            for (int c = 0; c < STATES_BY_CHARACTER.length; c++) {
+                if (STATES_BY_CHARACTER[c] != null && STATES_BY_CHARACTER[c].possiblyEqual(primerState)) {
+                    matchingPositions[c] |= 1L << i;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param primer Primer sequence.
+     * @return True if the primer can be searched for by a PrimerMatcher.
+     */
+    static boolean canMatch(CharSequence primer) {
+        return primer.length() > 0 && primer.length() <= MAX_PRIMER_LENGTH;
+    }
+
+    /**
+     * Finds the occurrences of the primer in the supplied sequence.  Primer bases that would extend past either end of
+     * the sequence count as edits.
+     *
+     * @param sequence Sequence to search.
+     * @return The minimum edit distance of the primer to the sequence and the location of any exact matches.
+     */
+    Matches search(CharSequence sequence) {
+        long positive = allPrimerPositions;
+        long negative = 0;
+        int edits = primerLength;
+
+        int minimumEdits = primerLength;
+        int numberOfExactMatches = 0;
+        int lastExactMatchEnd = -1;
+
+        for (int i = 0; i < sequence.length(); i++) {
+            char c = sequence.charAt(i);
+            long matches = c < matchingPositions.length ? matchingPositions[c] : 0;
+
+            long verticalChange = matches | negative;
+            long horizontalChange = (((matches & positive) + positive) ^ positive) | matches;
+            long horizontalPositive = negative | ~(horizontalChange | positive);
+            long horizontalNegative = positive & horizontalChange;
+
+            if ((horizontalPositive & lastPrimerPosition) != 0) {
+                edits++;
+            } else if ((horizontalNegative & lastPrimerPosition) != 0) {
+                edits--;
+            }
+
+            /* The primer may start anywhere in the sequence, so nothing is shifted into the first row. */
+            horizontalPositive <<= 1;
+            horizontalNegative <<= 1;
+            positive = (horizontalNegative | ~(verticalChange | horizontalPositive)) & allPrimerPositions;
+            negative = horizontalPositive & verticalChange & allPrimerPositions;
+
+            if (edits < minimumEdits) {
+                minimumEdits = edits;
+            }
+            if (edits == 0) {
+                numberOfExactMatches++;
+                lastExactMatchEnd = i + 1;
+            }
+        }
+
+        return new Matches(minimumEdits, numberOfExactMatches, lastExactMatchEnd);
+    }
+
+    private static NucleotideState getState(char c) {
+        return c < STATES_BY_CHARACTER.length ? STATES_BY_CHARACTER[c] : null;
+    }
+
+    /**
+     * The result of searching a sequence for a primer.
+     */
+    static class Matches {
+        /* The minimum number of substitutions, insertions and deletions needed to align the whole primer to the sequence. */
+        final int minimumEdits;
+        /* The number of positions in the sequence where the primer ends an exact match. */
+        final int numberOfExactMatches;
+        /* The zero-based exclusive end of the last exact match or -1 if there are no exact matches. */
+        final int lastExactMatchEnd;
+
+        private Matches(int minimumEdits, int numberOfExactMatches, int lastExactMatchEnd) {
+            this.minimumEdits = minimumEdits;
+            this.numberOfExactMatches = numberOfExactMatches;
+            this.lastExactMatchEnd = lastExactMatchEnd;
+        }
+    }
+}
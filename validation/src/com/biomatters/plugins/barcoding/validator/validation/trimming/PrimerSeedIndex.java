@@ -0,0 +1,275 @@
+package com.biomatters.plugins.barcoding.validator.validation.trimming;
+
+import com.biomatters.geneious.publicapi.implementations.sequence.OligoSequenceDocument;
+import com.biomatters.geneious.publicapi.utilities.SequenceUtilities;
+import jebl.evolution.sequences.NucleotideState;
+import jebl.evolution.sequences.Nucleotides;
+import jebl.evolution.sequences.State;
+
+import java.util.*;
+
+/**
+ * An index of the k-mers (seeds) of a set of primers and their reverse complements.  A sequence is scanned once to find
+ * which primers share a seed with it so that only those primers need to be aligned to the sequence.
+ * <br/><br/>
+ * The seed length is chosen so that no primer that could be trimmed is missed.  If a primer of length L aligns with at
+ * most maxMismatches mismatches then splitting the primer into maxMismatches + 1 pieces leaves at least one piece that
+ * matches the sequence exactly.  So every primer with an acceptable alignment shares a seed of length
+ * L / (maxMismatches + 1) with the sequence.  Primers that are too short to have seeds of at least
+ * {@link #MIN_SEED_LENGTH} bases are always aligned.
+ * <br/><br/>
+ * Bases are matched regardless of case.  An index should be built once and shared by every sequence trimmed with the
+ * same primers.
+ */
+public class PrimerSeedIndex {
+    static final int MIN_SEED_LENGTH = 4;
+    static final int MAX_SEED_LENGTH = 12;
+
+    /* Seeds with more possible expansions of their ambiguity codes than this are not worth indexing. */
+    private static final int MAX_EXPANSIONS = 256;
+    private static final String BASES = "ACGT";
+
+    private final List<OligoSequenceDocument> primers;
+    private final int maxMismatches;
+
+    private final int seedLength;
+    /* Patterns are numbered 2 * primer index for primers and 2 * primer index + 1 for reverse complemented primers. */
+    private final Map<Integer, int[]> patternsBySeed = new HashMap<Integer, int[]>();
+    private final boolean[] patternsWithoutSeeds;
+
+    /**
+     * @param primers Primers to index.
+     * @param maxMismatches Maximum number of mismatched bases that are allowed for a primer to be trimmed.
+     */
+    public PrimerSeedIndex(List<OligoSequenceDocument> primers, int maxMismatches) {
+        this.primers = Collections.unmodifiableList(new ArrayList<OligoSequenceDocument>(primers));
+        this.maxMismatches = maxMismatches;
+
+        List<CharSequence> patterns = new ArrayList<CharSequence>();
+        for (OligoSequenceDocument primer : primers) {
+            CharSequence bindingSequence = primer.getBindingSequence();
+            patterns.add(bindingSequence);
+            patterns.add(SequenceUtilities.reverseComplement(bindingSequence));
+        }
+
+        int shortestSeedLength = MAX_SEED_LENGTH;
+        for (CharSequence pattern : patterns) {
+            int patternSeedLength = getMaximumSeedLength(pattern.length(), maxMismatches);
+            if (patternSeedLength >= MIN_SEED_LENGTH) {
+                shortestSeedLength = Math.min(shortestSeedLength, patternSeedLength);
+            }
+        }
+        seedLength = shortestSeedLength;
+
+        patternsWithoutSeeds = new boolean[patterns.size()];
+        Map<Integer, Set<Integer>> seedPatterns = new HashMap<Integer, Set<Integer>>();
+        for (int pattern = 0; pattern < patterns.size(); pattern++) {
+            patternsWithoutSeeds[pattern] = !addSeeds(pattern, patterns.get(pattern), seedPatterns);
+        }
+
+        for (Map.Entry<Integer, Set<Integer>> entry : seedPatterns.entrySet()) {
+            int[] patternsWithSeed = new int[entry.getValue().size()];
+            int i = 0;
+            for (Integer pattern : entry.getValue()) {
+                patternsWithSeed[i++] = pattern;
+            }
+            patternsBySeed.put(entry.getKey(), patternsWithSeed);
+        }
+    }
+
+    /**
+     * @return The primers in the index.
+     */
+    List<OligoSequenceDocument> getPrimers() {
+        return primers;
+    }
+
+    /**
+     * Scans the supplied sequence for seeds of the indexed primers.
+     *
+     * @param sequence Sequence to scan.
+     * @param searchWindowSize Number of bases at each end of the sequence that primers are searched for in, or 0 for
+     *                         the whole sequence.  Forward primers are only searched for in the window at the start of
+     *                         the sequence and reverse primers in the window at the end.
+     * @return The primers that need to be aligned to the sequence.
+     */
+    Candidates getCandidates(CharSequence sequence, int searchWindowSize) {
+        int numPatterns = patternsWithoutSeeds.length;
+        int[] firstSeedEnds = new int[numPatterns];
+        int[] lastSeedStarts = new int[numPatterns];
+        Arrays.fill(firstSeedEnds, Integer.MAX_VALUE);
+        Arrays.fill(lastSeedStarts, -1);
+
+        int seedMask = (1 << (2 * seedLength)) - 1;
+        int seed = 0;
+        int unambiguousBasesInSeed = 0;
+        for (int i = 0; i < sequence.length() && !patternsBySeed.isEmpty(); i++) {
+            int base = BASES.indexOf(Character.toUpperCase(sequence.charAt(i)));
+            if (base >= 0) {
+                seed = ((seed << 2) | base) & seedMask;
+                unambiguousBasesInSeed++;
+            } else {
+                unambiguousBasesInSeed = 0;
+            }
+
+            if (i + 1 < seedLength) {
+                continue;
+            }
+            int seedStart = i + 1 - seedLength;
+            if (unambiguousBasesInSeed >= seedLength) {
+                addSeedHit(patternsBySeed.get(seed), seedStart, firstSeedEnds, lastSeedStarts);
+            } else {
+                addAmbiguousSeedHits(sequence, seedStart, firstSeedEnds, lastSeedStarts);
+            }
+        }
+
+        int windowSize = searchWindowSize > 0 ? Math.min(searchWindowSize, sequence.length()) : sequence.length();
+        boolean[] candidates = new boolean[numPatterns];
+        for (int pattern = 0; pattern < numPatterns; pattern++) {
+            if (pattern % 2 == 0) {
+                candidates[pattern] = patternsWithoutSeeds[pattern] || firstSeedEnds[pattern] <= windowSize;
+            } else {
+                candidates[pattern] = patternsWithoutSeeds[pattern] || lastSeedStarts[pattern] >= sequence.length() - windowSize;
+            }
+        }
+        return new Candidates(candidates);
+    }
+
+    private void addSeedHit(int[] patterns, int seedStart, int[] firstSeedEnds, int[] lastSeedStarts) {
+        if (patterns == null) {
+            return;
+        }
+        for (int pattern : patterns) {
+            firstSeedEnds[pattern] = Math.min(firstSeedEnds[pattern], seedStart + seedLength);
+            lastSeedStarts[pattern] = Math.max(lastSeedStarts[pattern], seedStart);
+        }
+    }
+
+    /**
+     * Adds the hits for a seed of a sequence that contains characters other than A, C, G and T.  Ambiguity codes are
+     * expanded to the bases they could represent.  A seed with too many expansions is treated as a hit for every primer.
+     */
+    private void addAmbiguousSeedHits(CharSequence sequence, int seedStart, int[] firstSeedEnds, int[] lastSeedStarts) {
+        List<Integer> expandedSeeds = expand(sequence.subSequence(seedStart, seedStart + seedLength));
+        if (expandedSeeds == null) {
+            int[] allPatterns = new int[patternsWithoutSeeds.length];
+            for (int pattern = 0; pattern < allPatterns.length; pattern++) {
+                allPatterns[pattern] = pattern;
+            }
+            addSeedHit(allPatterns, seedStart, firstSeedEnds, lastSeedStarts);
+            return;
+        }
+
+        for (Integer expandedSeed : expandedSeeds) {
+            addSeedHit(patternsBySeed.get(expandedSeed), seedStart, firstSeedEnds, lastSeedStarts);
+        }
+    }
+
+    /**
+     * Adds the seeds of a pattern to seedPatterns.
+     *
+     * @return False if the pattern could not be indexed and so must always be aligned.
+     */
+    private boolean addSeeds(int pattern, CharSequence patternSequence, Map<Integer, Set<Integer>> seedPatterns) {
+        if (getMaximumSeedLength(patternSequence.length(), maxMismatches) < MIN_SEED_LENGTH) {
+            return false;
+        }
+
+        for (int start = 0; start + seedLength <= patternSequence.length(); start++) {
+            List<Integer> expandedSeeds = expand(patternSequence.subSequence(start, start + seedLength));
+            if (expandedSeeds == null) {
+                return false;
+            }
+            for (Integer expandedSeed : expandedSeeds) {
+                Set<Integer> patterns = seedPatterns.get(expandedSeed);
+                if (patterns == null) {
+                    patterns = new TreeSet<Integer>();
+                    seedPatterns.put(expandedSeed, patterns);
+                }
+                patterns.add(pattern);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Expands a seed that may contain ambiguity codes into every seed of unambiguous bases that it could represent.
+     * Gaps and unknown characters never match so seeds containing them have no expansions.
+     *
+     * @param seed Seed to expand.
+     * @return The expanded seeds with two bits per base, or null if there are more than {@link #MAX_EXPANSIONS}.
+     */
+    private static List<Integer> expand(CharSequence seed) {
+        List<Integer> expandedSeeds = Collections.singletonList(0);
+        for (int i = 0; i < seed.length(); i++) {
+            List<Integer> bases = getPossibleBases(seed.charAt(i));
+            if (bases.isEmpty()) {
+                return Collections.emptyList();
+            }
+            if (expandedSeeds.size() * bases.size() > MAX_EXPANSIONS) {
+                return null;
+            }
+
+            List<Integer> extendedSeeds = new ArrayList<Integer>(expandedSeeds.size() * bases.size());
+            for (Integer expandedSeed : expandedSeeds) {
+                for (Integer base : bases) {
+                    extendedSeeds.add((expandedSeed << 2) | base);
+                }
+            }
+            expandedSeeds = extendedSeeds;
+        }
+        return expandedSeeds;
+    }
+
+    private static List<Integer> getPossibleBases(char c) {
+        c = Character.toUpperCase(c);
+        int base = BASES.indexOf(c);
+        if (base >= 0) {
+            return Collections.singletonList(base);
+        }
+
+        NucleotideState state = Nucleotides.getState(c);
+        if (state == null || state == Nucleotides.GAP_STATE) {
+            return Collections.emptyList();
+        }
+        List<Integer> bases = new ArrayList<Integer>();
+        for (State canonicalState : state.getCanonicalStates()) {
+            int canonicalBase = BASES.indexOf(canonicalState.getCode().toUpperCase());
+            if (canonicalBase >= 0 && !bases.contains(canonicalBase)) {
+                bases.add(canonicalBase);
+            }
+        }
+        return bases;
+    }
+
+    private static int getMaximumSeedLength(int patternLength, int maxMismatches) {
+        return maxMismatches >= patternLength ? 0 : patternLength / (maxMismatches + 1);
+    }
+
+    /**
+     * The primers that share a seed with a sequence.
+     */
+    static class Candidates {
+        private final boolean[] candidates;
+
+        private Candidates(boolean[] candidates) {
+            this.candidates = candidates;
+        }
+
+        /**
+         * @param primerIndex Index of the primer in {@link PrimerSeedIndex#getPrimers()}
+         * @return True if the primer needs to be aligned to the start of the sequence.
+         */
+        boolean isForwardCandidate(int primerIndex) {
+            return candidates[2 * primerIndex];
+        }
+
+        /**
+         * @param primerIndex Index of the primer in {@link PrimerSeedIndex#getPrimers()}
+         * @return True if the reverse complement of the primer needs to be aligned to the end of the sequence.
+         */
+        boolean isReverseCandidate(int primerIndex) {
+            return candidates[2 * primerIndex + 1];
+        }
+    }
+}
@@ -27,6 +27,8 @@ public class PrimerTrimmingOptions extends Options {
     private CostMatrixOption costMatrixOption;
     private IntegerOption maximumMismatchesOption;
     private IntegerOption minimumMatchLengthOption;
+    private BooleanOption restrictSearchToEndsOption;
+    private IntegerOption searchWindowSizeOption;
 
     public PrimerTrimmingOptions(Class cls) {
         super(cls);
@@ -37,6 +39,7 @@ public class PrimerTrimmingOptions extends Options {
         addSimilarityOption();
         addMaximumMismatchesOption();
         addMinimumMatchLengthOption();
+        addSearchWindowOptions();
     }
 
     public List<OligoSequenceDocument> getPrimers() throws DocumentOperationException {
@@ -51,6 +54,17 @@ public class PrimerTrimmingOptions extends Options {
         return primers;
     }
 
+    /**
+     * Builds a seed index of the selected primers for the maximum number of mismatches.  Build the index once and share
+     * it between the sequences being trimmed.
+     *
+     * @return Seed index of the selected primers.
+     * @throws DocumentOperationException if the primers could not be loaded.
+     */
+    public PrimerSeedIndex createPrimerSeedIndex() throws DocumentOperationException {
+        return new PrimerSeedIndex(getPrimers(), getMaximumMismatches());
+    }
+
     public double getGapOptionPenalty() {
         return gapOpenPenaltyOption.getValue();
     }
@@ -71,6 +85,13 @@ public class PrimerTrimmingOptions extends Options {
         return minimumMatchLengthOption.getValue();
     }
 
+    /**
+     * @return Number of bases at each end of a sequence to search for primers in, or 0 to search the whole sequence.
+     */
+    public int getSearchWindowSize() {
+        return restrictSearchToEndsOption.getValue() ? searchWindowSizeOption.getValue() : 0;
+    }
+
     private void addPrimerSelectionOption() {
         primerSelectionOption = addPrimerSelectionOption(
                 "primers",
@@ -108,6 +129,18 @@ public class PrimerTrimmingOptions extends Options {
         minimumMatchLengthOption = addIntegerOption("minimumMatchLength", "Minimum Match Length", 15, 1, Integer.MAX_VALUE);
     }
 
+    private void addSearchWindowOptions() {
+        restrictSearchToEndsOption = addBooleanOption("restrictSearchToEnds", "Only search near the ends of sequences", false);
+        restrictSearchToEndsOption.setDescription(
+                "Searches for forward primers at the start of sequences and reverse primers at the end of sequences " +
+                "instead of searching the whole sequence.  Primers that bind further into a sequence will not be trimmed."
+        );
+        // Advanced so that it is not turned into a multiple value option by the batch options
+        searchWindowSizeOption = addIntegerOption("searchWindowSize", "Bases to search at each end:", 80, 1, Integer.MAX_VALUE);
+        searchWindowSizeOption.setAdvanced(true);
+        restrictSearchToEndsOption.addDependent(searchWindowSizeOption, true);
+    }
+
     public boolean getHasPrimerTrimmed() {
         try {
             return getPrimers().size() > 0;
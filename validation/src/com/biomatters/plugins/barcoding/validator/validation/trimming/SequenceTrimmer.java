@@ -8,12 +8,12 @@ import com.biomatters.geneious.publicapi.implementations.SequenceExtractionUtili
 import com.biomatters.geneious.publicapi.implementations.sequence.DefaultNucleotideGraphSequence;
 import com.biomatters.geneious.publicapi.implementations.sequence.OligoSequenceDocument;
 import com.biomatters.geneious.publicapi.utilities.SequenceUtilities;
-import jebl.evolution.align.SmithWatermanLinearSpaceAffine;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.SequenceRead;
 import jebl.evolution.align.scores.Scores;
 import jebl.evolution.sequences.NucleotideState;
 import jebl.evolution.sequences.Nucleotides;
-import jebl.util.ProgressListener;
 
+import javax.annotation.Nullable;
 import java.util.*;
 
 /**
@@ -29,6 +29,8 @@ public class SequenceTrimmer {
     private static final int SMITH_WATERMAN_SEQUENCE_INDEX = 0;
     private static final int SMITH_WATERMAN_PRIMER_INDEX   = 1;
 
+    private static final String UNAMBIGUOUS_BASES = "ACGT";
+
     private SequenceTrimmer() {
     }
 
@@ -46,8 +48,15 @@ public class SequenceTrimmer {
      * @param maxMismatches Maximum number of mismatched bases that are allowed for the Smith-Waterman alignment
      *                      results.
      * @param minMatchLength Minimum number of matched bases that are allowed for the Smith-Waterman alignment results.
+     * @param searchWindowSize Number of bases at each end of the sequence to search for primers in, or 0 to search the
+     *                         whole sequence.
      * @return Trimmed sequence.
+     * @deprecated Builds a new {@link PrimerSeedIndex} of the primers on every call.  Build the index once with
+     * {@link PrimerSeedIndex#PrimerSeedIndex(java.util.List, int)} and use
+     * {@link #trimSequenceByQualityAndPrimers(NucleotideGraphSequenceDocument, double, PrimerSeedIndex, float, float, Scores, int, int, int, boolean)}
+     * instead.
      */
+    @Deprecated
     public static NucleotideGraphSequenceDocument trimSequenceByQualityAndPrimers(NucleotideGraphSequenceDocument sequence,
                                                                                   double errorProbabilityLimit,
                                                                                   List<OligoSequenceDocument> primers,
@@ -56,26 +65,145 @@ public class SequenceTrimmer {
                                                                                   Scores scores,
                                                                                   int maxMismatches,
                                                                                   int minMatchLength,
+                                                                                  int searchWindowSize,
                                                                                   boolean trimByAddingAnnotations) {
-        List<Trimmage> trimmages = new ArrayList<Trimmage>();
+        return trimSequenceByQualityAndPrimers(sequence, errorProbabilityLimit, new PrimerSeedIndex(primers, maxMismatches),
+                gapOpenPenalty, gapExtensionPenalty, scores, maxMismatches, minMatchLength, searchWindowSize, trimByAddingAnnotations);
+    }
 
-        /* Get the Trimmage that derives from running the modified Mott algorithm on the supplied sequence. */
-        trimmages.add(ErrorProbabilityTrimmer.getTrimmage(sequence, TrimmableEnds.Both, errorProbabilityLimit));
+    /**
+     * Trims the supplied sequence by removing or annotating the greatest number of bases that can be removed via the
+     * modified Mott algorithm and the Smith-Waterman algorithm.  Only the primers that share a seed with the sequence
+     * are aligned via the Smith-Waterman algorithm.
+     *
+     * @param sequence Sequence to trim.
+     * @param errorProbabilityLimit Error probability limit for the modified Mott algorithm.
+     * @param primerSeedIndex Index of the primer sequences for the Smith-Waterman algorithm.  Must have been built for
+     *                        maxMismatches.  See {@link PrimerTrimmingOptions#createPrimerSeedIndex()}
+     * @param gapOpenPenalty Gap open penalty for the Smith-Waterman algorithm.
+     * @param gapExtensionPenalty Gap extension penalty for the Smith-Waterman algorithm.
+     * @param scores Scores matrix for the Smith-Waterman algorithm.
+     * @param trimByAddingAnnotations If true, trim regions are annotated. If false, trim regions are removed.
+     * @param maxMismatches Maximum number of mismatched bases that are allowed for the Smith-Waterman alignment
+     *                      results.
+     * @param minMatchLength Minimum number of matched bases that are allowed for the Smith-Waterman alignment results.
+     * @param searchWindowSize Number of bases at each end of the sequence to search for primers in, or 0 to search the
+     *                         whole sequence.  Forward primers are only searched for in the window at the start of the
+     *                         sequence and reverse primers in the window at the end.
+     * @return Trimmed sequence.
+     */
+    public static NucleotideGraphSequenceDocument trimSequenceByQualityAndPrimers(NucleotideGraphSequenceDocument sequence,
+                                                                                  double errorProbabilityLimit,
+                                                                                  PrimerSeedIndex primerSeedIndex,
+                                                                                  float gapOpenPenalty,
+                                                                                  float gapExtensionPenalty,
+                                                                                  Scores scores,
+                                                                                  int maxMismatches,
+                                                                                  int minMatchLength,
+                                                                                  int searchWindowSize,
+                                                                                  boolean trimByAddingAnnotations) {
+        return trimSequenceByQualityAndPrimers(sequence, errorProbabilityLimit, primerSeedIndex, gapOpenPenalty, gapExtensionPenalty,
+                scores, maxMismatches, minMatchLength, searchWindowSize, trimByAddingAnnotations, null);
+    }
 
-        /* Get the Trimmages that derive from aligning the supplied sequence with each of the supplied primers using the
-         * Smith-Waterman algorithm.
-         */
-        for (OligoSequenceDocument primer : primers) {
-            trimmages.add(getTrimmageForPrimerTrimming(sequence, primer, gapOpenPenalty, gapExtensionPenalty, scores, maxMismatches, minMatchLength));
+    /**
+     * Trims the supplied sequence by removing or annotating the greatest number of bases that can be removed via the
+     * modified Mott algorithm and the Smith-Waterman algorithm.  Only the primers that share a seed with the sequence
+     * are aligned via the Smith-Waterman algorithm.
+     *
+     * @param sequence Sequence to trim.
+     * @param errorProbabilityLimit Error probability limit for the modified Mott algorithm.
+     * @param primerSeedIndex Index of the primer sequences for the Smith-Waterman algorithm.  Must have been built for
+     *                        maxMismatches.  See {@link PrimerTrimmingOptions#createPrimerSeedIndex()}
+     * @param gapOpenPenalty Gap open penalty for the Smith-Waterman algorithm.
+     * @param gapExtensionPenalty Gap extension penalty for the Smith-Waterman algorithm.
+     * @param scores Scores matrix for the Smith-Waterman algorithm.
+     * @param trimByAddingAnnotations If true, trim regions are annotated. If false, trim regions are removed.
+     * @param maxMismatches Maximum number of mismatched bases that are allowed for the Smith-Waterman alignment
+     *                      results.
+     * @param minMatchLength Minimum number of matched bases that are allowed for the Smith-Waterman alignment results.
+     * @param searchWindowSize Number of bases at each end of the sequence to search for primers in, or 0 to search the
+     *                         whole sequence.  Forward primers are only searched for in the window at the start of the
+     *                         sequence and reverse primers in the window at the end.
+     * @param cache Cache to look up how the sequence was trimmed before and to store how it is trimmed in, or null to
+     *              always trim the sequence.
+     * @return Trimmed sequence.
+     */
+    public static NucleotideGraphSequenceDocument trimSequenceByQualityAndPrimers(NucleotideGraphSequenceDocument sequence,
+                                                                                  double errorProbabilityLimit,
+                                                                                  PrimerSeedIndex primerSeedIndex,
+                                                                                  float gapOpenPenalty,
+                                                                                  float gapExtensionPenalty,
+                                                                                  Scores scores,
+                                                                                  int maxMismatches,
+                                                                                  int minMatchLength,
+                                                                                  int searchWindowSize,
+                                                                                  boolean trimByAddingAnnotations,
+                                                                                  @Nullable TrimmingCache cache) {
+        TrimmingCache.Trims trims = getTrims(SequenceRead.fromDocument(sequence), errorProbabilityLimit, primerSeedIndex,
+                gapOpenPenalty, gapExtensionPenalty, scores, maxMismatches, minMatchLength, searchWindowSize, cache);
+
+        return trimSequenceUsingTrims(sequence, trims, trimByAddingAnnotations);
+    }
+
+    /**
+     * Finds how the supplied read should be trimmed via the modified Mott algorithm and the Smith-Waterman algorithm.
+     * Only the primers that share a seed with the read are aligned via the Smith-Waterman algorithm.  See
+     * {@link #trimSequenceByQualityAndPrimers(NucleotideGraphSequenceDocument, double, PrimerSeedIndex, float, float, Scores, int, int, int, boolean, TrimmingCache)}
+     * for the parameters.
+     *
+     * @param read Read to trim.
+     * @return How to trim the read.  See {@link #trimSequenceUsingTrims(NucleotideGraphSequenceDocument, TrimmingCache.Trims, boolean)}
+     */
+    public static TrimmingCache.Trims getTrims(SequenceRead read,
+                                               double errorProbabilityLimit,
+                                               PrimerSeedIndex primerSeedIndex,
+                                               float gapOpenPenalty,
+                                               float gapExtensionPenalty,
+                                               Scores scores,
+                                               int maxMismatches,
+                                               int minMatchLength,
+                                               int searchWindowSize,
+                                               @Nullable TrimmingCache cache) {
+        /* Reuse how the same bases and qualities were trimmed with the same settings if the cache holds it. */
+        List<OligoSequenceDocument> primers = primerSeedIndex.getPrimers();
+        TrimmingCache.Key key = null;
+        TrimmingCache.Trims trims = null;
+        if (cache != null) {
+            key = TrimmingCache.Key.create(read, errorProbabilityLimit, primers, gapOpenPenalty, gapExtensionPenalty, scores, maxMismatches, minMatchLength, searchWindowSize);
+            trims = cache.get(key);
         }
+        if (trims == null) {
+            trims = findTrims(read, errorProbabilityLimit, primerSeedIndex, gapOpenPenalty, gapExtensionPenalty, scores, maxMismatches, minMatchLength, searchWindowSize);
+            if (cache != null) {
+                cache.put(key, trims);
+            }
+        }
+        return trims;
+    }
 
-        /* Calculate the maximization of the Trimmages. */
-        Trimmage maxTrimmage = max(trimmages);
+    /**
+     * Trims the supplied sequence as found by
+     * {@link #getTrims(SequenceRead, double, PrimerSeedIndex, float, float, Scores, int, int, int, TrimmingCache)}.
+     * The primer annotations that were found are added to the supplied sequence if it is editable.
+     *
+     * @param sequence Sequence to trim.  Must have the bases of the read the trims were found for.
+     * @param trims How to trim the sequence.
+     * @param trimByAddingAnnotations If true, trim regions are annotated. If false, trim regions are removed.
+     * @return Trimmed sequence.
+     */
+    public static NucleotideGraphSequenceDocument trimSequenceUsingTrims(NucleotideGraphSequenceDocument sequence,
+                                                                         TrimmingCache.Trims trims,
+                                                                         boolean trimByAddingAnnotations) {
+        List<SequenceAnnotation> primerAnnotations = trims.getPrimerAnnotations();
+        if (!primerAnnotations.isEmpty() && sequence instanceof EditableSequenceDocument) {
+            primerAnnotations.addAll(sequence.getSequenceAnnotations());
 
-        if (maxTrimmage.trimAtStart >= sequence.getSequenceLength() - maxTrimmage.trimAtEnd + 1) {
-            maxTrimmage = new Trimmage(sequence.getSequenceLength(), 0);
+            ((EditableSequenceDocument)sequence).setAnnotations(primerAnnotations);
         }
 
+        Trimmage maxTrimmage = trims.trimmage;
+
         if (trimByAddingAnnotations) {
             DefaultNucleotideGraphSequence trimmedSeq = new DefaultNucleotideGraphSequence(sequence, new Date());
 
@@ -159,51 +287,104 @@ public class SequenceTrimmer {
         return maxTrimmage;
     }
 
+    /**
+     * Finds how the supplied read should be trimmed without looking in a cache.  See
+     * {@link #getTrims(SequenceRead, double, PrimerSeedIndex, float, float, Scores, int, int, int, TrimmingCache)}
+     *
+     * @return The maximization of the Trimmages of every algorithm and the primer annotations that were found.
+     */
+    private static TrimmingCache.Trims findTrims(SequenceRead read,
+                                                 double errorProbabilityLimit,
+                                                 PrimerSeedIndex primerSeedIndex,
+                                                 float gapOpenPenalty,
+                                                 float gapExtensionPenalty,
+                                                 Scores scores,
+                                                 int maxMismatches,
+                                                 int minMatchLength,
+                                                 int searchWindowSize) {
+        List<Trimmage> trimmages = new ArrayList<Trimmage>();
+        List<SequenceAnnotation> primerAnnotations = new ArrayList<SequenceAnnotation>();
+
+        /* Get the Trimmage that derives from running the modified Mott algorithm on the supplied sequence. */
+        trimmages.add(ErrorProbabilityTrimmer.getTrimmage(read, errorProbabilityLimit));
+
+        /* Get the Trimmages that derive from aligning the supplied sequence with each of the supplied primers that share
+         * a seed with the sequence using the Smith-Waterman algorithm.
+         */
+        List<OligoSequenceDocument> primers = primerSeedIndex.getPrimers();
+        PrimerSeedIndex.Candidates candidates = primerSeedIndex.getCandidates(read.getBases(), searchWindowSize);
+        for (int i = 0; i < primers.size(); i++) {
+            if (candidates.isForwardCandidate(i) || candidates.isReverseCandidate(i)) {
+                trimmages.add(getTrimmageForPrimerTrimming(read, primers.get(i), candidates.isForwardCandidate(i), candidates.isReverseCandidate(i), gapOpenPenalty, gapExtensionPenalty, scores, maxMismatches, minMatchLength, searchWindowSize, primerAnnotations));
+            }
+        }
+
+        /* Calculate the maximization of the Trimmages. */
+        Trimmage maxTrimmage = max(trimmages);
+
+        if (maxTrimmage.trimAtStart >= read.getLength() - maxTrimmage.trimAtEnd + 1) {
+            maxTrimmage = new Trimmage(read.getLength(), 0);
+        }
+
+        return new TrimmingCache.Trims(maxTrimmage, primerAnnotations);
+    }
+
     /**
      * Builds the Trimmage for the trimming of the supplied sequence using the Smith-Waterman algorithm.
      *
-     * @param sequence Sequence to trim.
+     * @param read Bases of the sequence to trim.
      * @param primer Primer sequence for the Smith-Waterman algorithm.
+     * @param searchForPrimer True if the primer should be searched for.
+     * @param searchForReversePrimer True if the primer reversed should be searched for.
      * @param gapOpenPenalty Gap open penalty for the Smith-Waterman algorithm.
      * @param gapExtensionPenalty Gap extension penalty for the Smith-Waterman algorithm.
      * @param maxMismatches Maximum number of mismatched bases that are allowed for the Smith-Waterman alignments.
      * @param minMatchLength Minimum number of matched bases that are allowed for the Smith-Waterman alignments.
+     * @param searchWindowSize Number of bases at each end of the sequence to search for the primer in, or 0 to search
+     *                         the whole sequence.
+     * @param primerAnnotations Annotations of where the primer was found are added to this.
      * @return Constructed Trimmage.
      */
-    private static Trimmage getTrimmageForPrimerTrimming(NucleotideGraphSequenceDocument sequence,
+    private static Trimmage getTrimmageForPrimerTrimming(SequenceRead read,
                                                          OligoSequenceDocument primer,
+                                                         boolean searchForPrimer,
+                                                         boolean searchForReversePrimer,
                                                          float gapOpenPenalty,
                                                          float gapExtensionPenalty,
                                                          Scores scores,
                                                          int maxMismatches,
-                                                         int minMatchLength) {
-        CharSequence sequenceCharSequence = sequence.getCharSequence();
+                                                         int minMatchLength,
+                                                         int searchWindowSize,
+                                                         List<SequenceAnnotation> primerAnnotations) {
+        CharSequence sequenceCharSequence = read.getBases();
         CharSequence primerSequence = primer.getBindingSequence();
         CharSequence primerSequenceReversed = SequenceUtilities.reverseComplement(primerSequence);
 
-        /* Add any additional characters from the supplied sequence and the supplied primer to the supplied scores matrix. */
-        Scores scoresWithAdditionalCharacters = getScoresWithAdditionalCharacters(scores, Arrays.asList(SequenceUtilities.removeGaps(sequenceCharSequence), SequenceUtilities.removeGaps(primerSequence)));
+        /* Get the supplied scores matrix with any additional characters from the supplied sequence and the supplied primer. */
+        CompiledScores scoresWithAdditionalCharacters = CompiledScores.get(scores, sequenceCharSequence, primerSequence, primerSequenceReversed);
 
-        /* Align the supplied sequence and the supplied primer via the Smith-Waterman algorithm. */
-        SmithWaterman primerAlignmentResult = new SmithWaterman(
-                new String[] { sequenceCharSequence.toString(), primerSequence.toString() },
-                ProgressListener.EMPTY,
-                new SmithWatermanLinearSpaceAffine(scoresWithAdditionalCharacters, gapOpenPenalty, gapExtensionPenalty)
-        );
-        /* Align the supplied sequence and the supplied primer reversed via the Smith-Waterman algorithm. */
-        SmithWaterman reversePrimerAlignmentResult = new SmithWaterman(
-                new String[] { sequenceCharSequence.toString(), primerSequenceReversed.toString() },
-                ProgressListener.EMPTY,
-                new SmithWatermanLinearSpaceAffine(scoresWithAdditionalCharacters, gapOpenPenalty, gapExtensionPenalty)
-        );
+        /* Find the supplied primer in the start of the supplied sequence and the supplied primer reversed in the end of
+         * the supplied sequence.  The windows are the whole sequence unless a search window size was supplied.
+         */
+        int windowSize = searchWindowSize > 0 ? Math.min(searchWindowSize, sequenceCharSequence.length()) : sequenceCharSequence.length();
+        int startOfEndWindow = sequenceCharSequence.length() - windowSize;
 
-        SequenceAnnotationInterval[] primerAlignmentFullMatchIntervals = getFullMatchIntervals(primerAlignmentResult.getIntervals(), sequenceCharSequence.length(), primerSequence.length());
-        SequenceAnnotationInterval[] reversePrimerAlignmentFullMatchIntervals = getFullMatchIntervals(reversePrimerAlignmentResult.getIntervals(), sequenceCharSequence.length(), primerSequenceReversed.length());
+        SequenceAnnotationInterval[] primerAlignmentFullMatchIntervals = null;
+        if (searchForPrimer) {
+            primerAlignmentFullMatchIntervals = findPrimer(sequenceCharSequence.subSequence(0, windowSize), primerSequence, scoresWithAdditionalCharacters, gapOpenPenalty, gapExtensionPenalty, maxMismatches, minMatchLength);
+        }
+        SequenceAnnotationInterval[] reversePrimerAlignmentFullMatchIntervals = null;
+        if (searchForReversePrimer) {
+            reversePrimerAlignmentFullMatchIntervals = offsetSequenceInterval(
+                    findPrimer(sequenceCharSequence.subSequence(startOfEndWindow, sequenceCharSequence.length()), primerSequenceReversed, scoresWithAdditionalCharacters, gapOpenPenalty, gapExtensionPenalty, maxMismatches, minMatchLength),
+                    startOfEndWindow
+            );
+        }
 
-        List<SequenceAnnotation> primerAnnotations = new ArrayList<SequenceAnnotation>();
+        int amountToTrimFromLeftEndOfSequence = 0;
+        if (primerAlignmentFullMatchIntervals != null) {
+            amountToTrimFromLeftEndOfSequence = primerAlignmentFullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX].getTo();
 
-        int amountToTrimFromLeftEndOfSequence = getAmountToTrimUsingPrimer(sequenceCharSequence, primerSequence, primerAlignmentResult, primerAlignmentFullMatchIntervals, maxMismatches, minMatchLength, false);
-        if (amountToTrimFromLeftEndOfSequence > 0) {
             SequenceAnnotationInterval intervalInSeqAlignedToPrimer = getIntervalOfPrimerInSequence(
                     primer.getSequenceLength(),
                     primerAlignmentFullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX],
@@ -213,8 +394,10 @@ public class SequenceTrimmer {
             primerAnnotations.add(new SequenceAnnotation(primer.getName(), SequenceAnnotation.TYPE_PRIMER_BIND, intervalInSeqAlignedToPrimer));
         }
 
-        int amountToTrimFromRightEndOfSequence = getAmountToTrimUsingPrimer(sequenceCharSequence, primerSequenceReversed, reversePrimerAlignmentResult, reversePrimerAlignmentFullMatchIntervals, maxMismatches, minMatchLength, true);
-        if (amountToTrimFromRightEndOfSequence > 0) {
+        int amountToTrimFromRightEndOfSequence = 0;
+        if (reversePrimerAlignmentFullMatchIntervals != null) {
+            amountToTrimFromRightEndOfSequence = sequenceCharSequence.length() - reversePrimerAlignmentFullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX].getFrom() + 1;
+
             SequenceAnnotationInterval intervalInSeqAlignedToPrimer = getIntervalOfPrimerInSequence(
                     primer.getSequenceLength(),
                     reversePrimerAlignmentFullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX].reverse(),
@@ -224,13 +407,108 @@ public class SequenceTrimmer {
             primerAnnotations.add(new SequenceAnnotation(primer.getName(), SequenceAnnotation.TYPE_PRIMER_BIND_REVERSE, intervalInSeqAlignedToPrimer));
         }
 
-        if (!primerAnnotations.isEmpty() && sequence instanceof EditableSequenceDocument) {
-            primerAnnotations.addAll(sequence.getSequenceAnnotations());
+        return new Trimmage(amountToTrimFromLeftEndOfSequence, amountToTrimFromRightEndOfSequence);
+    }
 
-            ((EditableSequenceDocument)sequence).setAnnotations(primerAnnotations);
+    /**
+     * Finds the supplied primer in the supplied sequence.  The primer is first searched for with a {@link PrimerMatcher}.
+     * Primers that cannot be within maxMismatches of the sequence are rejected straight away and primers that match the
+     * sequence exactly at a single location are accepted straight away.  Only the remaining borderline cases are
+     * aligned via the Smith-Waterman algorithm.
+     *
+     * @param sequence Sequence to search.
+     * @param primer Primer to find.
+     * @param scores Compiled scores matrix for the Smith-Waterman algorithm.  Must include every character of the
+     *               sequence and the primer.
+     * @param gapOpenPenalty Gap open penalty for the Smith-Waterman algorithm.
+     * @param gapExtensionPenalty Gap extension penalty for the Smith-Waterman algorithm.
+     * @param maxMismatches Maximum number of mismatched bases that are allowed for the Smith-Waterman alignment.
+     * @param minMatchLength Minimum number of matched bases that are allowed for the Smith-Waterman alignment.
+     * @return Full match intervals of the primer in the sequence, or null if the primer was not found.  See
+     * {@link #getFullMatchIntervals(SequenceAnnotationInterval[], int, int)}
+     */
+    private static SequenceAnnotationInterval[] findPrimer(CharSequence sequence,
+                                                           CharSequence primer,
+                                                           CompiledScores scores,
+                                                           float gapOpenPenalty,
+                                                           float gapExtensionPenalty,
+                                                           int maxMismatches,
+                                                           int minMatchLength) {
+        if (PrimerMatcher.canMatch(primer)) {
+            PrimerMatcher.Matches matches = new PrimerMatcher(primer).search(sequence);
+            if (matches.minimumEdits > maxMismatches) {
+                return null;
+            }
+
+            if (isUniqueExactMatch(sequence, primer, matches, scores)) {
+                if (primer.length() < minMatchLength) {
+                    return null;
+                }
+                return new SequenceAnnotationInterval[] {
+                        new SequenceAnnotationInterval(matches.lastExactMatchEnd - primer.length() + 1, matches.lastExactMatchEnd),
+                        new SequenceAnnotationInterval(1, primer.length())
+                };
+            }
         }
 
-        return new Trimmage(amountToTrimFromLeftEndOfSequence, amountToTrimFromRightEndOfSequence);
+        PrimerAligner.Alignment alignment = PrimerAligner.align(sequence, primer, scores, gapOpenPenalty, gapExtensionPenalty);
+        if (alignment == null) {
+            return null;
+        }
+
+        SequenceAnnotationInterval[] alignmentFullMatchIntervals = getFullMatchIntervals(getIntervals(alignment), sequence.length(), primer.length());
+        if (!isAcceptablePrimerAlignment(sequence, primer, alignment, alignmentFullMatchIntervals, maxMismatches, minMatchLength)) {
+            return null;
+        }
+
+        return alignmentFullMatchIntervals;
+    }
+
+    /**
+     * Moves the sequence interval of a pair of full match intervals that were found in a window of a sequence so that
+     * it is relative to the start of the whole sequence.
+     *
+     * @param fullMatchIntervals Full match intervals found in the window, or null.
+     * @param startOfWindow Zero-based index of the start of the window in the whole sequence.
+     * @return Full match intervals relative to the whole sequence, or null if fullMatchIntervals was null.
+     */
+    private static SequenceAnnotationInterval[] offsetSequenceInterval(SequenceAnnotationInterval[] fullMatchIntervals, int startOfWindow) {
+        if (fullMatchIntervals == null || startOfWindow == 0) {
+            return fullMatchIntervals;
+        }
+
+        SequenceAnnotationInterval sequenceInterval = fullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX];
+        return new SequenceAnnotationInterval[] {
+                new SequenceAnnotationInterval(sequenceInterval.getFrom() + startOfWindow, sequenceInterval.getTo() + startOfWindow),
+                fullMatchIntervals[SMITH_WATERMAN_PRIMER_INDEX]
+        };
+    }
+
+    /**
+     * Checks if the only exact match of a primer is one that the Smith-Waterman algorithm is certain to align the whole
+     * primer to.  That is the case when the match is made of identical unambiguous bases and the scores matrix scores
+     * identical bases higher than any substitution, because no other alignment of the primer can then score as highly.
+     *
+     * @param sequence Sequence that was searched.
+     * @param primer Primer that was searched for.
+     * @param matches Result of searching the sequence for the primer.
+     * @param scores Compiled scores matrix for the Smith-Waterman algorithm.
+     * @return True if the Smith-Waterman alignment of the primer and the sequence is the exact match.
+     */
+    private static boolean isUniqueExactMatch(CharSequence sequence, CharSequence primer, PrimerMatcher.Matches matches, CompiledScores scores) {
+        if (matches.numberOfExactMatches != 1) {
+            return false;
+        }
+
+        int start = matches.lastExactMatchEnd - primer.length();
+        for (int i = 0; i < primer.length(); i++) {
+            char primerChar = primer.charAt(i);
+            if (UNAMBIGUOUS_BASES.indexOf(primerChar) == -1 || sequence.charAt(start + i) != primerChar) {
+                return false;
+            }
+        }
+
+        return scores.favoursIdenticalBases();
     }
 
     private static SequenceAnnotationInterval getIntervalOfPrimerInSequence(int primerLength, SequenceAnnotationInterval sequenceOverlapInterval, SequenceAnnotationInterval primerOverlapInterval) {
@@ -241,72 +519,79 @@ public class SequenceTrimmer {
     }
 
     /**
-     * Returns the amount of bases to trim from a sequence using the Smith-Waterman algorithm.
+     * Checks if a Smith-Waterman alignment of a primer to a sequence is good enough to trim the sequence with.
      *
      * @param sequence Sequence to trim.
      * @param primer Primer sequence associated with the Smith-Waterman alignment.
-     * @param alignmentResult Results of the Smith-Waterman alignment.
+     * @param alignment Result of the Smith-Waterman alignment.
      * @param alignmentFullMatchIntervals Full match intervals of the Smith-Waterman alignment.
-     * @param reversed True if the primer that is associated with the trimming is of a reverse direction.
-     * @return Amount of bases to remove from (the left end, if reversed==true, or the right end, if reverse==false, of)
-     * the supplied sequence.
+     * @param maxMismatches Maximum number of mismatched bases that are allowed in the Smith-Waterman alignment.
+     * @param minMatchLength Minimum number of matched bases that are allowed in the Smith-Waterman alignment.
+     * @return True if the alignment is long enough and does not have too many mismatches.
      */
-    private static int getAmountToTrimUsingPrimer(CharSequence sequence,
-                                                  CharSequence primer,
-                                                  SmithWaterman alignmentResult,
-                                                  SequenceAnnotationInterval[] alignmentFullMatchIntervals,
-                                                  int maxMismatches,
-                                                  int minMatchLength,
-                                                  boolean reversed) {
-        if (alignmentFullMatchIntervals[0] == null
-                || alignmentFullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX].getLength() < minMatchLength
-                || hasMoreThanMaximumNumberOfMismatches(sequence, primer, alignmentResult, alignmentFullMatchIntervals, maxMismatches)) {
-            return 0;
-        }
-
-        return reversed ? sequence.length() - alignmentFullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX].getFrom() + 1 : alignmentFullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX].getTo();
+    private static boolean isAcceptablePrimerAlignment(CharSequence sequence,
+                                                       CharSequence primer,
+                                                       PrimerAligner.Alignment alignment,
+                                                       SequenceAnnotationInterval[] alignmentFullMatchIntervals,
+                                                       int maxMismatches,
+                                                       int minMatchLength) {
+        return alignmentFullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX].getLength() >= minMatchLength
+                && !hasMoreThanMaximumNumberOfMismatches(sequence, primer, alignment, alignmentFullMatchIntervals, maxMismatches);
     }
 
     /**
-     * Checks if the number of mismatched bases in a Smith-Waterman alignment is above a specified threshold.
+     * Checks if the number of mismatched bases in a Smith-Waterman alignment is above a specified threshold.  Bases of
+     * the primer that are outside of the full match intervals, gaps and bases that cannot be equal are all mismatches.
      *
      * @param sequence The sequence of the Smith-Waterman alignment.
      * @param primer The primer sequence of the Smith-Waterman alignment.
-     * @param alignmentResult Result of the Smith-Waterman alignment.
+     * @param alignment Result of the Smith-Waterman alignment.
+     * @param alignmentFullMatchIntervals Full match intervals of the Smith-Waterman alignment.
      * @param maxMismatches Maximum number of mismatched bases that are allowed in the Smith-Waterman alignment.
      * @return True if the number of mismatched bases in the Smith-Waterman alignment is > maxMismatches.
      */
     private static boolean hasMoreThanMaximumNumberOfMismatches(CharSequence sequence,
                                                                 CharSequence primer,
-                                                                SmithWaterman alignmentResult,
+                                                                PrimerAligner.Alignment alignment,
                                                                 SequenceAnnotationInterval[] alignmentFullMatchIntervals,
                                                                 int maxMismatches) {
-
-        CharSequence portionOfSequenceAlignedToPrimer = sequence.subSequence(alignmentFullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX].getFrom() - 1,
-                                                                             alignmentFullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX].getTo());
-        CharSequence portionOfPrimerAlignedToSequence = primer.subSequence(alignmentFullMatchIntervals[SMITH_WATERMAN_PRIMER_INDEX].getFrom() - 1,
-                                                                           alignmentFullMatchIntervals[SMITH_WATERMAN_PRIMER_INDEX].getTo());
-
-        int differenceOfFromBetweenOriginalAndFullIntervalsSequence = alignmentResult.getIntervals()[SMITH_WATERMAN_SEQUENCE_INDEX].getFrom() - alignmentFullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX].getFrom();
-        int differenceOfToBetweenOriginalAndFullIntervalsSequence = alignmentFullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX].getTo() - alignmentResult.getIntervals()[SMITH_WATERMAN_SEQUENCE_INDEX].getTo();
-        int differenceOfFromBetweenOriginalAndFullIntervalsPrimer = alignmentResult.getIntervals()[SMITH_WATERMAN_PRIMER_INDEX].getFrom() - alignmentFullMatchIntervals[SMITH_WATERMAN_PRIMER_INDEX].getFrom();
-        int differenceOfToBetweenOriginalAndFullIntervalsPrimer = alignmentFullMatchIntervals[SMITH_WATERMAN_PRIMER_INDEX].getTo() - alignmentResult.getIntervals()[SMITH_WATERMAN_PRIMER_INDEX].getTo();
-
-        CharSequence portionOfSequenceAlignedToPrimerWithDeletions = portionOfSequenceAlignedToPrimer.subSequence(0, differenceOfFromBetweenOriginalAndFullIntervalsSequence) +
-                                                                     alignmentResult.getAlignedSequences()[SMITH_WATERMAN_SEQUENCE_INDEX] +
-                                                                     portionOfSequenceAlignedToPrimer.subSequence(portionOfSequenceAlignedToPrimer.length() - differenceOfToBetweenOriginalAndFullIntervalsSequence, portionOfSequenceAlignedToPrimer.length());
-
-        CharSequence portionOfPrimerAlignedToSequenceWithDeletions = portionOfPrimerAlignedToSequence.subSequence(0, differenceOfFromBetweenOriginalAndFullIntervalsPrimer) +
-                                                                     alignmentResult.getAlignedSequences()[SMITH_WATERMAN_PRIMER_INDEX] +
-                                                                     portionOfPrimerAlignedToSequence.subSequence(portionOfPrimerAlignedToSequence.length() - differenceOfToBetweenOriginalAndFullIntervalsPrimer, portionOfPrimerAlignedToSequence.length());
-
         int numOfMismatches = 0;
 
         numOfMismatches += alignmentFullMatchIntervals[SMITH_WATERMAN_PRIMER_INDEX].getFrom() - 1;
         numOfMismatches += primer.length() - alignmentFullMatchIntervals[SMITH_WATERMAN_PRIMER_INDEX].getTo();
 
-        for (int i = 0; i < portionOfSequenceAlignedToPrimerWithDeletions.length(); i++) {
-            if (isMismatch(portionOfSequenceAlignedToPrimerWithDeletions.charAt(i), portionOfPrimerAlignedToSequenceWithDeletions.charAt(i))) {
+        /* Bases before the aligned region that are paired without gaps. */
+        int primerIndex = alignmentFullMatchIntervals[SMITH_WATERMAN_PRIMER_INDEX].getFrom() - 1;
+        for (int i = alignmentFullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX].getFrom() - 1; i < alignment.sequenceStart; i++, primerIndex++) {
+            if (isMismatch(sequence.charAt(i), primer.charAt(primerIndex))) {
+                numOfMismatches++;
+            }
+        }
+
+        /* The aligned region. */
+        int sequenceIndex = alignment.sequenceStart;
+        primerIndex = alignment.primerStart;
+        for (byte operation : alignment.operations) {
+            if (operation == PrimerAligner.MATCH) {
+                if (isMismatch(sequence.charAt(sequenceIndex), primer.charAt(primerIndex))) {
+                    numOfMismatches++;
+                }
+                sequenceIndex++;
+                primerIndex++;
+            } else {
+                numOfMismatches++;
+                if (operation == PrimerAligner.GAP_IN_PRIMER) {
+                    sequenceIndex++;
+                } else {
+                    primerIndex++;
+                }
+            }
+        }
+
+        /* Bases after the aligned region that are paired without gaps. */
+        primerIndex = alignment.primerEnd;
+        for (int i = alignment.sequenceEnd; i < alignmentFullMatchIntervals[SMITH_WATERMAN_SEQUENCE_INDEX].getTo(); i++, primerIndex++) {
+            if (isMismatch(sequence.charAt(i), primer.charAt(primerIndex))) {
                 numOfMismatches++;
             }
         }
@@ -325,6 +610,17 @@ public class SequenceTrimmer {
         return !sequenceState.possiblyEqual(primerState);
     }
 
+    /**
+     * @param alignment Result of a Smith-Waterman alignment.
+     * @return The intervals of the sequence and the primer that are covered by the alignment.
+     */
+    private static SequenceAnnotationInterval[] getIntervals(PrimerAligner.Alignment alignment) {
+        return new SequenceAnnotationInterval[] {
+                new SequenceAnnotationInterval(alignment.sequenceStart + 1, alignment.sequenceEnd),
+                new SequenceAnnotationInterval(alignment.primerStart + 1, alignment.primerEnd)
+        };
+    }
+
     /**
      * Returns the "full" match intervals of a Smith-Waterman alignment.  The intervals will always be in the
      * {@link com.biomatters.geneious.publicapi.documents.sequence.SequenceAnnotationInterval.Direction#leftToRight}
@@ -361,10 +657,6 @@ public class SequenceTrimmer {
      * @return Full match intervals of the Smith-Waterman alignment.
      */
     private static SequenceAnnotationInterval[] getFullMatchIntervals(SequenceAnnotationInterval[] smithWatermanAlignmentIntervals, int sequenceLength, int primerLength) {
-        if (smithWatermanAlignmentIntervals[0] == null) {
-            return smithWatermanAlignmentIntervals;
-        }
-
         SequenceAnnotationInterval primerIntervalInSequence = getIntervalOfPrimerInSequence(
                 primerLength,
                 smithWatermanAlignmentIntervals[SMITH_WATERMAN_SEQUENCE_INDEX],
@@ -384,68 +676,6 @@ public class SequenceTrimmer {
         };
     }
 
-    /**
-     * Adds the unique characters from the supplied sequences to the supplied scores matrix.
-     *
-     * @param scores Scores matrix for adding the unique characters to.
-     * @param sequences Character sequences.
-     * @return The supplied scores matrix containing the unique characters from the supplied sequences.
-     */
-    private static Scores getScoresWithAdditionalCharacters(Scores scores, List<CharSequence> sequences) {
-        return Scores.includeAdditionalCharacters(scores, toString(getCharacters(sequences)));
-    }
-
-    /**
-     * Returns the unique characters from the supplied sequences.
-     *
-     * @param sequences Character sequences.
-     * @return Unique characters from the supplied sequences.
-     */
-    private static Set<Character> getCharacters(List<CharSequence> sequences) {
-        Set<Character> characters = new HashSet<Character>();
-
-        for (CharSequence sequence : sequences) {
-            characters.addAll(getCharacters(sequence));
-        }
-
-        return characters;
-    }
-
-    /**
-     * Returns the unique characters from the supplied sequence.
-     *
-     * @param sequence Character sequence.
-     * @return Unique characters from the supplied sequence.
-     */
-    private static Set<Character> getCharacters(CharSequence sequence) {
-        Set<Character> characters = new HashSet<Character>();
-
-        for (int i = 0; i < sequence.length(); i++) {
-            characters.add(sequence.charAt(i));
-        }
-
-        return characters;
-    }
-
-    /**
-     * Builds the string that contains the characters in the supplied set in the order specified by the iteration of the
-     * set.
-     *
-     * Set['A', 'B', 'C'] -> String("ABC").
-     *
-     * @param characters Characters from which the string is constructed.
-     * @return Constructed string.
-     */
-    private static String toString(Set<Character> characters) {
-        StringBuilder stringBuilder = new StringBuilder();
-
-        for (Character c : characters) {
-            stringBuilder.append(c);
-        }
-
-        return stringBuilder.toString();
-    }
-
     /**
      * Returns annotations that denote regions from the supplied sequence that are not annotated by Trimmed annotations.
      *
@@ -457,34 +687,39 @@ public class SequenceTrimmer {
     }
 
     /**
-     * Returns annotations that denote regions from a sequence that are not annotated by Trimmed annotations.
+     * Returns annotations that denote regions from a sequence that are not annotated by Trimmed annotations.  The
+     * trimmed intervals are sorted by their start and the gaps between them are collected, which merges overlapping
+     * and adjacent intervals along the way.
      *
      * @param trimmedIntervals Trimmed intervals of the sequence.
      * @param sequenceLength Length of the sequence.
      * @return "Non-trimmed" annotations of the sequence.
      */
     private static List<SequenceAnnotationInterval> getNonTrimmedIntervals(List<SequenceAnnotationInterval> trimmedIntervals, int sequenceLength) {
+        List<SequenceAnnotationInterval> sortedTrimmedIntervals = new ArrayList<SequenceAnnotationInterval>(trimmedIntervals);
+        Collections.sort(sortedTrimmedIntervals, new Comparator<SequenceAnnotationInterval>() {
+            @Override
+            public int compare(SequenceAnnotationInterval o1, SequenceAnnotationInterval o2) {
+                return o1.getMinimumIndex() - o2.getMinimumIndex();
+            }
+        });
+
         List<SequenceAnnotationInterval> nonTrimmedIntervals = new ArrayList<SequenceAnnotationInterval>();
-        boolean buildingOfNonTrimmedIntervalInProgress = false;
-        int startIndexOfNonTrimmedInterval = -1;
-
-        /* Scan for and accumulate non trimmed intervals. */
-        for (int i = 1; i <= sequenceLength; i++) {
-            if (buildingOfNonTrimmedIntervalInProgress) {
-                if (isInIntervals(i, trimmedIntervals)) {
-                    nonTrimmedIntervals.add(new SequenceAnnotationInterval(startIndexOfNonTrimmedInterval, i - 1));
-                    buildingOfNonTrimmedIntervalInProgress = false;
-                }
-            } else {
-                if (!isInIntervals(i, trimmedIntervals)) {
-                    buildingOfNonTrimmedIntervalInProgress = true;
-                    startIndexOfNonTrimmedInterval = i;
-                }
+        int startIndexOfNonTrimmedInterval = 1;
+
+        /* Accumulate the non trimmed intervals between the trimmed intervals. */
+        for (SequenceAnnotationInterval trimmedInterval : sortedTrimmedIntervals) {
+            int startOfTrimmedInterval = Math.max(1, trimmedInterval.getMinimumIndex());
+            int endOfTrimmedInterval = Math.min(sequenceLength, trimmedInterval.getMaximumIndex());
+
+            if (startOfTrimmedInterval > startIndexOfNonTrimmedInterval) {
+                nonTrimmedIntervals.add(new SequenceAnnotationInterval(startIndexOfNonTrimmedInterval, startOfTrimmedInterval - 1));
             }
+            startIndexOfNonTrimmedInterval = Math.max(startIndexOfNonTrimmedInterval, endOfTrimmedInterval + 1);
         }
 
         /* If exists, add the non trimmed interval at the right end of the sequence. */
-        if (buildingOfNonTrimmedIntervalInProgress) {
+        if (startIndexOfNonTrimmedInterval <= sequenceLength) {
             nonTrimmedIntervals.add(new SequenceAnnotationInterval(startIndexOfNonTrimmedInterval, sequenceLength));
         }
 
@@ -508,21 +743,4 @@ public class SequenceTrimmer {
 
         return trimmedIntervals;
     }
-
-    /**
-     * Checks if the supplied index is within the range of any of the supplied intervals.
-     *
-     * @param index One-based index.
-     * @param intervals Intervals.
-     * @return True if the supplied index is within the range of any of the supplied intervals.
-     */
-    private static boolean isInIntervals(int index, Collection<SequenceAnnotationInterval> intervals) {
-        for (SequenceAnnotationInterval interval : intervals) {
-            if (interval.contains(index)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,224 @@
+package com.biomatters.plugins.barcoding.validator.validation.trimming;
+
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceAnnotation;
+import com.biomatters.geneious.publicapi.implementations.sequence.OligoSequenceDocument;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.SequenceRead;
+import jebl.evolution.align.scores.Scores;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers how sequences were trimmed so that the same trace trimmed with the same settings is only trimmed once.  This
+ * saves re-running the primer alignments when a batch of parameter sets only varies assembly or validation settings.
+ * <br/><br/>
+ * Results are keyed by a digest of the bases and qualities of the sequence and a digest of every setting that affects
+ * the trimming, so that the same trace loaded into separate documents shares a result.  The least recently used results
+ * are evicted once the cache is full.
+ */
+public class TrimmingCache {
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    /* The characters that the scores of a scores matrix are digested for. */
+    private static final String SCORES_ALPHABET = "ACGTURYKMSWBDHVN-";
+
+    private final Map<Key, Trims> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxEntries The maximum number of results to keep.  0 to keep none.
+     */
+    public TrimmingCache(final int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries must not be negative: " + maxEntries);
+        }
+
+        entries = new LinkedHashMap<Key, Trims>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Trims> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return The number of lookups that found a result.
+     */
+    public long getNumberOfHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of lookups that did not find a result.
+     */
+    public long getNumberOfMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of results held.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes every result.  Does not reset the hit and miss counts.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @param key The key of the sequence and settings.
+     * @return How the sequence was trimmed with the settings, or null if the cache does not hold the result.
+     */
+    synchronized Trims get(Key key) {
+        Trims trims = entries.get(key);
+        if (trims == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return trims;
+    }
+
+    /**
+     * @param key The key of the sequence and settings.
+     * @param trims How the sequence was trimmed with the settings.
+     */
+    synchronized void put(Key key, Trims trims) {
+        entries.put(key, trims);
+    }
+
+    /**
+     * How a sequence was trimmed: the maximization of every {@link Trimmage} and the primer annotations that were found.
+     * See {@link SequenceTrimmer#trimSequenceUsingTrims(com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraphSequenceDocument, Trims, boolean)}
+     */
+    public static class Trims {
+        final Trimmage trimmage;
+        private final List<SequenceAnnotation> primerAnnotations;
+
+        Trims(Trimmage trimmage, List<SequenceAnnotation> primerAnnotations) {
+            this.trimmage = trimmage;
+            this.primerAnnotations = new ArrayList<SequenceAnnotation>(primerAnnotations);
+        }
+
+        /**
+         * @return Copies of the primer annotations, which can be added to a sequence without affecting the cached ones.
+         */
+        List<SequenceAnnotation> getPrimerAnnotations() {
+            List<SequenceAnnotation> copies = new ArrayList<SequenceAnnotation>(primerAnnotations.size());
+            for (SequenceAnnotation annotation : primerAnnotations) {
+                copies.add(new SequenceAnnotation(annotation));
+            }
+            return copies;
+        }
+    }
+
+    /**
+     * The digests of a sequence and of the settings it is trimmed with.
+     */
+    static class Key {
+        private final byte[] sequenceDigest;
+        private final byte[] settingsDigest;
+        private final int hashCode;
+
+        Key(byte[] sequenceDigest, byte[] settingsDigest) {
+            this.sequenceDigest = sequenceDigest;
+            this.settingsDigest = settingsDigest;
+            hashCode = 31 * Arrays.hashCode(sequenceDigest) + Arrays.hashCode(settingsDigest);
+        }
+
+        /**
+         * Creates the key for trimming a read.  See
+         * {@link SequenceTrimmer#getTrims(SequenceRead, double, PrimerSeedIndex, float, float, jebl.evolution.align.scores.Scores, int, int, int, TrimmingCache)}
+         * for the parameters.
+         */
+        static Key create(SequenceRead read,
+                          double errorProbabilityLimit,
+                          List<OligoSequenceDocument> primers,
+                          float gapOpenPenalty,
+                          float gapExtensionPenalty,
+                          Scores scores,
+                          int maxMismatches,
+                          int minMatchLength,
+                          int searchWindowSize) {
+            MessageDigest sequenceDigest = createDigest();
+            for (int i = 0; i < read.getLength(); i++) {
+                sequenceDigest.update((byte)read.getBase(i));
+            }
+            // Separates reads without qualities from reads with qualities that happen to match the bytes of the bases
+            sequenceDigest.update((byte)(read.hasQualities() ? 1 : 0));
+            if (read.hasQualities()) {
+                for (int i = 0; i < read.getLength(); i++) {
+                    int quality = read.getQuality(i);
+                    sequenceDigest.update((byte)(quality >>> 8));
+                    sequenceDigest.update((byte)quality);
+                }
+            }
+
+            MessageDigest settingsDigest = createDigest();
+            updateDigest(settingsDigest, Double.doubleToLongBits(errorProbabilityLimit));
+            updateDigest(settingsDigest, primers.size());
+            for (OligoSequenceDocument primer : primers) {
+                updateDigest(settingsDigest, primer.getName());
+                updateDigest(settingsDigest, primer.getBindingSequence().toString());
+            }
+            updateDigest(settingsDigest, Float.floatToIntBits(gapOpenPenalty));
+            updateDigest(settingsDigest, Float.floatToIntBits(gapExtensionPenalty));
+            updateDigest(settingsDigest, scores.getName());
+            for (int i = 0; i < SCORES_ALPHABET.length(); i++) {
+                for (int j = 0; j < SCORES_ALPHABET.length(); j++) {
+                    updateDigest(settingsDigest, Float.floatToIntBits(scores.getScore(SCORES_ALPHABET.charAt(i), SCORES_ALPHABET.charAt(j))));
+                }
+            }
+            updateDigest(settingsDigest, maxMismatches);
+            updateDigest(settingsDigest, minMatchLength);
+            updateDigest(settingsDigest, searchWindowSize);
+
+            return new Key(sequenceDigest.digest(), settingsDigest.digest());
+        }
+
+        private static MessageDigest createDigest() {
+            try {
+                return MessageDigest.getInstance(DIGEST_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Every Java platform supports " + DIGEST_ALGORITHM + ".", e);
+            }
+        }
+
+        private static void updateDigest(MessageDigest digest, long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                digest.update((byte)(value >>> shift));
+            }
+        }
+
+        private static void updateDigest(MessageDigest digest, String value) {
+            byte[] bytes = value.getBytes(CHARSET);
+            updateDigest(digest, bytes.length);
+            digest.update(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            return Arrays.equals(sequenceDigest, key.sequenceDigest) && Arrays.equals(settingsDigest, key.settingsDigest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.biomatters.plugins.barcoding.validator.validation.utilities;
+
+import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
+import jebl.util.ProgressListener;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Helpers for waiting on work submitted to other threads while still responding to cancellation.  Non-instantiable.
+ */
+public class ConcurrencyUtilities {
+    private static final long CANCELLATION_CHECK_INTERVAL_MILLISECONDS = 200;
+
+    private ConcurrencyUtilities() {
+    }
+
+    /**
+     * Waits for a pending result, checking for cancellation while waiting.  The pending result is canceled if the
+     * progress listener is.
+     *
+     * @param pendingResult The result to wait for.
+     * @param progressListener Used to check for cancellation.
+     * @param failureMessage Prefixes the message of the exception thrown if the work failed, e.g. "Failed to calculate PCI".
+     * @return The result.
+     * @throws DocumentOperationException.Canceled if the progress listener was canceled or the thread was interrupted.
+     * @throws DocumentOperationException if the work failed.  A {@link DocumentOperationException} thrown by the work
+     * is rethrown as is.
+     */
+    public static <T> T waitForResult(Future<T> pendingResult, ProgressListener progressListener, String failureMessage) throws DocumentOperationException {
+        while (true) {
+            if (progressListener.isCanceled()) {
+                pendingResult.cancel(true);
+                throw new DocumentOperationException.Canceled();
+            }
+
+            try {
+                return pendingResult.get(CANCELLATION_CHECK_INTERVAL_MILLISECONDS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Still running.  Loop around to check for cancellation again.
+            } catch (InterruptedException e) {
+                throw new DocumentOperationException.Canceled();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof DocumentOperationException) {
+                    throw (DocumentOperationException)cause;
+                }
+                throw new DocumentOperationException(failureMessage + ": " + cause.getMessage(), cause);
+            }
+        }
+    }
+}
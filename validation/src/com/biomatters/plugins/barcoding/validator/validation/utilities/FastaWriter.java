@@ -0,0 +1,148 @@
+package com.biomatters.plugins.barcoding.validator.validation.utilities;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Writes sequences to a FASTA file one record at a time.  Sequence characters are encoded straight from the
+ * {@link CharSequence} into a buffer that is written to the file whenever it fills, so no String copy of a sequence, or
+ * of the whole file, is ever made.  Each sequence is written on a single line.
+ */
+public class FastaWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CHUNK_SIZE = 4 * 1024;
+    private static final Charset HEADER_CHARSET = Charset.forName("UTF-8");
+
+    private final FileOutputStream outputStream;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final boolean upperCase;
+    /* Decoded characters of a packed sequence.  Created when the first packed sequence is written. */
+    private char[] chunk = null;
+
+    /**
+     * @param file The file to write to.  Is overwritten if it exists.
+     * @throws IOException if the file could not be opened.
+     */
+    public FastaWriter(File file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * @param file The file to write to.  Is overwritten if it exists.
+     * @param upperCase True to write sequences in upper case, false to write them as they are.
+     * @throws IOException if the file could not be opened.
+     */
+    public FastaWriter(File file, boolean upperCase) throws IOException {
+        this.outputStream = new FileOutputStream(file);
+        this.channel = outputStream.getChannel();
+        this.upperCase = upperCase;
+    }
+
+    /**
+     * Writes a FASTA record.
+     *
+     * @param name The name of the sequence.  Must not contain whitespace if it is to be read back as the name.
+     * @param description A description to follow the name on the header line, or null for none.
+     * @param sequence The sequence.  Must only contain ASCII characters.
+     * @throws IOException if the record could not be written.
+     */
+    public void write(String name, @Nullable String description, CharSequence sequence) throws IOException {
+        put((">" + name + (description == null || description.isEmpty() ? "" : " " + description)).getBytes(HEADER_CHARSET));
+        put((byte)'\n');
+
+        if (sequence instanceof PackedSequence) {
+            writeSequence(name, (PackedSequence)sequence);
+        } else {
+            for (int i = 0; i < sequence.length(); i++) {
+                putSequenceCharacter(name, sequence.charAt(i), i);
+            }
+        }
+        put((byte)'\n');
+    }
+
+    /**
+     * Decodes a packed sequence a chunk at a time with {@link PackedSequence#getChars(int, int, char[], int)}, rather
+     * than searching its runs for every character as {@link PackedSequence#charAt(int)} does.
+     */
+    private void writeSequence(String name, PackedSequence sequence) throws IOException {
+        if (chunk == null) {
+            chunk = new char[CHUNK_SIZE];
+        }
+        for (int start = 0; start < sequence.length(); start += chunk.length) {
+            int end = Math.min(sequence.length(), start + chunk.length);
+            sequence.getChars(start, end, chunk, 0);
+            for (int i = start; i < end; i++) {
+                putSequenceCharacter(name, chunk[i - start], i);
+            }
+        }
+    }
+
+    private void putSequenceCharacter(String name, char c, int index) throws IOException {
+        if (c > Byte.MAX_VALUE) {
+            throw new IOException("Could not write " + name + ": Non-ASCII character '" + c + "' at position " + (index + 1) + ".");
+        }
+        if (upperCase && c >= 'a' && c <= 'z') {
+            c = (char)(c - ('a' - 'A'));
+        }
+        put((byte)c);
+    }
+
+    /**
+     * Writes a line that is not part of a record, such as a comment at the start of the file.
+     *
+     * @param line The line, without a line terminator.
+     * @throws IOException if the line could not be written.
+     */
+    public void writeLine(String line) throws IOException {
+        put(line.getBytes(HEADER_CHARSET));
+        put((byte)'\n');
+    }
+
+    /**
+     * Writes anything that is buffered and closes the file.
+     *
+     * @throws IOException if the buffered output could not be written.  The file is closed regardless.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flushBuffer();
+        }
+        buffer.put(b);
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,100 @@
+package com.biomatters.plugins.barcoding.validator.validation.utilities;
+
+import java.util.Arrays;
+
+/**
+ * Utilities for cheaply comparing nucleotide sequences by the short words (k-mers) they share.  K-mers are packed two
+ * bits per base into a long so only k-mers of unambiguous bases (A, C, G and T/U) are considered.
+ */
+public class KmerUtilities {
+
+    private KmerUtilities() {
+    }
+
+    /**
+     * The k-mer length used to detect the orientation of a sequence.  Long enough that chance matches against a
+     * barcode length sequence are rare.
+     */
+    public static final int ORIENTATION_KMER_LENGTH = 8;
+
+    private static final int NOT_CANONICAL = -1;
+    private static final int[] BASE_CODES = new int[128];
+    static {
+        Arrays.fill(BASE_CODES, NOT_CANONICAL);
+        BASE_CODES['A'] = 0;
+        BASE_CODES['C'] = 1;
+        BASE_CODES['G'] = 2;
+        BASE_CODES['T'] = 3;
+        BASE_CODES['U'] = 3;
+    }
+
+    /**
+     * @param residues Upper case residues.  See {@link PairwiseAligner#toResidues(CharSequence)}
+     * @param k The length of k-mer.  Must be between 1 and 31 inclusive.
+     * @return Sorted array of the distinct packed k-mers in the residues.
+     */
+    public static long[] getSortedKmers(byte[] residues, int k) {
+        long[] kmers = getKmers(residues, k);
+        Arrays.sort(kmers);
+
+        int numDistinct = 0;
+        for (int i = 0; i < kmers.length; i++) {
+            if (i == 0 || kmers[i] != kmers[i - 1]) {
+                kmers[numDistinct++] = kmers[i];
+            }
+        }
+        return numDistinct == kmers.length ? kmers : Arrays.copyOf(kmers, numDistinct);
+    }
+
+    /**
+     * Calculates the fraction of a query's k-mers that are contained in a reference.
+     *
+     * @param sortedReferenceKmers K-mers of the reference as returned by {@link #getSortedKmers(byte[], int)}
+     * @param query Upper case residues of the query.  See {@link PairwiseAligner#toResidues(CharSequence)}
+     * @param k The length of k-mer used to build the reference k-mers
+     * @return The percentage of the query's k-mers that are found in the reference, from 0 to 100.  0 if the query has
+     * no k-mers.
+     */
+    public static double getContainment(long[] sortedReferenceKmers, byte[] query, int k) {
+        long[] queryKmers = getKmers(query, k);
+        if (queryKmers.length == 0) {
+            return 0;
+        }
+
+        int numContained = 0;
+        for (long kmer : queryKmers) {
+            if (Arrays.binarySearch(sortedReferenceKmers, kmer) >= 0) {
+                numContained++;
+            }
+        }
+        return 100.0 * numContained / queryKmers.length;
+    }
+
+    /**
+     * @return The packed k-mers of the residues in the order they occur.  K-mers that span a base that is not A, C,
+     * G or T/U are skipped.
+     */
+    private static long[] getKmers(byte[] residues, int k) {
+        if (k < 1 || k > 31) {
+            throw new IllegalArgumentException("k-mer length must be between 1 and 31: " + k);
+        }
+
+        long mask = (1L << (2 * k)) - 1;
+        long[] kmers = new long[Math.max(0, residues.length - k + 1)];
+        int numKmers = 0;
+        long kmer = 0;
+        int validLength = 0;
+        for (byte residue : residues) {
+            int code = residue >= 0 ? BASE_CODES[residue] : NOT_CANONICAL;
+            if (code == NOT_CANONICAL) {
+                validLength = 0;
+                continue;
+            }
+            kmer = ((kmer << 2) | code) & mask;
+            if (++validLength >= k) {
+                kmers[numKmers++] = kmer;
+            }
+        }
+        return numKmers == kmers.length ? kmers : Arrays.copyOf(kmers, numKmers);
+    }
+}
@@ -0,0 +1,331 @@
+package com.biomatters.plugins.barcoding.validator.validation.utilities;
+
+import java.util.Arrays;
+
+/**
+ * An immutable nucleotide sequence stored two bits per base.  Upper case A, C, G and T are packed into longs, 32 bases
+ * per long.  Every other character (IUPAC ambiguity codes, gaps, lower case bases) is kept in a side table of runs of
+ * the same character, so the mostly gapped ends of aligned sequences cost a few bytes rather than two bytes per
+ * column.  Packing is lossless: {@link #toString()} returns exactly the characters that were packed.
+ * <br/><br/>
+ * The base codes are the same as those of {@link KmerUtilities}, A=0, C=1, G=2 and T=3, so k-mers taken from a packed
+ * sequence can be compared with k-mers from {@link KmerUtilities}.
+ * <br/><br/>
+ * {@link #charAt(int)} searches the runs on every call.  Use {@link #getChars(int, int, char[], int)} to read many
+ * characters in order, which searches the runs once.
+ */
+public class PackedSequence implements CharSequence {
+
+    private static final int BASES_PER_WORD = 32;
+    private static final String BASES = "ACGT";
+    private static final int NOT_CANONICAL = -1;
+    private static final int[] BASE_CODES = new int[128];
+    static {
+        Arrays.fill(BASE_CODES, NOT_CANONICAL);
+        for (int code = 0; code < BASES.length(); code++) {
+            BASE_CODES[BASES.charAt(code)] = code;
+        }
+    }
+
+    private static final String COMPLEMENTS_FROM = "ACGTURYKMBVDHacgturykmbvdh";
+    private static final String COMPLEMENTS_TO   = "TGCAAYRMKVBHDtgcaayrmkvbhd";
+
+    private final int length;
+    private final long[] words;
+
+    /* Runs of characters that are not packed into words.  Sorted by start, ends are exclusive. */
+    private final int[] runStarts;
+    private final int[] runEnds;
+    private final char[] runCharacters;
+
+    private PackedSequence(int length, long[] words, int[] runStarts, int[] runEnds, char[] runCharacters) {
+        this.length = length;
+        this.words = words;
+        this.runStarts = runStarts;
+        this.runEnds = runEnds;
+        this.runCharacters = runCharacters;
+    }
+
+    /**
+     * @param sequence Sequence to pack.
+     * @return The packed sequence.
+     */
+    public static PackedSequence pack(CharSequence sequence) {
+        int length = sequence.length();
+        long[] words = new long[(length + BASES_PER_WORD - 1) / BASES_PER_WORD];
+        RunsBuilder runs = new RunsBuilder();
+        for (int i = 0; i < length; i++) {
+            char c = sequence.charAt(i);
+            int code = getCode(c);
+            if (code == NOT_CANONICAL) {
+                runs.add(i, c);
+            } else {
+                words[i / BASES_PER_WORD] |= (long)code << getShift(i);
+            }
+        }
+        return runs.build(length, words);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of 0 to " + length + ".");
+        }
+
+        int run = getRunContaining(index);
+        if (run != -1) {
+            return runCharacters[run];
+        }
+        return BASES.charAt(getPackedCode(index));
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Sub sequence " + start + " to " + end + " is outside of 0 to " + length + ".");
+        }
+
+        long[] subWords = new long[(end - start + BASES_PER_WORD - 1) / BASES_PER_WORD];
+        for (int i = start; i < end; i++) {
+            subWords[(i - start) / BASES_PER_WORD] |= (long)getPackedCode(i) << getShift(i - start);
+        }
+
+        RunsBuilder runs = new RunsBuilder();
+        for (int run = getFirstRunEndingAfter(start); run < runStarts.length && runStarts[run] < end; run++) {
+            for (int i = Math.max(start, runStarts[run]); i < Math.min(end, runEnds[run]); i++) {
+                runs.add(i - start, runCharacters[run]);
+            }
+        }
+        return runs.build(end - start, subWords);
+    }
+
+    /**
+     * @return The reverse complement of this sequence.  Characters that are not nucleotides, such as gaps, are kept as
+     * they are.
+     */
+    public PackedSequence reverseComplement() {
+        long[] reversedWords = new long[words.length];
+        for (int i = 0; i < length; i++) {
+            int reversedIndex = length - 1 - i;
+            reversedWords[reversedIndex / BASES_PER_WORD] |= (long)(3 - getPackedCode(i)) << getShift(reversedIndex);
+        }
+
+        /* Positions in runs were packed with code 0 so are now 3.  Clear them so that equal sequences are packed equally. */
+        RunsBuilder runs = new RunsBuilder();
+        for (int run = runStarts.length - 1; run >= 0; run--) {
+            char complement = complement(runCharacters[run]);
+            for (int i = runEnds[run] - 1; i >= runStarts[run]; i--) {
+                int reversedIndex = length - 1 - i;
+                reversedWords[reversedIndex / BASES_PER_WORD] &= ~(3L << getShift(reversedIndex));
+                runs.add(reversedIndex, complement);
+            }
+        }
+        return runs.build(length, reversedWords);
+    }
+
+    /**
+     * @param start Zero-based index of the first base of the k-mer.
+     * @param k Length of the k-mer.  Must be between 1 and 31 inclusive.
+     * @return The k-mer packed two bits per base with the first base in the highest bits, the same as
+     * {@link KmerUtilities}, or -1 if the k-mer contains any character other than A, C, G and T.
+     */
+    public long getKmer(int start, int k) {
+        if (k < 1 || k > 31) {
+            throw new IllegalArgumentException("k-mer length must be between 1 and 31: " + k);
+        }
+        if (start < 0 || start + k > length) {
+            throw new IndexOutOfBoundsException("k-mer " + start + " to " + (start + k) + " is outside of 0 to " + length + ".");
+        }
+
+        int run = getFirstRunEndingAfter(start);
+        if (run < runStarts.length && runStarts[run] < start + k) {
+            return -1;
+        }
+
+        long kmer = 0;
+        for (int i = start; i < start + k; i++) {
+            kmer = (kmer << 2) | getPackedCode(i);
+        }
+        return kmer;
+    }
+
+    /**
+     * @param other A sequence of the same length.
+     * @return The number of positions where the two sequences have different characters.
+     */
+    public int countMismatches(PackedSequence other) {
+        if (other.length != length) {
+            throw new IllegalArgumentException("Sequences must be the same length to compare: " + length + " and " + other.length);
+        }
+
+        int mismatches = 0;
+        for (int i = 0; i < words.length; i++) {
+            long difference = words[i] ^ other.words[i];
+            mismatches += Long.bitCount((difference | (difference >>> 1)) & 0x5555555555555555L);
+        }
+
+        /* Positions in runs were packed with code 0 so the word comparison may have counted them wrongly.  Fix them up. */
+        mismatches += correctRunMismatches(this, other);
+        mismatches += correctRunMismatches(other, this);
+        return mismatches;
+    }
+
+    /**
+     * Corrects the mismatch count of positions in the runs of first that are not also in the runs of second.  Positions
+     * in the runs of both are corrected when first is this sequence.
+     */
+    private int correctRunMismatches(PackedSequence first, PackedSequence second) {
+        int correction = 0;
+        for (int run = 0; run < first.runStarts.length; run++) {
+            for (int i = first.runStarts[run]; i < first.runEnds[run]; i++) {
+                boolean inRunOfSecond = second.getRunContaining(i) != -1;
+                if (inRunOfSecond && first != this) {
+                    continue;
+                }
+                boolean countedAsMismatch = first.getPackedCode(i) != second.getPackedCode(i);
+                boolean isMismatch = first.runCharacters[run] != second.charAt(i);
+                correction += (isMismatch ? 1 : 0) - (countedAsMismatch ? 1 : 0);
+            }
+        }
+        return correction;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PackedSequence)) {
+            return false;
+        }
+        PackedSequence other = (PackedSequence)o;
+        return length == other.length && Arrays.equals(words, other.words) && Arrays.equals(runStarts, other.runStarts)
+                && Arrays.equals(runEnds, other.runEnds) && Arrays.equals(runCharacters, other.runCharacters);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * length + Arrays.hashCode(words)) + Arrays.hashCode(runCharacters);
+    }
+
+    /**
+     * Copies characters into an array, the same as {@link String#getChars(int, int, char[], int)}.  Packed bases are
+     * decoded a word at a time and the runs are only searched once, so this is much faster than calling
+     * {@link #charAt(int)} for each position.
+     *
+     * @param start Index of the first character to copy.
+     * @param end Index after the last character to copy.
+     * @param destination The array to copy to.
+     * @param destinationStart The index in the array to copy the first character to.
+     */
+    public void getChars(int start, int end, char[] destination, int destinationStart) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Characters " + start + " to " + end + " are outside of 0 to " + length + ".");
+        }
+        if (destinationStart < 0 || destinationStart + end - start > destination.length) {
+            throw new IndexOutOfBoundsException("Destination " + destinationStart + " to " + (destinationStart + end - start) + " is outside of 0 to " + destination.length + ".");
+        }
+
+        int i = start;
+        while (i < end) {
+            long word = words[i / BASES_PER_WORD];
+            int wordEnd = Math.min(end, (i / BASES_PER_WORD + 1) * BASES_PER_WORD);
+            for (; i < wordEnd; i++) {
+                destination[destinationStart + i - start] = BASES.charAt((int)(word >>> getShift(i)) & 3);
+            }
+        }
+
+        for (int run = getFirstRunEndingAfter(start); run < runStarts.length && runStarts[run] < end; run++) {
+            int runEnd = Math.min(end, runEnds[run]);
+            for (int j = Math.max(start, runStarts[run]); j < runEnd; j++) {
+                destination[destinationStart + j - start] = runCharacters[run];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        char[] characters = new char[length];
+        getChars(0, length, characters, 0);
+        return new String(characters);
+    }
+
+    private int getPackedCode(int index) {
+        return (int)(words[index / BASES_PER_WORD] >>> getShift(index)) & 3;
+    }
+
+    /**
+     * @return The index of the run containing the position, or -1 if the position holds a packed base.
+     */
+    private int getRunContaining(int index) {
+        int run = getFirstRunEndingAfter(index);
+        return run < runStarts.length && runStarts[run] <= index ? run : -1;
+    }
+
+    /**
+     * @return The index of the first run that ends after the position, or the number of runs if there is none.
+     */
+    private int getFirstRunEndingAfter(int index) {
+        int low = 0;
+        int high = runEnds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (runEnds[middle] <= index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /* The first base of each word is in the highest bits, so k-mers can be read off in order. */
+    private static int getShift(int index) {
+        return 2 * (BASES_PER_WORD - 1 - index % BASES_PER_WORD);
+    }
+
+    private static int getCode(char c) {
+        return c < BASE_CODES.length ? BASE_CODES[c] : NOT_CANONICAL;
+    }
+
+    private static char complement(char c) {
+        int index = COMPLEMENTS_FROM.indexOf(c);
+        return index == -1 ? c : COMPLEMENTS_TO.charAt(index);
+    }
+
+    /**
+     * Collects runs of characters that are added in order of position.
+     */
+    private static class RunsBuilder {
+        private int[] starts = new int[4];
+        private int[] ends = new int[4];
+        private char[] characters = new char[4];
+        private int numRuns = 0;
+
+        private void add(int index, char c) {
+            if (numRuns > 0 && ends[numRuns - 1] == index && characters[numRuns - 1] == c) {
+                ends[numRuns - 1]++;
+                return;
+            }
+
+            if (numRuns == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * numRuns);
+                ends = Arrays.copyOf(ends, 2 * numRuns);
+                characters = Arrays.copyOf(characters, 2 * numRuns);
+            }
+            starts[numRuns] = index;
+            ends[numRuns] = index + 1;
+            characters[numRuns] = c;
+            numRuns++;
+        }
+
+        private PackedSequence build(int length, long[] words) {
+            return new PackedSequence(length, words, Arrays.copyOf(starts, numRuns), Arrays.copyOf(ends, numRuns), Arrays.copyOf(characters, numRuns));
+        }
+    }
+}
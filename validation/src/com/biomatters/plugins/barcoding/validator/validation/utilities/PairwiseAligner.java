@@ -0,0 +1,267 @@
+package com.biomatters.plugins.barcoding.validator.validation.utilities;
+
+import java.util.Arrays;
+
+/**
+ * Aligns two nucleotide sequences in process using a global alignment with affine gap costs (Gotoh) where end gaps
+ * are free.  Used where only the similarity between two sequences or the placement of one sequence against another is
+ * needed so that the cost of running the MUSCLE {@link com.biomatters.geneious.publicapi.plugin.DocumentOperation} can
+ * be avoided.
+ * <br/><br/>
+ * Sequences are supplied as upper case ASCII byte arrays.  See {@link #toResidues(CharSequence)}.
+ */
+public class PairwiseAligner {
+
+    private PairwiseAligner() {
+    }
+
+    /* Same scores as the default "65% similarity" cost matrix used by the Geneious pairwise aligner. */
+    private static final int MATCH_SCORE = 5;
+    private static final int MISMATCH_SCORE = -4;
+    private static final int GAP_OPEN_PENALTY = 12;
+    private static final int GAP_EXTENSION_PENALTY = 3;
+
+    private static final int NEGATIVE_INFINITY = Integer.MIN_VALUE / 2;
+
+    /* Traceback flags.  The lowest two bits record where the best score for the cell came from. */
+    private static final byte FROM_DIAGONAL = 0;
+    private static final byte FROM_GAP_IN_FIRST = 1;
+    private static final byte FROM_GAP_IN_SECOND = 2;
+    private static final byte SOURCE_MASK = 3;
+    private static final byte GAP_IN_FIRST_EXTENDED = 4;
+    private static final byte GAP_IN_SECOND_EXTENDED = 8;
+
+    private static final byte[] COMPLEMENTS = new byte[128];
+    static {
+        for (int i = 0; i < COMPLEMENTS.length; i++) {
+            COMPLEMENTS[i] = (byte)i;
+        }
+        String bases       = "ACGTURYKMBVDH";
+        String complements = "TGCAAYRMKVBHD";
+        for (int i = 0; i < bases.length(); i++) {
+            COMPLEMENTS[bases.charAt(i)] = (byte)complements.charAt(i);
+        }
+    }
+
+    /**
+     * @param sequence Sequence to convert.  Gaps are removed.
+     * @return Upper case residues of the sequence
+     */
+    public static byte[] toResidues(CharSequence sequence) {
+        int length = sequence.length();
+        byte[] residues = new byte[length];
+        int numResidues = 0;
+        for (int i = 0; i < length; i++) {
+            char residue = Character.toUpperCase(sequence.charAt(i));
+            if (residue != '-') {
+                residues[numResidues++] = (byte)residue;
+            }
+        }
+        if (numResidues == length) {
+            return residues;
+        }
+        byte[] result = new byte[numResidues];
+        System.arraycopy(residues, 0, result, 0, numResidues);
+        return result;
+    }
+
+    /**
+     * @param residues Upper case residues.  See {@link #toResidues(CharSequence)}
+     * @return The reverse complement of the residues.  Ambiguity codes are complemented.
+     */
+    public static byte[] reverseComplement(byte[] residues) {
+        byte[] result = new byte[residues.length];
+        for (int i = 0, j = residues.length - 1; i < residues.length; i++, j--) {
+            byte residue = residues[j];
+            result[i] = residue >= 0 ? COMPLEMENTS[residue] : residue;
+        }
+        return result;
+    }
+
+    /**
+     * Aligns two sequences and calculates the percentage of identical residues in the alignment.  End gaps are
+     * ignored so the percentage is calculated over the region where the two sequences overlap.
+     *
+     * @param first Upper case residues of the first sequence.  See {@link #toResidues(CharSequence)}
+     * @param second Upper case residues of the second sequence.  See {@link #toResidues(CharSequence)}
+     * @return The percentage of aligned columns that are identical, from 0 to 100.  0 if the sequences do not overlap.
+     */
+    public static float getSimilarity(byte[] first, byte[] second) {
+        Alignment alignment = align(first, second);
+        return getSimilarityFromTraceback(first, second, alignment.traceback, second.length + 1, alignment.endRow, alignment.endColumn);
+    }
+
+    /**
+     * Aligns a query to a reference and reports where each residue of the reference was aligned to.  End gaps are
+     * free.
+     *
+     * @param query Upper case residues of the query.  See {@link #toResidues(CharSequence)}
+     * @param reference Upper case residues of the reference.  See {@link #toResidues(CharSequence)}
+     * @return For each residue of the reference, the index of the query residue aligned to it.  Or -1 if there is a
+     * gap in the query.
+     */
+    public static int[] getAlignedQueryIndices(byte[] query, byte[] reference) {
+        Alignment alignment = align(query, reference);
+        int numColumns = reference.length + 1;
+
+        int[] result = new int[reference.length];
+        Arrays.fill(result, -1);
+
+        int row = alignment.endRow;
+        int column = alignment.endColumn;
+        byte state = FROM_DIAGONAL;
+        while (row > 0 && column > 0) {
+            byte flags = alignment.traceback[row * numColumns + column];
+            if (state == FROM_DIAGONAL) {
+                state = (byte)(flags & SOURCE_MASK);
+            }
+
+            if (state == FROM_DIAGONAL) {
+                result[column - 1] = row - 1;
+                row--;
+                column--;
+            } else if (state == FROM_GAP_IN_FIRST) {
+                column--;
+                if ((flags & GAP_IN_FIRST_EXTENDED) == 0) {
+                    state = FROM_DIAGONAL;
+                }
+            } else {
+                row--;
+                if ((flags & GAP_IN_SECOND_EXTENDED) == 0) {
+                    state = FROM_DIAGONAL;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The filled in traceback matrix of an alignment and the cell the alignment ends at.
+     */
+    private static class Alignment {
+        private final byte[] traceback;
+        private final int endRow;
+        private final int endColumn;
+
+        private Alignment(byte[] traceback, int endRow, int endColumn) {
+            this.traceback = traceback;
+            this.endRow = endRow;
+            this.endColumn = endColumn;
+        }
+    }
+
+    private static Alignment align(byte[] first, byte[] second) {
+        int numRows = first.length + 1;
+        int numColumns = second.length + 1;
+        byte[] traceback = new byte[numRows * numColumns];
+
+        int[] previousScores = new int[numColumns];
+        int[] currentScores = new int[numColumns];
+        int[] gapInSecondScores = new int[numColumns];
+        Arrays.fill(gapInSecondScores, NEGATIVE_INFINITY);
+
+        int bestScore = 0;
+        int bestRow = 0;
+        int bestColumn = 0;
+
+        for (int i = 1; i < numRows; i++) {
+            byte residue = first[i - 1];
+            currentScores[0] = 0;
+            int gapInFirstScore = NEGATIVE_INFINITY;
+            int rowOffset = i * numColumns;
+
+            for (int j = 1; j < numColumns; j++) {
+                byte flags = 0;
+
+                int openGapInFirst = currentScores[j - 1] - GAP_OPEN_PENALTY;
+                int extendGapInFirst = gapInFirstScore - GAP_EXTENSION_PENALTY;
+                if (extendGapInFirst > openGapInFirst) {
+                    gapInFirstScore = extendGapInFirst;
+                    flags |= GAP_IN_FIRST_EXTENDED;
+                } else {
+                    gapInFirstScore = openGapInFirst;
+                }
+
+                int openGapInSecond = previousScores[j] - GAP_OPEN_PENALTY;
+                int extendGapInSecond = gapInSecondScores[j] - GAP_EXTENSION_PENALTY;
+                if (extendGapInSecond > openGapInSecond) {
+                    gapInSecondScores[j] = extendGapInSecond;
+                    flags |= GAP_IN_SECOND_EXTENDED;
+                } else {
+                    gapInSecondScores[j] = openGapInSecond;
+                }
+
+                int score = previousScores[j - 1] + (residue == second[j - 1] ? MATCH_SCORE : MISMATCH_SCORE);
+                if (gapInFirstScore > score) {
+                    score = gapInFirstScore;
+                    flags |= FROM_GAP_IN_FIRST;
+                }
+                if (gapInSecondScores[j] > score) {
+                    score = gapInSecondScores[j];
+                    flags = (byte)((flags & ~SOURCE_MASK) | FROM_GAP_IN_SECOND);
+                }
+
+                currentScores[j] = score;
+                traceback[rowOffset + j] = flags;
+
+                // Trailing end gaps are free so the alignment can finish on the last row or the last column
+                if ((i == numRows - 1 || j == numColumns - 1) && score > bestScore) {
+                    bestScore = score;
+                    bestRow = i;
+                    bestColumn = j;
+                }
+            }
+
+            int[] swap = previousScores;
+            previousScores = currentScores;
+            currentScores = swap;
+        }
+
+        return new Alignment(traceback, bestRow, bestColumn);
+    }
+
+    private static float getSimilarityFromTraceback(byte[] first, byte[] second, byte[] traceback, int numColumns, int row, int column) {
+        int identical = 0;
+        int alignedLength = 0;
+        int pendingGaps = 0;
+        byte state = FROM_DIAGONAL;
+
+        while (row > 0 && column > 0) {
+            byte flags = traceback[row * numColumns + column];
+            if (state == FROM_DIAGONAL) {
+                state = (byte)(flags & SOURCE_MASK);
+            }
+
+            if (state == FROM_DIAGONAL) {
+                if (first[row - 1] == second[column - 1]) {
+                    identical++;
+                }
+                // Gaps are only counted once they are known not to be end gaps
+                if (alignedLength > 0) {
+                    alignedLength += pendingGaps;
+                }
+                pendingGaps = 0;
+                alignedLength++;
+                row--;
+                column--;
+            } else if (state == FROM_GAP_IN_FIRST) {
+                pendingGaps++;
+                column--;
+                if ((flags & GAP_IN_FIRST_EXTENDED) == 0) {
+                    state = FROM_DIAGONAL;
+                }
+            } else {
+                pendingGaps++;
+                row--;
+                if ((flags & GAP_IN_SECOND_EXTENDED) == 0) {
+                    state = FROM_DIAGONAL;
+                }
+            }
+        }
+
+        if (alignedLength == 0) {
+            return 0;
+        }
+        return 100f * identical / alignedLength;
+    }
+}
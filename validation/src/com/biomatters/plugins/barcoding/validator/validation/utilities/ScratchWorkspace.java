@@ -0,0 +1,139 @@
+package com.biomatters.plugins.barcoding.validator.validation.utilities;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A directory for the temporary files of external tools.  Each job is given its own subdirectory, which the job deletes
+ * once it has read the output it needs.  Closing the workspace deletes anything jobs left behind, such as the files of
+ * jobs that were canceled part way through.
+ * <br/><br/>
+ * The workspace can be placed under any directory, such as a RAM-backed file system like /dev/shm, to keep the many
+ * small files written by tools like CAP3 off the disk.  Files can also be kept after jobs finish for debugging.
+ */
+public class ScratchWorkspace implements Closeable {
+    private static final String DIRECTORY_PREFIX = "barcodeValidator";
+
+    private static final ScratchWorkspace DEFAULT = new ScratchWorkspace(null, false);
+
+    private final File root;
+    private final boolean keepFiles;
+    private final AtomicInteger numberOfJobs = new AtomicInteger();
+
+    private File directory = null;
+    private boolean closed = false;
+
+    /**
+     * @param root The directory to create the workspace in, or null to use the system temporary directory.
+     * @param keepFiles True to keep the files of jobs after they finish and after the workspace is closed.
+     */
+    public ScratchWorkspace(@Nullable File root, boolean keepFiles) {
+        this.root = root == null ? getSystemTemporaryDirectory() : root;
+        this.keepFiles = keepFiles;
+    }
+
+    /**
+     * @return A workspace in the system temporary directory shared by callers that do not provide their own.  It is
+     * never closed, so whatever is left in it is only deleted on exit if it is empty.
+     */
+    public static ScratchWorkspace getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return The directory that temporary files are created in by default.
+     */
+    public static File getSystemTemporaryDirectory() {
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * @return The directory the workspace is created in.
+     */
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * @return True if the files of jobs are kept after they finish.
+     */
+    public boolean isKeepingFiles() {
+        return keepFiles;
+    }
+
+    /**
+     * Creates a new empty directory for the files of a single job.  It should be deleted with
+     * {@link #deleteJobDirectory(java.io.File)} once the job has finished.
+     *
+     * @param jobName A name for the directory.  Is suffixed with a number so need not be unique.
+     * @return The directory.
+     * @throws IOException if the directory could not be created or the workspace has been closed.
+     */
+    public synchronized File createJobDirectory(String jobName) throws IOException {
+        File jobDirectory = new File(getDirectory(), jobName + "-" + numberOfJobs.incrementAndGet());
+        if (!jobDirectory.mkdir()) {
+            throw new IOException("Could not create directory " + jobDirectory.getAbsolutePath() + ".");
+        }
+        return jobDirectory;
+    }
+
+    /**
+     * Deletes a directory created by {@link #createJobDirectory(String)} along with its contents, unless files are
+     * being kept.  Failures are ignored since the workspace removes anything left behind when it is closed.
+     *
+     * @param jobDirectory The directory to delete.
+     */
+    public void deleteJobDirectory(File jobDirectory) {
+        if (!keepFiles) {
+            delete(jobDirectory);
+        }
+    }
+
+    /**
+     * Deletes the workspace along with anything jobs left behind, unless files are being kept.  No more job directories
+     * can be created once the workspace is closed.
+     */
+    @Override
+    public synchronized void close() {
+        if (directory != null && !keepFiles) {
+            delete(directory);
+        }
+        directory = null;
+        closed = true;
+    }
+
+    private synchronized File getDirectory() throws IOException {
+        if (closed) {
+            throw new IOException("The scratch workspace in " + root.getAbsolutePath() + " has been closed.");
+        }
+        if (directory == null) {
+            if (!root.isDirectory() && !root.mkdirs()) {
+                throw new IOException("Could not create scratch directory " + root.getAbsolutePath() + ".");
+            }
+
+            File newDirectory = File.createTempFile(DIRECTORY_PREFIX, "", root);
+            if (!newDirectory.delete() || !newDirectory.mkdir()) {
+                throw new IOException("Could not create directory " + newDirectory.getAbsolutePath() + ".");
+            }
+            if (!keepFiles) {
+                newDirectory.deleteOnExit();
+            }
+            directory = newDirectory;
+        }
+        return directory;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+}
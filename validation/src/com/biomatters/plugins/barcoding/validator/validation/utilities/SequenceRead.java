@@ -0,0 +1,170 @@
+package com.biomatters.plugins.barcoding.validator.validation.utilities;
+
+import com.biomatters.geneious.publicapi.documents.sequence.DefaultNucleotideGraph;
+import com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraphSequenceDocument;
+import com.biomatters.geneious.publicapi.documents.sequence.NucleotideSequenceDocument;
+import com.biomatters.geneious.publicapi.implementations.sequence.DefaultNucleotideGraphSequence;
+
+import java.util.Date;
+
+/**
+ * An immutable copy of the bases and Phred qualities of a sequence, one byte per base and two bytes per quality.  Reads
+ * are passed between the stages of the validation pipeline in place of documents with chromatograms and annotations,
+ * and the algorithms that only look at bases and qualities run on them.  Documents are only created from reads when
+ * they are saved.  See {@link #toDocument()}
+ */
+public class SequenceRead {
+    private final String name;
+    private final byte[] bases;
+    private final short[] qualities;
+
+    /**
+     * @param name Name of the read.
+     * @param bases Bases of the read.  Must all be ASCII characters.
+     * @param qualities Phred qualities of the bases, or null if the read has no qualities.  Qualities above
+     *                  {@link Short#MAX_VALUE} are stored as {@link Short#MAX_VALUE}, which leaves room for the summed
+     *                  qualities of a consensus.
+     */
+    public SequenceRead(String name, CharSequence bases, int[] qualities) {
+        if (qualities != null && qualities.length != bases.length()) {
+            throw new IllegalArgumentException("Could not create read: " + qualities.length + " qualities were supplied for " + bases.length() + " bases.");
+        }
+
+        this.name = name;
+        this.bases = new byte[bases.length()];
+        for (int i = 0; i < this.bases.length; i++) {
+            char base = bases.charAt(i);
+            if (base > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Could not create read: Non-ASCII character '" + base + "' at position " + (i + 1) + ".");
+            }
+            this.bases[i] = (byte)base;
+        }
+
+        if (qualities == null) {
+            this.qualities = null;
+        } else {
+            this.qualities = new short[qualities.length];
+            for (int i = 0; i < qualities.length; i++) {
+                this.qualities[i] = (short)Math.max(0, Math.min(Short.MAX_VALUE, qualities[i]));
+            }
+        }
+    }
+
+    /**
+     * @param document Document to copy the bases and qualities of.
+     * @return A read with the name, bases and, if the document is a {@link NucleotideGraphSequenceDocument} with
+     * qualities, the qualities of the document.
+     */
+    public static SequenceRead fromDocument(NucleotideSequenceDocument document) {
+        int[] qualities = null;
+        if (document instanceof NucleotideGraphSequenceDocument && ((NucleotideGraphSequenceDocument)document).hasSequenceQualities()) {
+            NucleotideGraphSequenceDocument graphDocument = (NucleotideGraphSequenceDocument)document;
+            qualities = new int[graphDocument.getSequenceLength()];
+            for (int i = 0; i < qualities.length; i++) {
+                qualities[i] = graphDocument.getSequenceQuality(i);
+            }
+        }
+
+        return new SequenceRead(document.getName(), document.getCharSequence(), qualities);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLength() {
+        return bases.length;
+    }
+
+    /**
+     * @param index Zero-based index of the base.
+     * @return The base at the index.
+     */
+    public char getBase(int index) {
+        return (char)bases[index];
+    }
+
+    /**
+     * @return A view of the bases of the read.  Sub sequences of the view share the bases rather than copying them.
+     */
+    public CharSequence getBases() {
+        return new Bases(bases, 0, bases.length);
+    }
+
+    public boolean hasQualities() {
+        return qualities != null;
+    }
+
+    /**
+     * @param index Zero-based index of the base.
+     * @return The Phred quality of the base at the index.
+     * @throws IllegalStateException if the read has no qualities.  See {@link #hasQualities()}
+     */
+    public int getQuality(int index) {
+        if (qualities == null) {
+            throw new IllegalStateException("Read " + name + " has no qualities.");
+        }
+        return qualities[index];
+    }
+
+    /**
+     * Creates a document with the name, bases and qualities of the read.  The document has no chromatograms or
+     * annotations.
+     *
+     * @return A new document.
+     */
+    public NucleotideGraphSequenceDocument toDocument() {
+        int[] documentQualities = null;
+        if (qualities != null) {
+            documentQualities = new int[qualities.length];
+            for (int i = 0; i < qualities.length; i++) {
+                documentQualities[i] = qualities[i];
+            }
+        }
+        DefaultNucleotideGraph graph = new DefaultNucleotideGraph(null, null, documentQualities, bases.length, 0);
+
+        return new DefaultNucleotideGraphSequence(name, "", getBases().toString(), new Date(), graph);
+    }
+
+    private static class Bases implements CharSequence {
+        private final byte[] bases;
+        private final int start;
+        private final int end;
+
+        private Bases(byte[] bases, int start, int end) {
+            this.bases = bases;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length()) {
+                throw new IndexOutOfBoundsException("Index " + index + " is outside of 0 to " + length() + ".");
+            }
+            return (char)bases[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length() || start > end) {
+                throw new IndexOutOfBoundsException("Sub sequence " + start + " to " + end + " is outside of 0 to " + length() + ".");
+            }
+            return new Bases(bases, this.start + start, this.start + end);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(length());
+            for (int i = start; i < end; i++) {
+                builder.append((char)bases[i]);
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.biomatters.plugins.barcoding.validator.validation;
+
+import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
+import com.biomatters.geneious.publicapi.plugin.TestGeneious;
+import com.biomatters.plugins.barcoding.validator.validation.assembly.AssemblyTest;
+import com.biomatters.plugins.barcoding.validator.validation.assembly.CAP3Options;
+import com.biomatters.plugins.barcoding.validator.validation.assembly.CAP3Scheduler;
+import com.biomatters.plugins.barcoding.validator.validation.assembly.ContigLayout;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.SequenceRead;
+import jebl.util.ProgressListener;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class PipelineTest extends Assert {
+    private static final String TEMPLATE =
+            "ATGCGTACCTGAAGTCCATGCAATTGGCACCGTAGGCTTAACGATCGGATCCTAGCTAGGCATCGATCGTTAGCAAGTCGTACGGATCCAGTTGCA";
+    /* Stands in for CAP3 so that a test can tell whether CAP3 was run.  Exits with 1 whatever its arguments. */
+    private static final String FAILING_EXECUTABLE = "false";
+
+    @Test
+    public void inProcessAssemblyIsDisabledByDefault() {
+        TestGeneious.initialize();
+
+        assertFalse(new CAP3Options(PipelineTest.class).isInProcessAssemblyEnabled());
+    }
+
+    @Test
+    public void tracesThatAssembleInProcessAreNotAssembledWithCAP3() throws DocumentOperationException {
+        TestGeneious.initialize();
+
+        List<ContigLayout> contigs = Pipeline.assembleReads(
+                Arrays.asList(createRead("first", TEMPLATE.substring(0, 70)), createRead("second", TEMPLATE.substring(20))),
+                createOptions(true), new CAP3Scheduler(1, 0), "contig", ProgressListener.EMPTY);
+
+        assertEquals(1, contigs.size());
+        assertEquals(2, contigs.get(0).getReads().size());
+    }
+
+    @Test
+    public void tracesThatDoNotAssembleInProcessAreAssembledWithCAP3() {
+        Assume.assumeTrue(AssemblyTest.canRun(FAILING_EXECUTABLE));
+        TestGeneious.initialize();
+
+        try {
+            // The traces do not overlap by the minimum overlap length, so cannot be assembled in process
+            Pipeline.assembleReads(
+                    Arrays.asList(createRead("first", TEMPLATE.substring(0, 45)), createRead("second", TEMPLATE.substring(50))),
+                    createOptions(true), new CAP3Scheduler(1, 0), "contig", ProgressListener.EMPTY);
+            fail("Expected CAP3 to be run and fail");
+        } catch (DocumentOperationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("CAP3 failed with exit code 1"));
+        }
+    }
+
+    @Test
+    public void tracesAreAssembledWithCAP3WhenInProcessAssemblyIsDisabled() {
+        Assume.assumeTrue(AssemblyTest.canRun(FAILING_EXECUTABLE));
+        TestGeneious.initialize();
+
+        try {
+            Pipeline.assembleReads(
+                    Arrays.asList(createRead("first", TEMPLATE.substring(0, 70)), createRead("second", TEMPLATE.substring(20))),
+                    createOptions(false), new CAP3Scheduler(1, 0), "contig", ProgressListener.EMPTY);
+            fail("Expected CAP3 to be run and fail");
+        } catch (DocumentOperationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("CAP3 failed with exit code 1"));
+        }
+    }
+
+    private static CAP3Options createOptions(boolean inProcessAssembly) {
+        CAP3Options options = new CAP3Options(PipelineTest.class);
+        options.setValue("inProcessAssembly", inProcessAssembly);
+        options.setValue("executableSelection", FAILING_EXECUTABLE);
+        return options;
+    }
+
+    private static SequenceRead createRead(String name, String sequence) {
+        return new SequenceRead(name, sequence, null);
+    }
+}
@@ -3,12 +3,16 @@ package com.biomatters.plugins.barcoding.validator.validation;
 import com.biomatters.geneious.publicapi.documents.sequence.DefaultNucleotideGraph;
 import com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraph;
 import com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraphSequenceDocument;
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceAnnotation;
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceAnnotationInterval;
 import com.biomatters.geneious.publicapi.implementations.sequence.DefaultNucleotideGraphSequence;
 import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
 import com.biomatters.geneious.publicapi.utilities.CharSequenceUtilities;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.List;
+
 /**
  * @author Gen Li
  *         Created on 29/09/14 8:44 AM
@@ -64,6 +68,26 @@ public class SlidingWindowQualityValidationTest extends Assert {
         assertTrue(((new SlidingWindowQualityValidation().validate(testDoc, 4, 2, 1, 30.0))).getPass());
     }
 
+    @Test
+    public void testFailureAnnotationCoversFailedWindows() throws DocumentOperationException {
+        NucleotideGraphSequenceDocument stepOneDoc = createTestDocument(1, 1, 0, 0, 1, 1, 1, 1);
+        assertFalse(new SlidingWindowQualityValidation().validate(stepOneDoc, 2, 1, 1, 100.0).getPass());
+        assertFailureInterval(stepOneDoc, 2, 5);
+
+        NucleotideGraphSequenceDocument stepTwoDoc = createTestDocument(1, 1, 0, 0, 1, 1, 1, 1);
+        assertFalse(new SlidingWindowQualityValidation().validate(stepTwoDoc, 2, 2, 1, 100.0).getPass());
+        assertFailureInterval(stepTwoDoc, 3, 4);
+    }
+
+    private static void assertFailureInterval(NucleotideGraphSequenceDocument document, int expectedFrom, int expectedTo) {
+        List<SequenceAnnotation> annotations = document.getSequenceAnnotations();
+        assertEquals(1, annotations.size());
+        List<SequenceAnnotationInterval> intervals = annotations.get(0).getIntervals();
+        assertEquals(1, intervals.size());
+        assertEquals(expectedFrom, intervals.get(0).getFrom());
+        assertEquals(expectedTo, intervals.get(0).getTo());
+    }
+
     private static NucleotideGraphSequenceDocument createTestDocument(int... qualityArray) {
         NucleotideGraph g1 = new DefaultNucleotideGraph(null, null, qualityArray, qualityArray.length, 0);
 
@@ -0,0 +1,302 @@
+package com.biomatters.plugins.barcoding.validator.validation;
+
+import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
+import jebl.util.ProgressListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StagedPipelineExecutorTest extends Assert {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Test
+    public void stepsRunInOrderForEachBarcode() throws Exception {
+        StagedPipelineExecutor executor = createExecutor(4, 4);
+        try {
+            List<List<String>> stepsRun = new ArrayList<List<String>>();
+            List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+            for (int i = 0; i < 20; i++) {
+                final List<String> barcodeStepsRun = Collections.synchronizedList(new ArrayList<String>());
+                stepsRun.add(barcodeStepsRun);
+
+                List<Pipeline.Step> steps = new ArrayList<Pipeline.Step>();
+                for (Pipeline.Stage stage : Arrays.asList(Pipeline.Stage.TRIM, Pipeline.Stage.ASSEMBLE, Pipeline.Stage.CONSENSUS, Pipeline.Stage.VALIDATE)) {
+                    steps.add(new RecordingStep(stage, barcodeStepsRun));
+                }
+                results.add(executor.submit("barcode" + i, steps, new RecordingPersistenceSteps(barcodeStepsRun), ProgressListener.EMPTY));
+            }
+
+            List<String> expected = Arrays.asList("saveInputs", "TRIM", "ASSEMBLE", "CONSENSUS", "VALIDATE", "saveOutputs");
+            for (int i = 0; i < results.size(); i++) {
+                assertSame(stepsRun.get(i), results.get(i).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+                assertEquals(expected, stepsRun.get(i));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void maxBarcodesInFlightIsNeverExceeded() throws Exception {
+        final int maxBarcodesInFlight = 3;
+        StagedPipelineExecutor executor = createExecutor(4, maxBarcodesInFlight);
+        try {
+            final AtomicInteger barcodesInFlight = new AtomicInteger();
+            final AtomicInteger mostBarcodesInFlight = new AtomicInteger();
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int i = 0; i < 30; i++) {
+                List<Pipeline.Step> steps = new ArrayList<Pipeline.Step>();
+                for (Pipeline.Stage stage : Arrays.asList(Pipeline.Stage.TRIM, Pipeline.Stage.ASSEMBLE, Pipeline.Stage.VALIDATE)) {
+                    steps.add(new SleepingStep(stage, 5));
+                }
+                results.add(executor.submit("barcode" + i, steps, new StagedPipelineExecutor.PersistenceSteps<Void>() {
+                    @Override
+                    public void saveInputs(ProgressListener progressListener) {
+                        int inFlight = barcodesInFlight.incrementAndGet();
+                        synchronized (mostBarcodesInFlight) {
+                            mostBarcodesInFlight.set(Math.max(mostBarcodesInFlight.get(), inFlight));
+                        }
+                    }
+
+                    @Override
+                    public Void saveOutputs(ProgressListener progressListener) {
+                        barcodesInFlight.decrementAndGet();
+                        return null;
+                    }
+                }, ProgressListener.EMPTY));
+            }
+
+            for (Future<Void> result : results) {
+                result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            assertTrue(String.valueOf(mostBarcodesInFlight.get()), mostBarcodesInFlight.get() <= maxBarcodesInFlight);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failingStepPropagatesItsExceptionAndReleasesItsPermit() throws Exception {
+        StagedPipelineExecutor executor = createExecutor(1, 1);
+        try {
+            final DocumentOperationException failure = new DocumentOperationException("Step failed");
+            final AtomicBoolean laterStepRan = new AtomicBoolean();
+            Future<List<String>> result = executor.submit("failing", Arrays.<Pipeline.Step>asList(
+                    new Pipeline.Step(Pipeline.Stage.TRIM, "Failing") {
+                        @Override
+                        void run(ProgressListener progressListener) throws DocumentOperationException {
+                            throw failure;
+                        }
+                    },
+                    new Pipeline.Step(Pipeline.Stage.ASSEMBLE, "Not run") {
+                        @Override
+                        void run(ProgressListener progressListener) {
+                            laterStepRan.set(true);
+                        }
+                    }
+            ), new RecordingPersistenceSteps(new ArrayList<String>()), ProgressListener.EMPTY);
+
+            try {
+                result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                fail("Expected the failure of the step");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+            assertFalse(laterStepRan.get());
+
+            // Only one barcode can be in flight, so this can only be submitted if the failed barcode released its permit
+            List<String> stepsRun = new ArrayList<String>();
+            Future<List<String>> nextResult = executor.submit("next", Collections.<Pipeline.Step>emptyList(),
+                    new RecordingPersistenceSteps(stepsRun), new CanceledAfter(TIMEOUT_SECONDS));
+            assertSame(stepsRun, nextResult.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void submitStopsWaitingForRoomWhenCanceled() throws Exception {
+        final StagedPipelineExecutor executor = createExecutor(1, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService submitter = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit("blocking", Collections.<Pipeline.Step>singletonList(new Pipeline.Step(Pipeline.Stage.TRIM, "Blocking") {
+                @Override
+                void run(ProgressListener progressListener) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        // Shut down
+                    }
+                }
+            }), new RecordingPersistenceSteps(new ArrayList<String>()), ProgressListener.EMPTY);
+
+            final CanceledAfter progressListener = new CanceledAfter(TIMEOUT_SECONDS);
+            Future<Throwable> submitFailure = submitter.submit(new Callable<Throwable>() {
+                @Override
+                public Throwable call() throws Exception {
+                    try {
+                        executor.submit("waiting", Collections.<Pipeline.Step>emptyList(), new RecordingPersistenceSteps(new ArrayList<String>()), progressListener);
+                        return null;
+                    } catch (DocumentOperationException e) {
+                        return e;
+                    }
+                }
+            });
+
+            Thread.sleep(500);
+            assertFalse("submit() should block while the pipeline is full", submitFailure.isDone());
+            progressListener.cancel();
+            assertTrue(submitFailure.get(TIMEOUT_SECONDS, TimeUnit.SECONDS) instanceof DocumentOperationException.Canceled);
+        } finally {
+            release.countDown();
+            submitter.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shutdownNowFailsBarcodesWaitingForAStage() throws Exception {
+        StagedPipelineExecutor executor = createExecutor(1, 4);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit("barcode" + i, Collections.<Pipeline.Step>singletonList(new Pipeline.Step(Pipeline.Stage.TRIM, "Blocking") {
+                    @Override
+                    void run(ProgressListener progressListener) {
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            // Shut down
+                        }
+                    }
+                }), new RecordingPersistenceSteps(new ArrayList<String>()), ProgressListener.EMPTY));
+            }
+            assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+            release.countDown();
+        }
+        assertTrue(executor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // The first barcode was running its trimming step, so may or may not have completed
+        try {
+            results.get(0).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof DocumentOperationException);
+        }
+
+        // The rest were waiting behind it for the single thread of a stage
+        for (Future<List<String>> result : results.subList(1, results.size())) {
+            try {
+                result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                fail("Expected the barcode to fail");
+            } catch (ExecutionException e) {
+                assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof DocumentOperationException);
+            }
+        }
+
+        try {
+            executor.submit("afterShutdown", Collections.<Pipeline.Step>emptyList(), new RecordingPersistenceSteps(new ArrayList<String>()), new CanceledAfter(TIMEOUT_SECONDS));
+            fail("Expected the executor to reject the barcode");
+        } catch (DocumentOperationException e) {
+            assertFalse("Every permit should have been released by the failed barcodes", e instanceof DocumentOperationException.Canceled);
+        }
+    }
+
+    private static StagedPipelineExecutor createExecutor(int threadsPerStage, int maxBarcodesInFlight) {
+        Map<Pipeline.Stage, Integer> threads = new EnumMap<Pipeline.Stage, Integer>(Pipeline.Stage.class);
+        for (Pipeline.Stage stage : Pipeline.Stage.values()) {
+            threads.put(stage, threadsPerStage);
+        }
+        return new StagedPipelineExecutor(threads, maxBarcodesInFlight, null, null);
+    }
+
+    private static class RecordingStep extends Pipeline.Step {
+        private final List<String> stepsRun;
+
+        private RecordingStep(Pipeline.Stage stage, List<String> stepsRun) {
+            super(stage, stage.name());
+            this.stepsRun = stepsRun;
+        }
+
+        @Override
+        void run(ProgressListener progressListener) {
+            stepsRun.add(getDescription());
+        }
+    }
+
+    private static class SleepingStep extends Pipeline.Step {
+        private final long milliseconds;
+
+        private SleepingStep(Pipeline.Stage stage, long milliseconds) {
+            super(stage, stage.name());
+            this.milliseconds = milliseconds;
+        }
+
+        @Override
+        void run(ProgressListener progressListener) throws DocumentOperationException {
+            try {
+                Thread.sleep(milliseconds);
+            } catch (InterruptedException e) {
+                throw new DocumentOperationException.Canceled();
+            }
+        }
+    }
+
+    private static class RecordingPersistenceSteps implements StagedPipelineExecutor.PersistenceSteps<List<String>> {
+        private final List<String> stepsRun;
+
+        private RecordingPersistenceSteps(List<String> stepsRun) {
+            this.stepsRun = stepsRun;
+        }
+
+        @Override
+        public void saveInputs(ProgressListener progressListener) {
+            stepsRun.add("saveInputs");
+        }
+
+        @Override
+        public List<String> saveOutputs(ProgressListener progressListener) {
+            stepsRun.add("saveOutputs");
+            return stepsRun;
+        }
+    }
+
+    /**
+     * Reports that it is canceled once canceled or after a time limit, so that a test fails rather than hangs if
+     * submit() never finds room in the pipeline.
+     */
+    private static class CanceledAfter extends ProgressListener {
+        private final long deadline;
+        private volatile boolean canceled = false;
+
+        private CanceledAfter(long seconds) {
+            deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(seconds);
+        }
+
+        private void cancel() {
+            canceled = true;
+        }
+
+        @Override
+        protected void _setProgress(double fractionCompleted) {
+        }
+
+        @Override
+        protected void _setMessage(String message) {
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled || System.currentTimeMillis() > deadline;
+        }
+    }
+}
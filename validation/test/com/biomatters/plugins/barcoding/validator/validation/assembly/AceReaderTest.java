@@ -0,0 +1,89 @@
+package com.biomatters.plugins.barcoding.validator.validation.assembly;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+public class AceReaderTest extends Assert {
+    private static final String ACE =
+            "AS 2 5\n" +
+            "\n" +
+            "CO Contig1 10 2 1 U\n" +
+            "ACGT*ACGTA\n" +
+            "\n" +
+            "BQ\n" +
+            "20 20 20 20 20 20 20 20 20\n" +
+            "\n" +
+            "AF read1 U 1\n" +
+            "AF read2 C 3\n" +
+            "BS 1 10 read1\n" +
+            "\n" +
+            "RD read1 8 0 0\n" +
+            "ACGT*A\n" +
+            "CG\n" +
+            "\n" +
+            "QA 1 7 1 7\n" +
+            "DS \n" +
+            "\n" +
+            "RD read2 8 0 0\n" +
+            "GT*ACGTA\n" +
+            "\n" +
+            "QA 1 7 1 7\n" +
+            "DS \n" +
+            "\n" +
+            "CO Contig2 4 3 1 U\n" +
+            "TTTT\n" +
+            "\n" +
+            "BQ\n" +
+            "20 20 20 20\n" +
+            "\n" +
+            "AF read3 U 1\n" +
+            "AF read4 U -1\n" +
+            "AF read5 U 3\n" +
+            "\n" +
+            "RD read3 4 0 0\n" +
+            "TTTT\n" +
+            "\n" +
+            "RD read4 3 0 0\n" +
+            "GGT\n" +
+            "\n" +
+            "RD read5 4 0 0\n" +
+            "TTCC\n" +
+            "\n";
+
+    @Test
+    public void readsAreLaidOutAgainstTheConsensus() throws IOException {
+        List<AceReader.Contig> contigs = AceReader.read(new StringReader(ACE));
+        assertEquals(2, contigs.size());
+
+        AceReader.Contig contig = contigs.get(0);
+        assertEquals("Contig1", contig.name);
+        assertEquals(2, contig.readNames.size());
+        assertEquals("read1", contig.readNames.get(0));
+        assertEquals("ACGT-ACG--", new String(contig.alignedReads.get(0)));
+        assertEquals("read2", contig.readNames.get(1));
+        assertEquals("--GT-ACGTA", new String(contig.alignedReads.get(1)));
+    }
+
+    @Test
+    public void alignmentIsWidenedForReadsOverhangingTheConsensus() throws IOException {
+        AceReader.Contig contig = AceReader.read(new StringReader(ACE)).get(1);
+        assertEquals("Contig2", contig.name);
+        assertEquals("--TTTT--", new String(contig.alignedReads.get(0)));
+        assertEquals("GGT-----", new String(contig.alignedReads.get(1)));
+        assertEquals("----TTCC", new String(contig.alignedReads.get(2)));
+    }
+
+    @Test
+    public void noContigsInEmptyAssembly() throws IOException {
+        assertTrue(AceReader.read(new StringReader("AS 0 0\n\n")).isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void readLengthMustMatchRdLine() throws IOException {
+        AceReader.read(new StringReader("CO Contig1 4 1 1 U\nACGT\n\nAF read1 U 1\n\nRD read1 5 0 0\nACGT\n\n"));
+    }
+}
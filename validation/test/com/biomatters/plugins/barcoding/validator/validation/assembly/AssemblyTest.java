@@ -26,13 +26,8 @@ public class AssemblyTest extends Assert {
     public void testContigAssembly() throws DocumentOperationException {
         Assume.assumeTrue(canRun(CAP3Options.getDefaultCap3ExecutableName()));
 
-        // "com.biomatters.plugins.fileimportexport.AceImporter.AceImporterPlugin" required to process Cap3 results.
-        // "com.biomatters.plugins.local.LocalDatabasePlugin" required because Ace importer requires a
-        // WritableDatabaseService.
-        TestGeneious.initializePlugins(
-                "com.biomatters.plugins.fileimportexport.AceImporter.AceImporterPlugin",
-                "com.biomatters.plugins.local.LocalDatabasePlugin"
-        );
+        // Cap3 results are read by AceReader, so no importer plugins are required
+        TestGeneious.initialize();
 
         final String theSequence = "ACTGACTGACTGACTGACTGACTGACTGACTGACTGACTGACTGACTGACTGACTGACTGACTGACTGACTGACTGACTG";
         NucleotideGraphSequenceDocument doc =
@@ -0,0 +1,50 @@
+package com.biomatters.plugins.barcoding.validator.validation.assembly;
+
+import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
+import jebl.util.ProgressListener;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+public class CAP3SchedulerTest extends Assert {
+
+    @Test
+    public void jobsHaveSeparateDirectories() throws IOException {
+        CAP3Scheduler scheduler = new CAP3Scheduler(1, 0);
+        File first = scheduler.createJobDirectory();
+        File second = scheduler.createJobDirectory();
+        try {
+            assertTrue(first.isDirectory());
+            assertTrue(second.isDirectory());
+            assertFalse(first.equals(second));
+        } finally {
+            scheduler.deleteJobDirectory(first);
+            scheduler.deleteJobDirectory(second);
+        }
+        assertFalse(first.exists());
+        assertFalse(second.exists());
+    }
+
+    @Test
+    public void processesThatRunTooLongAreStopped() throws IOException {
+        Assume.assumeTrue(AssemblyTest.canRun("sleep"));
+
+        CAP3Scheduler scheduler = new CAP3Scheduler(1, 1);
+        File jobDirectory = scheduler.createJobDirectory();
+        try {
+            scheduler.run(new String[] { "sleep", "30" }, jobDirectory, Collections.<String, String>emptyMap(), new Cap3OutputListener(), ProgressListener.EMPTY);
+            fail("Expected the process to be stopped");
+        } catch (DocumentOperationException e) {
+            assertFalse("A timeout should not be reported as a cancellation", e instanceof DocumentOperationException.Canceled);
+            assertEquals("CAP3 did not finish within 1 seconds.", e.getMessage());
+        } finally {
+            scheduler.deleteJobDirectory(jobDirectory);
+            assertEquals(0, scheduler.getNumberOfRunningProcesses());
+            assertEquals(0, scheduler.getQueueDepth());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.biomatters.plugins.barcoding.validator.validation.assembly;
+
+import com.biomatters.plugins.barcoding.validator.validation.utilities.PairwiseAligner;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class OverlapAssemblerTest extends Assert {
+    private static final String TEMPLATE =
+            "ATGCGTACCTGAAGTCCATGCAATTGGCACCGTAGGCTTAACGATCGGATCCTAGCTAGGCATCGATCGTTAGCAAGTCGTACGGATCCAGTTGCA";
+
+    @Test
+    public void overlappingReadsAreLaidOutInBothOrientations() {
+        String forward = TEMPLATE.substring(0, 70);
+        String reverse = TEMPLATE.substring(30);
+
+        List<char[]> rows = OverlapAssembler.layout(Arrays.asList(
+                PairwiseAligner.toResidues(forward),
+                PairwiseAligner.reverseComplement(PairwiseAligner.toResidues(reverse))
+        ), 20, 90);
+
+        assertNotNull(rows);
+        assertEquals(2, rows.size());
+        assertEquals(forward + gaps(TEMPLATE.length() - 70), new String(rows.get(0)));
+        assertEquals(gaps(30) + reverse, new String(rows.get(1)));
+    }
+
+    @Test
+    public void readOverhangingStartOfContigIsPrepended() {
+        String first = TEMPLATE.substring(40);
+        String second = TEMPLATE.substring(0, 70);
+
+        List<char[]> rows = OverlapAssembler.layout(Arrays.asList(
+                PairwiseAligner.toResidues(first),
+                PairwiseAligner.toResidues(second)
+        ), 20, 90);
+
+        assertNotNull(rows);
+        assertEquals(gaps(40) + first, new String(rows.get(0)));
+        assertEquals(second + gaps(TEMPLATE.length() - 70), new String(rows.get(1)));
+    }
+
+    @Test
+    public void insertionInReadAddsGapColumn() {
+        String first = TEMPLATE.substring(0, 80);
+        String second = TEMPLATE.substring(10, 45) + "T" + TEMPLATE.substring(45);
+
+        List<char[]> rows = OverlapAssembler.layout(Arrays.asList(
+                PairwiseAligner.toResidues(first),
+                PairwiseAligner.toResidues(second)
+        ), 20, 90);
+
+        assertNotNull(rows);
+        assertEquals(rows.get(0).length, rows.get(1).length);
+        assertEquals(first, new String(rows.get(0)).replace("-", ""));
+        assertEquals(second, new String(rows.get(1)).replace("-", ""));
+        assertEquals(gaps(10), new String(rows.get(1), 0, 10));
+    }
+
+    @Test
+    public void overlapShorterThanMinimumIsNotAssembled() {
+        List<char[]> rows = OverlapAssembler.layout(Arrays.asList(
+                PairwiseAligner.toResidues(TEMPLATE.substring(0, 55)),
+                PairwiseAligner.toResidues(TEMPLATE.substring(40))
+        ), 20, 90);
+
+        assertNull(rows);
+    }
+
+    @Test
+    public void overlapBelowMinimumIdentityIsNotAssembled() {
+        String second = TEMPLATE.substring(20, 40).replace('A', 'T') + TEMPLATE.substring(40);
+
+        List<char[]> rows = OverlapAssembler.layout(Arrays.asList(
+                PairwiseAligner.toResidues(TEMPLATE.substring(0, 40)),
+                PairwiseAligner.toResidues(second)
+        ), 16, 90);
+
+        assertNull(rows);
+    }
+
+    private static String gaps(int length) {
+        StringBuilder gaps = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            gaps.append('-');
+        }
+        return gaps.toString();
+    }
+}
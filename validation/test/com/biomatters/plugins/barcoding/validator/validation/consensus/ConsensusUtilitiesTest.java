@@ -8,6 +8,8 @@ import com.biomatters.geneious.publicapi.implementations.sequence.DefaultNucleot
 import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
 import com.biomatters.geneious.publicapi.utilities.CharSequenceUtilities;
 import com.biomatters.plugins.barcoding.validator.validation.ValidationTestUtilities;
+import com.biomatters.plugins.barcoding.validator.validation.assembly.ContigLayout;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.SequenceRead;
 import jebl.evolution.sequences.Nucleotides;
 import jebl.evolution.sequences.State;
 import org.junit.Assert;
@@ -103,6 +105,38 @@ public class ConsensusUtilitiesTest extends Assert {
         }
     }
 
+    @Test
+    public void consensusOfReadsIgnoresGaps() throws DocumentOperationException {
+        ContigLayout contig = new ContigLayout("test",
+                Arrays.asList(new SequenceRead("1", "ACAC", new int[]{100, 100, 100, 100}), new SequenceRead("2", "TTTTT", new int[]{50, 50, 50, 50, 50})),
+                Arrays.asList("AC-AC".toCharArray(), "TTTTT".toCharArray()));
+        testConsensusFromReads("ACTAC", new int[]{50, 50, 50, 50, 50}, contig);
+    }
+
+    @Test
+    public void consensusOfReadsHandlesAmbiguities() throws DocumentOperationException {
+        ContigLayout contig = new ContigLayout("test",
+                Arrays.asList(new SequenceRead("1", "TACTRD", new int[]{11, 44, 44, 1, 41, 33}), new SequenceRead("2", "GTGAMB", new int[]{55, 20, 50, 1, 41, 33})),
+                Arrays.asList("TACTRD".toCharArray(), "GTGAMB".toCharArray()));
+        testConsensusFromReads("GAGWAK", new int[]{44, 24, 6, 2, 82, 66}, contig);
+    }
+
+    @Test(expected = DocumentOperationException.class)
+    public void consensusOfReadsDoesNotWorkWhenQualityIsMissing() throws DocumentOperationException {
+        ContigLayout contig = new ContigLayout("test",
+                Arrays.asList(new SequenceRead("1", "ACTG", null), new SequenceRead("2", "ACTG", null)),
+                Arrays.asList("ACTG".toCharArray(), "ACTG".toCharArray()));
+        ConsensusUtilities.getConsensus(contig);
+    }
+
+    private static void testConsensusFromReads(String expectedConsensus, int[] expectedQuality, ContigLayout contig) throws DocumentOperationException {
+        SequenceRead consensus = ConsensusUtilities.getConsensus(contig);
+        assertEquals(expectedConsensus, consensus.getBases().toString());
+        for (int i = 0; i < expectedQuality.length; i++) {
+            assertEquals(expectedQuality[i], consensus.getQuality(i));
+        }
+    }
+
     private static void testConsensusFromSequences(String expectedConsensus, int[] expectedQuality, NucleotideGraphSequenceDocument... sequences) throws DocumentOperationException {
         DefaultAlignmentDocument alignment = new DefaultAlignmentDocument("test", sequences);
         NucleotideGraphSequenceDocument consensus = ConsensusUtilities.getConsensus(alignment);
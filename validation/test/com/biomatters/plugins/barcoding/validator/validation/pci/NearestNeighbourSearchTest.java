@@ -0,0 +1,86 @@
+package com.biomatters.plugins.barcoding.validator.validation.pci;
+
+import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
+import jebl.util.ProgressListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class NearestNeighbourSearchTest extends Assert {
+
+    @Test
+    public void tiledSearchMatchesExhaustiveSearch() throws DocumentOperationException {
+        Random random = new Random(7);
+        List<long[]> targets = new ArrayList<long[]>();
+        for (int i = 0; i < NearestNeighbourSearch.TARGETS_PER_TILE * 2 + 10; i++) {
+            // Short sequences over a small alphabet so that there are plenty of ties
+            targets.add(PDistanceKernel.encode(getRandomAlignedSequence(random, 6)));
+        }
+
+        int numQueries = NearestNeighbourSearch.QUERIES_PER_TILE + 3;
+        List<long[]> queries = new ArrayList<long[]>();
+        int[] excludedTargets = new int[numQueries];
+        for (int i = 0; i < numQueries; i++) {
+            excludedTargets[i] = i % 2 == 0 ? -1 : random.nextInt(targets.size());
+            queries.add(i % 2 == 0 ? PDistanceKernel.encode(getRandomAlignedSequence(random, 6)) : targets.get(excludedTargets[i]));
+        }
+
+        int[][] nearestNeighbours = NearestNeighbourSearch.findNearestNeighbours(queries, excludedTargets, targets, ProgressListener.EMPTY);
+        for (int i = 0; i < numQueries; i++) {
+            assertTrue(Arrays.equals(getNearestNeighboursExhaustively(queries.get(i), excludedTargets[i], targets), nearestNeighbours[i]));
+        }
+    }
+
+    @Test(expected = DocumentOperationException.Canceled.class)
+    public void canBeCanceled() throws DocumentOperationException {
+        List<long[]> sequences = Arrays.asList(PDistanceKernel.encode("ACGT"), PDistanceKernel.encode("ACGA"));
+        NearestNeighbourSearch.findNearestNeighbours(sequences, new int[]{-1, -1}, sequences, new ProgressListener() {
+            @Override
+            protected void _setProgress(double v) {
+            }
+
+            @Override
+            protected void _setMessage(String s) {
+            }
+
+            @Override
+            public boolean isCanceled() {
+                return true;
+            }
+        });
+    }
+
+    private static int[] getNearestNeighboursExhaustively(long[] query, int excludedTarget, List<long[]> targets) {
+        double smallestDistance = Double.MAX_VALUE;
+        for (int i = 0; i < targets.size(); i++) {
+            if (i != excludedTarget) {
+                smallestDistance = Math.min(smallestDistance, PDistanceKernel.getPDistance(query, targets.get(i)));
+            }
+        }
+
+        List<Integer> nearestNeighbours = new ArrayList<Integer>();
+        for (int i = 0; i < targets.size(); i++) {
+            if (i != excludedTarget && PDistanceKernel.getPDistance(query, targets.get(i)) == smallestDistance) {
+                nearestNeighbours.add(i);
+            }
+        }
+
+        int[] result = new int[nearestNeighbours.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = nearestNeighbours.get(i);
+        }
+        return result;
+    }
+
+    private static String getRandomAlignedSequence(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append("ACG-".charAt(random.nextInt(4)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package com.biomatters.plugins.barcoding.validator.validation.pci;
+
+import com.biomatters.geneious.publicapi.documents.AnnotatedPluginDocument;
+import com.biomatters.geneious.publicapi.documents.DocumentUtilities;
+import com.biomatters.geneious.publicapi.documents.URN;
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceAlignmentDocument;
+import com.biomatters.geneious.publicapi.implementations.sequence.DefaultNucleotideSequence;
+import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
+import com.biomatters.geneious.publicapi.plugin.TestGeneious;
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import jebl.util.CompositeProgressListener;
+import jebl.util.ProgressListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class PCICalculatorTest extends Assert {
+
+    @Test
+    public void alignmentGivesTheSamePCIWhenParsed() throws DocumentOperationException {
+        TestGeneious.initialize();
+
+        List<String> uids = new ArrayList<String>(Arrays.asList(
+                "Apis_mellifera_1",
+                "Apis_cerana_1",
+                "Bombus_terrestris_1",
+                "Bombus_terrestris_2"
+        ));
+        List<CharSequence> alignedSequences = new ArrayList<CharSequence>(Arrays.<CharSequence>asList(
+                "ACGTAC--GTAC",
+                "ACGTAC--GTTA",
+                "TTTTAC--GTAC",
+                "TTTTACTTGTAC"
+        ));
+
+        BiMap<String, AnnotatedPluginDocument> newSamples = HashBiMap.create();
+        addNewSample(newSamples, uids, alignedSequences, "Apis", "mellifera", "sample", "ACGTAC--GTAA");
+        addNewSample(newSamples, uids, alignedSequences, "Bombus", "terrestris", "sample", "TTTTAC--GTAA");
+
+        Map<URN, Double> calculated = PCICalculator.calculatePCI(uids, alignedSequences, newSamples, createProgress());
+        SequenceAlignmentDocument alignment = PCICalculator.createAlignment(uids, alignedSequences, newSamples);
+        Map<URN, Double> parsed = PCICalculator.parseAlignment(alignment, newSamples, createProgress());
+
+        assertNotNull(calculated);
+        assertEquals(calculated, parsed);
+        for (AnnotatedPluginDocument newSample : newSamples.values()) {
+            // Each new sample is the only sample of its species among the new samples, so has a PCI value only if the
+            // reference barcodes were included
+            assertNotNull(newSample.getName(), parsed.get(newSample.getURN()));
+        }
+    }
+
+    private static void addNewSample(BiMap<String, AnnotatedPluginDocument> newSamples, List<String> uids, List<CharSequence> alignedSequences,
+                                     String genus, String species, String name, String alignedSequence) {
+        String uid = PCICalculator.getUid(new PCICalculator.GenusAndSpecies(genus, species), name);
+        newSamples.put(uid, DocumentUtilities.createAnnotatedPluginDocument(
+                new DefaultNucleotideSequence(genus + " " + species + " " + name, alignedSequence.replace("-", ""))));
+        uids.add(uid);
+        alignedSequences.add(alignedSequence);
+    }
+
+    private static CompositeProgressListener createProgress() {
+        return new CompositeProgressListener(ProgressListener.EMPTY, 1);
+    }
+}
@@ -0,0 +1,74 @@
+package com.biomatters.plugins.barcoding.validator.validation.pci;
+
+import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
+import jebl.util.ProgressListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expected values were produced by running the validator_pci.pl program on the same alignment.
+ */
+public class PCIEngineTest extends Assert {
+
+    private static final double DELTA = 0.0001;
+
+    private static final List<String> UIDS = Arrays.asList(
+            "Apis_mellifera_1",
+            "Apis_mellifera_2",
+            "Apis_cerana_1",
+            "Apis_cerana_2",
+            "Bombus_terrestris_1",
+            "Bombus_terrestris_2",
+            "Vespa_crabro_1"
+    );
+
+    private static final List<String> ALIGNED_SEQUENCES = Arrays.asList(
+            "ACGTACGTAC",
+            "ACGTACGTAA",
+            "ACGTACGTTA",
+            "ACGTACGTAA",
+            "TTTTACGTAC",
+            "ttttacgtac",
+            "ACGTNNNNAC"
+    );
+
+    @Test
+    public void pciMatchesPerlProgram() throws PciValidationException, DocumentOperationException {
+        Map<String, Double> pci = PCIEngine.calculatePCI(UIDS, ALIGNED_SEQUENCES, Arrays.asList(
+                "Apis_mellifera_1", "Apis_mellifera_2", "Apis_cerana_1", "Bombus_terrestris_1", "Vespa_crabro_1"
+        ), ProgressListener.EMPTY);
+
+        assertEquals(4, pci.size());
+        assertEquals(0.0, pci.get("Apis_mellifera_1"), DELTA);  // Nearest neighbour is Vespa because N is not compared
+        assertEquals(0.0, pci.get("Apis_mellifera_2"), DELTA);
+        assertEquals(0.5, pci.get("Apis_cerana_1"), DELTA);
+        assertEquals(1.0, pci.get("Bombus_terrestris_1"), DELTA);  // Case is ignored
+        assertFalse("PCI is not calculated for species with only one sample", pci.containsKey("Vespa_crabro_1"));
+    }
+
+    @Test
+    public void sequencesWithNoComparableColumnsAreFurthestApart() throws PciValidationException, DocumentOperationException {
+        Map<String, Double> pci = PCIEngine.calculatePCI(
+                Arrays.asList("Apis_mellifera_1", "Apis_mellifera_2", "Apis_cerana_1"),
+                Arrays.asList("ACGT", "----", "AGGT"),
+                Collections.singletonList("Apis_mellifera_1"), ProgressListener.EMPTY);
+        assertEquals(0.0, pci.get("Apis_mellifera_1"), DELTA);
+    }
+
+    @Test(expected = PciValidationException.class)
+    public void invalidUidIsRejected() throws PciValidationException, DocumentOperationException {
+        PCIEngine.calculatePCI(Arrays.asList("Apis_mellifera_1", "Apis__2"), Arrays.asList("ACGT", "ACGT"),
+                Collections.<String>emptyList(), ProgressListener.EMPTY);
+    }
+
+    @Test(expected = PciValidationException.class)
+    public void unequalLengthsAreRejected() throws PciValidationException, DocumentOperationException {
+        PCIEngine.calculatePCI(Arrays.asList("Apis_mellifera_1", "Apis_mellifera_2"), Arrays.asList("ACGT", "ACG"),
+                Collections.<String>emptyList(), ProgressListener.EMPTY);
+    }
+}
@@ -0,0 +1,82 @@
+package com.biomatters.plugins.barcoding.validator.validation.pci;
+
+import com.biomatters.plugins.barcoding.validator.validation.utilities.PackedSequence;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class PDistanceKernelTest extends Assert {
+
+    private static final double DELTA = 0.0000001;
+
+    @Test
+    public void ambiguitiesAndGapsAreNotCompared() {
+        long[] first = PDistanceKernel.encode("ACGTNRYACGT-");
+        long[] second = PDistanceKernel.encode("acgaACGuCGTA");
+        assertEquals(7, PDistanceKernel.countComparableSites(first, second));
+        assertEquals(1, PDistanceKernel.countMismatches(first, second));
+        assertEquals(1.0 / 7, PDistanceKernel.getPDistance(first, second), DELTA);
+    }
+
+    @Test
+    public void noComparableSitesIsMaximumDistance() {
+        assertEquals(1.0, PDistanceKernel.getPDistance(PDistanceKernel.encode("ACGT"), PDistanceKernel.encode("--NN")), DELTA);
+    }
+
+    @Test
+    public void equalEncodingIgnoresCaseAndAmbiguityCodes() {
+        assertTrue(Arrays.equals(PDistanceKernel.encode("ACGTNRY-"), PDistanceKernel.encode("acgt-?-K")));
+        assertFalse(Arrays.equals(PDistanceKernel.encode("ACGTA"), PDistanceKernel.encode("ACGT-")));
+    }
+
+    @Test
+    public void packedSequencesEncodeTheSameAsStrings() {
+        Random random = new Random(43);
+        for (int length : new int[]{0, 1, 31, 32, 33, 64, 100, 658}) {
+            String sequence = getRandomAlignedSequence(random, "ACGTacgt-NRYU", length);
+            assertArrayEquals(PDistanceKernel.encode(sequence), PDistanceKernel.encode(PackedSequence.pack(sequence)));
+        }
+    }
+
+    @Test
+    public void matchesColumnByColumnCount() {
+        Random random = new Random(42);
+        String alphabet = "ACGTacgt-NRYU";
+        for (int length : new int[]{1, 31, 32, 33, 64, 100, 658}) {
+            for (int repeat = 0; repeat < 20; repeat++) {
+                String first = getRandomAlignedSequence(random, alphabet, length);
+                String second = getRandomAlignedSequence(random, alphabet, length);
+
+                int comparableSites = 0;
+                int mismatches = 0;
+                for (int i = 0; i < length; i++) {
+                    char firstBase = Character.toLowerCase(first.charAt(i));
+                    char secondBase = Character.toLowerCase(second.charAt(i));
+                    if ("acgt".indexOf(firstBase) >= 0 && "acgt".indexOf(secondBase) >= 0) {
+                        comparableSites++;
+                        if (firstBase != secondBase) {
+                            mismatches++;
+                        }
+                    }
+                }
+
+                long[] firstEncoded = PDistanceKernel.encode(first);
+                long[] secondEncoded = PDistanceKernel.encode(second);
+                assertEquals(comparableSites, PDistanceKernel.countComparableSites(firstEncoded, secondEncoded));
+                assertEquals(mismatches, PDistanceKernel.countMismatches(firstEncoded, secondEncoded));
+                assertEquals(comparableSites == 0 ? 1.0 : (double)mismatches / comparableSites,
+                        PDistanceKernel.getPDistance(firstEncoded, secondEncoded), DELTA);
+            }
+        }
+    }
+
+    private static String getRandomAlignedSequence(Random random, String alphabet, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,218 @@
+package com.biomatters.plugins.barcoding.validator.validation.pci;
+
+import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
+import com.biomatters.geneious.publicapi.plugin.TestGeneious;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.FastaWriter;
+import com.biomatters.plugins.barcoding.validator.validation.utilities.PackedSequence;
+import jebl.util.ProgressListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ReferenceBarcodeIndexTest extends Assert {
+    private static final List<String> UIDS = Arrays.asList("Genus_species1_1", "Genus_species1_2", "Genus_species2_1");
+    private static final List<String> ALIGNED_SEQUENCES = Arrays.asList(
+            "ACGTACGTAC--GTACGT",
+            "ACGTACCTAC--GTACGT",
+            "ACGAACGTACTTGTAC--"
+    );
+
+    @Test
+    public void builtIndexIsSavedAndLoadedUnchanged() throws IOException, DocumentOperationException {
+        TestGeneious.initializePlugins("com.biomatters.plugins.muscle.MusclePlugin");
+
+        File directory = createDirectory();
+        try {
+            File barcodesFile = new File(directory, "barcodes.fasta");
+            FastaWriter writer = new FastaWriter(barcodesFile);
+            try {
+                for (int i = 0; i < UIDS.size(); i++) {
+                    writer.write(UIDS.get(i), null, ALIGNED_SEQUENCES.get(i).replace("-", ""));
+                }
+            } finally {
+                writer.close();
+            }
+
+            ReferenceBarcodeIndex built = ReferenceBarcodeIndex.getIndex(barcodesFile, null, ProgressListener.EMPTY);
+            File indexFile = ReferenceBarcodeIndex.getIndexFile(barcodesFile);
+            assertTrue(indexFile.isFile());
+            assertEquals(UIDS.size(), built.getUids().size());
+
+            ReferenceBarcodeIndex loaded = ReferenceBarcodeIndex.load(indexFile, ReferenceBarcodeIndex.getFingerprint(barcodesFile, null));
+            assertNotNull(loaded);
+            assertSameContents(built, loaded);
+            assertSameContents(built, ReferenceBarcodeIndex.getIndex(barcodesFile, null, ProgressListener.EMPTY));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void savingLeavesNoTemporaryFilesBehind() throws IOException {
+        File directory = createDirectory();
+        try {
+            File indexFile = new File(directory, "barcodes.fasta.pciindex");
+            ReferenceBarcodeIndex index = new ReferenceBarcodeIndex(UIDS, ALIGNED_SEQUENCES);
+            index.save(indexFile, "fingerprint");
+            index.save(indexFile, "fingerprint");
+
+            assertEquals(Arrays.asList(indexFile), Arrays.asList(directory.listFiles()));
+            ReferenceBarcodeIndex loaded = ReferenceBarcodeIndex.load(indexFile, "fingerprint");
+            assertNotNull(loaded);
+            assertSameContents(index, loaded);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void indexWithStaleFingerprintIsNotLoaded() throws IOException {
+        File directory = createDirectory();
+        try {
+            File indexFile = new File(directory, "barcodes.fasta.pciindex");
+            new ReferenceBarcodeIndex(UIDS, ALIGNED_SEQUENCES).save(indexFile, "old");
+
+            assertNull(ReferenceBarcodeIndex.load(indexFile, "new"));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void indexMissingLastBarcodeIsCorrupt() throws IOException {
+        File directory = createDirectory();
+        try {
+            File indexFile = new File(directory, "barcodes.fasta.pciindex");
+            new ReferenceBarcodeIndex(UIDS, ALIGNED_SEQUENCES).save(indexFile, "fingerprint");
+
+            List<String> lines = Arrays.asList(readFile(indexFile).split("\n"));
+            writeFile(indexFile, joinLines(lines.subList(0, lines.size() - 2)));
+
+            assertCorrupt(indexFile);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void indexWithLastSequenceCutShortIsCorrupt() throws IOException {
+        File directory = createDirectory();
+        try {
+            File indexFile = new File(directory, "barcodes.fasta.pciindex");
+            new ReferenceBarcodeIndex(UIDS, ALIGNED_SEQUENCES).save(indexFile, "fingerprint");
+
+            String contents = readFile(indexFile);
+            writeFile(indexFile, contents.substring(0, contents.length() - 5));
+
+            assertCorrupt(indexFile);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void indexMissingNumberOfBarcodesIsCorrupt() throws IOException {
+        File directory = createDirectory();
+        try {
+            File indexFile = new File(directory, "barcodes.fasta.pciindex");
+            writeFile(indexFile, "#fingerprint\n>" + UIDS.get(0) + "\n" + ALIGNED_SEQUENCES.get(0) + "\n");
+
+            assertCorrupt(indexFile);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void newSampleIsPlacedIntoReferenceColumns() {
+        ReferenceBarcodeIndex index = new ReferenceBarcodeIndex(UIDS, ALIGNED_SEQUENCES);
+
+        assertEquals("ACGTACGTAC--GTACGT", index.align("ACGTACGTACGTACGT"));
+        assertEquals("ACGTACGTACTTGTAC--", index.align("ACGTACGTACTTGTAC"));
+        assertEquals("ACGTACGTAC--------", index.align("ACGTACGTAC"));
+    }
+
+    @Test
+    public void residuesOfNewSampleInsertedBetweenReferenceColumnsAreLeftOut() {
+        ReferenceBarcodeIndex index = new ReferenceBarcodeIndex(
+                Arrays.asList("Genus_species_1", "Genus_species_2"),
+                Arrays.asList("ACGTACGTACGTACGTACGT", "ACGTACGTACGTACGTACGT"));
+
+        assertEquals("ACGTACGTACGTACGTACGT", index.align("ACGTACGTACGGGTACGTACGT"));
+    }
+
+    private static void assertCorrupt(File indexFile) {
+        try {
+            ReferenceBarcodeIndex.load(indexFile, "fingerprint");
+            fail("Expected the index to be corrupt");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("corrupt"));
+        }
+    }
+
+    private static void assertSameContents(ReferenceBarcodeIndex expected, ReferenceBarcodeIndex actual) {
+        assertEquals(expected.getUids(), actual.getUids());
+        assertEquals(toStrings(expected.getAlignedSequences()), toStrings(actual.getAlignedSequences()));
+    }
+
+    private static List<String> toStrings(List<PackedSequence> sequences) {
+        List<String> strings = new ArrayList<String>();
+        for (PackedSequence sequence : sequences) {
+            strings.add(sequence.toString());
+        }
+        return strings;
+    }
+
+    private static String joinLines(List<String> lines) {
+        StringBuilder joined = new StringBuilder();
+        for (String line : lines) {
+            joined.append(line).append('\n');
+        }
+        return joined.toString();
+    }
+
+    private static File createDirectory() throws IOException {
+        File directory = File.createTempFile("ReferenceBarcodeIndexTest", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+        return directory;
+    }
+
+    private static void delete(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                assertTrue(file.delete());
+            }
+        }
+        assertTrue(directory.delete());
+    }
+
+    private static String readFile(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            StringBuilder contents = new StringBuilder();
+            char[] buffer = new char[1024];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                contents.append(buffer, 0, read);
+            }
+            return contents.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void writeFile(File file, String contents) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.biomatters.plugins.barcoding.validator.validation.trimming;
+
+import jebl.evolution.align.scores.Scores;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompiledScoresTest extends Assert {
+    private static final float DELTA = 0.0001f;
+
+    private Scores scores = new CostMatrixOption("Scores", "Scores", true).getDefaultValue().getScores();
+
+    @Test
+    public void sameAlphabetSharesCompiledScores() {
+        assertSame(CompiledScores.get(scores, "ACGT-N", "TTA"), CompiledScores.get(scores, "NACGT", "A-T"));
+    }
+
+    @Test
+    public void differentAlphabetsAreCompiledSeparately() {
+        assertNotSame(CompiledScores.get(scores, "ACGT"), CompiledScores.get(scores, "ACGTN"));
+    }
+
+    @Test
+    public void tableMatchesScores() {
+        String alphabet = "ACGTNRY";
+        CompiledScores compiledScores = CompiledScores.get(scores, alphabet);
+        Scores expected = Scores.includeAdditionalCharacters(scores, alphabet);
+        for (int i = 0; i < alphabet.length(); i++) {
+            for (int j = 0; j < alphabet.length(); j++) {
+                assertEquals(expected.getScore(alphabet.charAt(i), alphabet.charAt(j)), compiledScores.getScore(alphabet.charAt(i), alphabet.charAt(j)), DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void defaultScoresFavourIdenticalBases() {
+        assertTrue(CompiledScores.get(scores, "ACGT").favoursIdenticalBases());
+    }
+
+    @Test
+    public void scoresRewardingAmbiguousBasesDoNotFavourIdenticalBases() {
+        Scores rewardsN = Scores.includeAdditionalCharacters(new CostMatrixOption("Scores", "Scores", true).getDefaultValue().getScores(), "N");
+        for (char base : "ACGT".toCharArray()) {
+            rewardsN.score[base]['N'] = rewardsN.score['N'][base] = rewardsN.getScore('A', 'A') + 1;
+        }
+
+        assertFalse(CompiledScores.get(rewardsN, "ACGTN").favoursIdenticalBases());
+        assertTrue(CompiledScores.get(rewardsN, "ACGT").favoursIdenticalBases());
+    }
+}
@@ -34,6 +34,49 @@ public class ErrorProbabilityTrimmerTest extends Assert {
         }
     }
 
+    @Test
+    public void testTrimBothEndsMatchesQuadraticImplementation() {
+        Random random = new Random(20141208);
+        for (int i = 0; i < 2000; i++) {
+            int[] qualities = new int[random.nextInt(1000)];
+            for (int j = 0; j < qualities.length; j++) {
+                qualities[j] = random.nextInt(61);
+            }
+            DefaultNucleotideGraphSequence graph = ValidationTestUtilities.getTestSequence(ValidationTestUtilities.getRandomString(qualities.length), qualities);
+            assertEquals(getTrimmageBothEndsQuadratic(qualities, 0.05), ErrorProbabilityTrimmer.getTrimmage(graph, TrimmableEnds.Both, 0.05));
+        }
+    }
+
+    /**
+     * The original implementation of modified Mott trimming that checks every start and end position.
+     */
+    private static Trimmage getTrimmageBothEndsQuadratic(int[] qualities, double cutOff) {
+        int length = qualities.length;
+
+        double[] confidences = new double[length];
+        for (int i = 0; i < length; ++i) {
+            confidences[i] = ErrorProbabilityTrimmer.confidenceToErrorProbability(qualities[i]) - cutOff;
+        }
+
+        int[] bestSegment = new int[] {length, length - 1};
+        double bestSegmentErrorProbability = Double.MAX_VALUE;
+        for (int i = 0; i <= length; i++) {
+            double segmentErrorProbability = 0;
+            for (int j = i; j < length; j++) {
+                segmentErrorProbability += confidences[j];
+                if (segmentErrorProbability > 0) {
+                    continue;
+                }
+                if (segmentErrorProbability <= bestSegmentErrorProbability) {
+                    bestSegmentErrorProbability = segmentErrorProbability;
+                    bestSegment[0] = i;
+                    bestSegment[1] = j;
+                }
+            }
+        }
+        return new Trimmage(bestSegment[0], length - 1 - bestSegment[1]);
+    }
+
     int[] toArray(List<Integer> values) {
         int[] array = new int[values.size()];
         for (int i = 0; i < values.size(); ++i) {
@@ -0,0 +1,57 @@
+package com.biomatters.plugins.barcoding.validator.validation.trimming;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrimerAlignerTest extends Assert {
+    private static final float GAP_OPEN = (float)PrimerTrimmingOptions.DEFAULT_GAP_OPEN;
+    private static final float GAP_EXTEND = (float)PrimerTrimmingOptions.DEFAULT_GAP_EXTEND;
+
+    @Test
+    public void coordinatesOfExactMatch() {
+        PrimerAligner.Alignment alignment = align("GGACGTACGTGG", "ACGTACGT", GAP_OPEN);
+        assertAlignment(alignment, 2, 10, 0, 8);
+        for (byte operation : alignment.operations) {
+            assertEquals(PrimerAligner.MATCH, operation);
+        }
+        assertEquals(8, alignment.operations.length);
+    }
+
+    @Test
+    public void coordinatesIncludeGaps() {
+        // AAACCTTAA
+        // AAA--TTAA
+        PrimerAligner.Alignment alignment = align("AAACCTTAAGGGG", "AAATTAA", 3.0f);
+        assertAlignment(alignment, 0, 9, 0, 7);
+        assertArrayEquals(new byte[] {
+                PrimerAligner.MATCH, PrimerAligner.MATCH, PrimerAligner.MATCH,
+                PrimerAligner.GAP_IN_PRIMER, PrimerAligner.GAP_IN_PRIMER,
+                PrimerAligner.MATCH, PrimerAligner.MATCH, PrimerAligner.MATCH, PrimerAligner.MATCH
+        }, alignment.operations);
+    }
+
+    @Test
+    public void tiesPreferFirstOccurrenceInSequence() {
+        //  {A}AAAAAAA
+        // GG{A}G
+        assertAlignment(align("AAAAAAAA", "GGAG", GAP_OPEN), 0, 1, 2, 3);
+    }
+
+    @Test
+    public void noAlignmentWithoutPositiveScore() {
+        assertNull(align("CCCC", "GGGG", GAP_OPEN));
+    }
+
+    private static PrimerAligner.Alignment align(String sequence, String primer, float gapOpen) {
+        CompiledScores scores = CompiledScores.get(new CostMatrixOption("Scores", "Scores", true).getDefaultValue().getScores(), sequence, primer);
+        return PrimerAligner.align(sequence, primer, scores, gapOpen, GAP_EXTEND);
+    }
+
+    private static void assertAlignment(PrimerAligner.Alignment alignment, int sequenceStart, int sequenceEnd, int primerStart, int primerEnd) {
+        assertNotNull(alignment);
+        assertEquals(sequenceStart, alignment.sequenceStart);
+        assertEquals(sequenceEnd, alignment.sequenceEnd);
+        assertEquals(primerStart, alignment.primerStart);
+        assertEquals(primerEnd, alignment.primerEnd);
+    }
+}
@@ -0,0 +1,88 @@
+package com.biomatters.plugins.barcoding.validator.validation.trimming;
+
+import jebl.evolution.sequences.NucleotideState;
+import jebl.evolution.sequences.Nucleotides;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class PrimerMatcherTest extends Assert {
+
+    @Test
+    public void findsExactMatch() {
+        PrimerMatcher.Matches matches = new PrimerMatcher("ACTG").search("TTTACTGTTT");
+        assertEquals(0, matches.minimumEdits);
+        assertEquals(1, matches.numberOfExactMatches);
+        assertEquals(7, matches.lastExactMatchEnd);
+    }
+
+    @Test
+    public void ambiguitiesMatchTheirBases() {
+        assertEquals(0, new PrimerMatcher("ACNG").search("GGACTGGG").minimumEdits);
+        assertEquals(0, new PrimerMatcher("ACTG").search("GGRCTGGG").minimumEdits);
+        assertEquals(1, new PrimerMatcher("ACTG").search("GGYCTGGG").minimumEdits);
+    }
+
+    @Test
+    public void primerPastEndOfSequenceCountsAsEdits() {
+        assertEquals(1, new PrimerMatcher("ACTG").search("CTGCTAT").minimumEdits);
+        assertEquals(2, new PrimerMatcher("TATAG").search("CTGCTAT").minimumEdits);
+    }
+
+    @Test
+    public void matchesDynamicProgramming() {
+        Random random = new Random(11);
+        String alphabet = "ACGTACGTACGTNRY-";
+        for (int primerLength : new int[]{1, 6, 20, 63, 64}) {
+            for (int repeat = 0; repeat < 20; repeat++) {
+                String primer = getRandomSequence(random, alphabet, primerLength);
+                String sequence = getRandomSequence(random, alphabet, random.nextInt(200));
+                assertEquals(getMinimumEdits(primer, sequence), new PrimerMatcher(primer).search(sequence).minimumEdits);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void primersMustFitInAWord() {
+        new PrimerMatcher(getRandomSequence(new Random(), "ACGT", PrimerMatcher.MAX_PRIMER_LENGTH + 1));
+    }
+
+    private static int getMinimumEdits(String primer, String sequence) {
+        int[] previous = new int[primer.length() + 1];
+        int[] current = new int[primer.length() + 1];
+        for (int i = 0; i <= primer.length(); i++) {
+            previous[i] = i;
+        }
+
+        int minimumEdits = previous[primer.length()];
+        for (int j = 1; j <= sequence.length(); j++) {
+            current[0] = 0;
+            for (int i = 1; i <= primer.length(); i++) {
+                int substitution = previous[i - 1] + (isMatch(primer.charAt(i - 1), sequence.charAt(j - 1)) ? 0 : 1);
+                current[i] = Math.min(substitution, Math.min(previous[i], current[i - 1]) + 1);
+            }
+            minimumEdits = Math.min(minimumEdits, current[primer.length()]);
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return minimumEdits;
+    }
+
+    private static boolean isMatch(char primerChar, char sequenceChar) {
+        NucleotideState primerState = Nucleotides.getState(primerChar);
+        NucleotideState sequenceState = Nucleotides.getState(sequenceChar);
+        return primerState != null && sequenceState != null && primerState != Nucleotides.GAP_STATE
+                && sequenceState != Nucleotides.GAP_STATE && primerState.possiblyEqual(sequenceState);
+    }
+
+    private static String getRandomSequence(Random random, String alphabet, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package com.biomatters.plugins.barcoding.validator.validation.trimming;
+
+import com.biomatters.geneious.publicapi.implementations.sequence.OligoSequenceDocument;
+import com.biomatters.geneious.publicapi.utilities.SequenceUtilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+public class PrimerSeedIndexTest extends Assert {
+
+    @Test
+    public void onlyPrimersWithSeedsAreCandidates() {
+        PrimerSeedIndex index = new PrimerSeedIndex(getPrimers("GGTCAACAAATCATAAAGATATTGG", "TAAACTTCAGGGTGACCAAAAAATCA"), 1);
+        PrimerSeedIndex.Candidates candidates = index.getCandidates("GGTCAACAAATCATAAAGATATTGGCCCCCCCCCCCCCCCCCCCC", 0);
+
+        assertTrue(candidates.isForwardCandidate(0));
+        assertFalse(candidates.isReverseCandidate(0));
+        assertFalse(candidates.isForwardCandidate(1));
+        assertFalse(candidates.isReverseCandidate(1));
+    }
+
+    @Test
+    public void seedsOutsideSearchWindowAreIgnored() {
+        String primer = "GGTCAACAAATCATAAAGATATTGG";
+        String sequence = "CCCCCCCCCCCCCCCCCCCC" + primer + SequenceUtilities.reverseComplement(primer) + "CCCCCCCCCCCCCCCCCCCC";
+        PrimerSeedIndex index = new PrimerSeedIndex(getPrimers(primer), 1);
+
+        assertTrue(index.getCandidates(sequence, 0).isForwardCandidate(0));
+        assertTrue(index.getCandidates(sequence, 0).isReverseCandidate(0));
+        assertFalse(index.getCandidates(sequence, 20).isForwardCandidate(0));
+        assertFalse(index.getCandidates(sequence, 20).isReverseCandidate(0));
+    }
+
+    @Test
+    public void shortPrimersAreAlwaysCandidates() {
+        PrimerSeedIndex.Candidates candidates = new PrimerSeedIndex(getPrimers("ACTG"), 1).getCandidates("CCCCCCCC", 0);
+        assertTrue(candidates.isForwardCandidate(0));
+        assertTrue(candidates.isReverseCandidate(0));
+    }
+
+    @Test
+    public void basesAreMatchedRegardlessOfCase() {
+        PrimerSeedIndex index = new PrimerSeedIndex(getPrimers("ggtcaacaaatcATAAAGATATTGG"), 1);
+
+        assertTrue(index.getCandidates("GGTCAACAAATCATAAAGATATTGGCCCCCCCCCCCCCCCCCCCC", 0).isForwardCandidate(0));
+        assertTrue(index.getCandidates("ggtcaacaaatcataaagatattggcccccccccccccccccccc", 0).isForwardCandidate(0));
+        assertFalse(index.getCandidates("cccccccccccccccccccccccccccccccccccccccccccc", 0).isForwardCandidate(0));
+    }
+
+    @Test
+    public void neverMissesPrimersWithinMaximumMismatches() {
+        Random random = new Random(5);
+        for (int maxMismatches = 0; maxMismatches <= 3; maxMismatches++) {
+            for (int repeat = 0; repeat < 50; repeat++) {
+                List<String> primerSequences = new ArrayList<String>();
+                for (int i = 0; i < 6; i++) {
+                    primerSequences.add(getRandomSequence(random, "ACGTACGTACGTRYN", 16 + random.nextInt(10)));
+                }
+
+                // Plant a mutated copy of one of the primers, or its reverse complement, in a random sequence
+                String planted = primerSequences.get(random.nextInt(primerSequences.size()));
+                if (random.nextBoolean()) {
+                    planted = SequenceUtilities.reverseComplement(planted).toString();
+                }
+                char[] mutated = planted.toCharArray();
+                for (int i = 0; i < maxMismatches; i++) {
+                    mutated[random.nextInt(mutated.length)] = "ACGTN-".charAt(random.nextInt(6));
+                }
+                String sequence = getRandomSequence(random, "ACGTACGTACGTN", 100) + new String(mutated) + getRandomSequence(random, "ACGTACGTACGTN", 100);
+
+                PrimerSeedIndex.Candidates candidates = new PrimerSeedIndex(getPrimers(primerSequences.toArray(new String[primerSequences.size()])), maxMismatches).getCandidates(sequence, 0);
+                for (int i = 0; i < primerSequences.size(); i++) {
+                    String primer = primerSequences.get(i);
+                    if (new PrimerMatcher(primer).search(sequence).minimumEdits <= maxMismatches) {
+                        assertTrue(candidates.isForwardCandidate(i));
+                    }
+                    if (new PrimerMatcher(SequenceUtilities.reverseComplement(primer)).search(sequence).minimumEdits <= maxMismatches) {
+                        assertTrue(candidates.isReverseCandidate(i));
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<OligoSequenceDocument> getPrimers(String... primerSequences) {
+        List<OligoSequenceDocument> primers = new ArrayList<OligoSequenceDocument>();
+        for (String primerSequence : Arrays.asList(primerSequences)) {
+            primers.add(new OligoSequenceDocument("primer" + primers.size(), null, primerSequence, new Date()));
+        }
+        return primers;
+    }
+
+    private static String getRandomSequence(Random random, String alphabet, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
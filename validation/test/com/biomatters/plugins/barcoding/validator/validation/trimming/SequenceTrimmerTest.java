@@ -3,6 +3,7 @@ package com.biomatters.plugins.barcoding.validator.validation.trimming;
 import com.biomatters.geneious.publicapi.documents.sequence.DefaultNucleotideGraph;
 import com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraph;
 import com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraphSequenceDocument;
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceAnnotation;
 import com.biomatters.geneious.publicapi.implementations.sequence.DefaultNucleotideGraphSequence;
 import com.biomatters.geneious.publicapi.implementations.sequence.OligoSequenceDocument;
 import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
@@ -228,6 +229,76 @@ public class SequenceTrimmerTest extends Assert {
         testTrimming(untrimmed, primerWithoutMiddlePiece, untrimmed, 1, 7, 3.0f);
     }
 
+    @Test
+    public void searchWindowGivesSameResultWhenPrimerIsInWindow() {
+        String primer = "ACTG";
+        String reversePrimer = "TATAG";
+        String sequence = "TTACTGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGAAAAAAAAAAAAAAAAAAAAAAAAAAAAAACTATATT";
+        for (int searchWindowSize : new int[] { 0, 8, 20, sequence.length() }) {
+            testTrimming(sequence, primer, sequence.substring(6), 0, 0, (float)PrimerTrimmingOptions.DEFAULT_GAP_OPEN, searchWindowSize);
+            testTrimming(sequence, reversePrimer, sequence.substring(0, sequence.length() - 7), 0, 0, (float)PrimerTrimmingOptions.DEFAULT_GAP_OPEN, searchWindowSize);
+        }
+    }
+
+    @Test
+    public void searchWindowIgnoresPrimersOutsideWindow() {
+        String primer = "ACTG";
+        String reversePrimer = "TATAG";
+        String sequence = "GGGGGGGGGGGGGGGGGGGGACTGCTATATTTAGGGGGGGGGGGGGGGGGGGGG";
+        testTrimming(sequence, primer, sequence, 0, 0, (float)PrimerTrimmingOptions.DEFAULT_GAP_OPEN, 20);
+        testTrimming(sequence, reversePrimer, sequence, 0, 0, (float)PrimerTrimmingOptions.DEFAULT_GAP_OPEN, 20);
+    }
+
+    @Test
+    public void trimmingUsingAnnotationsRemovesOverlappingTrims() {
+        DefaultNucleotideGraphSequence sequence = ValidationTestUtilities.getTestSequenceWithConsistentQuality("ACGTACGTACGTACGTACGT", 40);
+        sequence.addSequenceAnnotation(SequenceAnnotation.createTrimAnnotation(15, 20));
+        sequence.addSequenceAnnotation(SequenceAnnotation.createTrimAnnotation(1, 3));
+        sequence.addSequenceAnnotation(SequenceAnnotation.createTrimAnnotation(8, 10));
+        sequence.addSequenceAnnotation(SequenceAnnotation.createTrimAnnotation(9, 12));
+        sequence.addSequenceAnnotation(SequenceAnnotation.createTrimAnnotation(2, 4));
+
+        assertEquals("ACG" + "AC", SequenceTrimmer.trimSequenceUsingAnnotations(sequence).getSequenceString());
+    }
+
+    @Test
+    public void cachedTrimmingIsReusedForSameContentAndSettings() throws DocumentOperationException {
+        String sequence = "TTACTGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGGAAAAAAAAAAAAAAAAAAAAAAAAAAAAAACTATATT";
+        PrimerSeedIndex primers = new PrimerSeedIndex(Collections.singletonList(new OligoSequenceDocument("primer", null, "ACTG", new Date())), 0);
+        TrimmingCache cache = new TrimmingCache(10);
+
+        NucleotideGraphSequenceDocument first = trimWithCache(ValidationTestUtilities.getTestSequenceWithConsistentQuality(sequence, 40), primers, 0, cache);
+        DefaultNucleotideGraphSequence copy = ValidationTestUtilities.getTestSequenceWithConsistentQuality(sequence, 40);
+        NucleotideGraphSequenceDocument second = trimWithCache(copy, primers, 0, cache);
+
+        assertEquals(sequence.substring(6), first.getSequenceString());
+        assertEquals(first.getSequenceString(), second.getSequenceString());
+        assertEquals(1, cache.getNumberOfMisses());
+        assertEquals(1, cache.getNumberOfHits());
+        assertEquals(1, copy.getSequenceAnnotations().size());
+        assertEquals(SequenceAnnotation.TYPE_PRIMER_BIND, copy.getSequenceAnnotations().get(0).getType());
+
+        trimWithCache(ValidationTestUtilities.getTestSequenceWithConsistentQuality(sequence, 40), primers, 8, cache);
+        assertEquals(2, cache.getNumberOfMisses());
+        assertEquals(2, cache.size());
+    }
+
+    private static NucleotideGraphSequenceDocument trimWithCache(NucleotideGraphSequenceDocument sequence, PrimerSeedIndex primers, int searchWindowSize, TrimmingCache cache) {
+        return SequenceTrimmer.trimSequenceByQualityAndPrimers(
+                sequence,
+                Integer.MAX_VALUE,
+                primers,
+                (float)PrimerTrimmingOptions.DEFAULT_GAP_OPEN,
+                (float)PrimerTrimmingOptions.DEFAULT_GAP_EXTEND,
+                new CostMatrixOption("Scores", "Scores", true).getDefaultValue().getScores(),
+                0,
+                0,
+                searchWindowSize,
+                false,
+                cache
+        );
+    }
+
     private void doIterativeMismatchTest(String basicSequence, String primer, String expected, boolean replaceFromFront) {
         for(int i=0; i<primer.length(); i++) {
             char[] chars = basicSequence.toCharArray();
@@ -243,30 +314,35 @@ public class SequenceTrimmerTest extends Assert {
     }
 
     private void testTrimming(CharSequence sequence, CharSequence primer, CharSequence expected, int maxMismatches, int minMatchLength, float gapOpen) {
+        testTrimming(sequence, primer, expected, maxMismatches, minMatchLength, gapOpen, 0);
+    }
+
+    private void testTrimming(CharSequence sequence, CharSequence primer, CharSequence expected, int maxMismatches, int minMatchLength, float gapOpen, int searchWindowSize) {
         DefaultNucleotideGraphSequence seqDoc = ValidationTestUtilities.getTestSequenceWithConsistentQuality(sequence, 40);
         OligoSequenceDocument primerDoc = new OligoSequenceDocument("primer", null, primer, new Date());
-        testMatchConstraints(maxMismatches, minMatchLength, gapOpen, seqDoc, primerDoc, expected);
+        testMatchConstraints(maxMismatches, minMatchLength, gapOpen, searchWindowSize, seqDoc, primerDoc, expected);
     }
 
     private void testMaxMismatches(int maxMismatches, String expectedTrimmedSequence) {
-        testMatchConstraints(maxMismatches, 0, (float)PrimerTrimmingOptions.DEFAULT_GAP_OPEN, sequencePrimer, primer, expectedTrimmedSequence);
+        testMatchConstraints(maxMismatches, 0, (float)PrimerTrimmingOptions.DEFAULT_GAP_OPEN, 0, sequencePrimer, primer, expectedTrimmedSequence);
     }
 
     private void testMinMatchLength(int minMatchLength, String expectedTrimmedSequence) {
-        testMatchConstraints(Integer.MAX_VALUE, minMatchLength, (float)PrimerTrimmingOptions.DEFAULT_GAP_OPEN, sequencePrimer, primer, expectedTrimmedSequence);
+        testMatchConstraints(Integer.MAX_VALUE, minMatchLength, (float)PrimerTrimmingOptions.DEFAULT_GAP_OPEN, 0, sequencePrimer, primer, expectedTrimmedSequence);
     }
 
-    private void testMatchConstraints(int maxMismatches, int minMatchLength, float gapOpen, NucleotideGraphSequenceDocument inputSequence, OligoSequenceDocument primer, CharSequence expectedTrimmedSequence) {
+    private void testMatchConstraints(int maxMismatches, int minMatchLength, float gapOpen, int searchWindowSize, NucleotideGraphSequenceDocument inputSequence, OligoSequenceDocument primer, CharSequence expectedTrimmedSequence) {
 
         NucleotideGraphSequenceDocument trimmedSequence = SequenceTrimmer.trimSequenceByQualityAndPrimers(
                 inputSequence,
                 Integer.MAX_VALUE,
-                Collections.singletonList(primer),
+                new PrimerSeedIndex(Collections.singletonList(primer), maxMismatches),
                 gapOpen,
                 (float)PrimerTrimmingOptions.DEFAULT_GAP_EXTEND,
                 new CostMatrixOption("Scores", "Scores", true).getDefaultValue().getScores(),
                 maxMismatches,
                 minMatchLength,
+                searchWindowSize,
                 false
         );
 
@@ -0,0 +1,52 @@
+package com.biomatters.plugins.barcoding.validator.validation.trimming;
+
+import com.biomatters.geneious.publicapi.documents.sequence.SequenceAnnotation;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class TrimmingCacheTest extends Assert {
+    private static final byte[] SETTINGS = { 1, 2, 3 };
+
+    @Test
+    public void leastRecentlyUsedResultIsEvicted() {
+        TrimmingCache cache = new TrimmingCache(2);
+        cache.put(key(1), trims(1));
+        cache.put(key(2), trims(2));
+        assertEquals(new Trimmage(1, 1), cache.get(key(1)).trimmage);
+
+        cache.put(key(3), trims(3));
+        assertEquals(2, cache.size());
+        assertNull(cache.get(key(2)));
+        assertEquals(new Trimmage(1, 1), cache.get(key(1)).trimmage);
+        assertEquals(new Trimmage(3, 3), cache.get(key(3)).trimmage);
+
+        assertEquals(3, cache.getNumberOfHits());
+        assertEquals(1, cache.getNumberOfMisses());
+    }
+
+    @Test
+    public void keysWithDifferentSettingsAreDistinct() {
+        TrimmingCache cache = new TrimmingCache(10);
+        cache.put(key(1), trims(1));
+        assertNull(cache.get(new TrimmingCache.Key(new byte[] { 1 }, new byte[] { 4, 5, 6 })));
+        assertNotNull(cache.get(new TrimmingCache.Key(new byte[] { 1 }, new byte[] { 1, 2, 3 })));
+    }
+
+    @Test
+    public void emptyCacheHoldsNothing() {
+        TrimmingCache cache = new TrimmingCache(0);
+        cache.put(key(1), trims(1));
+        assertEquals(0, cache.size());
+        assertNull(cache.get(key(1)));
+    }
+
+    private static TrimmingCache.Key key(int sequence) {
+        return new TrimmingCache.Key(new byte[] { (byte)sequence }, SETTINGS);
+    }
+
+    private static TrimmingCache.Trims trims(int trim) {
+        return new TrimmingCache.Trims(new Trimmage(trim, trim), Collections.<SequenceAnnotation>emptyList());
+    }
+}
@@ -0,0 +1,92 @@
+package com.biomatters.plugins.barcoding.validator.validation.utilities;
+
+import com.biomatters.geneious.publicapi.plugin.DocumentOperationException;
+import jebl.util.ProgressListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+public class ConcurrencyUtilitiesTest extends Assert {
+
+    @Test
+    public void returnsResult() throws DocumentOperationException {
+        FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "result";
+            }
+        });
+        new Thread(task).start();
+        assertEquals("result", ConcurrencyUtilities.waitForResult(task, ProgressListener.EMPTY, "Failed"));
+    }
+
+    @Test
+    public void documentOperationExceptionsAreRethrownAsIs() {
+        final DocumentOperationException failure = new DocumentOperationException("Step failed");
+        FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw failure;
+            }
+        });
+        task.run();
+        try {
+            ConcurrencyUtilities.waitForResult(task, ProgressListener.EMPTY, "Failed");
+            fail("Expected the failure of the task to be thrown");
+        } catch (DocumentOperationException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void otherExceptionsAreWrapped() {
+        FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw new IllegalStateException("broken");
+            }
+        });
+        task.run();
+        try {
+            ConcurrencyUtilities.waitForResult(task, ProgressListener.EMPTY, "Failed to calculate");
+            fail("Expected the failure of the task to be thrown");
+        } catch (DocumentOperationException e) {
+            assertEquals("Failed to calculate: broken", e.getMessage());
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void cancelingStopsWaitingAndCancelsTheResult() {
+        FutureTask<String> neverRun = new FutureTask<String>(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "never";
+            }
+        });
+        try {
+            ConcurrencyUtilities.waitForResult(neverRun, new CanceledProgressListener(), "Failed");
+            fail("Expected waiting to be canceled");
+        } catch (DocumentOperationException e) {
+            assertTrue(e instanceof DocumentOperationException.Canceled);
+        }
+        assertTrue(neverRun.isCancelled());
+    }
+
+    private static class CanceledProgressListener extends ProgressListener {
+        @Override
+        protected void _setProgress(double fractionCompleted) {
+        }
+
+        @Override
+        protected void _setMessage(String message) {
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.biomatters.plugins.barcoding.validator.validation.utilities;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FastaWriterTest extends Assert {
+
+    @Test
+    public void writesRecordsOnePerLine() throws IOException {
+        File file = File.createTempFile("FastaWriterTest", ".fasta");
+        try {
+            FastaWriter writer = new FastaWriter(file);
+            writer.writeLine("#comment");
+            writer.write("first", "A description", "ACGT-acgt");
+            writer.write("second", null, PackedSequence.pack("NNACGT"));
+            writer.close();
+
+            assertEquals(Arrays.asList("#comment", ">first A description", "ACGT-acgt", ">second", "NNACGT"), readLines(file));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void sequencesLongerThanTheBufferAreWrittenInFull() throws IOException {
+        StringBuilder sequence = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            sequence.append("acgt".charAt(i % 4));
+        }
+
+        File file = File.createTempFile("FastaWriterTest", ".fasta");
+        try {
+            FastaWriter writer = new FastaWriter(file, true);
+            writer.write("long", "", sequence);
+            writer.close();
+
+            assertEquals(Arrays.asList(">long", sequence.toString().toUpperCase()), readLines(file));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void packedSequencesLongerThanAChunkAreWrittenInFull() throws IOException {
+        StringBuilder sequence = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sequence.append("ACGT-acgtNRY".charAt(i % 12));
+        }
+
+        File file = File.createTempFile("FastaWriterTest", ".fasta");
+        try {
+            FastaWriter writer = new FastaWriter(file);
+            writer.write("packed", null, PackedSequence.pack(sequence));
+            writer.close();
+
+            assertEquals(Arrays.asList(">packed", sequence.toString()), readLines(file));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void sequencesMustBeAscii() throws IOException {
+        File file = File.createTempFile("FastaWriterTest", ".fasta");
+        FastaWriter writer = new FastaWriter(file);
+        try {
+            writer.write("sequence", null, "AC\u00c9T");
+        } finally {
+            writer.close();
+            assertTrue(file.delete());
+        }
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,30 @@
+package com.biomatters.plugins.barcoding.validator.validation.utilities;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KmerUtilitiesTest extends Assert {
+
+    private static final double DELTA = 0.0001;
+
+    @Test
+    public void sequenceContainsItself() {
+        byte[] residues = PairwiseAligner.toResidues("ACTGAAACTGAGACCATTGACCA");
+        assertEquals(100.0, KmerUtilities.getContainment(KmerUtilities.getSortedKmers(residues, 8), residues, 8), DELTA);
+    }
+
+    @Test
+    public void reverseComplementHasLowContainment() {
+        byte[] residues = PairwiseAligner.toResidues("ACTGAAACTGAGACCATTGACCAGATTACAGATTACA");
+        byte[] reversed = PairwiseAligner.reverseComplement(residues);
+        assertTrue(KmerUtilities.getContainment(KmerUtilities.getSortedKmers(residues, 8), reversed, 8) < 20.0);
+    }
+
+    @Test
+    public void ambiguousBasesAreSkipped() {
+        long[] reference = KmerUtilities.getSortedKmers(PairwiseAligner.toResidues("ACGTACGT"), 4);
+        assertEquals(4, reference.length);
+        assertEquals(100.0, KmerUtilities.getContainment(reference, PairwiseAligner.toResidues("ACGTNCGTA"), 4), DELTA);
+        assertEquals(0.0, KmerUtilities.getContainment(reference, PairwiseAligner.toResidues("ACG"), 4), DELTA);
+    }
+}
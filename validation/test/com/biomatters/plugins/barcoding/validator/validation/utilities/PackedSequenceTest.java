@@ -0,0 +1,117 @@
+package com.biomatters.plugins.barcoding.validator.validation.utilities;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class PackedSequenceTest extends Assert {
+    private static final String ALPHABET = "ACGTACGTACGTACGTNRY-acgt";
+
+    @Test
+    public void packingIsLossless() {
+        Random random = new Random(16);
+        for (int length : new int[] { 0, 1, 31, 32, 33, 64, 65, 700 }) {
+            String sequence = getRandomSequence(random, length);
+            PackedSequence packed = PackedSequence.pack(sequence);
+            assertEquals(length, packed.length());
+            assertEquals(sequence, packed.toString());
+            for (int i = 0; i < length; i++) {
+                assertEquals(sequence.charAt(i), packed.charAt(i));
+            }
+        }
+    }
+
+    @Test
+    public void subSequencesMatchStrings() {
+        Random random = new Random(17);
+        String sequence = "----" + getRandomSequence(random, 200) + "------";
+        PackedSequence packed = PackedSequence.pack(sequence);
+        for (int i = 0; i < 100; i++) {
+            int start = random.nextInt(sequence.length() + 1);
+            int end = start + random.nextInt(sequence.length() - start + 1);
+            CharSequence subSequence = packed.subSequence(start, end);
+            assertEquals(sequence.substring(start, end), subSequence.toString());
+            assertEquals(PackedSequence.pack(sequence.substring(start, end)), subSequence);
+        }
+    }
+
+    @Test
+    public void getCharsMatchesString() {
+        Random random = new Random(21);
+        String sequence = "--" + getRandomSequence(random, 150) + "---";
+        PackedSequence packed = PackedSequence.pack(sequence);
+        for (int i = 0; i < 100; i++) {
+            int start = random.nextInt(sequence.length() + 1);
+            int end = start + random.nextInt(sequence.length() - start + 1);
+            char[] expected = new char[end - start + 2];
+            char[] actual = new char[end - start + 2];
+            sequence.getChars(start, end, expected, 1);
+            packed.getChars(start, end, actual, 1);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void reverseComplement() {
+        assertEquals("--NCARYt-", PackedSequence.pack("-aRYTGN--").reverseComplement().toString());
+
+        Random random = new Random(18);
+        String sequence = getRandomSequence(random, 300);
+        PackedSequence reversed = PackedSequence.pack(sequence).reverseComplement();
+        assertEquals(PackedSequence.pack(reversed.toString()), reversed);
+        assertEquals(PackedSequence.pack(sequence), reversed.reverseComplement());
+    }
+
+    @Test
+    public void kmersMatchKmerUtilities() {
+        Random random = new Random(19);
+        String sequence = getRandomSequence(random, 300);
+        PackedSequence packed = PackedSequence.pack(sequence);
+        int k = KmerUtilities.ORIENTATION_KMER_LENGTH;
+        for (int start = 0; start + k <= sequence.length(); start++) {
+            String word = sequence.substring(start, start + k);
+            long kmer = packed.getKmer(start, k);
+            if (word.matches("[ACGT]+")) {
+                long[] expected = KmerUtilities.getSortedKmers(PairwiseAligner.toResidues(word), k);
+                assertArrayEquals(expected, new long[] { kmer });
+            } else {
+                assertEquals(-1, kmer);
+            }
+        }
+    }
+
+    @Test
+    public void countsMismatchesLikeCharacterComparison() {
+        Random random = new Random(20);
+        for (int repeat = 0; repeat < 200; repeat++) {
+            int length = random.nextInt(150);
+            String first = getRandomSequence(random, length);
+            char[] second = first.toCharArray();
+            for (int i = 0; i < random.nextInt(20) && length > 0; i++) {
+                second[random.nextInt(length)] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+            }
+
+            int expected = 0;
+            for (int i = 0; i < length; i++) {
+                if (first.charAt(i) != second[i]) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, PackedSequence.pack(first).countMismatches(PackedSequence.pack(new String(second))));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sequencesMustBeSameLengthToCompare() {
+        PackedSequence.pack("ACGT").countMismatches(PackedSequence.pack("ACG"));
+    }
+
+    private static String getRandomSequence(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package com.biomatters.plugins.barcoding.validator.validation.utilities;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PairwiseAlignerTest extends Assert {
+
+    private static final float DELTA = 0.0001f;
+
+    @Test
+    public void identicalSequencesAreCompletelySimilar() {
+        assertEquals(100f, getSimilarity("ACTGAAACTGAGACCA", "ACTGAAACTGAGACCA"), DELTA);
+    }
+
+    @Test
+    public void mismatchesReduceSimilarity() {
+        assertEquals(100f * 22 / 23, getSimilarity("ACTGAAACTGAAACCATTGACCA", "ACTGAAACTGTAACCATTGACCA"), DELTA);
+    }
+
+    @Test
+    public void internalGapsReduceSimilarity() {
+        assertEquals(100f * 36 / 37, getSimilarity("ACTGAAACTGAGACCATTGACCAGATTACAGATTACA", "ACTGAAACTGAGACCATGACCAGATTACAGATTACA"), DELTA);
+    }
+
+    @Test
+    public void endGapsAreIgnored() {
+        assertEquals(100f, getSimilarity("GGGGGGACTGAAACTGAGACCATTGACCA", "ACTGAAACTGAGACCATTGACCATTTTTTT"), DELTA);
+    }
+
+    @Test
+    public void noOverlapHasZeroSimilarity() {
+        assertEquals(0f, getSimilarity("", "ACTG"), DELTA);
+    }
+
+    @Test
+    public void canReverseComplement() {
+        assertEquals("NYKMACGT", new String(PairwiseAligner.reverseComplement(PairwiseAligner.toResidues("acgtKMRN"))));
+    }
+
+    @Test
+    public void alignedQueryIndicesSkipGaps() {
+        // Query is missing the reference's first base and the T after GACCA
+        int[] alignedQueryIndices = PairwiseAligner.getAlignedQueryIndices(
+                PairwiseAligner.toResidues("CTGAAACTGAGACCAGACCAGATTACAGATTACA"),
+                PairwiseAligner.toResidues("ACTGAAACTGAGACCATGACCAGATTACAGATTACA"));
+        assertEquals(36, alignedQueryIndices.length);
+        assertEquals(-1, alignedQueryIndices[0]);
+        assertEquals(0, alignedQueryIndices[1]);
+        assertEquals(14, alignedQueryIndices[15]);
+        assertEquals(-1, alignedQueryIndices[16]);
+        assertEquals(15, alignedQueryIndices[17]);
+        assertEquals(33, alignedQueryIndices[35]);
+    }
+
+    private static float getSimilarity(String first, String second) {
+        return PairwiseAligner.getSimilarity(PairwiseAligner.toResidues(first), PairwiseAligner.toResidues(second));
+    }
+}
@@ -0,0 +1,100 @@
+package com.biomatters.plugins.barcoding.validator.validation.utilities;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class ScratchWorkspaceTest extends Assert {
+
+    @Test
+    public void jobDirectoriesAreSeparateAndDeletedWithContents() throws IOException {
+        File root = createRoot();
+        try {
+            ScratchWorkspace workspace = new ScratchWorkspace(root, false);
+            File first = workspace.createJobDirectory("job");
+            File second = workspace.createJobDirectory("job");
+            assertFalse(first.equals(second));
+            assertEquals(root.getAbsoluteFile(), first.getParentFile().getParentFile().getAbsoluteFile());
+
+            createFile(new File(first, "nested"), "output.txt");
+            workspace.deleteJobDirectory(first);
+            assertFalse(first.exists());
+            assertTrue(second.isDirectory());
+
+            workspace.close();
+            assertEquals(0, root.listFiles().length);
+        } finally {
+            deleteRoot(root);
+        }
+    }
+
+    @Test
+    public void closeDeletesFilesOfUnfinishedJobs() throws IOException {
+        File root = createRoot();
+        try {
+            ScratchWorkspace workspace = new ScratchWorkspace(root, false);
+            createFile(workspace.createJobDirectory("job"), "input.fasta");
+            workspace.close();
+            assertEquals(0, root.listFiles().length);
+        } finally {
+            deleteRoot(root);
+        }
+    }
+
+    @Test
+    public void jobDirectoriesCannotBeCreatedOnceClosed() throws IOException {
+        File root = createRoot();
+        try {
+            ScratchWorkspace workspace = new ScratchWorkspace(root, false);
+            workspace.createJobDirectory("job");
+            workspace.close();
+
+            try {
+                workspace.createJobDirectory("job");
+                fail("Expected the closed workspace to refuse to create a job directory");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("closed"));
+            }
+            assertEquals(0, root.listFiles().length);
+        } finally {
+            deleteRoot(root);
+        }
+    }
+
+    @Test
+    public void filesAreKeptForDebugging() throws IOException {
+        File root = createRoot();
+        try {
+            ScratchWorkspace workspace = new ScratchWorkspace(root, true);
+            File jobDirectory = workspace.createJobDirectory("job");
+            File file = createFile(jobDirectory, "input.fasta");
+
+            workspace.deleteJobDirectory(jobDirectory);
+            workspace.close();
+            assertTrue(file.isFile());
+        } finally {
+            deleteRoot(root);
+        }
+    }
+
+    private static File createRoot() throws IOException {
+        File root = File.createTempFile("ScratchWorkspaceTest", "");
+        assertTrue(root.delete());
+        assertTrue(root.mkdir());
+        return root;
+    }
+
+    private static void deleteRoot(File root) {
+        new ScratchWorkspace(root, false).deleteJobDirectory(root);
+        assertFalse(root.exists());
+    }
+
+    private static File createFile(File directory, String name) throws IOException {
+        assertTrue(directory.isDirectory() || directory.mkdirs());
+        File file = new File(directory, name);
+        assertTrue(file.createNewFile());
+        return file;
+    }
+}
@@ -0,0 +1,62 @@
+package com.biomatters.plugins.barcoding.validator.validation.utilities;
+
+import com.biomatters.geneious.publicapi.documents.sequence.NucleotideGraphSequenceDocument;
+import com.biomatters.geneious.publicapi.implementations.sequence.DefaultNucleotideSequence;
+import com.biomatters.plugins.barcoding.validator.validation.ValidationTestUtilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SequenceReadTest extends Assert {
+
+    @Test
+    public void copiesBasesAndQualitiesOfDocument() {
+        SequenceRead read = SequenceRead.fromDocument(ValidationTestUtilities.getTestSequence("ACGTN", new int[] { 10, 20, 30, 40, 50 }));
+        assertEquals(5, read.getLength());
+        assertEquals("ACGTN", read.getBases().toString());
+        assertTrue(read.hasQualities());
+        for (int i = 0; i < read.getLength(); i++) {
+            assertEquals(10 * (i + 1), read.getQuality(i));
+        }
+    }
+
+    @Test
+    public void documentsWithoutQualitiesHaveNoQualities() {
+        SequenceRead read = SequenceRead.fromDocument(new DefaultNucleotideSequence("Sequence", "ACGT"));
+        assertEquals("ACGT", read.getBases().toString());
+        assertFalse(read.hasQualities());
+    }
+
+    @Test
+    public void subSequencesOfBasesAreViews() {
+        CharSequence bases = new SequenceRead("Read", "AACCGGTT", null).getBases();
+        CharSequence middle = bases.subSequence(2, 6);
+        assertEquals("CCGG", middle.toString());
+        assertEquals("GG", middle.subSequence(2, 4).toString());
+        assertEquals('G', middle.charAt(3));
+    }
+
+    @Test
+    public void qualitiesAreCappedToFitInAShort() {
+        SequenceRead read = new SequenceRead("Read", "ACG", new int[] { 200, 40000, -1 });
+        assertEquals(200, read.getQuality(0));
+        assertEquals(Short.MAX_VALUE, read.getQuality(1));
+        assertEquals(0, read.getQuality(2));
+    }
+
+    @Test
+    public void documentHasTheNameBasesAndQualitiesOfRead() {
+        SequenceRead read = new SequenceRead("Read", "ACGT", new int[] { 10, 200, 30, 40 });
+        NucleotideGraphSequenceDocument document = read.toDocument();
+        assertEquals("Read", document.getName());
+        assertEquals("ACGT", document.getSequenceString());
+        assertTrue(document.hasSequenceQualities());
+        for (int i = 0; i < read.getLength(); i++) {
+            assertEquals(read.getQuality(i), document.getSequenceQuality(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void qualitiesMustMatchBases() {
+        new SequenceRead("Read", "ACGT", new int[] { 10, 20 });
+    }
+}